@@ -0,0 +1,86 @@
+package agent.smith;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// The same operations on Matrix and on FloatMatrix. At 2048 the operands are well beyond the caches, so the
+// element-wise operations are bound by memory bandwidth and FloatMatrix moves half the bytes
+@State(Scope.Thread)
+public class FloatMatrixBenchmark {
+
+    @Param({"512", "2048"})
+    public int numRowsAndCols;
+
+    private Matrix matrix;
+    private Matrix other;
+    private FloatMatrix floatMatrix;
+    private FloatMatrix floatOther;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.matrix = Matrix.instanceOfRandom(1L, this.numRowsAndCols);
+        this.other = Matrix.instanceOfRandom(2L, this.numRowsAndCols);
+        this.floatMatrix = FloatMatrix.of(this.matrix);
+        this.floatOther = FloatMatrix.of(this.other);
+    }
+
+    @Benchmark
+    public Matrix add() {
+        return this.matrix.addToThis(this.other);
+    }
+
+    @Benchmark
+    public FloatMatrix addFloat() {
+        return this.floatMatrix.addToThis(this.floatOther);
+    }
+
+    @Benchmark
+    public double sum() {
+        return this.matrix.sum();
+    }
+
+    @Benchmark
+    public double sumFloat() {
+        return this.floatMatrix.sum();
+    }
+
+    @Benchmark
+    public Matrix sumOverRows() {
+        return this.matrix.sum(0);
+    }
+
+    @Benchmark
+    public FloatMatrix sumOverRowsFloat() {
+        return this.floatMatrix.sum(0);
+    }
+
+    @Benchmark
+    public Matrix transpose() {
+        return this.matrix.transpose();
+    }
+
+    @Benchmark
+    public FloatMatrix transposeFloat() {
+        return this.floatMatrix.transpose();
+    }
+
+    @Benchmark
+    public Matrix prod() {
+        return Matrix.prod(this.matrix, this.other);
+    }
+
+    @Benchmark
+    public FloatMatrix prodFloat() {
+        return FloatMatrix.prod(this.floatMatrix, this.floatOther);
+    }
+
+    @Benchmark
+    public FloatMatrix toFloat() {
+        return FloatMatrix.of(this.matrix);
+    }
+
+}
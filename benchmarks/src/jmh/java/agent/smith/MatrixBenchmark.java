@@ -0,0 +1,166 @@
+package agent.smith;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+@State(Scope.Thread)
+public class MatrixBenchmark {
+
+    public enum Shape {
+
+        SQUARE(512, 512),
+        TALL_SKINNY(16384, 16),
+        WIDE(16, 16384),
+        VECTOR(262144, 1);
+
+        final int numRows;
+        final int numCols;
+
+        Shape(int numRows, int numCols) {
+            this.numRows = numRows;
+            this.numCols = numCols;
+        }
+    }
+
+    @Param({"SQUARE", "TALL_SKINNY", "WIDE", "VECTOR"})
+    public Shape shape;
+
+    private Matrix matrix;
+    private Matrix right;
+    private Matrix[] addends;
+    private Matrix col;
+    private Matrix target;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.matrix = Matrix.instanceOfRandom(1, this.shape.numRows, this.shape.numCols);
+        // Keeps the product output no bigger than the input: square stays square, tall-skinny and vector are
+        // multiplied by a small square, wide collapses to a small square
+        this.right = Matrix.instanceOfRandom(2, this.shape.numCols, Math.min(this.shape.numRows, this.shape.numCols));
+        this.addends = new Matrix[] {
+                Matrix.instanceOfRandom(3, this.matrix),
+                Matrix.instanceOfRandom(4, this.matrix),
+                Matrix.instanceOfRandom(5, this.matrix)
+        };
+        this.col = Matrix.instanceOfRandom(6, this.shape.numRows, 1);
+        this.target = this.matrix.copy();
+        this.random = new Random(7);
+    }
+
+    @Benchmark
+    public Matrix prod() {
+        return Matrix.prod(this.matrix, this.right);
+    }
+
+    // The top-left element of the product, cut from the full product or computed alone by a lazy expression
+    @Benchmark
+    public Matrix blockOfProd() {
+        return Matrix.prod(this.matrix, this.right).getBlock(0, 0, 0, 0);
+    }
+
+    @Benchmark
+    public Matrix blockOfLazyProd() {
+        return LazyMatrix.prod(this.matrix.lazy(), this.right.lazy()).getBlock(0, 0, 0, 0).evaluate();
+    }
+
+    @Benchmark
+    public Matrix transpose() {
+        return this.matrix.transpose();
+    }
+
+    // The Gram matrix of the smaller side, once through a transposed copy and once through a transposed view
+    @Benchmark
+    public Matrix gramOfTransposeCopy() {
+        return this.shape.numRows >= this.shape.numCols
+                ? Matrix.prod(this.matrix.transpose(), this.matrix)
+                : Matrix.prod(this.matrix, this.matrix.transpose());
+    }
+
+    @Benchmark
+    public Matrix gramOfTransposeView() {
+        return this.shape.numRows >= this.shape.numCols
+                ? Matrix.prod(this.matrix.transposeView(), this.matrix)
+                : Matrix.prod(this.matrix, this.matrix.transposeView());
+    }
+
+    @Benchmark
+    public Matrix add() {
+        return this.matrix.add(this.addends);
+    }
+
+    // 2a - 3b + 0.5c, once through chained temporaries and once fused into a single pass
+    @Benchmark
+    public Matrix linearCombinationChained() {
+        return this.addends[0].multiply(2).add(this.addends[1].multiply(-3)).add(this.addends[2].multiply(0.5));
+    }
+
+    @Benchmark
+    public Matrix linearCombinationFused() {
+        return Matrix.linearCombination(new double[] {2, -3, 0.5}, this.addends);
+    }
+
+    @Benchmark
+    public double sum() {
+        return this.matrix.sum();
+    }
+
+    @Benchmark
+    public double maxDifference() {
+        return this.matrix.maxDifference(this.addends[0]);
+    }
+
+    @Benchmark
+    public Matrix sumOverRows() {
+        return this.matrix.sum(0);
+    }
+
+    @Benchmark
+    public Matrix sumOverCols() {
+        return this.matrix.sum(1);
+    }
+
+    @Benchmark
+    public Matrix getCol() {
+        return this.matrix.getCol(this.shape.numCols / 2);
+    }
+
+    @Benchmark
+    public Matrix setColToThis() {
+        return this.target.setColToThis(this.col, this.shape.numCols / 2);
+    }
+
+    @Benchmark
+    public Matrix getBlock() {
+        return this.matrix.getBlock(this.shape.numRows / 4, this.shape.numRows / 4 + this.shape.numRows / 2,
+                this.shape.numCols / 4, this.shape.numCols / 4 + this.shape.numCols / 2);
+    }
+
+    @Benchmark
+    public double sumOfBlockView() {
+        return this.matrix.getBlockView(this.shape.numRows / 4, this.shape.numRows / 4 + this.shape.numRows / 2,
+                this.shape.numCols / 4, this.shape.numCols / 4 + this.shape.numCols / 2).sum();
+    }
+
+    @Benchmark
+    public Matrix horizontalConcatenate() {
+        return Matrix.horizontalConcatenate(this.matrix, this.matrix);
+    }
+
+    @Benchmark
+    public Matrix verticalConcatenate() {
+        return Matrix.verticalConcatenate(this.matrix, this.matrix);
+    }
+
+    @Benchmark
+    public Matrix instanceOfRandom() {
+        return Matrix.instanceOfRandom(this.random, this.shape.numRows, this.shape.numCols);
+    }
+
+}
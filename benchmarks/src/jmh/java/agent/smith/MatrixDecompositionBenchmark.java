@@ -0,0 +1,103 @@
+package agent.smith;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Decompositions only accept square matrices, so they are parameterised over the size instead of the shape
+@State(Scope.Thread)
+public class MatrixDecompositionBenchmark {
+
+    @Param({"32", "128", "512"})
+    public int numRowsAndCols;
+
+    private Matrix matrix;
+    private Matrix rightHandSides;
+    private LUDecomposition lu;
+    private Matrix positiveDefinite;
+    private CholeskyDecomposition cholesky;
+    private Matrix tall;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.matrix = Matrix.instanceOfRandom(1L, this.numRowsAndCols);
+        this.rightHandSides = Matrix.instanceOfRandom(2L, this.numRowsAndCols, 16);
+        this.lu = this.matrix.decomposeLU();
+        this.positiveDefinite = this.matrix.transposeView().multiply(this.matrix)
+                .addToThis(Matrix.instanceOfEye(this.numRowsAndCols));
+        this.cholesky = this.positiveDefinite.decomposeCholesky();
+        this.tall = Matrix.instanceOfRandom(3L, 8 * this.numRowsAndCols, this.numRowsAndCols);
+    }
+
+    @Benchmark
+    public Matrix[] decomposeQRGramSchmidt() {
+        return this.matrix.decomposeQRGramSchmidt();
+    }
+
+    @Benchmark
+    public LUDecomposition decomposeLU() {
+        return this.matrix.decomposeLU();
+    }
+
+    @Benchmark
+    public Matrix solveLU() {
+        return this.lu.solve(this.rightHandSides);
+    }
+
+    @Benchmark
+    public Matrix inverse() {
+        return this.lu.inverse();
+    }
+
+    @Benchmark
+    public CholeskyDecomposition decomposeCholesky() {
+        return this.positiveDefinite.decomposeCholesky();
+    }
+
+    @Benchmark
+    public Matrix solveCholesky() {
+        return this.cholesky.solve(this.rightHandSides);
+    }
+
+    // The positive definite matrix doubles as the symmetric one
+    @Benchmark
+    public SymmetricEigenDecomposition decomposeSymmetricEigen() {
+        return this.positiveDefinite.decomposeSymmetricEigen();
+    }
+
+    @Benchmark
+    public Matrix eigenvaluesSymmetric() {
+        return this.positiveDefinite.eigenvaluesSymmetric();
+    }
+
+    // The 8 largest eigenpairs
+    @Benchmark
+    public SymmetricEigenDecomposition decomposeSymmetricEigenRange() {
+        return this.positiveDefinite.decomposeSymmetricEigen(this.numRowsAndCols - 8, this.numRowsAndCols - 1);
+    }
+
+    @Benchmark
+    public SingularValueDecomposition decomposeSVD() {
+        return this.matrix.decomposeSVD();
+    }
+
+    @Benchmark
+    public Matrix singularValues() {
+        return this.matrix.singularValues();
+    }
+
+    // 8 times as many rows as columns, where the QR reduction does most of the work. U is formed as well
+    @Benchmark
+    public Matrix decomposeSVDTall() {
+        return this.tall.decomposeSVD().getU();
+    }
+
+    @Benchmark
+    public Matrix singularValuesTall() {
+        return this.tall.singularValues();
+    }
+
+}
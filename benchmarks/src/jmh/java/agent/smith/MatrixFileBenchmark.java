@@ -0,0 +1,86 @@
+package agent.smith;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Saving and loading through the binary format against text (toString, MatrixTextWriter and MatrixTextReader), and
+// a small block read from a file against reading the whole of it
+@State(Scope.Thread)
+public class MatrixFileBenchmark {
+
+    @Param({"512", "2048"})
+    public int numRowsAndCols;
+
+    private Matrix matrix;
+    private Path path;
+    private Path writePath;
+    private Path textPath;
+    private MatrixFileReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.matrix = Matrix.instanceOfRandom(1L, this.numRowsAndCols);
+        this.path = Files.createTempFile("matrix", ".bin");
+        this.writePath = Files.createTempFile("matrix", ".bin");
+        this.textPath = Files.createTempFile("matrix", ".csv");
+        MatrixFileWriter.write(this.path, this.matrix);
+        MatrixTextWriter.write(this.textPath, this.matrix);
+        this.reader = MatrixFileReader.open(this.path);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.reader.close();
+        Files.deleteIfExists(this.path);
+        Files.deleteIfExists(this.writePath);
+        Files.deleteIfExists(this.textPath);
+    }
+
+    @Benchmark
+    public String toText() {
+        return this.matrix.toString("%.17g", "\n", ",");
+    }
+
+    @Benchmark
+    public Path writeText() throws IOException {
+        MatrixTextWriter.write(this.writePath, this.matrix);
+        return this.writePath;
+    }
+
+    @Benchmark
+    public Path write() throws IOException {
+        MatrixFileWriter.write(this.writePath, this.matrix);
+        return this.writePath;
+    }
+
+    @Benchmark
+    public Path writeUncompressed() throws IOException {
+        MatrixFileWriter.write(this.writePath, this.matrix, 256, 256, MatrixFileWriter.Compression.NONE);
+        return this.writePath;
+    }
+
+    @Benchmark
+    public Matrix readText() throws IOException {
+        return MatrixTextReader.read(this.textPath);
+    }
+
+    @Benchmark
+    public Matrix read() throws IOException {
+        return this.reader.read();
+    }
+
+    @Benchmark
+    public Matrix readBlock() throws IOException {
+        return this.reader.getBlock(300, 363, 100, 163);
+    }
+
+}
@@ -0,0 +1,79 @@
+package agent.smith;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+// Random graphs with 'numNonZerosPerRow' edges per node: building them from edge lists, converting between rows and
+// columns, and multiplying them by 16 dense features and by themselves
+@State(Scope.Thread)
+public class SparseMatrixBenchmark {
+
+    @Param({"100000"})
+    public int numRowsAndCols;
+
+    @Param({"4", "16"})
+    public int numNonZerosPerRow;
+
+    private int[] rowIndexes;
+    private int[] colIndexes;
+    private double[] values;
+    private CsrMatrix csr;
+    private CscMatrix csc;
+    private Matrix features;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1L);
+        int numNonZeros = this.numRowsAndCols * this.numNonZerosPerRow;
+        this.rowIndexes = new int[numNonZeros];
+        this.colIndexes = new int[numNonZeros];
+        this.values = new double[numNonZeros];
+        for (int index = 0; index < numNonZeros; index++) {
+            this.rowIndexes[index] = random.nextInt(this.numRowsAndCols);
+            this.colIndexes[index] = random.nextInt(this.numRowsAndCols);
+            this.values[index] = random.nextDouble();
+        }
+        this.csr = CsrMatrix.fromTriplets(this.numRowsAndCols, this.numRowsAndCols, this.rowIndexes,
+                this.colIndexes, this.values);
+        this.csc = this.csr.toCsc();
+        this.features = Matrix.instanceOfRandom(2L, this.numRowsAndCols, 16);
+    }
+
+    @Benchmark
+    public CsrMatrix fromTriplets() {
+        return CsrMatrix.fromTriplets(this.numRowsAndCols, this.numRowsAndCols, this.rowIndexes, this.colIndexes,
+                this.values);
+    }
+
+    @Benchmark
+    public CscMatrix toCsc() {
+        return this.csr.toCsc();
+    }
+
+    @Benchmark
+    public Matrix prodCsrDense() {
+        return this.csr.multiply(this.features);
+    }
+
+    @Benchmark
+    public Matrix prodCscDense() {
+        return this.csc.multiply(this.features);
+    }
+
+    @Benchmark
+    public SparseMatrix prodCsrCsr() {
+        return this.csr.multiply(this.csr);
+    }
+
+    @Benchmark
+    public SparseMatrix add() {
+        return this.csr.add(this.csc);
+    }
+
+}
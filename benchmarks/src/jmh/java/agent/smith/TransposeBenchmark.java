@@ -0,0 +1,34 @@
+package agent.smith;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Square matrices well beyond the size of the caches, where the order in which elements are visited dominates
+@State(Scope.Thread)
+public class TransposeBenchmark {
+
+    @Param({"1024", "4096"})
+    public int numRowsAndCols;
+
+    private Matrix matrix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.matrix = Matrix.instanceOfRandom(1L, this.numRowsAndCols);
+    }
+
+    @Benchmark
+    public Matrix transpose() {
+        return this.matrix.transpose();
+    }
+
+    @Benchmark
+    public Matrix transposeToThis() {
+        return this.matrix.transposeToThis();
+    }
+
+}
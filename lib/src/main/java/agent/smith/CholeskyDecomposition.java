@@ -0,0 +1,294 @@
+package agent.smith;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// Blocked right-looking Cholesky decomposition A = L * L^T of a symmetric positive definite matrix, following LAPACK's
+// dpotrf for the lower triangle:
+// http://www.netlib.org/lapack/explore-html/d1/d7a/group__double_p_ocomputational_ga2f55f604a6003d03b5cd4a0adcfb74d6.html
+//
+// Only the lower triangle of A is read, the upper one is taken to be its mirror image whatever it holds. Columns are
+// processed in panels of BLOCK_SIZE: the diagonal block is factorized row by row, the rows of L below it come from
+// L21 = A21 * L11^-T, and the trailing matrix gets A22 -= L21 * L21^T. That last update is where almost all of the
+// n^3 / 3 floating point operations are spent, it only computes the tiles on or below the diagonal, half the work of
+// the product in LUDecomposition, and the tiles are spread over the pool. The rows of L21 are independent and are
+// spread over the pool as well.
+//
+// A pivot that is not positive means the leading minor of that order is not positive, so the matrix is not positive
+// definite and the factorization stops there.
+
+public final class CholeskyDecomposition {
+
+    static final int BLOCK_SIZE = 64;
+
+    // Tiles of the trailing update and groups of rows of L21 are split until they hold fewer multiply-adds than this
+    private static final long TASK_THRESHOLD = 1L << 21;
+
+    private final double[] l;
+    private final int numRowsAndCols;
+    private final ForkJoinPool pool;
+
+    CholeskyDecomposition(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+
+        this.pool = pool;
+        this.numRowsAndCols = matrix.getNumRows();
+        this.l = matrix.getArray();
+
+        int n = this.numRowsAndCols;
+        for (int panelStart = 0; panelStart < n; panelStart += BLOCK_SIZE) {
+            int panelSize = Math.min(BLOCK_SIZE, n - panelStart);
+            int trailingStart = panelStart + panelSize;
+
+            this.factorizeDiagonalBlock(panelStart, panelSize);
+
+            if (trailingStart < n) {
+                this.pool.invoke(new SolveTask(this.l, n, panelStart, panelSize, trailingStart, n));
+                this.pool.invoke(new UpdateTask(this.l, n, panelStart, panelSize, trailingStart, n, trailingStart, n));
+            }
+        }
+    }
+
+    // Unblocked Cholesky-Banachiewicz factorization of the panelSize x panelSize diagonal block: each element of L is
+    // a dot product of two contiguous pieces of rows already computed
+    private void factorizeDiagonalBlock(int panelStart, int panelSize) throws MatrixIllegalArgumentException {
+
+        int n = this.numRowsAndCols;
+        for (int rowIndex = panelStart; rowIndex < panelStart + panelSize; rowIndex++) {
+            int row = rowIndex * n;
+            for (int colIndex = panelStart; colIndex <= rowIndex; colIndex++) {
+                int col = colIndex * n;
+                double value = this.l[row + colIndex];
+                for (int index = panelStart; index < colIndex; index++) {
+                    value -= this.l[row + index] * this.l[col + index];
+                }
+                if (colIndex < rowIndex) {
+                    this.l[row + colIndex] = value / this.l[col + colIndex];
+                } else if (value > 0) {
+                    this.l[row + colIndex] = Math.sqrt(value);
+                } else {
+                    // Also catches NaN
+                    throw new MatrixIllegalArgumentException(String.format(
+                            "Matrix is not positive definite: the leading minor of order %d is not positive",
+                            rowIndex + 1));
+                }
+            }
+        }
+    }
+
+    // Rows [rowStart, rowEnd) of L21 = A21 * L11^-T, i.e. for each row x * L11^T = a solved by forward substitution
+    private static final class SolveTask extends RecursiveAction {
+
+        private final double[] l;
+        private final int n;
+        private final int panelStart;
+        private final int panelSize;
+        private final int rowStart;
+        private final int rowEnd;
+
+        SolveTask(double[] l, int n, int panelStart, int panelSize, int rowStart, int rowEnd) {
+            this.l = l;
+            this.n = n;
+            this.panelStart = panelStart;
+            this.panelSize = panelSize;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+        }
+
+        @Override
+        protected void compute() {
+
+            int numRows = this.rowEnd - this.rowStart;
+            if ((long) numRows * this.panelSize * this.panelSize <= 2 * TASK_THRESHOLD || numRows < 2) {
+                for (int rowIndex = this.rowStart; rowIndex < this.rowEnd; rowIndex++) {
+                    int row = rowIndex * this.n;
+                    for (int colIndex = this.panelStart; colIndex < this.panelStart + this.panelSize; colIndex++) {
+                        int col = colIndex * this.n;
+                        double value = this.l[row + colIndex];
+                        for (int index = this.panelStart; index < colIndex; index++) {
+                            value -= this.l[row + index] * this.l[col + index];
+                        }
+                        this.l[row + colIndex] = value / this.l[col + colIndex];
+                    }
+                }
+                return;
+            }
+
+            int half = this.rowStart + numRows / 2;
+            RecursiveAction.invokeAll(
+                    new SolveTask(this.l, this.n, this.panelStart, this.panelSize, this.rowStart, half),
+                    new SolveTask(this.l, this.n, this.panelStart, this.panelSize, half, this.rowEnd));
+        }
+    }
+
+    // Tile [rowStart, rowEnd) x [colStart, colEnd) of A22 -= L21 * L21^T. Tiles strictly above the diagonal are
+    // skipped, tiles crossing it are computed whole, which only writes to the upper triangle that is never read
+    private static final class UpdateTask extends RecursiveAction {
+
+        private final double[] l;
+        private final int n;
+        private final int panelStart;
+        private final int panelSize;
+        private final int rowStart;
+        private final int rowEnd;
+        private final int colStart;
+        private final int colEnd;
+
+        UpdateTask(double[] l, int n, int panelStart, int panelSize, int rowStart, int rowEnd, int colStart,
+                   int colEnd) {
+            this.l = l;
+            this.n = n;
+            this.panelStart = panelStart;
+            this.panelSize = panelSize;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (this.rowEnd <= this.colStart) {
+                return;
+            }
+
+            int numRows = this.rowEnd - this.rowStart;
+            int numCols = this.colEnd - this.colStart;
+            boolean splitRows = numRows >= numCols && numRows >= 2 * Gemm.MR;
+            boolean splitCols = !splitRows && numCols >= 2 * Gemm.NR;
+
+            if ((long) numRows * numCols * this.panelSize <= TASK_THRESHOLD || (!splitRows && !splitCols)) {
+                // L21^T is read in place through its strides, as Gemm packs it anyway
+                Gemm.multiply(numRows, numCols, this.panelSize, -1,
+                        this.l, this.rowStart * this.n + this.panelStart, this.n, 1,
+                        this.l, this.colStart * this.n + this.panelStart, 1, this.n,
+                        this.l, this.rowStart * this.n + this.colStart, this.n, 1);
+                return;
+            }
+
+            UpdateTask first;
+            UpdateTask second;
+            if (splitRows) {
+                int half = this.rowStart + Gemm.roundUp(numRows / 2, Gemm.MR);
+                first = new UpdateTask(this.l, this.n, this.panelStart, this.panelSize, this.rowStart, half,
+                        this.colStart, this.colEnd);
+                second = new UpdateTask(this.l, this.n, this.panelStart, this.panelSize, half, this.rowEnd,
+                        this.colStart, this.colEnd);
+            } else {
+                int half = this.colStart + Gemm.roundUp(numCols / 2, Gemm.NR);
+                first = new UpdateTask(this.l, this.n, this.panelStart, this.panelSize, this.rowStart, this.rowEnd,
+                        this.colStart, half);
+                second = new UpdateTask(this.l, this.n, this.panelStart, this.panelSize, this.rowStart, this.rowEnd,
+                        half, this.colEnd);
+            }
+            RecursiveAction.invokeAll(first, second);
+        }
+    }
+
+    // B := L^-1 * B for the size x size diagonal block of L starting at row and column 'start'
+    private void solveLower(int start, int size, double[] b, int bOffset, int numCols) {
+        int n = this.numRowsAndCols;
+        for (int rowIndex = 0; rowIndex < size; rowIndex++) {
+            int row = bOffset + rowIndex * numCols;
+            int lRow = (start + rowIndex) * n + start;
+            for (int index = 0; index < rowIndex; index++) {
+                double factor = this.l[lRow + index];
+                int other = bOffset + index * numCols;
+                for (int col = 0; col < numCols; col++) {
+                    b[row + col] -= factor * b[other + col];
+                }
+            }
+            double diagonal = this.l[lRow + rowIndex];
+            for (int col = 0; col < numCols; col++) {
+                b[row + col] /= diagonal;
+            }
+        }
+    }
+
+    // B := L^-T * B for the same block, from the bottom row up
+    private void solveLowerTranspose(int start, int size, double[] b, int bOffset, int numCols) {
+        int n = this.numRowsAndCols;
+        for (int rowIndex = size - 1; rowIndex >= 0; rowIndex--) {
+            int row = bOffset + rowIndex * numCols;
+            for (int index = rowIndex + 1; index < size; index++) {
+                double factor = this.l[(start + index) * n + start + rowIndex];
+                int other = bOffset + index * numCols;
+                for (int col = 0; col < numCols; col++) {
+                    b[row + col] -= factor * b[other + col];
+                }
+            }
+            double diagonal = this.l[(start + rowIndex) * n + start + rowIndex];
+            for (int col = 0; col < numCols; col++) {
+                b[row + col] /= diagonal;
+            }
+        }
+    }
+
+    // X such that A * X = B, for any number of columns of B. L * Y = B then L^T * X = Y, block row by block row as in
+    // LUDecomposition.solve
+    public Matrix solve(Matrix matrix) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        if (matrix.getNumRows() != this.numRowsAndCols) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Dimension mismatch for 'numRows': 'A' = (%d) vs 'B' = (%d)",
+                    this.numRowsAndCols, matrix.getNumRows()));
+        }
+
+        int n = this.numRowsAndCols;
+        int numCols = matrix.getNumCols();
+        double[] x = matrix.getArray();
+
+        for (int blockStart = 0; blockStart < n; blockStart += BLOCK_SIZE) {
+            int blockSize = Math.min(BLOCK_SIZE, n - blockStart);
+            int blockEnd = blockStart + blockSize;
+            this.solveLower(blockStart, blockSize, x, blockStart * numCols, numCols);
+            if (blockEnd < n) {
+                Gemm.multiply(this.pool, n - blockEnd, numCols, blockSize, -1,
+                        this.l, blockEnd * n + blockStart, n, 1,
+                        x, blockStart * numCols, numCols, 1,
+                        x, blockEnd * numCols, numCols, 1);
+            }
+        }
+
+        int numBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int block = numBlocks - 1; block >= 0; block--) {
+            int blockStart = block * BLOCK_SIZE;
+            int blockSize = Math.min(BLOCK_SIZE, n - blockStart);
+            this.solveLowerTranspose(blockStart, blockSize, x, blockStart * numCols, numCols);
+            if (blockStart > 0) {
+                // The rows above the block need L^T[0:blockStart, block] = L[block, 0:blockStart]^T
+                Gemm.multiply(this.pool, blockStart, numCols, blockSize, -1,
+                        this.l, blockStart * n, 1, n,
+                        x, blockStart * numCols, numCols, 1,
+                        x, 0, numCols, 1);
+            }
+        }
+
+        return Matrix.wrap(x, n, numCols);
+    }
+
+    // log(det(A)) = 2 * sum of log(L_ii), which neither overflows nor underflows where the determinant itself would
+    public double logDeterminant() {
+        double value = 0;
+        for (int index = 0; index < this.numRowsAndCols; index++) {
+            value += Math.log(this.l[index * this.numRowsAndCols + index]);
+        }
+        return 2 * value;
+    }
+
+    // Lower triangular factor
+    public Matrix getL() {
+        int n = this.numRowsAndCols;
+        double[] result = new double[n * n];
+        for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+            System.arraycopy(this.l, rowIndex * n, result, rowIndex * n, rowIndex + 1);
+        }
+        return Matrix.wrap(result, n, n);
+    }
+
+    public int getNumRowsAndCols() {
+        return this.numRowsAndCols;
+    }
+
+}
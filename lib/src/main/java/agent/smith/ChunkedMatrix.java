@@ -0,0 +1,701 @@
+package agent.smith;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleUnaryOperator;
+
+
+// Row-major matrix of any size that fits in memory. Matrix keeps its elements in a single double[], so it is limited
+// to 2^31 - 9 elements, and a big array is a single humongous allocation for G1. Here element (rowIndex, colIndex) is
+// element rowIndex * numCols + colIndex of the matrix, addressed by a long, and the elements are split into chunks
+// of 2^chunkShift, element i being at position i & (2^chunkShift - 1) of chunk i >> chunkShift.
+//
+// ChunkedMatrix.create and ChunkedMatrix.of keep the chunks on the heap, as arrays of 2^15 doubles (256 KiB): small
+// enough never to be humongous, even with the smallest (1 MiB) G1 regions. Subclasses keep them elsewhere, see
+// OffHeapMatrix. Every operation copies a few thousand elements at a time, chunk by chunk, into a heap buffer and runs
+// the Matrix kernels on it, so element-wise operations stream through memory once and products and transposes work
+// tile by tile. Element-wise results round like the corresponding Matrix methods.
+//
+// The results of an operation are of the same kind as the matrix the operation is called on. Using a matrix after it
+// has been closed throws an IllegalStateException.
+
+public abstract class ChunkedMatrix implements AutoCloseable {
+
+    static final int HEAP_CHUNK_SHIFT = 15;
+    // Elements copied at a time by element-wise operations, and side of the tiles of products and transposes
+    static final int BUFFER_LENGTH = 4096;
+    private static final int TILE_LENGTH = 256;
+
+    final int numRows;
+    final int numCols;
+    final long length;
+    final int chunkShift;
+    private volatile boolean closed;
+
+    ChunkedMatrix(int numRows, int numCols, int chunkShift) throws MatrixIllegalArgumentException {
+
+        if (numRows <= 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'numRows' (%d) has to be a positive integer", numRows));
+        }
+        if (numCols <= 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'numCols' (%d) has to be a positive integer", numCols));
+        }
+
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.length = (long) numRows * numCols;
+        this.chunkShift = chunkShift;
+    }
+
+    // 'chunkShift' is only smaller than HEAP_CHUNK_SHIFT in tests, to cross chunk boundaries on small matrices
+    static ChunkedMatrix create(int numRows, int numCols, int chunkShift) throws MatrixIllegalArgumentException {
+        return new Heap(numRows, numCols, chunkShift);
+    }
+
+    // Filled with zeros
+    public static ChunkedMatrix create(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return ChunkedMatrix.create(numRows, numCols, HEAP_CHUNK_SHIFT);
+    }
+
+    static ChunkedMatrix of(Matrix matrix, int chunkShift) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        return ChunkedMatrix.create(matrix.getNumRows(), matrix.getNumCols(), chunkShift).setToThis(matrix);
+    }
+
+    public static ChunkedMatrix of(Matrix matrix) throws MatrixIllegalArgumentException {
+        return ChunkedMatrix.of(matrix, HEAP_CHUNK_SHIFT);
+    }
+
+    // Copies all the elements of 'matrix', which has the same dimensions
+    ChunkedMatrix setToThis(Matrix matrix) {
+        if (matrix.isContiguous()) {
+            this.write(0, matrix.array, matrix.offset, (int) this.length);
+        } else {
+            this.write(0, matrix.getArray(), 0, (int) this.length);
+        }
+        return this;
+    }
+
+    public Matrix toMatrix() throws MatrixIllegalArgumentException {
+        Matrix.validateLength(this.numRows, this.numCols);
+        double[] array = new double[(int) this.length];
+        this.read(0, array, 0, array.length);
+        return Matrix.wrap(array, this.numRows, this.numCols);
+    }
+
+    // Matrix of the same kind (and for off-heap matrices in the same arena), filled with zeros
+    abstract ChunkedMatrix like(int numRows, int numCols);
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+    public long getLength() {
+        return this.length;
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    // Returns whether this call closed the matrix, i.e. it was still open
+    boolean markClosed() {
+        synchronized (this) {
+            boolean wasOpen = !this.closed;
+            this.closed = true;
+            return wasOpen;
+        }
+    }
+
+    @Override
+    public void close() {
+        this.markClosed();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Access
+
+    // Position 'position' of chunk 'chunkIndex' and the following ones, all in the same chunk
+    abstract void readChunk(int chunkIndex, int position, double[] destination, int offset, int length);
+
+    abstract void writeChunk(int chunkIndex, int position, double[] source, int offset, int length);
+
+    abstract double getChunk(int chunkIndex, int position);
+
+    abstract void setChunk(int chunkIndex, int position, double value);
+
+    private void validateOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Matrix has been closed");
+        }
+    }
+
+    // Copies elements index, index + 1, ... (row-major positions) to 'destination', across chunks if need be
+    final void read(long index, double[] destination, int offset, int length) {
+        this.validateOpen();
+        int chunkLength = 1 << this.chunkShift;
+        while (length > 0) {
+            int position = (int) (index & (chunkLength - 1));
+            int count = Math.min(length, chunkLength - position);
+            this.readChunk((int) (index >>> this.chunkShift), position, destination, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    final void write(long index, double[] source, int offset, int length) {
+        this.validateOpen();
+        int chunkLength = 1 << this.chunkShift;
+        while (length > 0) {
+            int position = (int) (index & (chunkLength - 1));
+            int count = Math.min(length, chunkLength - position);
+            this.writeChunk((int) (index >>> this.chunkShift), position, source, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    // The numRows x numCols block at (rowIndex, colIndex), row-major with row stride numCols in 'tile'. A block of whole
+    // rows is contiguous and copied at once
+    private void readBlock(int rowIndex, int colIndex, int numRows, int numCols, double[] tile) {
+        if (numCols == this.numCols) {
+            this.read(this.getIndex(rowIndex, 0), tile, 0, numRows * numCols);
+            return;
+        }
+        for (int tileRowIndex = 0; tileRowIndex < numRows; tileRowIndex++) {
+            this.read(this.getIndex(rowIndex + tileRowIndex, colIndex), tile, tileRowIndex * numCols, numCols);
+        }
+    }
+
+    private void writeBlock(int rowIndex, int colIndex, int numRows, int numCols, double[] tile) {
+        if (numCols == this.numCols) {
+            this.write(this.getIndex(rowIndex, 0), tile, 0, numRows * numCols);
+            return;
+        }
+        for (int tileRowIndex = 0; tileRowIndex < numRows; tileRowIndex++) {
+            this.write(this.getIndex(rowIndex + tileRowIndex, colIndex), tile, tileRowIndex * numCols, numCols);
+        }
+    }
+
+    private long getIndex(int rowIndex, int colIndex) {
+        return (long) rowIndex * this.numCols + colIndex;
+    }
+
+    private long validateIndexes(int rowIndex, int colIndex) throws MatrixIllegalArgumentException {
+        if (rowIndex < 0 || rowIndex >= this.numRows) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'rowIndex' = (%d) has to be between 0 and %d", rowIndex, this.numRows - 1));
+        }
+        if (colIndex < 0 || colIndex >= this.numCols) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'colIndex' = (%d) has to be between 0 and %d", colIndex, this.numCols - 1));
+        }
+        return this.getIndex(rowIndex, colIndex);
+    }
+
+    public double get(int rowIndex, int colIndex) throws MatrixIllegalArgumentException {
+        long index = this.validateIndexes(rowIndex, colIndex);
+        this.validateOpen();
+        return this.getChunk((int) (index >>> this.chunkShift), (int) (index & ((1 << this.chunkShift) - 1)));
+    }
+
+    public ChunkedMatrix setToThis(int rowIndex, int colIndex, double value) throws MatrixIllegalArgumentException {
+        long index = this.validateIndexes(rowIndex, colIndex);
+        this.validateOpen();
+        this.setChunk((int) (index >>> this.chunkShift), (int) (index & ((1 << this.chunkShift) - 1)), value);
+        return this;
+    }
+
+    public ChunkedMatrix getRow(int rowIndex) throws MatrixIllegalArgumentException {
+        long index = this.validateIndexes(rowIndex, 0);
+        ChunkedMatrix result = this.like(1, this.numCols);
+        double[] buffer = new double[Math.min(BUFFER_LENGTH, this.numCols)];
+        for (int colIndex = 0; colIndex < this.numCols; colIndex += BUFFER_LENGTH) {
+            int length = Math.min(BUFFER_LENGTH, this.numCols - colIndex);
+            this.read(index + colIndex, buffer, 0, length);
+            result.write(colIndex, buffer, 0, length);
+        }
+        return result;
+    }
+
+    // The elements of a column are numCols apart, so they are gathered one by one and written BUFFER_LENGTH at a time
+    public ChunkedMatrix getCol(int colIndex) throws MatrixIllegalArgumentException {
+        this.validateIndexes(0, colIndex);
+        return this.gather(this.numRows, colIndex, this.numCols);
+    }
+
+    public ChunkedMatrix getDiagonal() {
+        return this.gather(Math.min(this.numRows, this.numCols), 0, this.numCols + 1);
+    }
+
+    // Column vector of elements index, index + stride, ..., 'length' of them
+    private ChunkedMatrix gather(int length, long index, long stride) {
+        this.validateOpen();
+        ChunkedMatrix result = this.like(length, 1);
+        int chunkMask = (1 << this.chunkShift) - 1;
+        double[] buffer = new double[Math.min(BUFFER_LENGTH, length)];
+        for (int start = 0; start < length; start += BUFFER_LENGTH) {
+            int bufferLength = Math.min(BUFFER_LENGTH, length - start);
+            for (int bufferIndex = 0; bufferIndex < bufferLength; bufferIndex++) {
+                long position = index + (start + bufferIndex) * stride;
+                buffer[bufferIndex] = this.getChunk((int) (position >>> this.chunkShift), (int) (position & chunkMask));
+            }
+            result.write(start, buffer, 0, bufferLength);
+        }
+        return result;
+    }
+
+    public ChunkedMatrix copy() {
+        ChunkedMatrix result = this.like(this.numRows, this.numCols);
+        double[] buffer = new double[(int) Math.min(BUFFER_LENGTH, this.length)];
+        for (long start = 0; start < this.length; start += BUFFER_LENGTH) {
+            int length = (int) Math.min(BUFFER_LENGTH, this.length - start);
+            this.read(start, buffer, 0, length);
+            result.write(start, buffer, 0, length);
+        }
+        return result;
+    }
+
+    public ChunkedMatrix getBlock(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
+            throws MatrixIllegalArgumentException {
+
+        if (
+                rowStartIndex < 0 || colStartIndex < 0 ||
+                rowEndIndex >= this.numRows || colEndIndex >= this.numCols ||
+                rowEndIndex < rowStartIndex || colEndIndex < colStartIndex
+        ) {
+            throw new MatrixIllegalArgumentException("Invalid indexes");
+        }
+
+        ChunkedMatrix result = this.like(rowEndIndex - rowStartIndex + 1, colEndIndex - colStartIndex + 1);
+        double[] buffer = new double[Math.min(BUFFER_LENGTH, result.numCols)];
+        for (int rowIndex = 0; rowIndex < result.numRows; rowIndex++) {
+            for (int colIndex = 0; colIndex < result.numCols; colIndex += BUFFER_LENGTH) {
+                int length = Math.min(BUFFER_LENGTH, result.numCols - colIndex);
+                this.read(this.getIndex(rowStartIndex + rowIndex, colStartIndex + colIndex), buffer, 0, length);
+                result.write(result.getIndex(rowIndex, colIndex), buffer, 0, length);
+            }
+        }
+        return result;
+    }
+
+    // Copies 'block' into this matrix, its element (0, 0) going to (rowStartIndex, colStartIndex)
+    public ChunkedMatrix setBlockToThis(int rowStartIndex, int colStartIndex, Matrix block)
+            throws MatrixIllegalArgumentException {
+
+        Matrix.validateMatricesNonNull(block);
+        if (
+                rowStartIndex < 0 || colStartIndex < 0 ||
+                (long) rowStartIndex + block.getNumRows() > this.numRows ||
+                (long) colStartIndex + block.getNumCols() > this.numCols
+        ) {
+            throw new MatrixIllegalArgumentException("Invalid indexes");
+        }
+
+        double[] buffer = block.colStride == 1 ? null : new double[block.getNumCols()];
+        for (int rowIndex = 0; rowIndex < block.getNumRows(); rowIndex++) {
+            int row = block.offset + rowIndex * block.rowStride;
+            long index = this.getIndex(rowStartIndex + rowIndex, colStartIndex);
+            if (buffer == null) {
+                this.write(index, block.array, row, block.getNumCols());
+            } else {
+                MatrixKernels.copy(block.array, row, block.colStride, buffer, 0, 1, buffer.length);
+                this.write(index, buffer, 0, buffer.length);
+            }
+        }
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Element-wise operations
+
+    public ChunkedMatrix addToThis(double value) {
+        double[] buffer = new double[(int) Math.min(BUFFER_LENGTH, this.length)];
+        for (long start = 0; start < this.length; start += BUFFER_LENGTH) {
+            int length = (int) Math.min(BUFFER_LENGTH, this.length - start);
+            this.read(start, buffer, 0, length);
+            MatrixKernels.add(1, length, buffer, 0, length, 1, value);
+            this.write(start, buffer, 0, length);
+        }
+        return this;
+    }
+
+    public ChunkedMatrix add(double value) {
+        return this.copy().addToThis(value);
+    }
+
+    public ChunkedMatrix multiplyToThis(double value) {
+        double[] buffer = new double[(int) Math.min(BUFFER_LENGTH, this.length)];
+        for (long start = 0; start < this.length; start += BUFFER_LENGTH) {
+            int length = (int) Math.min(BUFFER_LENGTH, this.length - start);
+            this.read(start, buffer, 0, length);
+            MatrixKernels.multiply(1, length, buffer, 0, length, 1, value);
+            this.write(start, buffer, 0, length);
+        }
+        return this;
+    }
+
+    public ChunkedMatrix multiply(double value) {
+        return this.copy().multiplyToThis(value);
+    }
+
+    public ChunkedMatrix mapToThis(DoubleUnaryOperator function) throws MatrixIllegalArgumentException {
+        if (function == null) {
+            throw new MatrixIllegalArgumentException("'function' cannot be null");
+        }
+        double[] buffer = new double[(int) Math.min(BUFFER_LENGTH, this.length)];
+        for (long start = 0; start < this.length; start += BUFFER_LENGTH) {
+            int length = (int) Math.min(BUFFER_LENGTH, this.length - start);
+            this.read(start, buffer, 0, length);
+            for (int index = 0; index < length; index++) {
+                buffer[index] = function.applyAsDouble(buffer[index]);
+            }
+            this.write(start, buffer, 0, length);
+        }
+        return this;
+    }
+
+    public ChunkedMatrix map(DoubleUnaryOperator function) throws MatrixIllegalArgumentException {
+        if (function == null) {
+            throw new MatrixIllegalArgumentException("'function' cannot be null");
+        }
+        return this.copy().mapToThis(function);
+    }
+
+    private void validateDimensionAdd(ChunkedMatrix... matrices) throws MatrixIllegalArgumentException {
+        for (ChunkedMatrix matrix : matrices) {
+            if (matrix == null) {
+                throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+            }
+            if (matrix.numRows != this.numRows || matrix.numCols != this.numCols) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for adding matrices");
+            }
+        }
+    }
+
+    // Same rounding as Matrix.addToThis: this + (0 + matrices[0] + matrices[1] + ...)
+    public ChunkedMatrix addToThis(ChunkedMatrix... matrices) throws MatrixIllegalArgumentException {
+
+        this.validateDimensionAdd(matrices);
+
+        int bufferLength = (int) Math.min(BUFFER_LENGTH, this.length);
+        double[] buffer = new double[bufferLength];
+        double[][] sources = new double[matrices.length][bufferLength];
+        int[] offsets = new int[matrices.length];
+        int[] rowStrides = new int[matrices.length];
+        int[] colStrides = new int[matrices.length];
+        Arrays.fill(colStrides, 1);
+
+        for (long start = 0; start < this.length; start += BUFFER_LENGTH) {
+            int length = (int) Math.min(BUFFER_LENGTH, this.length - start);
+            this.read(start, buffer, 0, length);
+            for (int matrixIndex = 0; matrixIndex < matrices.length; matrixIndex++) {
+                matrices[matrixIndex].read(start, sources[matrixIndex], 0, length);
+                rowStrides[matrixIndex] = length;
+            }
+            MatrixKernels.addAll(1, length, buffer, 0, length, 1, buffer, 0, length, 1, sources, offsets, rowStrides,
+                    colStrides);
+            this.write(start, buffer, 0, length);
+        }
+        return this;
+    }
+
+    public ChunkedMatrix add(ChunkedMatrix... matrices) throws MatrixIllegalArgumentException {
+        this.validateDimensionAdd(matrices);
+        return this.copy().addToThis(matrices);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Transpose and product
+
+    public ChunkedMatrix transpose() {
+        ChunkedMatrix result = this.like(this.numCols, this.numRows);
+        double[] tile = new double[TILE_LENGTH * TILE_LENGTH];
+        double[] transposedTile = new double[TILE_LENGTH * TILE_LENGTH];
+        for (int rowIndex = 0; rowIndex < this.numRows; rowIndex += TILE_LENGTH) {
+            int tileNumRows = Math.min(TILE_LENGTH, this.numRows - rowIndex);
+            for (int colIndex = 0; colIndex < this.numCols; colIndex += TILE_LENGTH) {
+                int tileNumCols = Math.min(TILE_LENGTH, this.numCols - colIndex);
+                this.readBlock(rowIndex, colIndex, tileNumRows, tileNumCols, tile);
+                MatrixKernels.transpose(tileNumRows, tileNumCols, tile, 0, tileNumCols, 1,
+                        transposedTile, 0, tileNumRows, 1);
+                result.writeBlock(colIndex, rowIndex, tileNumCols, tileNumRows, transposedTile);
+            }
+        }
+        return result;
+    }
+
+    // Each TILE_LENGTH x TILE_LENGTH tile of the result is accumulated on the heap from the tiles of the operands along
+    // the inner dimension and then written once. The tiles of the result are computed in parallel, one task each
+    private static ChunkedMatrix prod(ForkJoinPool pool, ChunkedMatrix left, ChunkedMatrix right) {
+        ChunkedMatrix result = left.like(left.numRows, right.numCols);
+        int numTileRows = (left.numRows + TILE_LENGTH - 1) / TILE_LENGTH;
+        int numTileCols = (right.numCols + TILE_LENGTH - 1) / TILE_LENGTH;
+        pool.invoke(new ProdTask(left, right, result, numTileCols, 0, (long) numTileRows * numTileCols));
+        return result;
+    }
+
+    // Computes the tiles firstTile, ..., endTile - 1 of the result, numbered row by row, halving the range down to a
+    // single tile. Tiles do not overlap, so the tasks write to the result concurrently without locking
+    private static final class ProdTask extends RecursiveAction {
+
+        private final ChunkedMatrix left;
+        private final ChunkedMatrix right;
+        private final ChunkedMatrix result;
+        private final int numTileCols;
+        private final long firstTile;
+        private final long endTile;
+
+        ProdTask(ChunkedMatrix left, ChunkedMatrix right, ChunkedMatrix result, int numTileCols, long firstTile,
+                 long endTile) {
+            this.left = left;
+            this.right = right;
+            this.result = result;
+            this.numTileCols = numTileCols;
+            this.firstTile = firstTile;
+            this.endTile = endTile;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (this.endTile - this.firstTile > 1) {
+                long middleTile = (this.firstTile + this.endTile) >>> 1;
+                RecursiveAction.invokeAll(
+                        new ProdTask(this.left, this.right, this.result, this.numTileCols, this.firstTile, middleTile),
+                        new ProdTask(this.left, this.right, this.result, this.numTileCols, middleTile, this.endTile));
+                return;
+            }
+
+            int rowIndex = (int) (this.firstTile / this.numTileCols) * TILE_LENGTH;
+            int colIndex = (int) (this.firstTile % this.numTileCols) * TILE_LENGTH;
+            int tileNumRows = Math.min(TILE_LENGTH, this.left.numRows - rowIndex);
+            int tileNumCols = Math.min(TILE_LENGTH, this.right.numCols - colIndex);
+            double[] leftTile = new double[TILE_LENGTH * TILE_LENGTH];
+            double[] rightTile = new double[TILE_LENGTH * TILE_LENGTH];
+            double[] resultTile = new double[tileNumRows * tileNumCols];
+
+            for (int innerIndex = 0; innerIndex < this.left.numCols; innerIndex += TILE_LENGTH) {
+                int tileNumInner = Math.min(TILE_LENGTH, this.left.numCols - innerIndex);
+                this.left.readBlock(rowIndex, innerIndex, tileNumRows, tileNumInner, leftTile);
+                this.right.readBlock(innerIndex, colIndex, tileNumInner, tileNumCols, rightTile);
+                Gemm.multiply(tileNumRows, tileNumCols, tileNumInner, 1,
+                        leftTile, 0, tileNumInner, 1,
+                        rightTile, 0, tileNumCols, 1,
+                        resultTile, 0, tileNumCols, 1);
+            }
+            this.result.writeBlock(rowIndex, colIndex, tileNumRows, tileNumCols, resultTile);
+        }
+    }
+
+    // Multiplied from left to right, the intermediate products being freed as soon as they have been used
+    public static ChunkedMatrix prod(ForkJoinPool pool, ChunkedMatrix... matrices)
+            throws MatrixIllegalArgumentException {
+
+        if (matrices.length < 1) {
+            throw new MatrixIllegalArgumentException("Need at least one matrix");
+        }
+        for (ChunkedMatrix matrix : matrices) {
+            if (matrix == null) {
+                throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+            }
+        }
+        for (int matrixIndex = 0; matrixIndex < matrices.length - 1; matrixIndex++) {
+            if (matrices[matrixIndex].numCols != matrices[matrixIndex + 1].numRows) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for taking product of matrices");
+            }
+        }
+        if (pool == null) {
+            throw new MatrixIllegalArgumentException("'pool' cannot be null");
+        }
+
+        if (matrices.length == 1) {
+            return matrices[0].copy();
+        }
+        ChunkedMatrix result = ChunkedMatrix.prod(pool, matrices[0], matrices[1]);
+        for (int matrixIndex = 2; matrixIndex < matrices.length; matrixIndex++) {
+            ChunkedMatrix previous = result;
+            result = ChunkedMatrix.prod(pool, previous, matrices[matrixIndex]);
+            previous.close();
+        }
+        return result;
+    }
+
+    public static ChunkedMatrix prod(ChunkedMatrix... matrices) throws MatrixIllegalArgumentException {
+        return ChunkedMatrix.prod(ForkJoinPool.commonPool(), matrices);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Reductions
+
+    public double sum() {
+        double[] buffer = new double[(int) Math.min(BUFFER_LENGTH, this.length)];
+        double value = 0;
+        for (long start = 0; start < this.length; start += BUFFER_LENGTH) {
+            int length = (int) Math.min(BUFFER_LENGTH, this.length - start);
+            this.read(start, buffer, 0, length);
+            value += MatrixKernels.sum(1, length, buffer, 0, length, 1);
+        }
+        return value;
+    }
+
+    // Rows are accumulated one after the other as in Matrix, so the rounding is the same. Whole rows are read at a time
+    // when they fit in the buffer, strips of BUFFER_LENGTH columns otherwise
+    private ChunkedMatrix sumOverRows() {
+        ChunkedMatrix result = this.like(1, this.numCols);
+        int stripLength = Math.min(BUFFER_LENGTH, this.numCols);
+        int numStripRows = Math.max(1, BUFFER_LENGTH / this.numCols);
+        double[] buffer = new double[numStripRows * stripLength];
+        double[] sums = new double[stripLength];
+        for (int colIndex = 0; colIndex < this.numCols; colIndex += stripLength) {
+            int numCols = Math.min(stripLength, this.numCols - colIndex);
+            Arrays.fill(sums, 0);
+            for (int rowIndex = 0; rowIndex < this.numRows; rowIndex += numStripRows) {
+                int numRows = Math.min(numStripRows, this.numRows - rowIndex);
+                this.readBlock(rowIndex, colIndex, numRows, numCols, buffer);
+                for (int bufferRowIndex = 0; bufferRowIndex < numRows; bufferRowIndex++) {
+                    for (int bufferColIndex = 0; bufferColIndex < numCols; bufferColIndex++) {
+                        sums[bufferColIndex] += buffer[bufferRowIndex * numCols + bufferColIndex];
+                    }
+                }
+            }
+            result.write(colIndex, sums, 0, numCols);
+        }
+        return result;
+    }
+
+    // Same rounding as Matrix for rows of at most BUFFER_LENGTH elements, longer rows are summed a strip at a time
+    private ChunkedMatrix sumOverCols() {
+        ChunkedMatrix result = this.like(this.numRows, 1);
+        int stripLength = Math.min(BUFFER_LENGTH, this.numCols);
+        int numStripRows = Math.max(1, BUFFER_LENGTH / this.numCols);
+        double[] buffer = new double[numStripRows * stripLength];
+        double[] sums = new double[numStripRows];
+        for (int rowIndex = 0; rowIndex < this.numRows; rowIndex += numStripRows) {
+            int numRows = Math.min(numStripRows, this.numRows - rowIndex);
+            if (stripLength == this.numCols) {
+                this.readBlock(rowIndex, 0, numRows, this.numCols, buffer);
+                MatrixKernels.sumOverCols(numRows, this.numCols, buffer, 0, this.numCols, 1, sums, 0, 1);
+            } else {
+                double value = 0;
+                for (int colIndex = 0; colIndex < this.numCols; colIndex += stripLength) {
+                    int length = Math.min(stripLength, this.numCols - colIndex);
+                    this.read(this.getIndex(rowIndex, colIndex), buffer, 0, length);
+                    value += MatrixKernels.sum(1, length, buffer, 0, length, 1);
+                }
+                sums[0] = value;
+            }
+            result.write(rowIndex, sums, 0, numRows);
+        }
+        return result;
+    }
+
+    // As Matrix.sum(axis): a 1 x numCols matrix of the sums over the rows for axis 0, a numRows x 1 matrix of the sums
+    // over the columns for axis 1
+    public ChunkedMatrix sum(int axis) throws MatrixIllegalArgumentException {
+
+        if (axis != 0 && axis != 1) {
+            throw new MatrixIllegalArgumentException(String.format("'axis' (%d) has to be 0 or 1", axis));
+        }
+
+        ChunkedMatrix result;
+        if (axis == 0) {
+            result = this.sumOverRows();
+        } else {
+            result = this.sumOverCols();
+        }
+        return result;
+    }
+
+    public double maxDifference(ChunkedMatrix other) throws MatrixIllegalArgumentException {
+
+        if (other == null) {
+            throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+        }
+        if (other.numRows != this.numRows || other.numCols != this.numCols) {
+            throw new MatrixIllegalArgumentException("Dimension mismatch for comparing matrices");
+        }
+
+        int bufferLength = (int) Math.min(BUFFER_LENGTH, this.length);
+        double[] buffer = new double[bufferLength];
+        double[] otherBuffer = new double[bufferLength];
+        double value = Double.MIN_VALUE;
+        for (long start = 0; start < this.length; start += BUFFER_LENGTH) {
+            int length = (int) Math.min(BUFFER_LENGTH, this.length - start);
+            this.read(start, buffer, 0, length);
+            other.read(start, otherBuffer, 0, length);
+            value = MatrixKernels.maxAbsDifference(1, length, buffer, 0, length, 1, otherBuffer, 0, length, 1, value);
+        }
+        return value;
+    }
+
+    // As Matrix.equalsMaxWithinTolerance, without copying either matrix to the heap
+    public boolean equalsMaxWithinTolerance(ChunkedMatrix other, double tolerance)
+            throws MatrixIllegalArgumentException {
+
+        if (other == null) {
+            throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+        }
+        if (this.numRows != other.numRows || this.numCols != other.numCols) {
+            return false;
+        } else {
+            double maxDifference = this.maxDifference(other);
+            return maxDifference < tolerance;
+        }
+    }
+
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Heap storage
+
+    private static final class Heap extends ChunkedMatrix {
+
+        private final double[][] chunks;
+
+        Heap(int numRows, int numCols, int chunkShift) throws MatrixIllegalArgumentException {
+            super(numRows, numCols, chunkShift);
+            long chunkLength = 1L << chunkShift;
+            this.chunks = new double[(int) ((this.length + chunkLength - 1) >>> chunkShift)][];
+            for (int chunkIndex = 0; chunkIndex < this.chunks.length; chunkIndex++) {
+                this.chunks[chunkIndex] = new double[(int) Math.min(chunkLength,
+                        this.length - chunkIndex * chunkLength)];
+            }
+        }
+
+        @Override
+        ChunkedMatrix like(int numRows, int numCols) {
+            return new Heap(numRows, numCols, this.chunkShift);
+        }
+
+        @Override
+        void readChunk(int chunkIndex, int position, double[] destination, int offset, int length) {
+            System.arraycopy(this.chunks[chunkIndex], position, destination, offset, length);
+        }
+
+        @Override
+        void writeChunk(int chunkIndex, int position, double[] source, int offset, int length) {
+            System.arraycopy(source, offset, this.chunks[chunkIndex], position, length);
+        }
+
+        @Override
+        double getChunk(int chunkIndex, int position) {
+            return this.chunks[chunkIndex][position];
+        }
+
+        @Override
+        void setChunk(int chunkIndex, int position, double value) {
+            this.chunks[chunkIndex][position] = value;
+        }
+
+    }
+
+}
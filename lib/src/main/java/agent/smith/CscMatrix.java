@@ -0,0 +1,37 @@
+package agent.smith;
+
+
+// Compressed sparse column matrix: the row indexes and values of the non-zeros of column j are at positions
+// colPointers[j] (inclusive) to colPointers[j + 1] (exclusive) of 'rowIndexes' and 'values', in increasing order of
+// row index. Getting a column is a copy of its non-zeros, and products with a dense matrix on the left gather whole
+// columns of the sparse one. See SparseMatrix.
+
+public final class CscMatrix extends SparseMatrix {
+
+    CscMatrix(int numRows, int numCols, int[] colPointers, int[] rowIndexes, double[] values) {
+        super(false, numRows, numCols, colPointers, rowIndexes, values);
+    }
+
+    // Copies the arrays, after checking that they describe a matrix of the given shape
+    public static CscMatrix create(int numRows, int numCols, int[] colPointers, int[] rowIndexes, double[] values)
+            throws MatrixIllegalArgumentException {
+        return (CscMatrix) SparseMatrix.create(false, numRows, numCols, colPointers, rowIndexes, values,
+                "colPointers", "rowIndexes", "column");
+    }
+
+    // Element k is values[k] at (rowIndexes[k], colIndexes[k]), and the values of repeated positions are added up
+    public static CscMatrix fromTriplets(int numRows, int numCols, int[] rowIndexes, int[] colIndexes,
+                                         double[] values) throws MatrixIllegalArgumentException {
+        return (CscMatrix) SparseMatrix.fromTriplets(false, numRows, numCols, rowIndexes, colIndexes, values);
+    }
+
+    public static CscMatrix of(Matrix matrix) throws MatrixIllegalArgumentException {
+        return (CscMatrix) SparseMatrix.of(matrix, false);
+    }
+
+    @Override
+    public CsrMatrix transpose() {
+        return new CsrMatrix(this.numCols, this.numRows, this.pointers, this.indexes, this.values);
+    }
+
+}
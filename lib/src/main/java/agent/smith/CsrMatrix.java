@@ -0,0 +1,37 @@
+package agent.smith;
+
+
+// Compressed sparse row matrix: the column indexes and values of the non-zeros of row i are at positions
+// rowPointers[i] (inclusive) to rowPointers[i + 1] (exclusive) of 'colIndexes' and 'values', in increasing order of
+// column index. Products with a dense matrix on the right gather whole rows of it, so rows are the natural layout for
+// an adjacency matrix applied to features. See SparseMatrix.
+
+public final class CsrMatrix extends SparseMatrix {
+
+    CsrMatrix(int numRows, int numCols, int[] rowPointers, int[] colIndexes, double[] values) {
+        super(true, numRows, numCols, rowPointers, colIndexes, values);
+    }
+
+    // Copies the arrays, after checking that they describe a matrix of the given shape
+    public static CsrMatrix create(int numRows, int numCols, int[] rowPointers, int[] colIndexes, double[] values)
+            throws MatrixIllegalArgumentException {
+        return (CsrMatrix) SparseMatrix.create(true, numRows, numCols, rowPointers, colIndexes, values,
+                "rowPointers", "colIndexes", "row");
+    }
+
+    // Element k is values[k] at (rowIndexes[k], colIndexes[k]), and the values of repeated positions are added up
+    public static CsrMatrix fromTriplets(int numRows, int numCols, int[] rowIndexes, int[] colIndexes,
+                                         double[] values) throws MatrixIllegalArgumentException {
+        return (CsrMatrix) SparseMatrix.fromTriplets(true, numRows, numCols, rowIndexes, colIndexes, values);
+    }
+
+    public static CsrMatrix of(Matrix matrix) throws MatrixIllegalArgumentException {
+        return (CsrMatrix) SparseMatrix.of(matrix, true);
+    }
+
+    @Override
+    public CscMatrix transpose() {
+        return new CscMatrix(this.numCols, this.numRows, this.pointers, this.indexes, this.values);
+    }
+
+}
@@ -0,0 +1,78 @@
+package agent.smith;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+
+// Frees the memory of a direct (or mapped) buffer right away instead of when the buffer is garbage collected. There is
+// no public API for it before the Foreign Memory API, so the JDK internals are looked up reflectively:
+//   - Java 9 and later: sun.misc.Unsafe.invokeCleaner(buffer)
+//   - Java 8: ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean()
+// When neither can be found the buffer is simply left to the garbage collector. A buffer must not be accessed after it
+// has been released, which the callers guarantee by checking their own closed flag first.
+
+final class DirectBuffers {
+
+    private interface Releaser {
+        void release(ByteBuffer buffer) throws ReflectiveOperationException;
+    }
+
+    private static final Releaser RELEASER = DirectBuffers.findReleaser();
+
+    private DirectBuffers() {
+    }
+
+    private static Releaser findReleaser() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not Java 9 or later, try the Java 8 way
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                Object bufferCleaner = cleaner.invoke(buffer);
+                if (bufferCleaner != null) {
+                    clean.invoke(bufferCleaner);
+                }
+            };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static ByteBuffer[] allocate(long numBytes, int chunkNumBytes) {
+        int numChunks = (int) ((numBytes + chunkNumBytes - 1) / chunkNumBytes);
+        ByteBuffer[] buffers = new ByteBuffer[numChunks];
+        try {
+            for (int chunkIndex = 0; chunkIndex < numChunks; chunkIndex++) {
+                long chunkStart = (long) chunkIndex * chunkNumBytes;
+                buffers[chunkIndex] = ByteBuffer.allocateDirect((int) Math.min(chunkNumBytes, numBytes - chunkStart));
+            }
+        } catch (OutOfMemoryError e) {
+            DirectBuffers.release(buffers);
+            throw e;
+        }
+        return buffers;
+    }
+
+    static void release(ByteBuffer... buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer != null && buffer.isDirect() && RELEASER != null) {
+                try {
+                    RELEASER.release(buffer);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    // Left to the garbage collector
+                }
+            }
+        }
+    }
+
+}
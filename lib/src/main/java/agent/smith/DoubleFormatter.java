@@ -0,0 +1,296 @@
+package agent.smith;
+
+import java.math.BigInteger;
+
+
+// Writes a double as the shortest decimal that parses back to the same double, in the format of Double.toString
+// ("1.0", "0.001", "1.0E7", "-4.9E-324", "NaN", "Infinity"). Double.toString only gives the shortest decimal from Java
+// 19 on, and allocates a String per call, which makes it too slow for writing large matrices as text.
+//
+// The digits come from the Schubfach algorithm of R. Giulietti ("The Schubfach way to render doubles", 2020), the one
+// behind Double.toString since Java 19: the decimal is chosen among the multiples of the largest power of ten for
+// which the rounding interval of the double contains one, by comparing 126-bit approximations of the bounds of the
+// interval scaled by a power of ten. The table of powers of ten is computed exactly once, with BigInteger.
+
+final class DoubleFormatter {
+
+    // Longest output, e.g. "-2.2250738585072014E-308"
+    static final int MAX_LENGTH = 24;
+
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final int BQ_MASK = 0x7FF;
+    private static final long T_MASK = C_MIN - 1;
+    private static final long MASK_63 = Long.MAX_VALUE;
+    // Subnormal significands below this have too few digits and are scaled by 10 first
+    private static final int C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    // Number of digits of the largest decimal significand
+    private static final int H = 17;
+
+    // g = g1 2^63 + g0 = floor(10^-k 2^-r) + 1, with r such that 2^125 <= 10^-k 2^-r < 2^126
+    private static final long[] G1 = new long[K_MAX - K_MIN + 1];
+    private static final long[] G0 = new long[K_MAX - K_MIN + 1];
+
+    static {
+        BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+        for (int k = K_MIN; k <= K_MAX; k++) {
+            int e = -k;
+            int r = DoubleFormatter.flog2pow10(e) - 125;
+            BigInteger numerator = e >= 0 ? BigInteger.TEN.pow(e) : BigInteger.ONE;
+            BigInteger denominator = e >= 0 ? BigInteger.ONE : BigInteger.TEN.pow(-e);
+            if (r >= 0) {
+                denominator = denominator.shiftLeft(r);
+            } else {
+                numerator = numerator.shiftLeft(-r);
+            }
+            BigInteger g = numerator.divide(denominator).add(BigInteger.ONE);
+            G1[k - K_MIN] = g.shiftRight(63).longValue();
+            G0[k - K_MIN] = g.and(mask).longValue();
+        }
+    }
+
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+
+    static {
+        for (int index = 0; index < 100; index++) {
+            DIGIT_PAIRS[2 * index] = (byte) ('0' + index / 10);
+            DIGIT_PAIRS[2 * index + 1] = (byte) ('0' + index % 10);
+        }
+    }
+
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] INFINITY = {'I', 'n', 'f', 'i', 'n', 'i', 't', 'y'};
+    private static final byte[] ZERO = {'0', '.', '0'};
+
+    private DoubleFormatter() {
+    }
+
+    // floor(e log10(2)), floor(e log10(2) + log10(3/4)) and floor(e log2(10)) for the exponents of a double
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+    }
+
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    // Math.multiplyHigh, which is only available from Java 9 on
+    private static long multiplyHigh(long x, long y) {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+        return x1 * y1 + (t >> 32) + (z1 >> 32);
+    }
+
+    // Rounds g cp 2^-127 to odd
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = DoubleFormatter.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = DoubleFormatter.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+    }
+
+    // Writes 'value' to 'buffer' at 'position', which needs MAX_LENGTH bytes, and returns the position after it
+    static int write(double value, byte[] buffer, int position) {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+        if (bq == BQ_MASK) {
+            if (t != 0) {
+                return DoubleFormatter.copy(NAN, buffer, position);
+            }
+            if (bits < 0) {
+                buffer[position++] = '-';
+            }
+            return DoubleFormatter.copy(INFINITY, buffer, position);
+        }
+
+        if (bits < 0) {
+            buffer[position++] = '-';
+        }
+        if (bq != 0) {
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            // Integers below 2^53 are their own shortest decimal
+            if (0 < mq && mq < P) {
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return DoubleFormatter.writeDecimal(f, 0, buffer, position);
+                }
+            }
+            return DoubleFormatter.toDecimal(-mq, c, 0, buffer, position);
+        }
+        if (t != 0) {
+            return t < C_TINY
+                    ? DoubleFormatter.toDecimal(Q_MIN, 10 * t, -1, buffer, position)
+                    : DoubleFormatter.toDecimal(Q_MIN, t, 0, buffer, position);
+        }
+        return DoubleFormatter.copy(ZERO, buffer, position);
+    }
+
+    // The shortest decimal in the rounding interval of c 2^q, the closest one to it if there are several
+    private static int toDecimal(int q, long c, int dk, byte[] buffer, int position) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        // The interval is asymmetric at the powers of two, except for the smallest normal exponent
+        if (c != C_MIN || q == Q_MIN) {
+            cbl = cb - 2;
+            k = DoubleFormatter.flog10pow2(q);
+        } else {
+            cbl = cb - 1;
+            k = DoubleFormatter.flog10threeQuartersPow2(q);
+        }
+        int h = q + DoubleFormatter.flog2pow10(-k) + 2;
+
+        long g1 = G1[k - K_MIN];
+        long g0 = G0[k - K_MIN];
+        long vb = DoubleFormatter.roundToOdd(g1, g0, cb << h);
+        long vbl = DoubleFormatter.roundToOdd(g1, g0, cbl << h);
+        long vbr = DoubleFormatter.roundToOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // s / 10 * 10, and the next multiple of 10
+            long sp10 = 10 * DoubleFormatter.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return DoubleFormatter.writeDecimal(upin ? sp10 : tp10, k, buffer, position);
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return DoubleFormatter.writeDecimal(uin ? s : t, k + dk, buffer, position);
+        }
+        long cmp = vb - ((s + t) << 1);
+        return DoubleFormatter.writeDecimal(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buffer,
+                position);
+    }
+
+    // Writes f 10^e, f > 0 having at most H digits, in the format of Double.toString
+    private static int writeDecimal(long f, int e, byte[] buffer, int position) {
+        // The digits are first written right-aligned in the space of the output, and then moved into place. A sign
+        // may already take the first byte of the MAX_LENGTH
+        int end = position + MAX_LENGTH - 1;
+        int start = end;
+        // At most 17 digits: the lowest 8 with int arithmetic, then the rest, which fit in an int
+        int high;
+        if (f >= 100_000_000) {
+            long quotient = f / 100_000_000;
+            int low = (int) (f - quotient * 100_000_000);
+            for (int index = 0; index < 4; index++) {
+                int next = low / 100;
+                start = DoubleFormatter.writePair(low - next * 100, buffer, start);
+                low = next;
+            }
+            high = (int) quotient;
+        } else {
+            high = (int) f;
+        }
+        while (high >= 100) {
+            int next = high / 100;
+            start = DoubleFormatter.writePair(high - next * 100, buffer, start);
+            high = next;
+        }
+        if (high >= 10) {
+            start = DoubleFormatter.writePair(high, buffer, start);
+        } else {
+            buffer[--start] = (byte) ('0' + high);
+        }
+        int numDigits = end - start;
+        // d.ddd 10^exponent
+        int exponent = e + numDigits - 1;
+        while (buffer[end - 1] == '0' && end - 1 > start) {
+            end--;
+        }
+        numDigits = end - start;
+
+        if (0 <= exponent && exponent < 7) {
+            int numIntegerDigits = exponent + 1;
+            if (numDigits <= numIntegerDigits) {
+                System.arraycopy(buffer, start, buffer, position, numDigits);
+                position += numDigits;
+                for (int index = numDigits; index < numIntegerDigits; index++) {
+                    buffer[position++] = '0';
+                }
+                buffer[position++] = '.';
+                buffer[position++] = '0';
+                return position;
+            }
+            System.arraycopy(buffer, start, buffer, position, numIntegerDigits);
+            position += numIntegerDigits;
+            buffer[position++] = '.';
+            System.arraycopy(buffer, start + numIntegerDigits, buffer, position, numDigits - numIntegerDigits);
+            return position + numDigits - numIntegerDigits;
+        }
+        if (-3 <= exponent && exponent < 0) {
+            // The digits are at least MAX_LENGTH - 1 - H bytes ahead, more than the 2 + 2 written before them
+            buffer[position++] = '0';
+            buffer[position++] = '.';
+            for (int index = -1; index > exponent; index--) {
+                buffer[position++] = '0';
+            }
+            System.arraycopy(buffer, start, buffer, position, numDigits);
+            return position + numDigits;
+        }
+
+        buffer[position++] = buffer[start];
+        buffer[position++] = '.';
+        if (numDigits == 1) {
+            buffer[position++] = '0';
+        } else {
+            System.arraycopy(buffer, start + 1, buffer, position, numDigits - 1);
+            position += numDigits - 1;
+        }
+        buffer[position++] = 'E';
+        if (exponent < 0) {
+            buffer[position++] = '-';
+            exponent = -exponent;
+        }
+        if (exponent >= 100) {
+            buffer[position++] = (byte) ('0' + exponent / 100);
+            exponent %= 100;
+            buffer[position++] = DIGIT_PAIRS[exponent << 1];
+            buffer[position++] = DIGIT_PAIRS[(exponent << 1) + 1];
+        } else if (exponent >= 10) {
+            buffer[position++] = DIGIT_PAIRS[exponent << 1];
+            buffer[position++] = DIGIT_PAIRS[(exponent << 1) + 1];
+        } else {
+            buffer[position++] = (byte) ('0' + exponent);
+        }
+        return position;
+    }
+
+    // Writes the two digits of 'pair' before 'start', and returns the new start
+    private static int writePair(int pair, byte[] buffer, int start) {
+        buffer[start - 1] = DIGIT_PAIRS[(pair << 1) + 1];
+        buffer[start - 2] = DIGIT_PAIRS[pair << 1];
+        return start - 2;
+    }
+
+    private static int copy(byte[] bytes, byte[] buffer, int position) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+}
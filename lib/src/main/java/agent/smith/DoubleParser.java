@@ -0,0 +1,208 @@
+package agent.smith;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+// Parses a double from ASCII bytes without creating a String, with the same result as Double.parseDouble: the
+// decimal is split into a significand of up to 19 digits and a power of ten, which in most cases is exact:
+//   - Clinger's fast path, when both the significand (below 2^53) and the power of ten (up to 10^22) are exact doubles
+//     and a single correctly rounded multiplication or division gives the result
+//   - the Eisel-Lemire algorithm (D. Lemire, "Number Parsing at a Gigabyte per Second", 2021) otherwise, which
+//     multiplies the significand by a 128-bit approximation of the power of ten and only gives up in the rare cases
+//     where the approximation cannot decide the rounding
+// Anything else (more than 19 significant digits, NaN, Infinity, hexadecimal, subnormals, the undecided cases) falls
+// back to Double.parseDouble, which also throws the NumberFormatException for invalid text.
+
+final class DoubleParser {
+
+    private static final int MIN_EXPONENT = -342;
+    private static final int MAX_EXPONENT = 308;
+    private static final int MAX_DIGITS = 19;
+    private static final long MASK_32 = 0xFFFFFFFFL;
+
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // The 128 most significant bits of 5^q, as two unsigned longs. For q < 0 they are those of 2^b / 5^-q, plus one,
+    // as in the reference implementation
+    private static final long[] POWERS_OF_FIVE_HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+    private static final long[] POWERS_OF_FIVE_LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+    static {
+        BigInteger two127 = BigInteger.ONE.shiftLeft(127);
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        for (int q = MIN_EXPONENT; q <= MAX_EXPONENT; q++) {
+            BigInteger power;
+            if (q >= 0) {
+                power = BigInteger.valueOf(5).pow(q);
+                if (power.compareTo(two127) < 0) {
+                    power = power.shiftLeft(127 - power.bitLength() + 1);
+                }
+            } else {
+                BigInteger inverse = BigInteger.valueOf(5).pow(-q);
+                int z = inverse.subtract(BigInteger.ONE).bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                power = BigInteger.ONE.shiftLeft(b).divide(inverse).add(BigInteger.ONE);
+            }
+            if (power.compareTo(two128) >= 0) {
+                power = power.shiftRight(power.bitLength() - 128);
+            }
+            POWERS_OF_FIVE_HIGH[q - MIN_EXPONENT] = power.shiftRight(64).longValue();
+            POWERS_OF_FIVE_LOW[q - MIN_EXPONENT] = power.longValue();
+        }
+    }
+
+    private DoubleParser() {
+    }
+
+    private static long unsignedMultiplyHigh(long x, long y) {
+        long x0 = x & MASK_32;
+        long x1 = x >>> 32;
+        long y0 = y & MASK_32;
+        long y1 = y >>> 32;
+        long p01 = x0 * y1;
+        long middle = x1 * y0 + ((x0 * y0) >>> 32) + (p01 & MASK_32);
+        return x1 * y1 + (middle >>> 32) + (p01 >>> 32);
+    }
+
+    // Parses the bytes from 'start' (inclusive) to 'end' (exclusive), which have to be an entire number
+    static double parse(ByteBuffer buffer, int start, int end) {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (buffer.get(index) == '-' || buffer.get(index) == '+')) {
+            negative = buffer.get(index) == '-';
+            index++;
+        }
+
+        long significand = 0;
+        int numDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean truncated = false;
+        while (index < end && buffer.get(index) >= '0' && buffer.get(index) <= '9') {
+            int digit = buffer.get(index++) - '0';
+            hasDigits = true;
+            if (numDigits < MAX_DIGITS) {
+                significand = 10 * significand + digit;
+                numDigits += significand == 0 ? 0 : 1;
+            } else {
+                exponent++;
+                truncated |= digit != 0;
+            }
+        }
+        if (index < end && buffer.get(index) == '.') {
+            index++;
+            while (index < end && buffer.get(index) >= '0' && buffer.get(index) <= '9') {
+                int digit = buffer.get(index++) - '0';
+                hasDigits = true;
+                if (numDigits < MAX_DIGITS) {
+                    significand = 10 * significand + digit;
+                    numDigits += significand == 0 ? 0 : 1;
+                    exponent--;
+                } else {
+                    truncated |= digit != 0;
+                }
+            }
+        }
+        if (hasDigits && index < end && (buffer.get(index) == 'e' || buffer.get(index) == 'E')) {
+            index++;
+            boolean negativeExponent = false;
+            if (index < end && (buffer.get(index) == '-' || buffer.get(index) == '+')) {
+                negativeExponent = buffer.get(index) == '-';
+                index++;
+            }
+            int exponentStart = index;
+            int explicitExponent = 0;
+            while (index < end && buffer.get(index) >= '0' && buffer.get(index) <= '9') {
+                // Large enough to overflow or underflow any significand, small enough not to overflow an int
+                explicitExponent = Math.min(10 * explicitExponent + buffer.get(index++) - '0', 100_000);
+            }
+            if (index == exponentStart) {
+                return DoubleParser.parseSlow(buffer, start, end);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (!hasDigits || index != end || truncated) {
+            return DoubleParser.parseSlow(buffer, start, end);
+        }
+
+        if (significand == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (Long.compareUnsigned(significand, 1L << 53) <= 0 && -22 <= exponent && exponent <= 22) {
+            double value = exponent < 0
+                    ? significand / EXACT_POWERS_OF_TEN[-exponent]
+                    : significand * EXACT_POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        long bits = DoubleParser.eiselLemire(significand, exponent);
+        if (bits < 0) {
+            return DoubleParser.parseSlow(buffer, start, end);
+        }
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    // The bits of significand * 10^exponent rounded to the nearest double, or -1 if undecided. The significand is
+    // positive, and unsigned
+    private static long eiselLemire(long significand, int exponent) {
+        if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+            return -1;
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(significand);
+        significand <<= leadingZeros;
+        long biasedExponent = ((217_706L * exponent) >> 16) + 64 + 1023 - leadingZeros;
+
+        long powerHigh = POWERS_OF_FIVE_HIGH[exponent - MIN_EXPONENT];
+        long powerLow = POWERS_OF_FIVE_LOW[exponent - MIN_EXPONENT];
+        long high = DoubleParser.unsignedMultiplyHigh(significand, powerHigh);
+        long low = significand * powerHigh;
+        // The low half of the power of five only matters when the high half leaves the rounding undecided
+        if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + significand, significand) < 0) {
+            long lowHigh = DoubleParser.unsignedMultiplyHigh(significand, powerLow);
+            long lowLow = significand * powerLow;
+            long mergedHigh = high;
+            long mergedLow = low + lowHigh;
+            if (Long.compareUnsigned(mergedLow, low) < 0) {
+                mergedHigh++;
+            }
+            if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow + 1 == 0
+                    && Long.compareUnsigned(lowLow + significand, significand) < 0) {
+                return -1;
+            }
+            high = mergedHigh;
+            low = mergedLow;
+        }
+
+        long upperBit = high >>> 63;
+        long mantissa = high >>> (upperBit + 9);
+        biasedExponent -= 1 ^ upperBit;
+        // Exactly halfway between two doubles
+        if (low == 0 && (high & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            return -1;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >>> 53 > 0) {
+            mantissa >>>= 1;
+            biasedExponent++;
+        }
+        // Subnormals, infinities and overflows are left to Double.parseDouble
+        if (biasedExponent <= 0 || biasedExponent >= 0x7FF) {
+            return -1;
+        }
+        return biasedExponent << 52 | mantissa & ((1L << 52) - 1);
+    }
+
+    private static double parseSlow(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int index = start; index < end; index++) {
+            bytes[index - start] = buffer.get(index);
+        }
+        return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+
+}
@@ -0,0 +1,421 @@
+package agent.smith;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// Single-precision version of Gemm, with the same loops, packing and tiling over float[]: C (m x n) += alpha * A (m x k)
+// * B (k x n), accumulated in float as by BLAS sgemm. A float is half the size of a double, so KC is twice as big for
+// the packed blocks to take the same room in L1 and L2 as in Gemm, and every byte moved carries twice as many elements.
+
+final class FloatGemm {
+
+    static final int MR = 4;
+    static final int NR = 4;
+    static final int KC = 512;
+    static final int MC = 128;
+    static final int NC = 2048;
+
+    // Below this number of multiply-adds the cost of packing outweighs its benefits
+    private static final long SMALL_PRODUCT_THRESHOLD = 32L * 32 * 32;
+
+    // Below this number of multiply-adds a product is not worth splitting across threads
+    static final long PARALLEL_THRESHOLD = 128L * 128 * 128;
+
+    // Tiles are split until they hold fewer multiply-adds than this, roughly a few milliseconds of work each
+    private static final long TILE_THRESHOLD = 256L * 256 * 256;
+
+    private FloatGemm() {
+    }
+
+    static boolean isSmall(int m, int n, int k) {
+        return (long) m * n * k <= SMALL_PRODUCT_THRESHOLD;
+    }
+
+    static void multiply(int m, int n, int k, float alpha,
+                         float[] a, int aOffset, int aRowStride, int aColStride,
+                         float[] b, int bOffset, int bRowStride, int bColStride,
+                         float[] c, int cOffset, int cRowStride, int cColStride) {
+
+        if (m <= 0 || n <= 0 || k <= 0 || alpha == 0) {
+            return;
+        }
+
+        if (FloatGemm.isSmall(m, n, k)) {
+            FloatGemm.multiplySmall(m, n, k, alpha, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride,
+                    c, cOffset, cRowStride, cColStride);
+            return;
+        }
+
+        // Fewer rows or columns than a register tile: most of the micro-kernel would be spent on padding
+        if (m < FloatGemm.MR || n < FloatGemm.NR) {
+            FloatGemm.multiplyThin(m, n, k, alpha, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride,
+                    c, cOffset, cRowStride, cColStride);
+            return;
+        }
+
+        FloatGemm.multiplyBlocked(m, n, k, alpha, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride,
+                c, cOffset, cRowStride, cColStride);
+    }
+
+    // Same as above, but products of at least PARALLEL_THRESHOLD multiply-adds are split into tiles of C which are
+    // computed concurrently on the given pool. Tiles never overlap, so no synchronisation on C is needed.
+    static void multiply(ForkJoinPool pool, int m, int n, int k, float alpha,
+                         float[] a, int aOffset, int aRowStride, int aColStride,
+                         float[] b, int bOffset, int bRowStride, int bColStride,
+                         float[] c, int cOffset, int cRowStride, int cColStride) {
+
+        if (pool.getParallelism() <= 1 || (long) m * n * k < FloatGemm.PARALLEL_THRESHOLD) {
+            FloatGemm.multiply(m, n, k, alpha, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride,
+                    c, cOffset, cRowStride, cColStride);
+            return;
+        }
+
+        pool.invoke(new TileTask(m, n, k, alpha, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride,
+                bColStride, c, cOffset, cRowStride, cColStride));
+    }
+
+    // Straightforward dot-product formulation, each element of C is accumulated in the natural order of the inner
+    // dimension. Used for tiny operands.
+    static void multiplySmall(int m, int n, int k, float alpha,
+                              float[] a, int aOffset, int aRowStride, int aColStride,
+                              float[] b, int bOffset, int bRowStride, int bColStride,
+                              float[] c, int cOffset, int cRowStride, int cColStride) {
+
+        for (int rowIndex = 0; rowIndex < m; rowIndex++) {
+            int aRow = aOffset + rowIndex * aRowStride;
+            int cRow = cOffset + rowIndex * cRowStride;
+            for (int colIndex = 0; colIndex < n; colIndex++) {
+                int aIndex = aRow;
+                int bIndex = bOffset + colIndex * bColStride;
+                float value = 0;
+                for (int index = 0; index < k; index++) {
+                    value += a[aIndex] * b[bIndex];
+                    aIndex += aColStride;
+                    bIndex += bRowStride;
+                }
+                c[cRow + colIndex * cColStride] += alpha == 1 ? value : alpha * value;
+            }
+        }
+    }
+
+    // Products with fewer than MR rows or NR columns. The dot-product formulation walks a row of A and a column of B,
+    // which suits a row-major A and a column-major B. Otherwise the product is computed as sums of scaled rows of B
+    // (fewer than MR rows, row-major B) or, on the transposed product, of scaled columns of A (fewer than NR columns,
+    // column-major A), which keeps the long dimension unit stride.
+    private static void multiplyThin(int m, int n, int k, float alpha,
+                                     float[] a, int aOffset, int aRowStride, int aColStride,
+                                     float[] b, int bOffset, int bRowStride, int bColStride,
+                                     float[] c, int cOffset, int cRowStride, int cColStride) {
+
+        if (m < FloatGemm.MR && bColStride == 1) {
+            FloatGemm.multiplyRows(m, n, k, alpha, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride,
+                    c, cOffset, cRowStride, cColStride);
+        } else if (n < FloatGemm.NR && aRowStride == 1) {
+            // C^T = B^T * A^T
+            FloatGemm.multiplyRows(n, m, k, alpha, b, bOffset, bColStride, bRowStride, a, aOffset, aColStride, aRowStride,
+                    c, cOffset, cColStride, cRowStride);
+        } else {
+            FloatGemm.multiplySmall(m, n, k, alpha, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride,
+                    c, cOffset, cRowStride, cColStride);
+        }
+    }
+
+    // Row by row axpy formulation for a small m: row p of B, scaled by the elements of column p of A, is added to every
+    // row of FloatGemm. B is read once, in storage order when it is row-major, while the m rows of C stay in cache.
+    private static void multiplyRows(int m, int n, int k, float alpha,
+                                     float[] a, int aOffset, int aRowStride, int aColStride,
+                                     float[] b, int bOffset, int bRowStride, int bColStride,
+                                     float[] c, int cOffset, int cRowStride, int cColStride) {
+
+        for (int index = 0; index < k; index++) {
+            int bRow = bOffset + index * bRowStride;
+            for (int rowIndex = 0; rowIndex < m; rowIndex++) {
+                float value = alpha * a[aOffset + rowIndex * aRowStride + index * aColStride];
+                int cRow = cOffset + rowIndex * cRowStride;
+                if (bColStride == 1 && cColStride == 1) {
+                    for (int colIndex = 0; colIndex < n; colIndex++) {
+                        c[cRow + colIndex] += value * b[bRow + colIndex];
+                    }
+                } else {
+                    for (int colIndex = 0; colIndex < n; colIndex++) {
+                        c[cRow + colIndex * cColStride] += value * b[bRow + colIndex * bColStride];
+                    }
+                }
+            }
+        }
+    }
+
+    // Runs the five loops around the micro-kernel. The packing buffers are local to the call, so concurrent calls on
+    // disjoint tiles of C do not share any mutable state.
+    private static void multiplyBlocked(int m, int n, int k, float alpha,
+                                        float[] a, int aOffset, int aRowStride, int aColStride,
+                                        float[] b, int bOffset, int bRowStride, int bColStride,
+                                        float[] c, int cOffset, int cRowStride, int cColStride) {
+
+        float[] packedA = new float[FloatGemm.roundUp(Math.min(FloatGemm.MC, m), FloatGemm.MR) * Math.min(FloatGemm.KC, k)];
+        float[] packedB = new float[Math.min(FloatGemm.KC, k) * FloatGemm.roundUp(Math.min(FloatGemm.NC, n), FloatGemm.NR)];
+        float[] tile = new float[FloatGemm.MR * FloatGemm.NR];
+
+        for (int jc = 0; jc < n; jc += FloatGemm.NC) {
+            int nc = Math.min(FloatGemm.NC, n - jc);
+
+            for (int pc = 0; pc < k; pc += FloatGemm.KC) {
+                int kc = Math.min(FloatGemm.KC, k - pc);
+
+                FloatGemm.packB(kc, nc, b, bOffset + pc * bRowStride + jc * bColStride, bRowStride, bColStride, packedB);
+
+                for (int ic = 0; ic < m; ic += FloatGemm.MC) {
+                    int mc = Math.min(FloatGemm.MC, m - ic);
+
+                    FloatGemm.packA(mc, kc, a, aOffset + ic * aRowStride + pc * aColStride, aRowStride, aColStride,
+                            packedA);
+                    FloatGemm.macroKernel(mc, nc, kc, alpha, packedA, packedB, c,
+                            cOffset + ic * cRowStride + jc * cColStride, cRowStride, cColStride, tile);
+                }
+            }
+        }
+    }
+
+    static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    // Packs an mc x kc block of A into slivers of MR rows. Within a sliver the MR elements of one column are
+    // contiguous, so the micro-kernel reads A as a single unit stride stream. Missing rows are padded with zeros.
+    private static void packA(int mc, int kc, float[] a, int aOffset, int aRowStride, int aColStride,
+                              float[] packedA) {
+
+        int packedIndex = 0;
+        for (int ir = 0; ir < mc; ir += FloatGemm.MR) {
+            int mr = Math.min(FloatGemm.MR, mc - ir);
+            int sliverOffset = aOffset + ir * aRowStride;
+            if (mr == FloatGemm.MR) {
+                int aIndex = sliverOffset;
+                for (int p = 0; p < kc; p++) {
+                    packedA[packedIndex] = a[aIndex];
+                    packedA[packedIndex + 1] = a[aIndex + aRowStride];
+                    packedA[packedIndex + 2] = a[aIndex + 2 * aRowStride];
+                    packedA[packedIndex + 3] = a[aIndex + 3 * aRowStride];
+                    packedIndex += FloatGemm.MR;
+                    aIndex += aColStride;
+                }
+            } else {
+                for (int p = 0; p < kc; p++) {
+                    int aIndex = sliverOffset + p * aColStride;
+                    for (int i = 0; i < FloatGemm.MR; i++) {
+                        packedA[packedIndex++] = i < mr ? a[aIndex + i * aRowStride] : 0;
+                    }
+                }
+            }
+        }
+    }
+
+    // Packs a kc x nc panel of B into slivers of NR columns, the NR elements of one row being contiguous. Missing
+    // columns are padded with zeros.
+    private static void packB(int kc, int nc, float[] b, int bOffset, int bRowStride, int bColStride,
+                              float[] packedB) {
+
+        int packedIndex = 0;
+        for (int jr = 0; jr < nc; jr += FloatGemm.NR) {
+            int nr = Math.min(FloatGemm.NR, nc - jr);
+            int sliverOffset = bOffset + jr * bColStride;
+            if (nr == FloatGemm.NR) {
+                int bIndex = sliverOffset;
+                for (int p = 0; p < kc; p++) {
+                    packedB[packedIndex] = b[bIndex];
+                    packedB[packedIndex + 1] = b[bIndex + bColStride];
+                    packedB[packedIndex + 2] = b[bIndex + 2 * bColStride];
+                    packedB[packedIndex + 3] = b[bIndex + 3 * bColStride];
+                    packedIndex += FloatGemm.NR;
+                    bIndex += bRowStride;
+                }
+            } else {
+                for (int p = 0; p < kc; p++) {
+                    int bIndex = sliverOffset + p * bRowStride;
+                    for (int j = 0; j < FloatGemm.NR; j++) {
+                        packedB[packedIndex++] = j < nr ? b[bIndex + j * bColStride] : 0;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void macroKernel(int mc, int nc, int kc, float alpha, float[] packedA, float[] packedB,
+                                    float[] c, int cOffset, int cRowStride, int cColStride, float[] tile) {
+
+        for (int jr = 0; jr < nc; jr += FloatGemm.NR) {
+            int nr = Math.min(FloatGemm.NR, nc - jr);
+            int packedBOffset = jr * kc;
+
+            for (int ir = 0; ir < mc; ir += FloatGemm.MR) {
+                int mr = Math.min(FloatGemm.MR, mc - ir);
+                int packedAOffset = ir * kc;
+                int cIndex = cOffset + ir * cRowStride + jr * cColStride;
+
+                FloatGemm.microKernel(kc, packedA, packedAOffset, packedB, packedBOffset, tile);
+
+                if (mr == FloatGemm.MR && nr == FloatGemm.NR && cColStride == 1) {
+                    for (int i = 0; i < FloatGemm.MR; i++) {
+                        int cRow = cIndex + i * cRowStride;
+                        int tileRow = i * FloatGemm.NR;
+                        c[cRow] += alpha * tile[tileRow];
+                        c[cRow + 1] += alpha * tile[tileRow + 1];
+                        c[cRow + 2] += alpha * tile[tileRow + 2];
+                        c[cRow + 3] += alpha * tile[tileRow + 3];
+                    }
+                } else {
+                    for (int i = 0; i < mr; i++) {
+                        for (int j = 0; j < nr; j++) {
+                            c[cIndex + i * cRowStride + j * cColStride] += alpha * tile[i * FloatGemm.NR + j];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // MR x NR = 4 x 4 register tile: the sixteen partial sums are kept in locals for the whole kc loop, each
+    // iteration reads MR elements of A and NR elements of B and performs MR * NR multiply-adds.
+    private static void microKernel(int kc, float[] packedA, int aIndex, float[] packedB, int bIndex,
+                                    float[] tile) {
+
+        float c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        float c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        float c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        float c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+
+        for (int p = 0; p < kc; p++) {
+            float a0 = packedA[aIndex];
+            float a1 = packedA[aIndex + 1];
+            float a2 = packedA[aIndex + 2];
+            float a3 = packedA[aIndex + 3];
+            float b0 = packedB[bIndex];
+            float b1 = packedB[bIndex + 1];
+            float b2 = packedB[bIndex + 2];
+            float b3 = packedB[bIndex + 3];
+
+            c00 += a0 * b0;
+            c01 += a0 * b1;
+            c02 += a0 * b2;
+            c03 += a0 * b3;
+            c10 += a1 * b0;
+            c11 += a1 * b1;
+            c12 += a1 * b2;
+            c13 += a1 * b3;
+            c20 += a2 * b0;
+            c21 += a2 * b1;
+            c22 += a2 * b2;
+            c23 += a2 * b3;
+            c30 += a3 * b0;
+            c31 += a3 * b1;
+            c32 += a3 * b2;
+            c33 += a3 * b3;
+
+            aIndex += FloatGemm.MR;
+            bIndex += FloatGemm.NR;
+        }
+
+        tile[0] = c00;
+        tile[1] = c01;
+        tile[2] = c02;
+        tile[3] = c03;
+        tile[4] = c10;
+        tile[5] = c11;
+        tile[6] = c12;
+        tile[7] = c13;
+        tile[8] = c20;
+        tile[9] = c21;
+        tile[10] = c22;
+        tile[11] = c23;
+        tile[12] = c30;
+        tile[13] = c31;
+        tile[14] = c32;
+        tile[15] = c33;
+    }
+
+    // Recursively halves the larger dimension of C until a tile is small enough, then runs the serial engine on it.
+    // Split points are aligned to the register tile so that only the true edges of C take the padded paths.
+    private static final class TileTask extends RecursiveAction {
+
+        private final int m;
+        private final int n;
+        private final int k;
+        private final float alpha;
+        private final float[] a;
+        private final int aOffset;
+        private final int aRowStride;
+        private final int aColStride;
+        private final float[] b;
+        private final int bOffset;
+        private final int bRowStride;
+        private final int bColStride;
+        private final float[] c;
+        private final int cOffset;
+        private final int cRowStride;
+        private final int cColStride;
+
+        TileTask(int m, int n, int k, float alpha,
+                 float[] a, int aOffset, int aRowStride, int aColStride,
+                 float[] b, int bOffset, int bRowStride, int bColStride,
+                 float[] c, int cOffset, int cRowStride, int cColStride) {
+            this.m = m;
+            this.n = n;
+            this.k = k;
+            this.alpha = alpha;
+            this.a = a;
+            this.aOffset = aOffset;
+            this.aRowStride = aRowStride;
+            this.aColStride = aColStride;
+            this.b = b;
+            this.bOffset = bOffset;
+            this.bRowStride = bRowStride;
+            this.bColStride = bColStride;
+            this.c = c;
+            this.cOffset = cOffset;
+            this.cRowStride = cRowStride;
+            this.cColStride = cColStride;
+        }
+
+        @Override
+        protected void compute() {
+
+            boolean splitRows = this.m >= this.n && this.m >= 2 * FloatGemm.MR;
+            boolean splitCols = !splitRows && this.n >= 2 * FloatGemm.NR;
+
+            if ((long) this.m * this.n * this.k <= FloatGemm.TILE_THRESHOLD || (!splitRows && !splitCols)) {
+                FloatGemm.multiply(this.m, this.n, this.k, this.alpha,
+                        this.a, this.aOffset, this.aRowStride, this.aColStride,
+                        this.b, this.bOffset, this.bRowStride, this.bColStride,
+                        this.c, this.cOffset, this.cRowStride, this.cColStride);
+                return;
+            }
+
+            TileTask first;
+            TileTask second;
+            if (splitRows) {
+                int half = FloatGemm.roundUp(this.m / 2, FloatGemm.MR);
+                first = new TileTask(half, this.n, this.k, this.alpha,
+                        this.a, this.aOffset, this.aRowStride, this.aColStride,
+                        this.b, this.bOffset, this.bRowStride, this.bColStride,
+                        this.c, this.cOffset, this.cRowStride, this.cColStride);
+                second = new TileTask(this.m - half, this.n, this.k, this.alpha,
+                        this.a, this.aOffset + half * this.aRowStride, this.aRowStride, this.aColStride,
+                        this.b, this.bOffset, this.bRowStride, this.bColStride,
+                        this.c, this.cOffset + half * this.cRowStride, this.cRowStride, this.cColStride);
+            } else {
+                int half = FloatGemm.roundUp(this.n / 2, FloatGemm.NR);
+                first = new TileTask(this.m, half, this.k, this.alpha,
+                        this.a, this.aOffset, this.aRowStride, this.aColStride,
+                        this.b, this.bOffset, this.bRowStride, this.bColStride,
+                        this.c, this.cOffset, this.cRowStride, this.cColStride);
+                second = new TileTask(this.m, this.n - half, this.k, this.alpha,
+                        this.a, this.aOffset, this.aRowStride, this.aColStride,
+                        this.b, this.bOffset + half * this.bColStride, this.bRowStride, this.bColStride,
+                        this.c, this.cOffset + half * this.cColStride, this.cRowStride, this.cColStride);
+            }
+            RecursiveAction.invokeAll(first, second);
+        }
+    }
+
+}
@@ -0,0 +1,802 @@
+package agent.smith;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+// Single-precision counterpart of Matrix, for workloads bound by memory bandwidth rather than by arithmetic: the
+// elements take half the room, so twice as many fit in each cache line and each vector register. The layout and the
+// methods mirror those of Matrix, with element (rowIndex, colIndex) at array[offset + rowIndex * rowStride + colIndex *
+// colStride] and the getXxxView methods sharing the array of their parent.
+//
+// Products accumulate in float as BLAS sgemm does, while sum() and sum(axis) accumulate in double and only round the
+// result. of(Matrix) rounds every element to the nearest float, toMatrix() is exact.
+public class FloatMatrix {
+
+    final float[] array;
+    final int offset;
+    final int rowStride;
+    final int colStride;
+    private final int numRows;
+    private final int numCols;
+    private final int length;
+    // Of the order of the float machine epsilon, as MAX_TOLERANCE of Matrix is of the order of the double one
+    private static final double MAX_TOLERANCE = 1e-6;
+
+    private void validateNumRowsNumCols() throws MatrixIllegalArgumentException {
+        if (this.numRows <= 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'numRows' (%d) has to be a positive integer", this.numRows));
+        }
+        if (this.numCols <= 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'numCols' (%d) has to be a positive integer", this.numCols));
+        }
+        Matrix.validateLength(this.numRows, this.numCols);
+    }
+
+    private FloatMatrix(float value, int numRows, int numCols) throws MatrixIllegalArgumentException {
+
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.length = this.numRows * this.numCols;
+
+        this.validateNumRowsNumCols();
+
+        this.array = new float[length];
+        Arrays.fill(this.array, value);
+        this.offset = 0;
+        this.rowStride = this.numCols;
+        this.colStride = 1;
+    }
+
+    public static FloatMatrix of(float element, int numRows, int numCols) {
+        return new FloatMatrix(element, numRows, numCols);
+    }
+
+    private FloatMatrix(float[] array, int numRows, int numCols, boolean copy) throws MatrixIllegalArgumentException {
+
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.length = this.numRows * this.numCols;
+
+        this.validateNumRowsNumCols();
+
+        if (array == null) {
+            throw new MatrixIllegalArgumentException("'array' cannot be null");
+        }
+
+        if (array.length != this.length) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Length of 'array' (%d) does not match 'numRows' * 'numCols' (%d)", array.length, this.length));
+        }
+
+        this.array = copy ? array.clone() : array;
+        this.offset = 0;
+        this.rowStride = this.numCols;
+        this.colStride = 1;
+    }
+
+    // Views are only built from matrices that are already valid, so the dimensions are not checked again
+    private FloatMatrix(float[] array, int offset, int numRows, int numCols, int rowStride, int colStride) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        this.array = array;
+        this.offset = offset;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.length = numRows * numCols;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+    }
+
+    public static FloatMatrix create(float[] array, int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return new FloatMatrix(array, numRows, numCols, true);
+    }
+
+    // Takes ownership of 'array' without copying it, for results computed inside the package
+    static FloatMatrix wrap(float[] array, int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return new FloatMatrix(array, numRows, numCols, false);
+    }
+
+    public static FloatMatrix create(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return FloatMatrix.of(Float.NaN, numRows, numCols);
+    }
+
+    static void validateMatricesNonNull(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        for (FloatMatrix matrix: matrices) {
+            if (matrix == null) {
+                throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+            }
+        }
+    }
+
+    static void validateDestination(FloatMatrix destination, int numRows, int numCols)
+            throws MatrixIllegalArgumentException {
+        FloatMatrix.validateMatricesNonNull(destination);
+        if (destination.numRows != numRows || destination.numCols != numCols) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Dimension mismatch for 'destination': expected = (%d, %d) vs 'destination' = (%d, %d)",
+                    numRows, numCols, destination.numRows, destination.numCols));
+        }
+    }
+
+    static void validateDestinationNotOperand(FloatMatrix destination, FloatMatrix... matrices)
+            throws MatrixIllegalArgumentException {
+        for (FloatMatrix matrix : matrices) {
+            if (destination.overlaps(matrix)) {
+                throw new MatrixIllegalArgumentException("'destination' cannot overlap any of the input matrices");
+            }
+        }
+    }
+
+    // Conservative, as Matrix.overlaps
+    boolean overlaps(FloatMatrix other) {
+        if (this.array != other.array) {
+            return false;
+        }
+        long thisLast = this.offset + (long) (this.numRows - 1) * this.rowStride +
+                (long) (this.numCols - 1) * this.colStride;
+        long otherLast = other.offset + (long) (other.numRows - 1) * other.rowStride +
+                (long) (other.numCols - 1) * other.colStride;
+        return this.offset <= otherLast && other.offset <= thisLast;
+    }
+
+    boolean hasSameLayout(FloatMatrix other) {
+        return this.array == other.array && this.offset == other.offset && this.numRows == other.numRows &&
+                this.numCols == other.numCols && this.rowStride == other.rowStride &&
+                this.colStride == other.colStride;
+    }
+
+    public static FloatMatrix create(FloatMatrix matrix) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateMatricesNonNull(matrix);
+        return FloatMatrix.create(matrix.numRows, matrix.numCols);
+    }
+
+    public static FloatMatrix ofZeros(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return FloatMatrix.of(0, numRows, numCols);
+    }
+
+    public static FloatMatrix ofZeros(int numRowsAndCols) throws MatrixIllegalArgumentException {
+        return FloatMatrix.ofZeros(numRowsAndCols, numRowsAndCols);
+    }
+
+    public static FloatMatrix ofZeros(FloatMatrix matrix) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateMatricesNonNull(matrix);
+        return FloatMatrix.ofZeros(matrix.numRows, matrix.numCols);
+    }
+
+    public static FloatMatrix ofOnes(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return FloatMatrix.of(1, numRows, numCols);
+    }
+
+    public static FloatMatrix ofOnes(int numRowsAndCols) throws MatrixIllegalArgumentException {
+        return FloatMatrix.ofOnes(numRowsAndCols, numRowsAndCols);
+    }
+
+    public static FloatMatrix ofOnes(FloatMatrix matrix) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateMatricesNonNull(matrix);
+        return FloatMatrix.ofOnes(matrix.numRows, matrix.numCols);
+    }
+
+    public static FloatMatrix from(float[][] nestedArray) throws MatrixIllegalArgumentException {
+
+        if (nestedArray == null) {
+            throw new MatrixIllegalArgumentException("'nestedArray' cannot be null");
+        }
+
+        int numRows = nestedArray.length;
+        if (numRows == 0) {
+            throw new MatrixIllegalArgumentException("'nestedArray' cannot be empty");
+        }
+
+        if (nestedArray[0] == null) {
+            throw new MatrixIllegalArgumentException("'nestedArray[0]' cannot be null");
+        }
+
+        int numCols = nestedArray[0].length;
+        if (numCols == 0) {
+            throw new MatrixIllegalArgumentException("'nestedArray' cannot be empty");
+        }
+
+        Matrix.validateLength(numRows, numCols);
+        float[] array = new float[numRows * numCols];
+        for (int indexRow = 0; indexRow < numRows; indexRow++) {
+
+            if (nestedArray[indexRow] == null) {
+                throw new MatrixIllegalArgumentException(String.format("'nestedArray[%d]' cannot be null", indexRow));
+            }
+
+            if (nestedArray[indexRow].length != numCols) {
+                throw new MatrixIllegalArgumentException("Inconsistent number of rows for 'nestedArray'");
+            }
+
+            System.arraycopy(nestedArray[indexRow], 0, array, indexRow * numCols, numCols);
+        }
+        return FloatMatrix.wrap(array, numRows, numCols);
+    }
+
+    // Each element is rounded to the nearest float, so elements beyond the range of a float become infinite
+    public static FloatMatrix of(Matrix matrix) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+        float[] array = new float[numRows * numCols];
+        FloatMatrixKernels.toFloat(numRows, numCols, matrix.array, matrix.offset, matrix.rowStride, matrix.colStride,
+                array);
+        return FloatMatrix.wrap(array, numRows, numCols);
+    }
+
+    public Matrix toMatrix() {
+        double[] newArray = new double[this.length];
+        FloatMatrixKernels.toDouble(this.numRows, this.numCols, this.array, this.offset, this.rowStride,
+                this.colStride, newArray);
+        return Matrix.wrap(newArray, this.numRows, this.numCols);
+    }
+
+    public float[] getArray() {
+        float[] newArray = new float[this.length];
+        FloatMatrixKernels.copy(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                newArray, 0, this.numCols, 1);
+        return newArray;
+    }
+
+    // Read-only and without copying when the elements are contiguous, otherwise over a row-major copy of them
+    public FloatBuffer getBuffer() {
+        if (!this.isContiguous()) {
+            return FloatBuffer.wrap(this.getArray()).asReadOnlyBuffer();
+        }
+        return FloatBuffer.wrap(this.array, this.offset, this.length).slice().asReadOnlyBuffer();
+    }
+
+    public boolean isContiguous() {
+        return MatrixKernels.isContiguous(this.numRows, this.numCols, this.rowStride, this.colStride);
+    }
+
+    boolean isView() {
+        return this.offset != 0 || !this.isContiguous() || this.array.length != this.length;
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FloatMatrix matrix = (FloatMatrix) o;
+        if (this.numRows != matrix.numRows || this.numCols != matrix.numCols) {
+            return false;
+        }
+        if (!this.isView() && !matrix.isView()) {
+            return Arrays.equals(this.array, matrix.array);
+        }
+        return FloatMatrixKernels.equals(this.numRows, this.numCols,
+                this.array, this.offset, this.rowStride, this.colStride,
+                matrix.array, matrix.offset, matrix.rowStride, matrix.colStride);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hash(this.numRows, this.numCols);
+        result = 31 * result + FloatMatrixKernels.hashCode(this.numRows, this.numCols,
+                this.array, this.offset, this.rowStride, this.colStride);
+        return result;
+    }
+
+    public String toString(String format, String rowDelimiter, String colDelimiter) {
+        String[] string = new String[this.numRows];
+        for (int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
+            String[] row = new String[this.numCols];
+            for (int colIndex = 0; colIndex < this.numCols; colIndex++) {
+                row[colIndex] = String.format(format, this.get(rowIndex, colIndex));
+            }
+            string[rowIndex] = String.join(colDelimiter, row);
+        }
+        return "FloatMatrix{" + String.join(rowDelimiter, string) + "}";
+    }
+
+    public String toString(String format) {
+        return toString(format, "\n            ", " ");
+    }
+
+    @Override
+    public String toString() {
+        return toString("%.4e");
+    }
+
+    private void validateRowIndex(int rowIndex) throws MatrixIllegalArgumentException {
+        if (rowIndex < 0 || rowIndex >= this.numRows) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'rowIndex' = (%d) has to be between 0 and %d", rowIndex, this.numRows - 1));
+        }
+    }
+
+    private void validateColIndex(int colIndex) throws MatrixIllegalArgumentException {
+        if (colIndex < 0 || colIndex >= this.numCols) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'colIndex' = (%d) has to be between 0 and %d", colIndex, this.numCols - 1));
+        }
+    }
+
+    private int getArrayIndex(int rowIndex, int colIndex) throws MatrixIllegalArgumentException {
+        this.validateRowIndex(rowIndex);
+        this.validateColIndex(colIndex);
+        return this.offset + rowIndex * this.rowStride + colIndex * this.colStride;
+    }
+
+    public float get(int rowIndex, int colIndex) throws MatrixIllegalArgumentException {
+        return this.array[this.getArrayIndex(rowIndex, colIndex)];
+    }
+
+    public FloatMatrix setToThis(int rowIndex, int colIndex, float value) throws MatrixIllegalArgumentException {
+        this.array[this.getArrayIndex(rowIndex, colIndex)] = value;
+        return this;
+    }
+
+    public FloatMatrix set(int rowIndex, int colIndex, float value) throws MatrixIllegalArgumentException {
+        FloatMatrix result = this.copy();
+        return result.setToThis(rowIndex, colIndex, value);
+    }
+
+    public FloatMatrix getDiagonal() {
+        FloatMatrix diagonal = FloatMatrix.create(Math.min(this.numRows, this.numCols), 1);
+        FloatMatrixKernels.copy(this.array, this.offset, this.rowStride + this.colStride, diagonal.array, 0, 1,
+                diagonal.length);
+        return diagonal;
+    }
+
+    public FloatMatrix setDiagonalToThis(float value) {
+        FloatMatrixKernels.fill(this.array, this.offset, this.rowStride + this.colStride,
+                Math.min(this.numRows, this.numCols), value);
+        return this;
+    }
+
+    public FloatMatrix setDiagonal(float value) {
+        FloatMatrix result = this.copy();
+        return result.setDiagonalToThis(value);
+    }
+
+    public static FloatMatrix instanceOfEye(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        FloatMatrix matrix = FloatMatrix.ofZeros(numRows, numCols);
+        return matrix.setDiagonalToThis(1);
+    }
+
+    public static FloatMatrix instanceOfEye(int numRowsAndCols) throws MatrixIllegalArgumentException {
+        return FloatMatrix.instanceOfEye(numRowsAndCols, numRowsAndCols);
+    }
+
+    // The same Gaussian draws as Matrix.instanceOfRandom, rounded to float
+    public static FloatMatrix instanceOfRandom(Random r, int numRows, int numCols)
+            throws MatrixIllegalArgumentException {
+        FloatMatrix matrix = FloatMatrix.ofZeros(numRows, numCols);
+        for (int index = 0; index < matrix.length; index++) {
+            matrix.array[index] = (float) r.nextGaussian();
+        }
+        return matrix;
+    }
+
+    public static FloatMatrix instanceOfRandom(long seed, int numRows, int numCols)
+            throws MatrixIllegalArgumentException {
+        return FloatMatrix.instanceOfRandom(new Random(seed), numRows, numCols);
+    }
+
+    public static FloatMatrix instanceOfRandom(long seed, int numRowsAndCols) throws MatrixIllegalArgumentException {
+        return FloatMatrix.instanceOfRandom(seed, numRowsAndCols, numRowsAndCols);
+    }
+
+    public FloatMatrix getRow(int rowIndex) throws MatrixIllegalArgumentException {
+        int index = this.getArrayIndex(rowIndex, 0);
+        float[] row = new float[this.numCols];
+        FloatMatrixKernels.copy(this.array, index, this.colStride, row, 0, 1, this.numCols);
+        return FloatMatrix.wrap(row, 1, this.numCols);
+    }
+
+    public FloatMatrix getRowView(int rowIndex) throws MatrixIllegalArgumentException {
+        int index = this.getArrayIndex(rowIndex, 0);
+        return new FloatMatrix(this.array, index, 1, this.numCols, this.rowStride, this.colStride);
+    }
+
+    public FloatMatrix getCol(int colIndex) throws MatrixIllegalArgumentException {
+        int index = this.getArrayIndex(0, colIndex);
+        float[] col = new float[this.numRows];
+        FloatMatrixKernels.copy(this.array, index, this.rowStride, col, 0, 1, this.numRows);
+        return FloatMatrix.wrap(col, this.numRows, 1);
+    }
+
+    public FloatMatrix getColView(int colIndex) throws MatrixIllegalArgumentException {
+        int index = this.getArrayIndex(0, colIndex);
+        return new FloatMatrix(this.array, index, this.numRows, 1, this.rowStride, this.colStride);
+    }
+
+    public FloatMatrix copy() {
+        return FloatMatrix.wrap(this.getArray(), this.numRows, this.numCols);
+    }
+
+    public FloatMatrix copyInto(FloatMatrix destination) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateDestination(destination, this.numRows, this.numCols);
+        if (!destination.hasSameLayout(this)) {
+            FloatMatrix.validateDestinationNotOperand(destination, this);
+        }
+        FloatMatrixKernels.copy(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                destination.array, destination.offset, destination.rowStride, destination.colStride);
+        return destination;
+    }
+
+    public FloatMatrix addToThis(float value) {
+        FloatMatrixKernels.add(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                value);
+        return this;
+    }
+
+    public FloatMatrix add(float value) {
+        FloatMatrix result = this.copy();
+        return result.addToThis(value);
+    }
+
+    private static void validateMatricesDimensionAdd(FloatMatrix result, FloatMatrix... matrices)
+            throws MatrixIllegalArgumentException {
+
+        FloatMatrix.validateMatricesNonNull(result);
+        for (FloatMatrix matrix : matrices) {
+            FloatMatrix.validateMatricesNonNull(matrix);
+            if (result.numRows != matrix.numRows || result.numCols != matrix.numCols) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for adding matrices");
+            }
+        }
+
+    }
+
+    private FloatMatrix addAllInto(FloatMatrix destination, FloatMatrix... matrices) {
+
+        float[][] arrays = new float[matrices.length][];
+        int[] offsets = new int[matrices.length];
+        int[] rowStrides = new int[matrices.length];
+        int[] colStrides = new int[matrices.length];
+        for (int matrixIndex = 0; matrixIndex < matrices.length; matrixIndex++) {
+            FloatMatrix matrix = matrices[matrixIndex];
+            arrays[matrixIndex] = matrix.array;
+            offsets[matrixIndex] = matrix.offset;
+            rowStrides[matrixIndex] = matrix.rowStride;
+            colStrides[matrixIndex] = matrix.colStride;
+        }
+        FloatMatrixKernels.addAll(this.numRows, this.numCols,
+                destination.array, destination.offset, destination.rowStride, destination.colStride,
+                this.array, this.offset, this.rowStride, this.colStride,
+                arrays, offsets, rowStrides, colStrides);
+
+        return destination;
+    }
+
+    // Each chunk is summed before it is written, so the destination may share its layout with any operand, but it
+    // cannot partly overlap one
+    private void validateAddDestination(FloatMatrix destination, FloatMatrix... matrices)
+            throws MatrixIllegalArgumentException {
+        if (!destination.hasSameLayout(this)) {
+            FloatMatrix.validateDestinationNotOperand(destination, this);
+        }
+        for (FloatMatrix matrix : matrices) {
+            if (!destination.hasSameLayout(matrix)) {
+                FloatMatrix.validateDestinationNotOperand(destination, matrix);
+            }
+        }
+    }
+
+    public FloatMatrix addToThis(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateMatricesDimensionAdd(this, matrices);
+        this.validateAddDestination(this, matrices);
+        return this.addAllInto(this, matrices);
+    }
+
+    public FloatMatrix add(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        FloatMatrix first = this.copy();
+        return first.addToThis(matrices);
+    }
+
+    public FloatMatrix addInto(FloatMatrix destination, FloatMatrix... matrices)
+            throws MatrixIllegalArgumentException {
+        FloatMatrix.validateMatricesDimensionAdd(this, matrices);
+        FloatMatrix.validateDestination(destination, this.numRows, this.numCols);
+        this.validateAddDestination(destination, matrices);
+        return this.addAllInto(destination, matrices);
+    }
+
+    private static void validateMatricesNonEmpty(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        if (matrices.length < 1) {
+            throw new MatrixIllegalArgumentException("Need at least one matrix");
+        }
+    }
+
+    public static FloatMatrix sum(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateMatricesNonEmpty(matrices);
+        FloatMatrix.validateMatricesNonNull(matrices[0]);
+        FloatMatrix result = FloatMatrix.wrap(new float[matrices[0].length], matrices[0].numRows,
+                matrices[0].numCols);
+        return result.addToThis(matrices);
+    }
+
+    public FloatMatrix multiplyToThis(float value) {
+        FloatMatrixKernels.multiply(this.numRows, this.numCols, this.array, this.offset, this.rowStride,
+                this.colStride, value);
+        return this;
+    }
+
+    public FloatMatrix multiply(float value) {
+        FloatMatrix result = this.copy();
+        return result.multiplyToThis(value);
+    }
+
+    private static void validateDimensionsProd(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+
+        FloatMatrix.validateMatricesNonEmpty(matrices);
+        FloatMatrix.validateMatricesNonNull(matrices);
+
+        int rightNumRows = matrices[matrices.length - 1].numRows;
+        for (int matrixIndex = matrices.length - 2; matrixIndex >= 0; matrixIndex--) {
+            int leftNumCols = matrices[matrixIndex].numCols;
+            if (leftNumCols != rightNumRows) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for taking product of matrices");
+            }
+            rightNumRows = matrices[matrixIndex].numRows;
+        }
+
+    }
+
+    // The chain is ordered by the same dynamic programme as Matrix.prod, which only depends on the dimensions
+    private static ProductPlan planProd(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateDimensionsProd(matrices);
+        int[] dimensions = new int[matrices.length + 1];
+        for (int matrixIndex = 0; matrixIndex < matrices.length; matrixIndex++) {
+            dimensions[matrixIndex] = matrices[matrixIndex].numRows;
+        }
+        dimensions[matrices.length] = matrices[matrices.length - 1].numCols;
+        return new ProductPlan(dimensions);
+    }
+
+    // When 'destination' is null the result is allocated, otherwise only the final product is written into it and
+    // the intermediate ones are still allocated
+    private static FloatMatrix prod(ForkJoinPool pool, ProductPlan plan, int first, int last, FloatMatrix destination,
+                                    FloatMatrix... matrices) {
+
+        if (first == last) {
+            return destination == null ? matrices[first] : matrices[first].copyInto(destination);
+        }
+
+        int split = plan.getSplit(first, last);
+        FloatMatrix left = FloatMatrix.prod(pool, plan, first, split, null, matrices);
+        FloatMatrix right = FloatMatrix.prod(pool, plan, split + 1, last, null, matrices);
+
+        FloatMatrix result;
+        if (destination == null) {
+            result = FloatMatrix.ofZeros(left.numRows, right.numCols);
+        } else {
+            result = destination;
+            FloatMatrixKernels.fill(result.numRows, result.numCols, result.array, result.offset, result.rowStride,
+                    result.colStride, 0);
+        }
+        FloatGemm.multiply(pool, left.numRows, right.numCols, left.numCols, 1,
+                left.array, left.offset, left.rowStride, left.colStride,
+                right.array, right.offset, right.rowStride, right.colStride,
+                result.array, result.offset, result.rowStride, result.colStride);
+        return result;
+    }
+
+    public static FloatMatrix prod(ForkJoinPool pool, FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        ProductPlan plan = FloatMatrix.planProd(matrices);
+        Matrix.validatePoolNonNull(pool);
+        return FloatMatrix.prod(pool, plan, 0, matrices.length - 1, null, matrices);
+    }
+
+    public static FloatMatrix prod(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+        return FloatMatrix.prod(ForkJoinPool.commonPool(), matrices);
+    }
+
+    // The product kernel reads its operands while writing the result, so 'destination' cannot be one of 'matrices'
+    // unless there is just one matrix to copy
+    public static FloatMatrix prodInto(ForkJoinPool pool, FloatMatrix destination, FloatMatrix... matrices)
+            throws MatrixIllegalArgumentException {
+        ProductPlan plan = FloatMatrix.planProd(matrices);
+        Matrix.validatePoolNonNull(pool);
+        FloatMatrix.validateDestination(destination, matrices[0].numRows, matrices[matrices.length - 1].numCols);
+        if (matrices.length > 1) {
+            FloatMatrix.validateDestinationNotOperand(destination, matrices);
+        }
+        return FloatMatrix.prod(pool, plan, 0, matrices.length - 1, destination, matrices);
+    }
+
+    public static FloatMatrix prodInto(FloatMatrix destination, FloatMatrix... matrices)
+            throws MatrixIllegalArgumentException {
+        return FloatMatrix.prodInto(ForkJoinPool.commonPool(), destination, matrices);
+    }
+
+    public FloatMatrix multiply(ForkJoinPool pool, FloatMatrix matrix) throws MatrixIllegalArgumentException {
+        return FloatMatrix.prod(pool, this, matrix);
+    }
+
+    public FloatMatrix multiply(FloatMatrix matrix) throws MatrixIllegalArgumentException {
+        return FloatMatrix.prod(this, matrix);
+    }
+
+    public FloatMatrix multiplyLeft(ForkJoinPool pool, FloatMatrix matrix) throws MatrixIllegalArgumentException {
+        return FloatMatrix.prod(pool, matrix, this);
+    }
+
+    public FloatMatrix multiplyLeft(FloatMatrix matrix) throws MatrixIllegalArgumentException {
+        return FloatMatrix.prod(matrix, this);
+    }
+
+    public static FloatMatrix horizontalConcatenate(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+
+        FloatMatrix.validateMatricesNonEmpty(matrices);
+        FloatMatrix.validateMatricesNonNull(matrices[0]);
+        int numRows = matrices[0].numRows;
+        long numCols = 0;
+        for (FloatMatrix matrix : matrices) {
+            FloatMatrix.validateMatricesNonNull(matrix);
+            if (numRows != matrix.numRows) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for 'numRows'");
+            }
+            numCols += matrix.numCols;
+        }
+        Matrix.validateLength(numRows, numCols);
+
+        FloatMatrix result = FloatMatrix.create(numRows, (int) numCols);
+        int runningNumCols = 0;
+        for (FloatMatrix matrix: matrices) {
+            FloatMatrixKernels.copy(numRows, matrix.numCols, matrix.array, matrix.offset, matrix.rowStride,
+                    matrix.colStride, result.array, runningNumCols, result.numCols, 1);
+            runningNumCols += matrix.numCols;
+        }
+        return result;
+
+    }
+
+    public static FloatMatrix verticalConcatenate(FloatMatrix... matrices) throws MatrixIllegalArgumentException {
+
+        FloatMatrix.validateMatricesNonEmpty(matrices);
+        FloatMatrix.validateMatricesNonNull(matrices[0]);
+        long numRows = 0;
+        int numCols = matrices[0].numCols;
+        for (FloatMatrix matrix : matrices) {
+            FloatMatrix.validateMatricesNonNull(matrix);
+            if (numCols != matrix.numCols) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for 'numCols'");
+            }
+            numRows += matrix.numRows;
+        }
+        Matrix.validateLength(numRows, numCols);
+
+        FloatMatrix result = FloatMatrix.create((int) numRows, numCols);
+        int runningLength = 0;
+        for (FloatMatrix matrix: matrices) {
+            FloatMatrixKernels.copy(matrix.numRows, numCols, matrix.array, matrix.offset, matrix.rowStride,
+                    matrix.colStride, result.array, runningLength, result.numCols, 1);
+            runningLength += matrix.length;
+        }
+        return result;
+
+    }
+
+    public FloatMatrix transpose() {
+        FloatMatrix result = FloatMatrix.wrap(new float[this.length], this.numCols, this.numRows);
+        return this.transposeTo(result);
+    }
+
+    private FloatMatrix transposeTo(FloatMatrix result) {
+        FloatMatrixKernels.transpose(this.numRows, this.numCols, this.array, this.offset, this.rowStride,
+                this.colStride, result.array, result.offset, result.rowStride, result.colStride);
+        return result;
+    }
+
+    public FloatMatrix transposeToThis() throws MatrixIllegalArgumentException {
+        if (!this.isSquare()) {
+            throw new MatrixIllegalArgumentException("Matrix is not square");
+        }
+        FloatMatrixKernels.transposeSquare(this.numRows, this.array, this.offset, this.rowStride, this.colStride);
+        return this;
+    }
+
+    // Swaps the strides instead of moving any element, as Matrix.transposeView
+    public FloatMatrix transposeView() {
+        return new FloatMatrix(this.array, this.offset, this.numCols, this.numRows, this.colStride, this.rowStride);
+    }
+
+    public FloatMatrix transposeInto(FloatMatrix destination) throws MatrixIllegalArgumentException {
+        FloatMatrix.validateDestination(destination, this.numCols, this.numRows);
+        FloatMatrix.validateDestinationNotOperand(destination, this);
+        return this.transposeTo(destination);
+    }
+
+    public FloatMatrix reshape(int numRows, int numCols) {
+        return FloatMatrix.wrap(this.getArray(), numRows, numCols);
+    }
+
+    public FloatMatrix reshapeView(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        if (!this.isContiguous()) {
+            throw new MatrixIllegalArgumentException("Only a contiguous matrix can be reshaped without copying");
+        }
+        if (numRows <= 0 || numCols <= 0 || (long) numRows * numCols != this.length) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'numRows' * 'numCols' (%d) does not match the length of the matrix (%d)",
+                    (long) numRows * numCols, this.length));
+        }
+        return new FloatMatrix(this.array, this.offset, numRows, numCols, numCols, 1);
+    }
+
+    public double sum() {
+        return FloatMatrixKernels.sum(this.numRows, this.numCols, this.array, this.offset, this.rowStride,
+                this.colStride);
+    }
+
+    public FloatMatrix sum(int axis) throws MatrixIllegalArgumentException {
+
+        if (axis != 0 && axis != 1) {
+            throw new MatrixIllegalArgumentException(String.format("'axis' (%d) has to be 0 or 1", axis));
+        }
+
+        if (axis == 0) {
+            double[] sums = new double[this.numCols];
+            FloatMatrixKernels.sumOverRows(this.numRows, this.numCols, this.array, this.offset, this.rowStride,
+                    this.colStride, sums);
+            float[] result = new float[this.numCols];
+            for (int colIndex = 0; colIndex < this.numCols; colIndex++) {
+                result[colIndex] = (float) sums[colIndex];
+            }
+            return FloatMatrix.wrap(result, 1, this.numCols);
+        }
+        float[] result = new float[this.numRows];
+        FloatMatrixKernels.sumOverCols(this.numRows, this.numCols, this.array, this.offset, this.rowStride,
+                this.colStride, result);
+        return FloatMatrix.wrap(result, this.numRows, 1);
+    }
+
+    public boolean isSquare() {
+        return this.numRows == this.numCols;
+    }
+
+    public double maxDifference(FloatMatrix other) {
+        return FloatMatrixKernels.maxAbsDifference(this.numRows, this.numCols,
+                this.array, this.offset, this.rowStride, this.colStride,
+                other.array, other.offset, other.rowStride, other.colStride);
+    }
+
+    public boolean equalsMaxWithinTolerance(FloatMatrix other, double tolerance) {
+        FloatMatrix.validateMatricesNonNull(other);
+        if (this.numRows != other.numRows || this.numCols != other.numCols) {
+            return false;
+        }
+        return this.maxDifference(other) < tolerance;
+    }
+
+    public boolean equalsWithinTolerance(FloatMatrix other) {
+        return this.equalsMaxWithinTolerance(other, FloatMatrix.MAX_TOLERANCE);
+    }
+
+    public FloatMatrix getBlock(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
+            throws MatrixIllegalArgumentException {
+        return this.getBlockView(rowStartIndex, rowEndIndex, colStartIndex, colEndIndex).copy();
+    }
+
+    public FloatMatrix getBlockView(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
+            throws MatrixIllegalArgumentException {
+
+        if (
+                rowStartIndex < 0 || colStartIndex < 0 ||
+                rowEndIndex >= this.numRows || colEndIndex >= this.numCols ||
+                rowEndIndex < rowStartIndex || colEndIndex < colStartIndex
+        ) {
+            throw new MatrixIllegalArgumentException("Invalid indexes");
+        }
+
+        return new FloatMatrix(this.array, this.getArrayIndex(rowStartIndex, colStartIndex),
+                rowEndIndex - rowStartIndex + 1, colEndIndex - colStartIndex + 1, this.rowStride, this.colStride);
+    }
+
+}
@@ -0,0 +1,536 @@
+package agent.smith;
+
+
+// Loops behind the element-wise operations of FloatMatrix: the same kernels as MatrixKernels, with the same
+// addressing and range checks, over float[]. A float is half the size of a double, so the same loops move half the
+// bytes and the JIT packs twice as many lanes into a vector register.
+//
+// Reductions accumulate in double, as a float accumulator loses all the digits of small elements once the sum is
+// about 2^24 times bigger than them. Converting a float to a double is exact and cheap next to loading it.
+
+final class FloatMatrixKernels {
+
+    private static final int CHUNK_LENGTH = 512;
+    private static final int LANES = MatrixKernels.LANES;
+    private static final int TRANSPOSE_BLOCK_LENGTH = 16;
+
+    private FloatMatrixKernels() {
+    }
+
+    static void checkRange(float[] array, int offset, int stride, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (offset < 0 || stride < 0 || (long) offset + (long) (length - 1) * stride >= array.length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Range (offset = %d, stride = %d, length = %d) is outside of an array of length %d",
+                    offset, stride, length, array.length));
+        }
+    }
+
+    static void checkRange(float[] array, int offset, int numRows, int numCols, int rowStride, int colStride) {
+        if (numRows == 0 || numCols == 0) {
+            return;
+        }
+        if (offset < 0 || rowStride < 0 || colStride < 0 ||
+                (long) offset + (long) (numRows - 1) * rowStride + (long) (numCols - 1) * colStride >= array.length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Block (offset = %d, numRows = %d, numCols = %d, rowStride = %d, colStride = %d) is outside of " +
+                            "an array of length %d", offset, numRows, numCols, rowStride, colStride, array.length));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // fill / add / multiply by a scalar
+
+    static void fill(float[] array, int offset, int stride, int length, float value) {
+        FloatMatrixKernels.checkRange(array, offset, stride, length);
+        FloatMatrixKernels.fillUnchecked(array, offset, stride, length, value);
+    }
+
+    static void fill(int numRows, int numCols, float[] array, int offset, int rowStride, int colStride, float value) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            FloatMatrixKernels.fillUnchecked(array, offset, 1, numRows * numCols, value);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                FloatMatrixKernels.fillUnchecked(array, offset + rowIndex * rowStride, colStride, numCols, value);
+            }
+        }
+    }
+
+    private static void fillUnchecked(float[] array, int offset, int stride, int length, float value) {
+        if (stride == 1) {
+            for (int index = offset, end = offset + length; index < end; index++) {
+                array[index] = value;
+            }
+        } else {
+            for (int index = 0; index < length; index++) {
+                array[offset + index * stride] = value;
+            }
+        }
+    }
+
+    static void add(int numRows, int numCols, float[] array, int offset, int rowStride, int colStride, float value) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            FloatMatrixKernels.addUnchecked(array, offset, 1, numRows * numCols, value);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                FloatMatrixKernels.addUnchecked(array, offset + rowIndex * rowStride, colStride, numCols, value);
+            }
+        }
+    }
+
+    private static void addUnchecked(float[] array, int offset, int stride, int length, float value) {
+        if (stride == 1) {
+            for (int index = offset, end = offset + length; index < end; index++) {
+                array[index] += value;
+            }
+        } else {
+            for (int index = 0; index < length; index++) {
+                array[offset + index * stride] += value;
+            }
+        }
+    }
+
+    static void multiply(int numRows, int numCols, float[] array, int offset, int rowStride, int colStride,
+                         float value) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            FloatMatrixKernels.multiplyUnchecked(array, offset, 1, numRows * numCols, value);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                FloatMatrixKernels.multiplyUnchecked(array, offset + rowIndex * rowStride, colStride, numCols,
+                        value);
+            }
+        }
+    }
+
+    private static void multiplyUnchecked(float[] array, int offset, int stride, int length, float value) {
+        if (stride == 1) {
+            for (int index = offset, end = offset + length; index < end; index++) {
+                array[index] *= value;
+            }
+        } else {
+            for (int index = 0; index < length; index++) {
+                array[offset + index * stride] *= value;
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // copy and conversion
+
+    static void copy(float[] source, int sourceOffset, int sourceStride,
+                     float[] destination, int destinationOffset, int destinationStride, int length) {
+        FloatMatrixKernels.checkRange(source, sourceOffset, sourceStride, length);
+        FloatMatrixKernels.checkRange(destination, destinationOffset, destinationStride, length);
+        FloatMatrixKernels.copyUnchecked(source, sourceOffset, sourceStride, destination, destinationOffset,
+                destinationStride, length);
+    }
+
+    private static void copyUnchecked(float[] source, int sourceOffset, int sourceStride,
+                                      float[] destination, int destinationOffset, int destinationStride,
+                                      int length) {
+        if (sourceStride == 1 && destinationStride == 1) {
+            System.arraycopy(source, sourceOffset, destination, destinationOffset, length);
+        } else {
+            for (int index = 0; index < length; index++) {
+                destination[destinationOffset + index * destinationStride] = source[sourceOffset + index * sourceStride];
+            }
+        }
+    }
+
+    static void copy(int numRows, int numCols,
+                     float[] source, int sourceOffset, int sourceRowStride, int sourceColStride,
+                     float[] destination, int destinationOffset, int destinationRowStride, int destinationColStride) {
+
+        FloatMatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        FloatMatrixKernels.checkRange(destination, destinationOffset, numRows, numCols, destinationRowStride,
+                destinationColStride);
+
+        if (MatrixKernels.isContiguous(numRows, numCols, sourceRowStride, sourceColStride) &&
+                MatrixKernels.isContiguous(numRows, numCols, destinationRowStride, destinationColStride)) {
+            System.arraycopy(source, sourceOffset, destination, destinationOffset, numRows * numCols);
+        } else if ((sourceColStride > sourceRowStride) != (destinationColStride > destinationRowStride)) {
+            // The two sides are laid out in opposite orders, which is a transpose in disguise
+            FloatMatrixKernels.transposeUnchecked(numRows, numCols,
+                    source, sourceOffset, sourceRowStride, sourceColStride,
+                    destination, destinationOffset, destinationColStride, destinationRowStride);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                FloatMatrixKernels.copyUnchecked(source, sourceOffset + rowIndex * sourceRowStride, sourceColStride,
+                        destination, destinationOffset + rowIndex * destinationRowStride, destinationColStride,
+                        numCols);
+            }
+        }
+    }
+
+    // destination = source rounded to the nearest float, into a row-major destination
+    static void toFloat(int numRows, int numCols, double[] source, int sourceOffset, int sourceRowStride,
+                        int sourceColStride, float[] destination) {
+        MatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        FloatMatrixKernels.checkRange(destination, 0, numRows, numCols, numCols, 1);
+        if (MatrixKernels.isContiguous(numRows, numCols, sourceRowStride, sourceColStride)) {
+            for (int index = 0, length = numRows * numCols; index < length; index++) {
+                destination[index] = (float) source[sourceOffset + index];
+            }
+            return;
+        }
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int sourceRow = sourceOffset + rowIndex * sourceRowStride;
+            int destinationRow = rowIndex * numCols;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                destination[destinationRow + colIndex] = (float) source[sourceRow + colIndex * sourceColStride];
+            }
+        }
+    }
+
+    // destination = source, exactly, into a row-major destination
+    static void toDouble(int numRows, int numCols, float[] source, int sourceOffset, int sourceRowStride,
+                         int sourceColStride, double[] destination) {
+        FloatMatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        MatrixKernels.checkRange(destination, 0, numRows, numCols, numCols, 1);
+        if (MatrixKernels.isContiguous(numRows, numCols, sourceRowStride, sourceColStride)) {
+            for (int index = 0, length = numRows * numCols; index < length; index++) {
+                destination[index] = source[sourceOffset + index];
+            }
+            return;
+        }
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int sourceRow = sourceOffset + rowIndex * sourceRowStride;
+            int destinationRow = rowIndex * numCols;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                destination[destinationRow + colIndex] = source[sourceRow + colIndex * sourceColStride];
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // transpose, as in MatrixKernels
+
+    static void transpose(int numRows, int numCols,
+                          float[] source, int sourceOffset, int sourceRowStride, int sourceColStride,
+                          float[] destination, int destinationOffset, int destinationRowStride,
+                          int destinationColStride) {
+
+        FloatMatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        FloatMatrixKernels.checkRange(destination, destinationOffset, numCols, numRows, destinationRowStride,
+                destinationColStride);
+
+        FloatMatrixKernels.transposeUnchecked(numRows, numCols, source, sourceOffset, sourceRowStride,
+                sourceColStride, destination, destinationOffset, destinationRowStride, destinationColStride);
+    }
+
+    private static void transposeUnchecked(int numRows, int numCols,
+                                           float[] source, int sourceOffset, int sourceRowStride,
+                                           int sourceColStride,
+                                           float[] destination, int destinationOffset, int destinationRowStride,
+                                           int destinationColStride) {
+
+        if (numRows <= TRANSPOSE_BLOCK_LENGTH && numCols <= TRANSPOSE_BLOCK_LENGTH) {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                int sourceRow = sourceOffset + rowIndex * sourceRowStride;
+                int destinationCol = destinationOffset + rowIndex * destinationColStride;
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    destination[destinationCol + colIndex * destinationRowStride] =
+                            source[sourceRow + colIndex * sourceColStride];
+                }
+            }
+        } else if (numRows >= numCols) {
+            int half = numRows / 2;
+            FloatMatrixKernels.transposeUnchecked(half, numCols, source, sourceOffset, sourceRowStride,
+                    sourceColStride, destination, destinationOffset, destinationRowStride, destinationColStride);
+            FloatMatrixKernels.transposeUnchecked(numRows - half, numCols,
+                    source, sourceOffset + half * sourceRowStride, sourceRowStride, sourceColStride,
+                    destination, destinationOffset + half * destinationColStride, destinationRowStride,
+                    destinationColStride);
+        } else {
+            int half = numCols / 2;
+            FloatMatrixKernels.transposeUnchecked(numRows, half, source, sourceOffset, sourceRowStride,
+                    sourceColStride, destination, destinationOffset, destinationRowStride, destinationColStride);
+            FloatMatrixKernels.transposeUnchecked(numRows, numCols - half,
+                    source, sourceOffset + half * sourceColStride, sourceRowStride, sourceColStride,
+                    destination, destinationOffset + half * destinationRowStride, destinationRowStride,
+                    destinationColStride);
+        }
+    }
+
+    static void transposeSquare(int numRowsAndCols, float[] array, int offset, int rowStride, int colStride) {
+        FloatMatrixKernels.checkRange(array, offset, numRowsAndCols, numRowsAndCols, rowStride, colStride);
+        FloatMatrixKernels.transposeSquareUnchecked(numRowsAndCols, array, offset, rowStride, colStride);
+    }
+
+    private static void transposeSquareUnchecked(int numRowsAndCols, float[] array, int offset, int rowStride,
+                                                 int colStride) {
+        if (numRowsAndCols <= TRANSPOSE_BLOCK_LENGTH) {
+            for (int rowIndex = 1; rowIndex < numRowsAndCols; rowIndex++) {
+                for (int colIndex = 0; colIndex < rowIndex; colIndex++) {
+                    int index = offset + rowIndex * rowStride + colIndex * colStride;
+                    int otherIndex = offset + colIndex * rowStride + rowIndex * colStride;
+                    float value = array[index];
+                    array[index] = array[otherIndex];
+                    array[otherIndex] = value;
+                }
+            }
+            return;
+        }
+        int half = numRowsAndCols / 2;
+        int lowerOffset = offset + half * rowStride;
+        int upperOffset = offset + half * colStride;
+        FloatMatrixKernels.transposeSquareUnchecked(half, array, offset, rowStride, colStride);
+        FloatMatrixKernels.transposeSquareUnchecked(numRowsAndCols - half, array, lowerOffset + half * colStride,
+                rowStride, colStride);
+        FloatMatrixKernels.swapTransposedUnchecked(numRowsAndCols - half, half, array, lowerOffset, upperOffset,
+                rowStride, colStride);
+    }
+
+    private static void swapTransposedUnchecked(int numRows, int numCols, float[] array, int offset, int otherOffset,
+                                                int rowStride, int colStride) {
+        if (numRows <= TRANSPOSE_BLOCK_LENGTH && numCols <= TRANSPOSE_BLOCK_LENGTH) {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    int index = offset + rowIndex * rowStride + colIndex * colStride;
+                    int otherIndex = otherOffset + colIndex * rowStride + rowIndex * colStride;
+                    float value = array[index];
+                    array[index] = array[otherIndex];
+                    array[otherIndex] = value;
+                }
+            }
+        } else if (numRows >= numCols) {
+            int half = numRows / 2;
+            FloatMatrixKernels.swapTransposedUnchecked(half, numCols, array, offset, otherOffset, rowStride,
+                    colStride);
+            FloatMatrixKernels.swapTransposedUnchecked(numRows - half, numCols, array, offset + half * rowStride,
+                    otherOffset + half * colStride, rowStride, colStride);
+        } else {
+            int half = numCols / 2;
+            FloatMatrixKernels.swapTransposedUnchecked(numRows, half, array, offset, otherOffset, rowStride,
+                    colStride);
+            FloatMatrixKernels.swapTransposedUnchecked(numRows, numCols - half, array, offset + half * colStride,
+                    otherOffset + half * rowStride, rowStride, colStride);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // addAll, as in MatrixKernels: each destination element receives base + (0 + s_0 + s_1 + ...), rounded to float
+    // after every addition
+
+    static void addAll(int numRows, int numCols,
+                       float[] destination, int destinationOffset, int destinationRowStride, int destinationColStride,
+                       float[] base, int baseOffset, int baseRowStride, int baseColStride,
+                       float[][] sources, int[] sourceOffsets, int[] sourceRowStrides, int[] sourceColStrides) {
+
+        FloatMatrixKernels.checkRange(destination, destinationOffset, numRows, numCols, destinationRowStride,
+                destinationColStride);
+        FloatMatrixKernels.checkRange(base, baseOffset, numRows, numCols, baseRowStride, baseColStride);
+        boolean contiguous = MatrixKernels.isContiguous(numRows, numCols, destinationRowStride, destinationColStride)
+                && MatrixKernels.isContiguous(numRows, numCols, baseRowStride, baseColStride);
+        for (int sourceIndex = 0; sourceIndex < sources.length; sourceIndex++) {
+            FloatMatrixKernels.checkRange(sources[sourceIndex], sourceOffsets[sourceIndex], numRows, numCols,
+                    sourceRowStrides[sourceIndex], sourceColStrides[sourceIndex]);
+            contiguous &= MatrixKernels.isContiguous(numRows, numCols, sourceRowStrides[sourceIndex],
+                    sourceColStrides[sourceIndex]);
+        }
+
+        if (contiguous) {
+            int length = numRows * numCols;
+            float[] chunk = new float[Math.min(CHUNK_LENGTH, length)];
+            FloatMatrixKernels.addAllUnchecked(length, destination, destinationOffset, 1,
+                    base, baseOffset, 1, sources, sourceOffsets, 0, null, null, chunk);
+        } else {
+            // One chunk for all the rows
+            float[] chunk = new float[Math.min(CHUNK_LENGTH, numCols)];
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                FloatMatrixKernels.addAllUnchecked(numCols,
+                        destination, destinationOffset + rowIndex * destinationRowStride, destinationColStride,
+                        base, baseOffset + rowIndex * baseRowStride, baseColStride,
+                        sources, sourceOffsets, rowIndex, sourceRowStrides, sourceColStrides, chunk);
+            }
+        }
+    }
+
+    private static void addAllUnchecked(int length,
+                                        float[] destination, int destinationOffset, int destinationStride,
+                                        float[] base, int baseOffset, int baseStride,
+                                        float[][] sources, int[] sourceOffsets, int rowIndex,
+                                        int[] sourceRowStrides, int[] sourceColStrides, float[] chunk) {
+
+        for (int chunkStart = 0; chunkStart < length; chunkStart += CHUNK_LENGTH) {
+            int chunkLength = Math.min(CHUNK_LENGTH, length - chunkStart);
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] = 0;
+            }
+            for (int sourceIndex = 0; sourceIndex < sources.length; sourceIndex++) {
+                float[] source = sources[sourceIndex];
+                if (sourceRowStrides == null) {
+                    int sourceOffset = sourceOffsets[sourceIndex] + chunkStart;
+                    for (int index = 0; index < chunkLength; index++) {
+                        chunk[index] += source[sourceOffset + index];
+                    }
+                } else {
+                    int sourceStride = sourceColStrides[sourceIndex];
+                    int sourceOffset = sourceOffsets[sourceIndex] + rowIndex * sourceRowStrides[sourceIndex] +
+                            chunkStart * sourceStride;
+                    for (int index = 0; index < chunkLength; index++) {
+                        chunk[index] += source[sourceOffset + index * sourceStride];
+                    }
+                }
+            }
+            int destinationChunk = destinationOffset + chunkStart * destinationStride;
+            int baseChunk = baseOffset + chunkStart * baseStride;
+            if (destinationStride == 1 && baseStride == 1) {
+                for (int index = 0; index < chunkLength; index++) {
+                    destination[destinationChunk + index] = base[baseChunk + index] + chunk[index];
+                }
+            } else {
+                for (int index = 0; index < chunkLength; index++) {
+                    destination[destinationChunk + index * destinationStride] =
+                            base[baseChunk + index * baseStride] + chunk[index];
+                }
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Reductions, in double
+
+    // Element k of the row-major order goes into accumulator k % LANES, as in MatrixKernels.sum
+    static double sum(int numRows, int numCols, float[] array, int offset, int rowStride, int colStride) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            return FloatMatrixKernels.sumUnchecked(array, offset, 1, numRows * numCols);
+        }
+        double[] lanes = new double[LANES];
+        int lane = 0;
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                lanes[lane] += array[row + colIndex * colStride];
+                lane = (lane + 1) & (LANES - 1);
+            }
+        }
+        return (lanes[0] + lanes[1]) + (lanes[2] + lanes[3]);
+    }
+
+    private static double sumUnchecked(float[] array, int offset, int stride, int length) {
+        double value0 = 0;
+        double value1 = 0;
+        double value2 = 0;
+        double value3 = 0;
+        int unrolledLength = length & -LANES;
+        int index = 0;
+        if (stride == 1) {
+            for (int position = offset; index < unrolledLength; index += LANES, position += LANES) {
+                value0 += array[position];
+                value1 += array[position + 1];
+                value2 += array[position + 2];
+                value3 += array[position + 3];
+            }
+        } else {
+            for (int position = offset; index < unrolledLength; index += LANES, position += LANES * stride) {
+                value0 += array[position];
+                value1 += array[position + stride];
+                value2 += array[position + 2 * stride];
+                value3 += array[position + 3 * stride];
+            }
+        }
+        int position = offset + index * stride;
+        if (index < length) {
+            value0 += array[position];
+        }
+        if (index + 1 < length) {
+            value1 += array[position + stride];
+        }
+        if (index + 2 < length) {
+            value2 += array[position + 2 * stride];
+        }
+        return (value0 + value1) + (value2 + value3);
+    }
+
+    // destination[colIndex] = sum over the rows of the block, accumulated row after row as in MatrixKernels
+    static void sumOverRows(int numRows, int numCols, float[] source, int sourceOffset, int sourceRowStride,
+                            int sourceColStride, double[] destination) {
+
+        FloatMatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        MatrixKernels.checkRange(destination, 0, 1, numCols);
+
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int sourceRow = sourceOffset + rowIndex * sourceRowStride;
+            if (sourceColStride == 1) {
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    destination[colIndex] += source[sourceRow + colIndex];
+                }
+            } else {
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    destination[colIndex] += source[sourceRow + colIndex * sourceColStride];
+                }
+            }
+        }
+    }
+
+    // destination[rowIndex] = sum over the columns of the block
+    static void sumOverCols(int numRows, int numCols, float[] source, int sourceOffset, int sourceRowStride,
+                            int sourceColStride, float[] destination) {
+
+        FloatMatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        FloatMatrixKernels.checkRange(destination, 0, 1, numRows);
+
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            destination[rowIndex] = (float) FloatMatrixKernels.sumUnchecked(source,
+                    sourceOffset + rowIndex * sourceRowStride, sourceColStride, numCols);
+        }
+    }
+
+    static double maxAbsDifference(int numRows, int numCols,
+                                   float[] array, int offset, int rowStride, int colStride,
+                                   float[] other, int otherOffset, int otherRowStride, int otherColStride) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        FloatMatrixKernels.checkRange(other, otherOffset, numRows, numCols, otherRowStride, otherColStride);
+        float value = Float.MIN_VALUE;
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            int otherRow = otherOffset + rowIndex * otherRowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                value = Math.max(value,
+                        Math.abs(array[row + colIndex * colStride] - other[otherRow + colIndex * otherColStride]));
+            }
+        }
+        return value;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // equals / hashCode, with the semantics of Arrays.equals and Arrays.hashCode over the elements in row-major order
+
+    static boolean equals(int numRows, int numCols,
+                          float[] array, int offset, int rowStride, int colStride,
+                          float[] other, int otherOffset, int otherRowStride, int otherColStride) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        FloatMatrixKernels.checkRange(other, otherOffset, numRows, numCols, otherRowStride, otherColStride);
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            int otherRow = otherOffset + rowIndex * otherRowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                if (Float.floatToIntBits(array[row + colIndex * colStride]) !=
+                        Float.floatToIntBits(other[otherRow + colIndex * otherColStride])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static int hashCode(int numRows, int numCols, float[] array, int offset, int rowStride, int colStride) {
+        FloatMatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        int result = 1;
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                result = 31 * result + Float.floatToIntBits(array[row + colIndex * colStride]);
+            }
+        }
+        return result;
+    }
+
+}
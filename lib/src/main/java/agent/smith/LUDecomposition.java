@@ -0,0 +1,293 @@
+package agent.smith;
+
+import java.util.concurrent.ForkJoinPool;
+
+
+// Blocked right-looking LU decomposition with partial pivoting P * A = L * U of a square matrix, following LAPACK's
+// dgetrf:
+// http://www.netlib.org/lapack/explore-html/dd/d9a/group__double_g_ecomputational_ga0019443faea08275ca60a734d0593e60.html
+//
+// The factorization works in place on a single row-major copy of A. On exit the upper triangle holds U and the part
+// below the diagonal holds L (with an implicit 1 on the diagonal), row i of P * A being row pivot[i] of A. Columns are
+// processed in panels of BLOCK_SIZE: a panel is factorized column by column, swapping whole rows, then the rows of U to
+// its right are found with a triangular solve and the trailing matrix gets A22 -= L21 * U12 through Gemm, which is
+// where almost all of the 2/3 n^3 floating point operations are spent.
+//
+// A zero pivot does not stop the factorization, as in dgetrf: the column is left as it is and the matrix is reported
+// as singular, so that determinant() is 0 and solve() and inverse() throw.
+
+public final class LUDecomposition {
+
+    static final int BLOCK_SIZE = 64;
+
+    private final double[] lu;
+    private final int[] pivot;
+    private final int numRowsAndCols;
+    private final ForkJoinPool pool;
+    private int pivotSign;
+    private boolean singular;
+
+    LUDecomposition(ForkJoinPool pool, Matrix matrix) {
+
+        this.pool = pool;
+        this.numRowsAndCols = matrix.getNumRows();
+        this.lu = matrix.getArray();
+        this.pivot = new int[this.numRowsAndCols];
+        for (int index = 0; index < this.numRowsAndCols; index++) {
+            this.pivot[index] = index;
+        }
+        this.pivotSign = 1;
+
+        int n = this.numRowsAndCols;
+        for (int panelStart = 0; panelStart < n; panelStart += BLOCK_SIZE) {
+            int panelSize = Math.min(BLOCK_SIZE, n - panelStart);
+            int trailingStart = panelStart + panelSize;
+
+            this.factorizePanel(panelStart, panelSize);
+
+            if (trailingStart < n) {
+                // U12 = L11^-1 * A12
+                LUDecomposition.solveUnitLower(this.lu, panelStart * n + panelStart, n, panelSize,
+                        this.lu, panelStart * n + trailingStart, n, n - trailingStart);
+                // A22 = A22 - L21 * U12
+                Gemm.multiply(this.pool, n - trailingStart, n - trailingStart, panelSize, -1,
+                        this.lu, trailingStart * n + panelStart, n, 1,
+                        this.lu, panelStart * n + trailingStart, n, 1,
+                        this.lu, trailingStart * n + trailingStart, n, 1);
+            }
+        }
+    }
+
+    // Unblocked factorization of the columns [panelStart, panelStart + panelSize) over all the rows below panelStart.
+    // Rows are swapped over their whole length, which also applies the interchanges to L on the left and to the
+    // trailing columns on the right
+    private void factorizePanel(int panelStart, int panelSize) {
+
+        int n = this.numRowsAndCols;
+        int panelEnd = panelStart + panelSize;
+
+        for (int index = panelStart; index < panelEnd; index++) {
+
+            int pivotRow = index;
+            double pivotValue = Math.abs(this.lu[index * n + index]);
+            for (int rowIndex = index + 1; rowIndex < n; rowIndex++) {
+                double value = Math.abs(this.lu[rowIndex * n + index]);
+                if (value > pivotValue) {
+                    pivotValue = value;
+                    pivotRow = rowIndex;
+                }
+            }
+            if (pivotRow != index) {
+                this.swapRows(index, pivotRow);
+            }
+
+            double diagonal = this.lu[index * n + index];
+            if (diagonal == 0) {
+                this.singular = true;
+                continue;
+            }
+
+            // Column of L, then rank-one update of the rest of the panel. Rows are walked in storage order so the
+            // inner loop runs over contiguous memory
+            int colStart = index + 1;
+            int numPanelCols = panelEnd - colStart;
+            int pivotRowStart = index * n + colStart;
+            for (int rowIndex = index + 1; rowIndex < n; rowIndex++) {
+                int row = rowIndex * n;
+                double factor = this.lu[row + index] / diagonal;
+                this.lu[row + index] = factor;
+                if (factor == 0) {
+                    continue;
+                }
+                for (int col = 0; col < numPanelCols; col++) {
+                    this.lu[row + colStart + col] -= factor * this.lu[pivotRowStart + col];
+                }
+            }
+        }
+    }
+
+    private void swapRows(int rowIndex, int otherRowIndex) {
+        int n = this.numRowsAndCols;
+        int row = rowIndex * n;
+        int otherRow = otherRowIndex * n;
+        for (int col = 0; col < n; col++) {
+            double value = this.lu[row + col];
+            this.lu[row + col] = this.lu[otherRow + col];
+            this.lu[otherRow + col] = value;
+        }
+        int index = this.pivot[rowIndex];
+        this.pivot[rowIndex] = this.pivot[otherRowIndex];
+        this.pivot[otherRowIndex] = index;
+        this.pivotSign = -this.pivotSign;
+    }
+
+    // B := L^-1 * B for the size x size unit lower triangle of 'l' starting at lOffset and the size x numCols block of
+    // 'b' starting at bOffset, both row-major. Each row of B only depends on the rows above it
+    private static void solveUnitLower(double[] l, int lOffset, int lRowStride, int size,
+                                       double[] b, int bOffset, int bRowStride, int numCols) {
+        for (int rowIndex = 1; rowIndex < size; rowIndex++) {
+            int row = bOffset + rowIndex * bRowStride;
+            for (int index = 0; index < rowIndex; index++) {
+                double factor = l[lOffset + rowIndex * lRowStride + index];
+                if (factor == 0) {
+                    continue;
+                }
+                int other = bOffset + index * bRowStride;
+                for (int col = 0; col < numCols; col++) {
+                    b[row + col] -= factor * b[other + col];
+                }
+            }
+        }
+    }
+
+    // B := U^-1 * B, as solveUnitLower from the bottom row up with the diagonal of U
+    private static void solveUpper(double[] u, int uOffset, int uRowStride, int size,
+                                   double[] b, int bOffset, int bRowStride, int numCols) {
+        for (int rowIndex = size - 1; rowIndex >= 0; rowIndex--) {
+            int row = bOffset + rowIndex * bRowStride;
+            for (int index = rowIndex + 1; index < size; index++) {
+                double factor = u[uOffset + rowIndex * uRowStride + index];
+                if (factor == 0) {
+                    continue;
+                }
+                int other = bOffset + index * bRowStride;
+                for (int col = 0; col < numCols; col++) {
+                    b[row + col] -= factor * b[other + col];
+                }
+            }
+            double diagonal = u[uOffset + rowIndex * uRowStride + rowIndex];
+            for (int col = 0; col < numCols; col++) {
+                b[row + col] /= diagonal;
+            }
+        }
+    }
+
+    // X := A^-1 * X for the n x numCols row-major 'x' already permuted by P, i.e. L * U * X = P * B. Both triangular
+    // solves go block row by block row, the rows solved so far being eliminated from the ones left with Gemm
+    private void solveInPlace(double[] x, int numCols) {
+
+        int n = this.numRowsAndCols;
+        for (int blockStart = 0; blockStart < n; blockStart += BLOCK_SIZE) {
+            int blockSize = Math.min(BLOCK_SIZE, n - blockStart);
+            int blockEnd = blockStart + blockSize;
+            LUDecomposition.solveUnitLower(this.lu, blockStart * n + blockStart, n, blockSize,
+                    x, blockStart * numCols, numCols, numCols);
+            if (blockEnd < n) {
+                Gemm.multiply(this.pool, n - blockEnd, numCols, blockSize, -1,
+                        this.lu, blockEnd * n + blockStart, n, 1,
+                        x, blockStart * numCols, numCols, 1,
+                        x, blockEnd * numCols, numCols, 1);
+            }
+        }
+
+        int numBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int block = numBlocks - 1; block >= 0; block--) {
+            int blockStart = block * BLOCK_SIZE;
+            int blockSize = Math.min(BLOCK_SIZE, n - blockStart);
+            LUDecomposition.solveUpper(this.lu, blockStart * n + blockStart, n, blockSize,
+                    x, blockStart * numCols, numCols, numCols);
+            if (blockStart > 0) {
+                Gemm.multiply(this.pool, blockStart, numCols, blockSize, -1,
+                        this.lu, blockStart, n, 1,
+                        x, blockStart * numCols, numCols, 1,
+                        x, 0, numCols, 1);
+            }
+        }
+    }
+
+    private void validateNonSingular() throws MatrixIllegalArgumentException {
+        if (this.singular) {
+            throw new MatrixIllegalArgumentException("Matrix is singular");
+        }
+    }
+
+    // X such that A * X = B, for any number of columns of B
+    public Matrix solve(Matrix matrix) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        if (matrix.getNumRows() != this.numRowsAndCols) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Dimension mismatch for 'numRows': 'A' = (%d) vs 'B' = (%d)",
+                    this.numRowsAndCols, matrix.getNumRows()));
+        }
+        this.validateNonSingular();
+
+        int numCols = matrix.getNumCols();
+        double[] x = new double[this.numRowsAndCols * numCols];
+        for (int rowIndex = 0; rowIndex < this.numRowsAndCols; rowIndex++) {
+            MatrixKernels.copy(1, numCols, matrix.array,
+                    matrix.offset + this.pivot[rowIndex] * matrix.rowStride, matrix.rowStride, matrix.colStride,
+                    x, rowIndex * numCols, numCols, 1);
+        }
+        this.solveInPlace(x, numCols);
+        return Matrix.wrap(x, this.numRowsAndCols, numCols);
+    }
+
+    // A^-1, as the solution of A * X = I
+    public Matrix inverse() throws MatrixIllegalArgumentException {
+        this.validateNonSingular();
+        int n = this.numRowsAndCols;
+        double[] x = new double[n * n];
+        for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+            x[rowIndex * n + this.pivot[rowIndex]] = 1;
+        }
+        this.solveInPlace(x, n);
+        return Matrix.wrap(x, n, n);
+    }
+
+    // Product of the diagonal of U with the sign of P. It overflows to infinity or underflows to 0 long before the
+    // matrix is numerically singular for large n
+    public double determinant() {
+        if (this.singular) {
+            return 0;
+        }
+        double value = this.pivotSign;
+        for (int index = 0; index < this.numRowsAndCols; index++) {
+            value *= this.lu[index * this.numRowsAndCols + index];
+        }
+        return value;
+    }
+
+    public boolean isSingular() {
+        return this.singular;
+    }
+
+    // Unit lower triangular factor
+    public Matrix getL() {
+        int n = this.numRowsAndCols;
+        double[] l = new double[n * n];
+        for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+            System.arraycopy(this.lu, rowIndex * n, l, rowIndex * n, rowIndex);
+            l[rowIndex * n + rowIndex] = 1;
+        }
+        return Matrix.wrap(l, n, n);
+    }
+
+    // Upper triangular factor
+    public Matrix getU() {
+        int n = this.numRowsAndCols;
+        double[] u = new double[n * n];
+        for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+            System.arraycopy(this.lu, rowIndex * n + rowIndex, u, rowIndex * n + rowIndex, n - rowIndex);
+        }
+        return Matrix.wrap(u, n, n);
+    }
+
+    // Row i of P * A is row getPivot()[i] of A
+    public int[] getPivot() {
+        return this.pivot.clone();
+    }
+
+    public Matrix getP() {
+        int n = this.numRowsAndCols;
+        double[] p = new double[n * n];
+        for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+            p[rowIndex * n + this.pivot[rowIndex]] = 1;
+        }
+        return Matrix.wrap(p, n, n);
+    }
+
+    public int getNumRowsAndCols() {
+        return this.numRowsAndCols;
+    }
+
+}
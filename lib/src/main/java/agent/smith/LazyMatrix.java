@@ -0,0 +1,613 @@
+package agent.smith;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+
+// Deferred matrix computation: every operation only records a node of an expression graph, and nothing is computed
+// until evaluate is called, e.g.
+//
+//   LazyMatrix a = matrixA.lazy();
+//   LazyMatrix b = matrixB.lazy();
+//   Matrix c = a.transpose().multiply(b).add(a.transpose().multiply(b).map(Math::abs)).getBlock(0, 9, 0, 9).evaluate();
+//
+// Before evaluation the graph is rewritten:
+//   - nodes built from the same operations on the same operands are merged (hash-consing), so a subexpression that
+//     appears several times, even when it was built twice, is computed once,
+//   - transposes are folded: a double transpose cancels out, element-wise operations of transposes become the
+//     transpose of the element-wise operation, and a transpose left in front of a product or of a reduction is only a
+//     transposeView, which the product kernel reads in place,
+//   - getBlock is pushed down to the operands, so only the part of the result that is read gets computed (for a
+//     product: the selected rows of the left factor times the selected columns of the right one),
+//   - a chain of element-wise operations used once is fused into a single MatrixExpression pass, and nested products
+//     used once are flattened into a single chain so that ProductPlan can reorder them.
+//
+// Graphs are walked without recursion, so they can be arbitrarily deep: longer chains are fused MAX_FUSION_DEPTH
+// operations at a time, getBlock is pushed down at most MAX_PUSHDOWN_DEPTH levels, and every intermediate is released
+// after its last read.
+//
+// Element-wise results and reductions equal the eager ones, except that a fused a.add(b.multiply(beta)) is computed as
+// a + beta * b, which can differ from the eager a + (0 + beta * b) in the sign of a zero. Products may round
+// differently once they have been reordered or restricted to a block.
+//
+// Nodes are immutable and can be shared and evaluated any number of times. The matrices they wrap are read at
+// evaluation, so they should not be modified while a result depending on them is being evaluated.
+
+public final class LazyMatrix {
+
+    private enum Operation {
+        MATRIX, ADD, ADD_VALUE, MULTIPLY_VALUE, MAP, PROD, TRANSPOSE, SUM, BLOCK
+    }
+
+    private static final LazyMatrix[] NO_OPERANDS = new LazyMatrix[0];
+
+    private final Operation operation;
+    private final LazyMatrix[] operands;
+    private final int numRows;
+    private final int numCols;
+    // Only set for MATRIX
+    private final Matrix matrix;
+    // Only set for ADD_VALUE and MULTIPLY_VALUE
+    private final double value;
+    // Only set for MAP
+    private final DoubleUnaryOperator function;
+    // {axis} for SUM, {rowStartIndex, rowEndIndex, colStartIndex, colEndIndex} for BLOCK
+    private final int[] indexes;
+
+    private LazyMatrix(Operation operation, LazyMatrix[] operands, int numRows, int numCols, Matrix matrix,
+                       double value, DoubleUnaryOperator function, int[] indexes) {
+        this.operation = operation;
+        this.operands = operands;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.matrix = matrix;
+        this.value = value;
+        this.function = function;
+        this.indexes = indexes;
+    }
+
+    private static LazyMatrix node(Operation operation, int numRows, int numCols, LazyMatrix... operands) {
+        return new LazyMatrix(operation, operands, numRows, numCols, null, 0, null, null);
+    }
+
+    private static LazyMatrix node(Operation operation, double value, LazyMatrix operand) {
+        return new LazyMatrix(operation, new LazyMatrix[] {operand}, operand.numRows, operand.numCols, null, value,
+                null, null);
+    }
+
+    private static LazyMatrix node(DoubleUnaryOperator function, LazyMatrix operand) {
+        return new LazyMatrix(Operation.MAP, new LazyMatrix[] {operand}, operand.numRows, operand.numCols, null, 0,
+                function, null);
+    }
+
+    private static LazyMatrix node(Operation operation, int[] indexes, int numRows, int numCols, LazyMatrix operand) {
+        return new LazyMatrix(operation, new LazyMatrix[] {operand}, numRows, numCols, null, 0, null, indexes);
+    }
+
+    public static LazyMatrix of(Matrix matrix) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        return new LazyMatrix(Operation.MATRIX, NO_OPERANDS, matrix.getNumRows(), matrix.getNumCols(), matrix, 0,
+                null, null);
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+    private static void validateMatricesNonNull(LazyMatrix... matrices) throws MatrixIllegalArgumentException {
+        for (LazyMatrix matrix : matrices) {
+            if (matrix == null) {
+                throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Operations
+
+    public LazyMatrix add(double value) {
+        return LazyMatrix.node(Operation.ADD_VALUE, value, this);
+    }
+
+    public LazyMatrix add(LazyMatrix... matrices) throws MatrixIllegalArgumentException {
+
+        LazyMatrix.validateMatricesNonNull(matrices);
+        for (LazyMatrix matrix : matrices) {
+            if (matrix.numRows != this.numRows || matrix.numCols != this.numCols) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for adding matrices");
+            }
+        }
+
+        if (matrices.length == 0) {
+            return this;
+        }
+        LazyMatrix[] operands = new LazyMatrix[matrices.length + 1];
+        operands[0] = this;
+        System.arraycopy(matrices, 0, operands, 1, matrices.length);
+        return LazyMatrix.node(Operation.ADD, this.numRows, this.numCols, operands);
+    }
+
+    public LazyMatrix multiply(double value) {
+        return LazyMatrix.node(Operation.MULTIPLY_VALUE, value, this);
+    }
+
+    public LazyMatrix map(DoubleUnaryOperator function) throws MatrixIllegalArgumentException {
+        if (function == null) {
+            throw new MatrixIllegalArgumentException("'function' cannot be null");
+        }
+        return LazyMatrix.node(function, this);
+    }
+
+    public static LazyMatrix prod(LazyMatrix... matrices) throws MatrixIllegalArgumentException {
+
+        if (matrices.length < 1) {
+            throw new MatrixIllegalArgumentException("Need at least one matrix");
+        }
+        LazyMatrix.validateMatricesNonNull(matrices);
+        for (int matrixIndex = 0; matrixIndex < matrices.length - 1; matrixIndex++) {
+            if (matrices[matrixIndex].numCols != matrices[matrixIndex + 1].numRows) {
+                throw new MatrixIllegalArgumentException("Dimension mismatch for taking product of matrices");
+            }
+        }
+
+        if (matrices.length == 1) {
+            return matrices[0];
+        }
+        return LazyMatrix.node(Operation.PROD, matrices[0].numRows, matrices[matrices.length - 1].numCols,
+                matrices.clone());
+    }
+
+    public LazyMatrix multiply(LazyMatrix matrix) throws MatrixIllegalArgumentException {
+        return LazyMatrix.prod(this, matrix);
+    }
+
+    public LazyMatrix multiplyLeft(LazyMatrix matrix) throws MatrixIllegalArgumentException {
+        return LazyMatrix.prod(matrix, this);
+    }
+
+    public LazyMatrix transpose() {
+        return LazyMatrix.node(Operation.TRANSPOSE, this.numCols, this.numRows, this);
+    }
+
+    public LazyMatrix sum(int axis) throws MatrixIllegalArgumentException {
+        if (axis != 0 && axis != 1) {
+            throw new MatrixIllegalArgumentException(String.format("'axis' (%d) has to be 0 or 1", axis));
+        }
+        return LazyMatrix.node(Operation.SUM, new int[] {axis}, axis == 0 ? 1 : this.numRows,
+                axis == 0 ? this.numCols : 1, this);
+    }
+
+    // Same indexes as Matrix.getBlock, i.e. both end indexes are included
+    public LazyMatrix getBlock(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
+            throws MatrixIllegalArgumentException {
+
+        if (
+                rowStartIndex < 0 || colStartIndex < 0 ||
+                rowEndIndex >= this.numRows || colEndIndex >= this.numCols ||
+                rowEndIndex < rowStartIndex || colEndIndex < colStartIndex
+        ) {
+            throw new MatrixIllegalArgumentException("Invalid indexes");
+        }
+
+        return LazyMatrix.node(Operation.BLOCK, new int[] {rowStartIndex, rowEndIndex, colStartIndex, colEndIndex},
+                rowEndIndex - rowStartIndex + 1, colEndIndex - colStartIndex + 1, this);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Evaluation
+
+    public Matrix evaluate() {
+        return LazyMatrix.evaluate(this)[0];
+    }
+
+    // Evaluates the matrices together, so that the subexpressions they have in common are only computed once. Every
+    // returned matrix owns its array, even when it is equal to one of the wrapped matrices or to another result.
+    public static Matrix[] evaluate(LazyMatrix... matrices) throws MatrixIllegalArgumentException {
+        LazyMatrix.validateMatricesNonNull(matrices);
+        return new Evaluation().evaluate(matrices);
+    }
+
+    private boolean isElementwise() {
+        return this.operation == Operation.ADD || this.operation == Operation.ADD_VALUE ||
+                this.operation == Operation.MULTIPLY_VALUE || this.operation == Operation.MAP;
+    }
+
+    private LazyMatrix withOperands(LazyMatrix... operands) {
+        int numRows = this.numRows;
+        int numCols = this.numCols;
+        if (this.operation == Operation.PROD) {
+            numRows = operands[0].numRows;
+            numCols = operands[operands.length - 1].numCols;
+        } else if (this.operation == Operation.TRANSPOSE) {
+            numRows = operands[0].numCols;
+            numCols = operands[0].numRows;
+        } else if (this.operation == Operation.SUM) {
+            numRows = this.indexes[0] == 0 ? 1 : operands[0].numRows;
+            numCols = this.indexes[0] == 0 ? operands[0].numCols : 1;
+        } else if (this.isElementwise()) {
+            numRows = operands[0].numRows;
+            numCols = operands[0].numCols;
+        }
+        return new LazyMatrix(this.operation, operands, numRows, numCols, this.matrix, this.value, this.function,
+                this.indexes);
+    }
+
+    private static final class Evaluation {
+
+        // Longest chain of element-wise operations, or of nested products, computed in a single pass
+        private static final int MAX_FUSION_DEPTH = 64;
+        // Number of levels getBlock is pushed down through, deeper operands are read through a block view
+        private static final int MAX_PUSHDOWN_DEPTH = 64;
+
+        // Canonical node of every wrapped matrix and of every operation, looked up by what the node computes
+        private final Map<Matrix, LazyMatrix> leaves = new IdentityHashMap<>();
+        private final Map<List<Object>, LazyMatrix> nodes = new HashMap<>();
+        private final Map<LazyMatrix, LazyMatrix> canonicalNodes = new IdentityHashMap<>();
+        // Canonical nodes reachable from the requested results, every node after its operands
+        private final List<LazyMatrix> order = new ArrayList<>();
+        // Number of canonical nodes (or requested results) reading each canonical node, counted down as they are read
+        private final Map<LazyMatrix, Integer> numUses = new IdentityHashMap<>();
+        // Length of the fused chain ending at each node, and the nodes computed as part of their only reader
+        private final Map<LazyMatrix, Integer> fusionDepths = new IdentityHashMap<>();
+        private final Map<LazyMatrix, Boolean> fused = new IdentityHashMap<>();
+        private final Map<LazyMatrix, Matrix> values = new IdentityHashMap<>();
+
+        Matrix[] evaluate(LazyMatrix... matrices) {
+
+            LazyMatrix[] roots = new LazyMatrix[matrices.length];
+            for (int matrixIndex = 0; matrixIndex < matrices.length; matrixIndex++) {
+                roots[matrixIndex] = this.canonicalize(matrices[matrixIndex]);
+            }
+            Map<LazyMatrix, Boolean> visited = new IdentityHashMap<>();
+            for (LazyMatrix root : roots) {
+                this.sort(root, visited);
+                this.numUses.merge(root, 1, Integer::sum);
+            }
+            for (LazyMatrix node : this.order) {
+                this.planFusion(node);
+            }
+
+            for (LazyMatrix node : this.order) {
+                if (!this.fused.containsKey(node)) {
+                    this.values.put(node, this.compute(node));
+                }
+            }
+
+            Matrix[] results = new Matrix[roots.length];
+            Map<Matrix, Boolean> returned = new IdentityHashMap<>();
+            for (int rootIndex = 0; rootIndex < roots.length; rootIndex++) {
+                Matrix result = this.read(roots[rootIndex]);
+                // Views and wrapped matrices share their array with the caller's matrices
+                if (result.isView() || this.leaves.containsKey(result) || returned.containsKey(result)) {
+                    result = result.copy();
+                }
+                returned.put(result, true);
+                results[rootIndex] = result;
+            }
+            return results;
+        }
+
+        private LazyMatrix canonicalize(LazyMatrix root) {
+
+            Deque<LazyMatrix> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+
+                LazyMatrix node = stack.peek();
+                if (this.canonicalNodes.containsKey(node)) {
+                    stack.pop();
+                    continue;
+                }
+
+                // Operands are canonicalized first, the node is seen again once they are
+                boolean isReady = true;
+                for (LazyMatrix operand : node.operands) {
+                    if (!this.canonicalNodes.containsKey(operand)) {
+                        stack.push(operand);
+                        isReady = false;
+                    }
+                }
+                if (!isReady) {
+                    continue;
+                }
+                stack.pop();
+
+                LazyMatrix canonicalNode;
+                if (node.operation == Operation.MATRIX) {
+                    canonicalNode = this.leaves.computeIfAbsent(node.matrix, matrix -> node);
+                } else {
+                    LazyMatrix[] operands = new LazyMatrix[node.operands.length];
+                    for (int operandIndex = 0; operandIndex < operands.length; operandIndex++) {
+                        operands[operandIndex] = this.canonicalNodes.get(node.operands[operandIndex]);
+                    }
+                    canonicalNode = this.rewrite(node.withOperands(operands));
+                }
+                this.canonicalNodes.put(node, canonicalNode);
+            }
+            return this.canonicalNodes.get(root);
+        }
+
+        // 'node' has canonical operands, the result is canonical
+        private LazyMatrix rewrite(LazyMatrix node) {
+
+            LazyMatrix operand = node.operands[0];
+            switch (node.operation) {
+                case TRANSPOSE:
+                    if (operand.operation == Operation.TRANSPOSE) {
+                        return operand.operands[0];
+                    }
+                    break;
+                case MULTIPLY_VALUE:
+                    if (node.value == 1) {
+                        return operand;
+                    }
+                    return this.rewriteElementwise(node);
+                case ADD:
+                case ADD_VALUE:
+                case MAP:
+                    return this.rewriteElementwise(node);
+                case BLOCK:
+                    return this.rewriteBlock(node, 0);
+                default:
+                    break;
+            }
+            return this.intern(node);
+        }
+
+        private LazyMatrix rewriteElementwise(LazyMatrix node) {
+
+            for (LazyMatrix operand : node.operands) {
+                if (operand.operation != Operation.TRANSPOSE) {
+                    return this.intern(node);
+                }
+            }
+
+            // f(a^T, b^T, ...) = f(a, b, ...)^T
+            LazyMatrix[] operands = new LazyMatrix[node.operands.length];
+            for (int operandIndex = 0; operandIndex < operands.length; operandIndex++) {
+                operands[operandIndex] = node.operands[operandIndex].operands[0];
+            }
+            LazyMatrix untransposed = this.rewrite(node.withOperands(operands));
+            return this.rewrite(untransposed.transpose());
+        }
+
+        private LazyMatrix rewriteBlock(LazyMatrix node, int depth) {
+
+            LazyMatrix operand = node.operands[0];
+            int rowStartIndex = node.indexes[0];
+            int rowEndIndex = node.indexes[1];
+            int colStartIndex = node.indexes[2];
+            int colEndIndex = node.indexes[3];
+
+            if (node.numRows == operand.numRows && node.numCols == operand.numCols) {
+                return operand;
+            }
+            if (depth == Evaluation.MAX_PUSHDOWN_DEPTH) {
+                return this.intern(node);
+            }
+
+            switch (operand.operation) {
+                case BLOCK: {
+                    LazyMatrix block = Evaluation.block(operand.operands[0],
+                            operand.indexes[0] + rowStartIndex, operand.indexes[0] + rowEndIndex,
+                            operand.indexes[2] + colStartIndex, operand.indexes[2] + colEndIndex);
+                    return this.rewriteBlock(block, depth + 1);
+                }
+                case TRANSPOSE: {
+                    LazyMatrix block = Evaluation.block(operand.operands[0],
+                            colStartIndex, colEndIndex, rowStartIndex, rowEndIndex);
+                    return this.rewrite(this.rewriteBlock(block, depth + 1).transpose());
+                }
+                case ADD:
+                case ADD_VALUE:
+                case MULTIPLY_VALUE:
+                case MAP: {
+                    LazyMatrix[] operands = new LazyMatrix[operand.operands.length];
+                    for (int operandIndex = 0; operandIndex < operands.length; operandIndex++) {
+                        LazyMatrix block = Evaluation.block(operand.operands[operandIndex],
+                                rowStartIndex, rowEndIndex, colStartIndex, colEndIndex);
+                        operands[operandIndex] = this.rewriteBlock(block, depth + 1);
+                    }
+                    return this.rewrite(operand.withOperands(operands));
+                }
+                case PROD: {
+                    // Rows of the product come from the left factor only, columns from the right factor only
+                    LazyMatrix[] operands = operand.operands.clone();
+                    int last = operands.length - 1;
+                    LazyMatrix firstBlock = Evaluation.block(operands[0],
+                            rowStartIndex, rowEndIndex, 0, operands[0].numCols - 1);
+                    LazyMatrix lastBlock = Evaluation.block(operands[last],
+                            0, operands[last].numRows - 1, colStartIndex, colEndIndex);
+                    operands[0] = this.rewriteBlock(firstBlock, depth + 1);
+                    operands[last] = this.rewriteBlock(lastBlock, depth + 1);
+                    return this.rewrite(operand.withOperands(operands));
+                }
+                case SUM: {
+                    // Each sum only depends on its own column (axis 0) or row (axis 1)
+                    LazyMatrix summed = operand.operands[0];
+                    LazyMatrix block = operand.indexes[0] == 0
+                            ? Evaluation.block(summed, 0, summed.numRows - 1, colStartIndex, colEndIndex)
+                            : Evaluation.block(summed, rowStartIndex, rowEndIndex, 0, summed.numCols - 1);
+                    return this.rewrite(operand.withOperands(this.rewriteBlock(block, depth + 1)));
+                }
+                default:
+                    return this.intern(node);
+            }
+        }
+
+        private static LazyMatrix block(LazyMatrix matrix, int rowStartIndex, int rowEndIndex, int colStartIndex,
+                                        int colEndIndex) {
+            return LazyMatrix.node(Operation.BLOCK, new int[] {rowStartIndex, rowEndIndex, colStartIndex, colEndIndex},
+                    rowEndIndex - rowStartIndex + 1, colEndIndex - colStartIndex + 1, matrix);
+        }
+
+        // Operands are canonical, so two nodes compute the same matrix when they apply the same operation with the
+        // same parameters to the same operand instances
+        private LazyMatrix intern(LazyMatrix node) {
+            List<Object> key = new ArrayList<>();
+            key.add(node.operation);
+            key.add(Double.doubleToLongBits(node.value));
+            key.add(node.function);
+            if (node.indexes != null) {
+                for (int index : node.indexes) {
+                    key.add(index);
+                }
+            }
+            key.addAll(Arrays.asList(node.operands));
+            return this.nodes.computeIfAbsent(key, k -> node);
+        }
+
+        // Appends the nodes reachable from 'root' to the order, operands first, and counts their uses
+        private void sort(LazyMatrix root, Map<LazyMatrix, Boolean> visited) {
+
+            if (visited.put(root, true) != null) {
+                return;
+            }
+            Deque<LazyMatrix> stack = new ArrayDeque<>();
+            Deque<Integer> operandIndexes = new ArrayDeque<>();
+            stack.push(root);
+            operandIndexes.push(0);
+            while (!stack.isEmpty()) {
+
+                LazyMatrix node = stack.peek();
+                int operandIndex = operandIndexes.pop();
+                if (operandIndex == node.operands.length) {
+                    stack.pop();
+                    this.order.add(node);
+                    continue;
+                }
+                operandIndexes.push(operandIndex + 1);
+
+                LazyMatrix operand = node.operands[operandIndex];
+                this.numUses.merge(operand, 1, Integer::sum);
+                if (visited.put(operand, true) == null) {
+                    stack.push(operand);
+                    operandIndexes.push(0);
+                }
+            }
+        }
+
+        // An intermediate read by a single node is better computed as part of that node than materialized, unless the
+        // chain it ends is already MAX_FUSION_DEPTH long. The operands considered are the ones fuse and addFactors
+        // take in place.
+        private void planFusion(LazyMatrix node) {
+
+            List<LazyMatrix> candidates = new ArrayList<>();
+            if (node.isElementwise()) {
+                if (node.operands[0].isElementwise()) {
+                    candidates.add(node.operands[0]);
+                }
+                if (node.operation == Operation.ADD && node.operands.length == 2 &&
+                        node.operands[1].operation == Operation.MULTIPLY_VALUE) {
+                    candidates.add(node.operands[1]);
+                }
+            } else if (node.operation == Operation.PROD) {
+                for (LazyMatrix operand : node.operands) {
+                    if (operand.operation == Operation.PROD) {
+                        candidates.add(operand);
+                    }
+                }
+            }
+
+            int depth = 0;
+            for (LazyMatrix operand : candidates) {
+                int operandDepth = this.fusionDepths.get(operand);
+                if (this.numUses.get(operand) == 1 && operandDepth < Evaluation.MAX_FUSION_DEPTH) {
+                    this.fused.put(operand, true);
+                    depth = Math.max(depth, operandDepth);
+                }
+            }
+            this.fusionDepths.put(node, depth + 1);
+        }
+
+        // Value of an operand of the node being computed. Materialized values are released after their last read,
+        // fused ones are computed in place for their only reader
+        private Matrix read(LazyMatrix node) {
+
+            Matrix value = this.values.get(node);
+            if (value == null) {
+                return this.compute(node);
+            }
+            if (this.numUses.merge(node, -1, Integer::sum) == 0) {
+                this.values.remove(node);
+            }
+            return value;
+        }
+
+        private Matrix compute(LazyMatrix node) {
+            switch (node.operation) {
+                case MATRIX:
+                    return node.matrix;
+                case TRANSPOSE:
+                    return this.read(node.operands[0]).transposeView();
+                case BLOCK:
+                    return this.read(node.operands[0]).getBlockView(node.indexes[0], node.indexes[1],
+                            node.indexes[2], node.indexes[3]);
+                case SUM:
+                    return this.read(node.operands[0]).sum(node.indexes[0]);
+                case PROD: {
+                    List<Matrix> factors = new ArrayList<>();
+                    this.addFactors(node, factors);
+                    return Matrix.prod(factors.toArray(new Matrix[0]));
+                }
+                default:
+                    return this.fuse(node).evaluate();
+            }
+        }
+
+        private void addFactors(LazyMatrix node, List<Matrix> factors) {
+            for (LazyMatrix operand : node.operands) {
+                if (operand.operation == Operation.PROD && this.fused.containsKey(operand)) {
+                    this.addFactors(operand, factors);
+                } else {
+                    factors.add(this.read(operand));
+                }
+            }
+        }
+
+        private MatrixExpression fuse(LazyMatrix node) {
+
+            MatrixExpression expression = this.fuseOperand(node.operands[0]);
+            switch (node.operation) {
+                case ADD: {
+                    LazyMatrix addend = node.operands[1];
+                    if (node.operands.length == 2 && addend.operation == Operation.MULTIPLY_VALUE &&
+                            this.fused.containsKey(addend)) {
+                        return expression.add(addend.value, this.read(addend.operands[0]));
+                    }
+                    Matrix[] addends = new Matrix[node.operands.length - 1];
+                    for (int operandIndex = 1; operandIndex < node.operands.length; operandIndex++) {
+                        addends[operandIndex - 1] = this.read(node.operands[operandIndex]);
+                    }
+                    return expression.add(addends);
+                }
+                case ADD_VALUE:
+                    return expression.add(node.value);
+                case MULTIPLY_VALUE:
+                    return expression.multiply(node.value);
+                default:
+                    return expression.map(node.function);
+            }
+        }
+
+        private MatrixExpression fuseOperand(LazyMatrix operand) {
+            if (operand.isElementwise() && this.fused.containsKey(operand)) {
+                return this.fuse(operand);
+            }
+            return MatrixExpression.of(this.read(operand));
+        }
+
+    }
+
+}
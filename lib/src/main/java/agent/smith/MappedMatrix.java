@@ -0,0 +1,186 @@
+package agent.smith;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+// Chunked matrix backed by a file mapped into memory, so that opening it is immediate whatever its size: the operating
+// system reads the pages of the file as they are first accessed, and can drop them again under memory pressure.
+//
+// The file holds the numRows * numCols elements in row-major order as little-endian doubles (the layout of
+// numpy.ndarray.tofile on x86 and ARM), starting 'position' bytes into the file, e.g. after a header. A mapping is
+// limited to 2^31 - 1 bytes, so the file is mapped in chunks of 2^27 doubles (1 GiB).
+//
+// Every read operation of ChunkedMatrix works in both modes, and their results are heap matrices: element access,
+// getRow, getCol, getDiagonal, getBlock, transpose, map, products, sum, sum(axis) and maxDifference. Unlike Matrix
+// there are no views (getRowView, getColView, getBlockView, transposeView), since a chunked matrix has no strides, and
+// no decompositions, which need the whole matrix on the heap, e.g. through getBlock(...).toMatrix(). In READ_ONLY mode
+// writing to the matrix throws an UnsupportedOperationException. In READ_WRITE mode writes go to the file, and force()
+// waits until they have reached the storage device. close() unmaps the file right away rather than when the matrix is
+// garbage collected, and must not be called while another thread is still using the matrix.
+
+public final class MappedMatrix extends ChunkedMatrix {
+
+    public enum Mode {
+        READ_ONLY, READ_WRITE
+    }
+
+    static final int CHUNK_SHIFT = 27;
+
+    private final Mode mode;
+    private final MappedByteBuffer[] buffers;
+    private final DoubleBuffer[] chunks;
+
+    private MappedMatrix(FileChannel channel, long position, int numRows, int numCols, Mode mode, int chunkShift)
+            throws IOException, MatrixIllegalArgumentException {
+
+        super(numRows, numCols, chunkShift);
+        this.mode = mode;
+
+        long numBytes = this.length * Double.BYTES;
+        if (mode == Mode.READ_ONLY && channel.size() < position + numBytes) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "File is too small for the matrix: expected at least %d bytes vs %d bytes",
+                    position + numBytes, channel.size()));
+        }
+
+        int chunkNumBytes = Double.BYTES << chunkShift;
+        int numChunks = (int) ((numBytes + chunkNumBytes - 1) / chunkNumBytes);
+        FileChannel.MapMode mapMode = mode == Mode.READ_ONLY ? FileChannel.MapMode.READ_ONLY
+                : FileChannel.MapMode.READ_WRITE;
+        this.buffers = new MappedByteBuffer[numChunks];
+        this.chunks = new DoubleBuffer[numChunks];
+        try {
+            for (int chunkIndex = 0; chunkIndex < numChunks; chunkIndex++) {
+                long chunkStart = (long) chunkIndex * chunkNumBytes;
+                this.buffers[chunkIndex] = channel.map(mapMode, position + chunkStart,
+                        Math.min(chunkNumBytes, numBytes - chunkStart));
+                this.chunks[chunkIndex] = this.buffers[chunkIndex].order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        } catch (IOException | RuntimeException e) {
+            DirectBuffers.release(this.buffers);
+            throw e;
+        }
+    }
+
+    // In READ_WRITE mode a file that is too small is extended with zeros. The mappings stay valid once the channel
+    // has been closed.
+    static MappedMatrix open(Path path, long position, int numRows, int numCols, Mode mode, int chunkShift)
+            throws IOException, MatrixIllegalArgumentException {
+
+        if (path == null) {
+            throw new MatrixIllegalArgumentException("'path' cannot be null");
+        }
+        if (mode == null) {
+            throw new MatrixIllegalArgumentException("'mode' cannot be null");
+        }
+        if (position < 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'position' (%d) cannot be negative", position));
+        }
+
+        StandardOpenOption[] options = mode == Mode.READ_ONLY
+                ? new StandardOpenOption[] {StandardOpenOption.READ}
+                : new StandardOpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return new MappedMatrix(channel, position, numRows, numCols, mode, chunkShift);
+        }
+    }
+
+    public static MappedMatrix open(Path path, long position, int numRows, int numCols, Mode mode)
+            throws IOException, MatrixIllegalArgumentException {
+        return MappedMatrix.open(path, position, numRows, numCols, mode, CHUNK_SHIFT);
+    }
+
+    public static MappedMatrix open(Path path, int numRows, int numCols, Mode mode)
+            throws IOException, MatrixIllegalArgumentException {
+        return MappedMatrix.open(path, 0, numRows, numCols, mode, CHUNK_SHIFT);
+    }
+
+    static MappedMatrix create(Path path, int numRows, int numCols, int chunkShift)
+            throws IOException, MatrixIllegalArgumentException {
+
+        if (path == null) {
+            throw new MatrixIllegalArgumentException("'path' cannot be null");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return new MappedMatrix(channel, 0, numRows, numCols, Mode.READ_WRITE, chunkShift);
+        }
+    }
+
+    // Creates (or truncates) the file and maps it READ_WRITE, filled with zeros
+    public static MappedMatrix create(Path path, int numRows, int numCols)
+            throws IOException, MatrixIllegalArgumentException {
+        return MappedMatrix.create(path, numRows, numCols, CHUNK_SHIFT);
+    }
+
+    // Results are kept on the heap, not in new files
+    @Override
+    ChunkedMatrix like(int numRows, int numCols) {
+        return ChunkedMatrix.create(numRows, numCols);
+    }
+
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    public MappedMatrix force() {
+        if (this.isClosed()) {
+            throw new IllegalStateException("Matrix has been closed");
+        }
+        if (this.mode == Mode.READ_WRITE) {
+            for (MappedByteBuffer buffer : this.buffers) {
+                buffer.force();
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (this.markClosed()) {
+            DirectBuffers.release(this.buffers);
+        }
+    }
+
+    private void validateWritable() {
+        if (this.mode == Mode.READ_ONLY) {
+            throw new UnsupportedOperationException("Matrix is read-only");
+        }
+    }
+
+    // Every access goes through a duplicate of the chunk, so concurrent reads do not share a buffer position
+    @Override
+    void readChunk(int chunkIndex, int position, double[] destination, int offset, int length) {
+        DoubleBuffer chunk = this.chunks[chunkIndex].duplicate();
+        chunk.position(position);
+        chunk.get(destination, offset, length);
+    }
+
+    @Override
+    void writeChunk(int chunkIndex, int position, double[] source, int offset, int length) {
+        this.validateWritable();
+        DoubleBuffer chunk = this.chunks[chunkIndex].duplicate();
+        chunk.position(position);
+        chunk.put(source, offset, length);
+    }
+
+    @Override
+    double getChunk(int chunkIndex, int position) {
+        return this.chunks[chunkIndex].get(position);
+    }
+
+    @Override
+    void setChunk(int chunkIndex, int position, double value) {
+        this.validateWritable();
+        this.chunks[chunkIndex].put(position, value);
+    }
+
+}
@@ -4,18 +4,30 @@ package agent.smith;
 // Copying arrays:
 // https://stackoverflow.com/questions/1697250/difference-between-various-array-copy-methods
 
+import java.nio.DoubleBuffer;
 import java.util.Arrays;
 import java.util.Objects;
 import java.lang.Math;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoubleUnaryOperator;
 
+// Element (rowIndex, colIndex) lives at array[offset + rowIndex * rowStride + colIndex * colStride]. Matrices created
+// through the public factories own a row-major array of their own (offset 0, rowStride numCols, colStride 1), while
+// the getXxxView methods return matrices sharing the array of their parent, so writes to either are seen by both.
 public class Matrix {
 
-    private final double[] array;
+    final double[] array;
+    final int offset;
+    final int rowStride;
+    final int colStride;
     private final int numRows;
     private final int numCols;
     private final int length;
     private static final double MAX_TOLERANCE = 1e-15;
+    // Largest array the JVMs reliably allocate, some of them reserve a few header words in an array. Bigger matrices
+    // need a ChunkedMatrix
+    static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
 
     private void validateNumRows() throws MatrixIllegalArgumentException {
         if (this.numRows <= 0) {
@@ -34,6 +46,16 @@ public class Matrix {
     private void validateNumRowsNumCols() throws MatrixIllegalArgumentException {
         this.validateNumRows();
         this.validateNumCols();
+        Matrix.validateLength(this.numRows, this.numCols);
+    }
+
+    // The product is computed as a long, as 'numRows' * 'numCols' silently overflows an int
+    static void validateLength(long numRows, long numCols) throws MatrixIllegalArgumentException {
+        if (numRows * numCols > MAX_LENGTH) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'numRows' * 'numCols' (%d) is larger than the maximum length of a Matrix (%d)",
+                    numRows * numCols, MAX_LENGTH));
+        }
     }
 
     private Matrix(double value, int numRows, int numCols) throws MatrixIllegalArgumentException {
@@ -46,6 +68,9 @@ public class Matrix {
 
         this.array = new double[length];
         Arrays.fill(this.array, value);
+        this.offset = 0;
+        this.rowStride = this.numCols;
+        this.colStride = 1;
     }
 
     public static Matrix of(double element, int numRows, int numCols) {
@@ -53,6 +78,10 @@ public class Matrix {
     }
 
     private Matrix(double[] array, int numRows, int numCols) throws MatrixIllegalArgumentException {
+        this(array, numRows, numCols, true);
+    }
+
+    private Matrix(double[] array, int numRows, int numCols, boolean copy) throws MatrixIllegalArgumentException {
 
         this.numRows = numRows;
         this.numCols = numCols;
@@ -69,19 +98,43 @@ public class Matrix {
                     "Length of 'array' (%d) does not match 'numRows' * 'numCols' (%d)", array.length, this.length));
         }
 
-        this.array = new double[this.length];
-        System.arraycopy(array, 0, this.array, 0, this.length);
+        if (copy) {
+            this.array = new double[this.length];
+            System.arraycopy(array, 0, this.array, 0, this.length);
+        } else {
+            this.array = array;
+        }
+        this.offset = 0;
+        this.rowStride = this.numCols;
+        this.colStride = 1;
+    }
+
+    // Views are only built from matrices that are already valid, so the dimensions are not checked again
+    private Matrix(double[] array, int offset, int numRows, int numCols, int rowStride, int colStride) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        this.array = array;
+        this.offset = offset;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.length = numRows * numCols;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
     }
 
     public static Matrix create(double[] array, int numRows, int numCols) throws MatrixIllegalArgumentException {
         return new Matrix(array, numRows, numCols);
     }
 
+    // Takes ownership of 'array' without copying it, for results computed inside the package
+    static Matrix wrap(double[] array, int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return new Matrix(array, numRows, numCols, false);
+    }
+
     public static Matrix create(int numRows, int numCols) throws MatrixIllegalArgumentException {
         return Matrix.of(Double.NaN, numRows, numCols);
     }
 
-    private static void validateMatricesNonNull(Matrix... matrices) throws MatrixIllegalArgumentException {
+    static void validateMatricesNonNull(Matrix... matrices) throws MatrixIllegalArgumentException {
         for (Matrix matrix: matrices) {
             if (matrix == null) {
                 throw new MatrixIllegalArgumentException("Input matrix cannot be null");
@@ -89,6 +142,44 @@ public class Matrix {
         }
     }
 
+    static void validateDestination(Matrix destination, int numRows, int numCols)
+            throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(destination);
+        if (destination.numRows != numRows || destination.numCols != numCols) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Dimension mismatch for 'destination': expected = (%d, %d) vs 'destination' = (%d, %d)",
+                    numRows, numCols, destination.numRows, destination.numCols));
+        }
+    }
+
+    static void validateDestinationNotOperand(Matrix destination, Matrix... matrices)
+            throws MatrixIllegalArgumentException {
+        for (Matrix matrix : matrices) {
+            if (destination.overlaps(matrix)) {
+                throw new MatrixIllegalArgumentException("'destination' cannot overlap any of the input matrices");
+            }
+        }
+    }
+
+    // Conservative: views over the same array whose spans intersect are reported as overlapping even when their
+    // elements interleave without touching
+    boolean overlaps(Matrix other) {
+        if (this.array != other.array) {
+            return false;
+        }
+        long thisLast = this.offset + (long) (this.numRows - 1) * this.rowStride +
+                (long) (this.numCols - 1) * this.colStride;
+        long otherLast = other.offset + (long) (other.numRows - 1) * other.rowStride +
+                (long) (other.numCols - 1) * other.colStride;
+        return this.offset <= otherLast && other.offset <= thisLast;
+    }
+
+    boolean hasSameLayout(Matrix other) {
+        return this.array == other.array && this.offset == other.offset && this.numRows == other.numRows &&
+                this.numCols == other.numCols && this.rowStride == other.rowStride &&
+                this.colStride == other.colStride;
+    }
+
     public static Matrix create(Matrix matrix) throws MatrixIllegalArgumentException {
         Matrix.validateMatricesNonNull(matrix);
         return Matrix.create(matrix.numRows, matrix.numCols);
@@ -140,6 +231,7 @@ public class Matrix {
             throw new MatrixIllegalArgumentException("'nestedArray' cannot be empty");
         }
 
+        Matrix.validateLength(numRows, numCols);
         double[] array = new double[numRows * numCols];
         for (int indexRow = 0; indexRow < numRows; indexRow++) {
 
@@ -157,11 +249,28 @@ public class Matrix {
     }
 
     public double[] getArray() {
-        double[] newArray = new double[length];
-        System.arraycopy(this.array, 0, newArray, 0, this.length);
+        double[] newArray = new double[this.length];
+        MatrixKernels.copy(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                newArray, 0, this.numCols, 1);
         return newArray;
     }
 
+    // Read-only and without copying when the elements are contiguous, otherwise over a row-major copy of them
+    public DoubleBuffer getBuffer() {
+        if (!this.isContiguous()) {
+            return DoubleBuffer.wrap(this.getArray()).asReadOnlyBuffer();
+        }
+        return DoubleBuffer.wrap(this.array, this.offset, this.length).slice().asReadOnlyBuffer();
+    }
+
+    public boolean isContiguous() {
+        return MatrixKernels.isContiguous(this.numRows, this.numCols, this.rowStride, this.colStride);
+    }
+
+    boolean isView() {
+        return this.offset != 0 || !this.isContiguous() || this.array.length != this.length;
+    }
+
     public int getNumRows() {
         return this.numRows;
     }
@@ -175,14 +284,22 @@ public class Matrix {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Matrix matrix = (Matrix) o;
-        return this.numRows == matrix.numRows && this.numCols == matrix.numCols &&
-                Arrays.equals(this.array, matrix.array);
+        if (this.numRows != matrix.numRows || this.numCols != matrix.numCols) {
+            return false;
+        }
+        if (!this.isView() && !matrix.isView()) {
+            return Arrays.equals(this.array, matrix.array);
+        }
+        return MatrixKernels.equals(this.numRows, this.numCols,
+                this.array, this.offset, this.rowStride, this.colStride,
+                matrix.array, matrix.offset, matrix.rowStride, matrix.colStride);
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hash(this.numRows, this.numCols);
-        result = 31 * result + Arrays.hashCode(this.array);
+        result = 31 * result + MatrixKernels.hashCode(this.numRows, this.numCols,
+                this.array, this.offset, this.rowStride, this.colStride);
         return result;
     }
 
@@ -191,7 +308,7 @@ public class Matrix {
         for (int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
             String[] row = new String[this.numCols];
             for (int colIndex = 0; colIndex < this.numCols; colIndex++) {
-                row[colIndex] = String.format(format, array[getIndex(rowIndex, colIndex)]);
+                row[colIndex] = String.format(format, this.get(rowIndex, colIndex));
             }
             string[rowIndex] = String.join(colDelimiter, row);
         }
@@ -234,6 +351,13 @@ public class Matrix {
         return rowIndex * this.numCols + colIndex;
     }
 
+    // Position of element (rowIndex, colIndex) in 'array', whereas getIndex is its row-major position in the matrix
+    private int getArrayIndex(int rowIndex, int colIndex) throws MatrixIllegalArgumentException {
+        this.validateRowIndex(rowIndex);
+        this.validateColIndex(colIndex);
+        return this.offset + rowIndex * this.rowStride + colIndex * this.colStride;
+    }
+
     int getRowIndex(int index) throws MatrixIllegalArgumentException {
         this.validateIndex(index);
         return index / this.numCols;
@@ -245,11 +369,11 @@ public class Matrix {
     }
 
     public double get(int rowIndex, int colIndex) throws MatrixIllegalArgumentException {
-        return this.array[getIndex(rowIndex, colIndex)];
+        return this.array[this.getArrayIndex(rowIndex, colIndex)];
     }
 
-    private Matrix setToThis(int rowIndex, int colIndex, double value) throws MatrixIllegalArgumentException {
-        this.array[getIndex(rowIndex, colIndex)] = value;
+    public Matrix setToThis(int rowIndex, int colIndex, double value) throws MatrixIllegalArgumentException {
+        this.array[this.getArrayIndex(rowIndex, colIndex)] = value;
         return this;
     }
 
@@ -260,16 +384,14 @@ public class Matrix {
 
     public Matrix getDiagonal() {
         Matrix diagonal = Matrix.create(Math.min(this.numRows, this.numCols), 1);
-        for (int index = 0; index < diagonal.length; index++) {
-            diagonal.array[index] = this.get(index, index);
-        }
+        MatrixKernels.copy(this.array, this.offset, this.rowStride + this.colStride, diagonal.array, 0, 1,
+                diagonal.length);
         return diagonal;
     }
 
-    private Matrix setDiagonalToThis(double value) {
-        for (int index = 0, n = Math.min(this.numRows, this.numCols); index < n; index++) {
-            this.setToThis(index, index, value);
-        }
+    public Matrix setDiagonalToThis(double value) {
+        MatrixKernels.fill(this.array, this.offset, this.rowStride + this.colStride,
+                Math.min(this.numRows, this.numCols), value);
         return this;
     }
 
@@ -278,6 +400,11 @@ public class Matrix {
         return result.setDiagonalToThis(value);
     }
 
+    // Distance in 'array' between consecutive elements of a row or column vector
+    private int getVectorStride() {
+        return this.numRows == 1 ? this.colStride : this.rowStride;
+    }
+
     private static void validateVector(Matrix matrix) throws MatrixIllegalArgumentException {
         Matrix.validateMatricesNonNull(matrix);
         if (matrix.numRows != 1 && matrix.numCols != 1) {
@@ -286,7 +413,7 @@ public class Matrix {
         }
     }
 
-    private Matrix setDiagonalToThis(Matrix vector) throws MatrixIllegalArgumentException {
+    public Matrix setDiagonalToThis(Matrix vector) throws MatrixIllegalArgumentException {
 
         Matrix.validateVector(vector);
         int diagonalLength = Math.min(this.numRows, this.numCols);
@@ -294,9 +421,8 @@ public class Matrix {
             throw new MatrixIllegalArgumentException("Dimension mismatch for 'diagonal'");
         }
 
-        for (int index = 0; index < diagonalLength; index++) {
-            this.setToThis(index, index, vector.array[index]);
-        }
+        MatrixKernels.copy(vector.array, vector.offset, vector.getVectorStride(),
+                this.array, this.offset, this.rowStride + this.colStride, diagonalLength);
         return this;
     }
 
@@ -372,17 +498,27 @@ public class Matrix {
     }
 
     public Matrix getRow(int rowIndex) throws MatrixIllegalArgumentException {
-        int index = this.getIndex(rowIndex, 0);
-        double[] row = Arrays.copyOfRange(this.array, index, index + this.numCols);
-        return Matrix.create(row, 1, this.numCols);
+        int index = this.getArrayIndex(rowIndex, 0);
+        double[] row = new double[this.numCols];
+        MatrixKernels.copy(this.array, index, this.colStride, row, 0, 1, this.numCols);
+        return Matrix.wrap(row, 1, this.numCols);
+    }
+
+    public Matrix getRowView(int rowIndex) throws MatrixIllegalArgumentException {
+        int index = this.getArrayIndex(rowIndex, 0);
+        return new Matrix(this.array, index, 1, this.numCols, this.rowStride, this.colStride);
     }
 
     public Matrix getCol(int colIndex) throws MatrixIllegalArgumentException {
+        int index = this.getArrayIndex(0, colIndex);
         double[] col = new double[this.numRows];
-        for (int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
-            col[rowIndex] = this.get(rowIndex, colIndex);
-        }
-        return Matrix.create(col, this.numRows, 1);
+        MatrixKernels.copy(this.array, index, this.rowStride, col, 0, 1, this.numRows);
+        return Matrix.wrap(col, this.numRows, 1);
+    }
+
+    public Matrix getColView(int colIndex) throws MatrixIllegalArgumentException {
+        int index = this.getArrayIndex(0, colIndex);
+        return new Matrix(this.array, index, this.numRows, 1, this.rowStride, this.colStride);
     }
 
     private void validateSetRow(Matrix row) throws MatrixIllegalArgumentException {
@@ -399,8 +535,8 @@ public class Matrix {
 
     public Matrix setRowToThis(Matrix row, int rowIndex) throws MatrixIllegalArgumentException {
         this.validateSetRow(row);
-        int index = this.getIndex(rowIndex, 0);
-        System.arraycopy(row.array, 0, this.array, index, this.numCols);
+        int index = this.getArrayIndex(rowIndex, 0);
+        MatrixKernels.copy(row.array, row.offset, row.colStride, this.array, index, this.colStride, this.numCols);
         return this;
     }
 
@@ -423,9 +559,8 @@ public class Matrix {
 
     public Matrix setColToThis(Matrix col, int colIndex) throws MatrixIllegalArgumentException {
         this.validateSetCol(col);
-        for (int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
-            this.setToThis(rowIndex, colIndex, col.get(rowIndex, 0));
-        }
+        int index = this.getArrayIndex(0, colIndex);
+        MatrixKernels.copy(col.array, col.offset, col.rowStride, this.array, index, this.rowStride, this.numRows);
         return this;
     }
 
@@ -435,13 +570,25 @@ public class Matrix {
     }
 
     public Matrix copy() {
-        return create(this.array, this.numRows, this.numCols);
+        return Matrix.wrap(this.getArray(), this.numRows, this.numCols);
     }
 
-    private Matrix addToThis(double value) {
-        for (int index = 0; index < this.length; index++) {
-            this.array[index] += value;
+    public Matrix copyInto(Matrix destination) throws MatrixIllegalArgumentException {
+        Matrix.validateDestination(destination, this.numRows, this.numCols);
+        if (!destination.hasSameLayout(this)) {
+            Matrix.validateDestinationNotOperand(destination, this);
         }
+        return this.copyTo(destination);
+    }
+
+    private Matrix copyTo(Matrix destination) {
+        MatrixKernels.copy(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                destination.array, destination.offset, destination.rowStride, destination.colStride);
+        return destination;
+    }
+
+    public Matrix addToThis(double value) {
+        MatrixKernels.add(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride, value);
         return this;
     }
 
@@ -450,6 +597,10 @@ public class Matrix {
         return result.addToThis(value);
     }
 
+    public Matrix addInto(Matrix destination, double value) throws MatrixIllegalArgumentException {
+        return this.copyInto(destination).addToThis(value);
+    }
+
     private static void validateMatricesDimensionAdd(Matrix result, Matrix... matrices)
             throws MatrixIllegalArgumentException {
 
@@ -466,19 +617,44 @@ public class Matrix {
 
     }
 
-    private Matrix addToThis(Matrix... matrices) throws MatrixIllegalArgumentException {
+    private Matrix addAllInto(Matrix destination, Matrix... matrices) {
+
+        double[][] arrays = new double[matrices.length][];
+        int[] offsets = new int[matrices.length];
+        int[] rowStrides = new int[matrices.length];
+        int[] colStrides = new int[matrices.length];
+        for (int matrixIndex = 0; matrixIndex < matrices.length; matrixIndex++) {
+            Matrix matrix = matrices[matrixIndex];
+            arrays[matrixIndex] = matrix.array;
+            offsets[matrixIndex] = matrix.offset;
+            rowStrides[matrixIndex] = matrix.rowStride;
+            colStrides[matrixIndex] = matrix.colStride;
+        }
+        MatrixKernels.addAll(this.numRows, this.numCols,
+                destination.array, destination.offset, destination.rowStride, destination.colStride,
+                this.array, this.offset, this.rowStride, this.colStride,
+                arrays, offsets, rowStrides, colStrides);
+
+        return destination;
+    }
 
+    public Matrix addToThis(Matrix... matrices) throws MatrixIllegalArgumentException {
         Matrix.validateMatricesDimensionAdd(this, matrices);
+        this.validateAddDestination(this, matrices);
+        return this.addAllInto(this, matrices);
+    }
 
-        for (int index = 0; index < this.length; index++) {
-            double addValue = 0;
-            for (Matrix matrix : matrices) {
-                addValue += matrix.array[index];
+    // Each chunk is summed before it is written, so the destination may share its layout with any operand, but it
+    // cannot partly overlap one
+    private void validateAddDestination(Matrix destination, Matrix... matrices) throws MatrixIllegalArgumentException {
+        if (!destination.hasSameLayout(this)) {
+            Matrix.validateDestinationNotOperand(destination, this);
+        }
+        for (Matrix matrix : matrices) {
+            if (!destination.hasSameLayout(matrix)) {
+                Matrix.validateDestinationNotOperand(destination, matrix);
             }
-            this.array[index] += addValue;
         }
-
-        return this;
     }
 
     public Matrix add(Matrix... matrices) throws MatrixIllegalArgumentException {
@@ -486,7 +662,14 @@ public class Matrix {
         return first.addToThis(matrices);
     }
 
-    private static void validateMatricesNonEmpty(Matrix... matrices) throws MatrixIllegalArgumentException {
+    public Matrix addInto(Matrix destination, Matrix... matrices) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesDimensionAdd(this, matrices);
+        Matrix.validateDestination(destination, this.numRows, this.numCols);
+        this.validateAddDestination(destination, matrices);
+        return this.addAllInto(destination, matrices);
+    }
+
+    static void validateMatricesNonEmpty(Matrix... matrices) throws MatrixIllegalArgumentException {
         if (matrices.length < 1) {
             throw new MatrixIllegalArgumentException("Need at least one matrix");
         }
@@ -495,14 +678,26 @@ public class Matrix {
     public static Matrix sum(Matrix... matrices) throws MatrixIllegalArgumentException {
         Matrix.validateMatricesNonEmpty(matrices);
         Matrix.validateMatricesNonNull(matrices[0]);
-        Matrix result = Matrix.ofZeros(matrices[0]);
-        return result.add(matrices);
+        Matrix result = Matrix.wrap(new double[matrices[0].length], matrices[0].numRows, matrices[0].numCols);
+        return result.addToThis(matrices);
     }
 
-    private Matrix multiplyToThis(double value) {
-        for (int index = 0; index < this.length; index++) {
-            this.array[index] *= value;
-        }
+    public static Matrix linearCombination(double[] coefficients, Matrix... matrices)
+            throws MatrixIllegalArgumentException {
+        return MatrixExpression.linearCombination(coefficients, matrices).evaluate();
+    }
+
+    public Matrix map(DoubleUnaryOperator function) throws MatrixIllegalArgumentException {
+        return MatrixExpression.of(this).map(function).evaluate();
+    }
+
+    public Matrix mapToThis(DoubleUnaryOperator function) throws MatrixIllegalArgumentException {
+        return MatrixExpression.of(this).map(function).evaluateInto(this);
+    }
+
+    public Matrix multiplyToThis(double value) {
+        MatrixKernels.multiply(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                value);
         return this;
     }
 
@@ -511,6 +706,10 @@ public class Matrix {
         return result.multiplyToThis(value);
     }
 
+    public Matrix multiplyInto(Matrix destination, double value) throws MatrixIllegalArgumentException {
+        return this.copyInto(destination).multiplyToThis(value);
+    }
+
     private static void validateDimensionsProd(Matrix... matrices) throws MatrixIllegalArgumentException {
 
         Matrix.validateMatricesNonEmpty(matrices);
@@ -527,35 +726,101 @@ public class Matrix {
 
     }
 
-    public static Matrix prod(Matrix... matrices) throws MatrixIllegalArgumentException {
+    static void validatePoolNonNull(ForkJoinPool pool) throws MatrixIllegalArgumentException {
+        if (pool == null) {
+            throw new MatrixIllegalArgumentException("'pool' cannot be null");
+        }
+    }
 
+    public static ProductPlan planProd(Matrix... matrices) throws MatrixIllegalArgumentException {
         Matrix.validateDimensionsProd(matrices);
-        Matrix result = matrices[matrices.length - 1];
+        return ProductPlan.of(matrices);
+    }
 
-        for (int matrixIndex = matrices.length - 2; matrixIndex >= 0; matrixIndex--) {
+    // When 'destination' is null the result is allocated, otherwise only the final product is written into it and
+    // the intermediate ones are still allocated
+    private static Matrix prod(ForkJoinPool pool, ProductPlan plan, int first, int last, Matrix destination,
+                               Matrix... matrices) {
 
-            Matrix left = matrices[matrixIndex];
-            Matrix right = result;
-            result = Matrix.create(left.numRows, right.numCols);
-
-            for (int rowIndex = 0; rowIndex < result.numRows; rowIndex++) {
-                for (int colIndex = 0; colIndex < result.numCols; colIndex++) {
-                    double value = 0;
-                    for (int index = 0; index < left.numCols; index++) {
-                        value += left.get(rowIndex, index) * right.get(index, colIndex);
-                    }
-                    result.setToThis(rowIndex, colIndex, value);
-                }
-            }
+        if (first == last) {
+            return destination == null ? matrices[first] : matrices[first].copyInto(destination);
         }
 
-        return result;
+        int split = plan.getSplit(first, last);
+        Matrix left = Matrix.prod(pool, plan, first, split, null, matrices);
+        Matrix right = Matrix.prod(pool, plan, split + 1, last, null, matrices);
+
+        Matrix result;
+        if (destination == null) {
+            result = Matrix.ofZeros(left.numRows, right.numCols);
+        } else {
+            result = destination;
+            MatrixKernels.fill(result.numRows, result.numCols, result.array, result.offset, result.rowStride,
+                    result.colStride, 0);
+        }
+        return result.addProdToThisUnchecked(pool, left, right);
+    }
+
+    public static Matrix prod(ForkJoinPool pool, Matrix... matrices) throws MatrixIllegalArgumentException {
+        ProductPlan plan = Matrix.planProd(matrices);
+        Matrix.validatePoolNonNull(pool);
+        return Matrix.prod(pool, plan, 0, matrices.length - 1, null, matrices);
+    }
+
+    public static Matrix prod(Matrix... matrices) throws MatrixIllegalArgumentException {
+        return Matrix.prod(ForkJoinPool.commonPool(), matrices);
+    }
+
+    // The product kernel reads its operands while writing the result, so 'destination' cannot be one of 'matrices'
+    // unless there is just one matrix to copy
+    public static Matrix prodInto(ForkJoinPool pool, Matrix destination, Matrix... matrices)
+            throws MatrixIllegalArgumentException {
+        ProductPlan plan = Matrix.planProd(matrices);
+        Matrix.validatePoolNonNull(pool);
+        Matrix.validateDestination(destination, matrices[0].numRows, matrices[matrices.length - 1].numCols);
+        if (matrices.length > 1) {
+            Matrix.validateDestinationNotOperand(destination, matrices);
+        }
+        return Matrix.prod(pool, plan, 0, matrices.length - 1, destination, matrices);
+    }
+
+    public static Matrix prodInto(Matrix destination, Matrix... matrices) throws MatrixIllegalArgumentException {
+        return Matrix.prodInto(ForkJoinPool.commonPool(), destination, matrices);
+    }
+
+    private Matrix addProdToThisUnchecked(ForkJoinPool pool, Matrix left, Matrix right) {
+        Gemm.multiply(pool, left.numRows, right.numCols, left.numCols, 1,
+                left.array, left.offset, left.rowStride, left.colStride,
+                right.array, right.offset, right.rowStride, right.colStride,
+                this.array, this.offset, this.rowStride, this.colStride);
+        return this;
+    }
+
+    // this = this + left * right
+    public Matrix addProdToThis(ForkJoinPool pool, Matrix left, Matrix right) throws MatrixIllegalArgumentException {
+        Matrix.validateDimensionsProd(left, right);
+        Matrix.validatePoolNonNull(pool);
+        Matrix.validateDestination(this, left.numRows, right.numCols);
+        Matrix.validateDestinationNotOperand(this, left, right);
+        return this.addProdToThisUnchecked(pool, left, right);
+    }
+
+    public Matrix addProdToThis(Matrix left, Matrix right) throws MatrixIllegalArgumentException {
+        return this.addProdToThis(ForkJoinPool.commonPool(), left, right);
+    }
+
+    public Matrix multiply(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+        return Matrix.prod(pool, this, matrix);
     }
 
     public Matrix multiply(Matrix matrix) throws MatrixIllegalArgumentException {
         return Matrix.prod(this, matrix);
     }
 
+    public Matrix multiplyLeft(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+        return Matrix.prod(pool, matrix, this);
+    }
+
     public Matrix multiplyLeft(Matrix matrix) throws MatrixIllegalArgumentException {
         return Matrix.prod(matrix, this);
     }
@@ -565,7 +830,7 @@ public class Matrix {
         Matrix.validateMatricesNonEmpty(matrices);
         Matrix.validateMatricesNonNull(matrices[0]);
         int numRows = matrices[0].numRows;
-        int numCols = 0;
+        long numCols = 0;
 
         for (Matrix matrix : matrices) {
             Matrix.validateMatricesNonNull(matrix);
@@ -575,7 +840,8 @@ public class Matrix {
             numCols += matrix.numCols;
         }
 
-        return numCols;
+        Matrix.validateLength(numRows, numCols);
+        return (int) numCols;
     }
 
     public static Matrix horizontalConcatenate(Matrix... matrices) throws MatrixIllegalArgumentException {
@@ -584,13 +850,11 @@ public class Matrix {
 
         Matrix result = Matrix.create(numRows, numCols);
 
-        for (int rowIndex = 0; rowIndex < result.numRows; rowIndex++) {
-            int runningNumCols = 0;
-            for (Matrix matrix: matrices) {
-                System.arraycopy(matrix.array, matrix.getIndex(rowIndex, 0),
-                        result.array, result.getIndex(rowIndex, runningNumCols), matrix.numCols);
-                runningNumCols += matrix.numCols;
-            }
+        int runningNumCols = 0;
+        for (Matrix matrix: matrices) {
+            MatrixKernels.copy(numRows, matrix.numCols, matrix.array, matrix.offset, matrix.rowStride, matrix.colStride,
+                    result.array, runningNumCols, result.numCols, 1);
+            runningNumCols += matrix.numCols;
         }
 
         return result;
@@ -601,7 +865,7 @@ public class Matrix {
 
         Matrix.validateMatricesNonEmpty(matrices);
         Matrix.validateMatricesNonNull(matrices[0]);
-        int numRows = 0;
+        long numRows = 0;
         int numCols = matrices[0].numCols;
 
         for (Matrix matrix : matrices) {
@@ -612,7 +876,8 @@ public class Matrix {
             numRows += matrix.numRows;
         }
 
-        return numRows;
+        Matrix.validateLength(numRows, numCols);
+        return (int) numRows;
     }
 
     public static Matrix verticalConcatenate(Matrix... matrices) throws MatrixIllegalArgumentException {
@@ -624,7 +889,8 @@ public class Matrix {
 
         int runningLength = 0;
         for (Matrix matrix: matrices) {
-            System.arraycopy(matrix.array, 0, result.array, runningLength, matrix.length);
+            MatrixKernels.copy(matrix.numRows, numCols, matrix.array, matrix.offset, matrix.rowStride, matrix.colStride,
+                    result.array, runningLength, result.numCols, 1);
             runningLength += matrix.length;
         }
 
@@ -633,48 +899,70 @@ public class Matrix {
     }
 
     public Matrix transpose() {
+        Matrix result = Matrix.wrap(new double[this.length], this.numCols, this.numRows);
+        return this.transposeTo(result);
+    }
 
-        Matrix result = Matrix.create(this.numCols, this.numRows);
-        for (int rowIndex = 0; rowIndex < result.numRows; rowIndex++) {
-            for (int colIndex = 0; colIndex < result.numCols; colIndex++) {
-                result.setToThis(rowIndex, colIndex, this.get(colIndex, rowIndex));
-            }
-        }
-
+    private Matrix transposeTo(Matrix result) {
+        MatrixKernels.transpose(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                result.array, result.offset, result.rowStride, result.colStride);
         return result;
     }
 
+    public Matrix transposeToThis() throws MatrixIllegalArgumentException {
+        Matrix.validateSquare(this);
+        MatrixKernels.transposeSquare(this.numRows, this.array, this.offset, this.rowStride, this.colStride);
+        return this;
+    }
+
+    // Swaps the strides instead of moving any element. Products read the view in place, so A^T * B, A * B^T and
+    // A^T * B^T need no transposed copy
+    public Matrix transposeView() {
+        return new Matrix(this.array, this.offset, this.numCols, this.numRows, this.colStride, this.rowStride);
+    }
+
+    // Nothing is computed until the returned expression is evaluated, see LazyMatrix
+    public LazyMatrix lazy() {
+        return LazyMatrix.of(this);
+    }
+
+    public Matrix transposeInto(Matrix destination) throws MatrixIllegalArgumentException {
+        Matrix.validateDestination(destination, this.numCols, this.numRows);
+        Matrix.validateDestinationNotOperand(destination, this);
+        return this.transposeTo(destination);
+    }
+
     public Matrix reshape(int numRows, int numCols) {
-        return Matrix.create(this.array, numRows, numCols);
+        return Matrix.wrap(this.getArray(), numRows, numCols);
     }
 
-    public double sum() {
-        double value = 0;
-        for (int index = 0; index < this.length; index++) {
-            value += this.array[index];
+    public Matrix reshapeView(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        if (!this.isContiguous()) {
+            throw new MatrixIllegalArgumentException("Only a contiguous matrix can be reshaped without copying");
         }
-        return value;
+        if (numRows <= 0 || numCols <= 0 || (long) numRows * numCols != this.length) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'numRows' * 'numCols' (%d) does not match the length of the matrix (%d)",
+                    (long) numRows * numCols, this.length));
+        }
+        return new Matrix(this.array, this.offset, numRows, numCols, numCols, 1);
+    }
+
+    public double sum() {
+        return MatrixKernels.sum(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride);
     }
 
     private Matrix sumOverRows() {
         Matrix result = Matrix.create(1, this.numCols);
-        for (int colIndex = 0; colIndex < this.numCols; colIndex++) {
-            result.array[colIndex] = 0;
-            for (int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
-                result.array[colIndex] += this.get(rowIndex, colIndex);
-            }
-        }
+        MatrixKernels.sumOverRows(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                result.array, 0, 1);
         return result;
     }
 
     private Matrix sumOverCols() {
         Matrix result = Matrix.create(this.numRows, 1);
-        for (int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
-            result.array[rowIndex] = 0;
-            for (int colIndex = 0; colIndex < this.numCols; colIndex++) {
-                result.array[rowIndex] += this.get(rowIndex, colIndex);
-            }
-        }
+        MatrixKernels.sumOverCols(this.numRows, this.numCols, this.array, this.offset, this.rowStride, this.colStride,
+                result.array, 0, 1);
         return result;
     }
 
@@ -717,7 +1005,7 @@ public class Matrix {
 
     public double toDouble() {
         Matrix.validateSingleton(this);
-        return this.array[0];
+        return this.array[this.offset];
     }
 
     public Matrix[] decomposeQRGramSchmidt() {
@@ -731,7 +1019,7 @@ public class Matrix {
         for (int colIndex = 0; colIndex < Q.numCols; colIndex++) {
 
             // Get column of this matrix and initialise the column for Q as the same column
-            Matrix thisColTranspose = this.getCol(colIndex).transpose();
+            Matrix thisColTranspose = this.getColView(colIndex).transposeView();
             Matrix QCol = this.getCol(colIndex);
 
             // Loop through all previous columns in Q and remove the projection of this column
@@ -743,7 +1031,7 @@ public class Matrix {
             }
 
             // Normalise the column for Q
-            double QColNormInv = 1 / Math.sqrt(QCol.transpose().multiply(QCol).toDouble());
+            double QColNormInv = 1 / Math.sqrt(QCol.transposeView().multiply(QCol).toDouble());
             QCol.multiplyToThis(QColNormInv);
 
             Q.setColToThis(QCol, colIndex);
@@ -754,12 +1042,121 @@ public class Matrix {
         return new Matrix[] { Q, R };
     }
 
-    public double maxDifference(Matrix other) {
-        double max_value = Double.MIN_VALUE;
-        for (int index = 0; index < this.length; index++) {
-            max_value = Math.max(max_value, Math.abs(this.array[index] - other.array[index]));
+    public QRDecomposition decomposeQR(ForkJoinPool pool) throws MatrixIllegalArgumentException {
+        Matrix.validatePoolNonNull(pool);
+        return new QRDecomposition(pool, this);
+    }
+
+    public QRDecomposition decomposeQR() {
+        return this.decomposeQR(ForkJoinPool.commonPool());
+    }
+
+    public Matrix[] decomposeQRHouseholder() {
+        QRDecomposition qr = this.decomposeQR();
+        return new Matrix[] { qr.getQ(), qr.getR() };
+    }
+
+    public LUDecomposition decomposeLU(ForkJoinPool pool) throws MatrixIllegalArgumentException {
+        Matrix.validateSquare(this);
+        Matrix.validatePoolNonNull(pool);
+        return new LUDecomposition(pool, this);
+    }
+
+    public LUDecomposition decomposeLU() throws MatrixIllegalArgumentException {
+        return this.decomposeLU(ForkJoinPool.commonPool());
+    }
+
+    // X such that this * X = matrix, through a fresh LU decomposition. Keep the LUDecomposition to solve for several
+    // right-hand sides that are not known at once
+    public Matrix solve(Matrix matrix) throws MatrixIllegalArgumentException {
+        return this.decomposeLU().solve(matrix);
+    }
+
+    public Matrix inverse() throws MatrixIllegalArgumentException {
+        return this.decomposeLU().inverse();
+    }
+
+    public double determinant() throws MatrixIllegalArgumentException {
+        return this.decomposeLU().determinant();
+    }
+
+    // Only the lower triangle is read, see CholeskyDecomposition
+    public CholeskyDecomposition decomposeCholesky(ForkJoinPool pool) throws MatrixIllegalArgumentException {
+        Matrix.validateSquare(this);
+        Matrix.validatePoolNonNull(pool);
+        return new CholeskyDecomposition(pool, this);
+    }
+
+    public CholeskyDecomposition decomposeCholesky() throws MatrixIllegalArgumentException {
+        return this.decomposeCholesky(ForkJoinPool.commonPool());
+    }
+
+    // Only the lower triangle is read, see SymmetricEigenDecomposition
+    public SymmetricEigenDecomposition decomposeSymmetricEigen(ForkJoinPool pool)
+            throws MatrixIllegalArgumentException {
+        Matrix.validateSquare(this);
+        Matrix.validatePoolNonNull(pool);
+        return SymmetricEigenDecomposition.of(pool, this);
+    }
+
+    public SymmetricEigenDecomposition decomposeSymmetricEigen() throws MatrixIllegalArgumentException {
+        return this.decomposeSymmetricEigen(ForkJoinPool.commonPool());
+    }
+
+    // Eigenpairs firstIndex to lastIndex inclusive, counting the eigenvalues in ascending order from 0
+    public SymmetricEigenDecomposition decomposeSymmetricEigen(ForkJoinPool pool, int firstIndex, int lastIndex)
+            throws MatrixIllegalArgumentException {
+        Matrix.validateSquare(this);
+        Matrix.validatePoolNonNull(pool);
+        if (firstIndex < 0 || firstIndex > lastIndex || lastIndex >= this.numRows) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'firstIndex' (%d) and 'lastIndex' (%d) have to satisfy 0 <= firstIndex <= lastIndex < %d",
+                    firstIndex, lastIndex, this.numRows));
         }
-        return max_value;
+        return SymmetricEigenDecomposition.of(pool, this, firstIndex, lastIndex);
+    }
+
+    public SymmetricEigenDecomposition decomposeSymmetricEigen(int firstIndex, int lastIndex)
+            throws MatrixIllegalArgumentException {
+        return this.decomposeSymmetricEigen(ForkJoinPool.commonPool(), firstIndex, lastIndex);
+    }
+
+    // Column vector of the eigenvalues in ascending order, without the eigenvectors
+    public Matrix eigenvaluesSymmetric(ForkJoinPool pool) throws MatrixIllegalArgumentException {
+        Matrix.validateSquare(this);
+        Matrix.validatePoolNonNull(pool);
+        return Matrix.wrap(SymmetricEigenDecomposition.eigenvalues(pool, this), this.numRows, 1);
+    }
+
+    public Matrix eigenvaluesSymmetric() throws MatrixIllegalArgumentException {
+        return this.eigenvaluesSymmetric(ForkJoinPool.commonPool());
+    }
+
+    // Thin SVD, see SingularValueDecomposition
+    public SingularValueDecomposition decomposeSVD(ForkJoinPool pool) throws MatrixIllegalArgumentException {
+        Matrix.validatePoolNonNull(pool);
+        return SingularValueDecomposition.of(pool, this);
+    }
+
+    public SingularValueDecomposition decomposeSVD() throws MatrixIllegalArgumentException {
+        return this.decomposeSVD(ForkJoinPool.commonPool());
+    }
+
+    // Column vector of the min(numRows, numCols) singular values in descending order, without the singular vectors
+    public Matrix singularValues(ForkJoinPool pool) throws MatrixIllegalArgumentException {
+        Matrix.validatePoolNonNull(pool);
+        double[] singularValues = SingularValueDecomposition.singularValues(pool, this);
+        return Matrix.wrap(singularValues, singularValues.length, 1);
+    }
+
+    public Matrix singularValues() throws MatrixIllegalArgumentException {
+        return this.singularValues(ForkJoinPool.commonPool());
+    }
+
+    public double maxDifference(Matrix other) {
+        return MatrixKernels.maxAbsDifference(this.numRows, this.numCols,
+                this.array, this.offset, this.rowStride, this.colStride,
+                other.array, other.offset, other.rowStride, other.colStride, Double.MIN_VALUE);
     }
 
     public boolean equalsMaxWithinTolerance(Matrix other, double tolerance) {
@@ -788,6 +1185,11 @@ public class Matrix {
 
     public Matrix getBlock(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
             throws MatrixIllegalArgumentException {
+        return this.getBlockView(rowStartIndex, rowEndIndex, colStartIndex, colEndIndex).copy();
+    }
+
+    public Matrix getBlockView(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
+            throws MatrixIllegalArgumentException {
 
         if (
                 rowStartIndex < 0 || colStartIndex < 0 ||
@@ -797,15 +1199,8 @@ public class Matrix {
             throw new MatrixIllegalArgumentException("Invalid indexes");
         }
 
-        Matrix matrix = Matrix.create(rowEndIndex - rowStartIndex + 1,
-                colEndIndex - colStartIndex + 1);
-
-        for (int rowIndex = 0; rowIndex < matrix.numRows; rowIndex++) {
-            System.arraycopy(this.array, this.getIndex(rowStartIndex + rowIndex, colStartIndex), matrix.array,
-                    matrix.getIndex(rowIndex, 0), matrix.numCols);
-        }
-
-        return matrix;
+        return new Matrix(this.array, this.getArrayIndex(rowStartIndex, colStartIndex),
+                rowEndIndex - rowStartIndex + 1, colEndIndex - colStartIndex + 1, this.rowStride, this.colStride);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,401 @@
+package agent.smith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+
+// Element-wise expression over matrices of the same shape, evaluated in a single pass over memory.
+//
+// An expression starts from one matrix and is extended step by step, e.g.
+//
+//   MatrixExpression.of(a).multiply(alpha).add(beta, b).add(c, d).map(Math::exp).evaluate()
+//
+// computes exp(alpha * a + beta * b + (0 + c + d)) without any intermediate matrix. Evaluation walks the elements in
+// chunks small enough to stay in L1: every step is applied to the chunk before the next chunk is loaded, so each
+// operand is read once and the result is written once, however many steps there are. Steps are applied in the order
+// they were added and each one rounds exactly like the corresponding Matrix method, so for example
+// MatrixExpression.of(a).add(b, c).evaluate() equals a.add(b, c) bit for bit.
+//
+// Building an expression only records the steps, so the operands are read when evaluate is called. Every step returns
+// this expression, which is therefore not meant to be shared once it has been extended.
+
+public final class MatrixExpression {
+
+    private static final int CHUNK_LENGTH = 512;
+
+    private final Matrix first;
+    private final List<Step> steps = new ArrayList<>();
+
+    private MatrixExpression(Matrix first) {
+        this.first = first;
+    }
+
+    public static MatrixExpression of(Matrix matrix) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        return new MatrixExpression(matrix);
+    }
+
+    // coefficients[0] * matrices[0] + coefficients[1] * matrices[1] + ..., accumulated left to right
+    public static MatrixExpression linearCombination(double[] coefficients, Matrix... matrices)
+            throws MatrixIllegalArgumentException {
+
+        if (coefficients == null) {
+            throw new MatrixIllegalArgumentException("'coefficients' cannot be null");
+        }
+        Matrix.validateMatricesNonEmpty(matrices);
+        if (coefficients.length != matrices.length) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Length of 'coefficients' (%d) does not match the number of matrices (%d)",
+                    coefficients.length, matrices.length));
+        }
+
+        MatrixExpression expression = MatrixExpression.of(matrices[0]).multiply(coefficients[0]);
+        for (int matrixIndex = 1; matrixIndex < matrices.length; matrixIndex++) {
+            expression.add(coefficients[matrixIndex], matrices[matrixIndex]);
+        }
+        return expression;
+    }
+
+    public int getNumRows() {
+        return this.first.getNumRows();
+    }
+
+    public int getNumCols() {
+        return this.first.getNumCols();
+    }
+
+    private void validateOperand(Matrix matrix) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        if (matrix.getNumRows() != this.getNumRows() || matrix.getNumCols() != this.getNumCols()) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Dimension mismatch for 'matrix': expected = (%d, %d) vs 'matrix' = (%d, %d)",
+                    this.getNumRows(), this.getNumCols(), matrix.getNumRows(), matrix.getNumCols()));
+        }
+    }
+
+    private static void validateFunctionNonNull(Object function) throws MatrixIllegalArgumentException {
+        if (function == null) {
+            throw new MatrixIllegalArgumentException("'function' cannot be null");
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Steps
+
+    public MatrixExpression add(double value) {
+        this.steps.add(new Shift(value));
+        return this;
+    }
+
+    // Same rounding as Matrix.add(Matrix...): the matrices are summed first, starting from 0, and then added
+    public MatrixExpression add(Matrix... matrices) throws MatrixIllegalArgumentException {
+        for (Matrix matrix : matrices) {
+            this.validateOperand(matrix);
+        }
+        if (matrices.length > 0) {
+            this.steps.add(new Sum(matrices.clone()));
+        }
+        return this;
+    }
+
+    // value = value + coefficient * matrix, the axpy of BLAS
+    public MatrixExpression add(double coefficient, Matrix matrix) throws MatrixIllegalArgumentException {
+        this.validateOperand(matrix);
+        this.steps.add(new Term(coefficient, matrix));
+        return this;
+    }
+
+    public MatrixExpression multiply(double value) {
+        if (value != 1) {
+            this.steps.add(new Scale(value));
+        }
+        return this;
+    }
+
+    public MatrixExpression multiplyElementwise(Matrix matrix) throws MatrixIllegalArgumentException {
+        this.validateOperand(matrix);
+        this.steps.add(new Product(matrix));
+        return this;
+    }
+
+    public MatrixExpression map(DoubleUnaryOperator function) throws MatrixIllegalArgumentException {
+        MatrixExpression.validateFunctionNonNull(function);
+        this.steps.add(new Apply(function));
+        return this;
+    }
+
+    // value = function(value, element of matrix)
+    public MatrixExpression combine(Matrix matrix, DoubleBinaryOperator function)
+            throws MatrixIllegalArgumentException {
+        this.validateOperand(matrix);
+        MatrixExpression.validateFunctionNonNull(function);
+        this.steps.add(new Combine(matrix, function));
+        return this;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Evaluation
+
+    public Matrix evaluate() {
+        Matrix result = Matrix.wrap(new double[this.getNumRows() * this.getNumCols()], this.getNumRows(),
+                this.getNumCols());
+        return this.evaluateTo(result);
+    }
+
+    // A chunk of the result is only written once all of its inputs have been read, so 'destination' may be laid out
+    // exactly like one of the operands, e.g. of(y).add(alpha, x).evaluateInto(y) is an in-place axpy. It cannot
+    // partly overlap one though.
+    public Matrix evaluateInto(Matrix destination) throws MatrixIllegalArgumentException {
+        Matrix.validateDestination(destination, this.getNumRows(), this.getNumCols());
+        for (Matrix operand : this.getOperands()) {
+            if (!destination.hasSameLayout(operand)) {
+                Matrix.validateDestinationNotOperand(destination, operand);
+            }
+        }
+        return this.evaluateTo(destination);
+    }
+
+    private List<Matrix> getOperands() {
+        List<Matrix> operands = new ArrayList<>();
+        operands.add(this.first);
+        for (Step step : this.steps) {
+            step.addOperands(operands);
+        }
+        return operands;
+    }
+
+    private Matrix evaluateTo(Matrix destination) {
+
+        int numRows = this.getNumRows();
+        int numCols = this.getNumCols();
+        boolean contiguous = destination.isContiguous();
+        for (Matrix operand : this.getOperands()) {
+            contiguous &= operand.isContiguous();
+        }
+
+        // With every matrix contiguous the whole expression is a single row of numRows * numCols elements
+        int numPasses = contiguous ? 1 : numRows;
+        int length = contiguous ? numRows * numCols : numCols;
+
+        double[] chunk = new double[Math.min(CHUNK_LENGTH, length)];
+        double[] workspace = new double[chunk.length];
+        for (int rowIndex = 0; rowIndex < numPasses; rowIndex++) {
+            for (int chunkStart = 0; chunkStart < length; chunkStart += CHUNK_LENGTH) {
+                int chunkLength = Math.min(CHUNK_LENGTH, length - chunkStart);
+                MatrixExpression.load(this.first, rowIndex, chunkStart, chunkLength, chunk);
+                for (Step step : this.steps) {
+                    step.apply(rowIndex, chunkStart, chunkLength, chunk, workspace);
+                }
+                MatrixExpression.store(chunk, destination, rowIndex, chunkStart, chunkLength);
+            }
+        }
+
+        return destination;
+    }
+
+    // Position in 'array' of element 'colIndex' of row 'rowIndex', where a contiguous matrix is seen as a single row
+    private static int getArrayIndex(Matrix matrix, int rowIndex, int colIndex) {
+        return matrix.offset + rowIndex * matrix.rowStride + colIndex * matrix.colStride;
+    }
+
+    private static void load(Matrix matrix, int rowIndex, int chunkStart, int chunkLength, double[] chunk) {
+        int start = MatrixExpression.getArrayIndex(matrix, rowIndex, chunkStart);
+        int stride = matrix.colStride;
+        double[] array = matrix.array;
+        for (int index = 0; index < chunkLength; index++) {
+            chunk[index] = array[start + index * stride];
+        }
+    }
+
+    private static void store(double[] chunk, Matrix matrix, int rowIndex, int chunkStart, int chunkLength) {
+        int start = MatrixExpression.getArrayIndex(matrix, rowIndex, chunkStart);
+        int stride = matrix.colStride;
+        double[] array = matrix.array;
+        for (int index = 0; index < chunkLength; index++) {
+            array[start + index * stride] = chunk[index];
+        }
+    }
+
+    private abstract static class Step {
+
+        void addOperands(List<Matrix> operands) {
+        }
+
+        abstract void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace);
+
+    }
+
+    private static final class Shift extends Step {
+
+        private final double value;
+
+        Shift(double value) {
+            this.value = value;
+        }
+
+        @Override
+        void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace) {
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] += this.value;
+            }
+        }
+
+    }
+
+    private static final class Scale extends Step {
+
+        private final double value;
+
+        Scale(double value) {
+            this.value = value;
+        }
+
+        @Override
+        void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace) {
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] *= this.value;
+            }
+        }
+
+    }
+
+    private static final class Apply extends Step {
+
+        private final DoubleUnaryOperator function;
+
+        Apply(DoubleUnaryOperator function) {
+            this.function = function;
+        }
+
+        @Override
+        void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace) {
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] = this.function.applyAsDouble(chunk[index]);
+            }
+        }
+
+    }
+
+    private static final class Term extends Step {
+
+        private final double coefficient;
+        private final Matrix matrix;
+
+        Term(double coefficient, Matrix matrix) {
+            this.coefficient = coefficient;
+            this.matrix = matrix;
+        }
+
+        @Override
+        void addOperands(List<Matrix> operands) {
+            operands.add(this.matrix);
+        }
+
+        @Override
+        void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace) {
+            int start = MatrixExpression.getArrayIndex(this.matrix, rowIndex, chunkStart);
+            int stride = this.matrix.colStride;
+            double[] array = this.matrix.array;
+            if (this.coefficient == 1) {
+                for (int index = 0; index < chunkLength; index++) {
+                    chunk[index] += array[start + index * stride];
+                }
+            } else {
+                for (int index = 0; index < chunkLength; index++) {
+                    chunk[index] += this.coefficient * array[start + index * stride];
+                }
+            }
+        }
+
+    }
+
+    private static final class Sum extends Step {
+
+        private final Matrix[] matrices;
+
+        Sum(Matrix[] matrices) {
+            this.matrices = matrices;
+        }
+
+        @Override
+        void addOperands(List<Matrix> operands) {
+            for (Matrix matrix : this.matrices) {
+                operands.add(matrix);
+            }
+        }
+
+        @Override
+        void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace) {
+            for (int index = 0; index < chunkLength; index++) {
+                workspace[index] = 0;
+            }
+            for (Matrix matrix : this.matrices) {
+                int start = MatrixExpression.getArrayIndex(matrix, rowIndex, chunkStart);
+                int stride = matrix.colStride;
+                double[] array = matrix.array;
+                for (int index = 0; index < chunkLength; index++) {
+                    workspace[index] += array[start + index * stride];
+                }
+            }
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] += workspace[index];
+            }
+        }
+
+    }
+
+    private static final class Product extends Step {
+
+        private final Matrix matrix;
+
+        Product(Matrix matrix) {
+            this.matrix = matrix;
+        }
+
+        @Override
+        void addOperands(List<Matrix> operands) {
+            operands.add(this.matrix);
+        }
+
+        @Override
+        void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace) {
+            int start = MatrixExpression.getArrayIndex(this.matrix, rowIndex, chunkStart);
+            int stride = this.matrix.colStride;
+            double[] array = this.matrix.array;
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] *= array[start + index * stride];
+            }
+        }
+
+    }
+
+    private static final class Combine extends Step {
+
+        private final Matrix matrix;
+        private final DoubleBinaryOperator function;
+
+        Combine(Matrix matrix, DoubleBinaryOperator function) {
+            this.matrix = matrix;
+            this.function = function;
+        }
+
+        @Override
+        void addOperands(List<Matrix> operands) {
+            operands.add(this.matrix);
+        }
+
+        @Override
+        void apply(int rowIndex, int chunkStart, int chunkLength, double[] chunk, double[] workspace) {
+            int start = MatrixExpression.getArrayIndex(this.matrix, rowIndex, chunkStart);
+            int stride = this.matrix.colStride;
+            double[] array = this.matrix.array;
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] = this.function.applyAsDouble(chunk[index], array[start + index * stride]);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+package agent.smith;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+// Layout of the files written by MatrixFileWriter and read by MatrixFileReader, all numbers little-endian:
+//
+//   header (48 bytes)  magic "AGSMATRX", int version, byte element type (1 = float64), byte layout (1 = row-major
+//                      tiles), byte compression (MatrixFileWriter.Compression ordinal), byte reserved, int numRows,
+//                      int numCols, int tileNumRows, int tileNumCols, long position of the tile index, long reserved
+//   tiles              one after another, in row-major order of the tiles
+//   tile index         per tile in row-major order: long position, int length in bytes
+//
+// A tile holds the (up to) tileNumRows x tileNumCols elements it covers in row-major order. NONE stores them as plain
+// doubles. DEFLATE first groups the bytes by significance, all the lowest bytes of the tile then all the next ones
+// and so on, since the sign, exponent and high mantissa bytes of neighbouring elements tend to repeat and compress
+// well while the low mantissa bytes are close to random; a tile whose deflated bytes are not smaller is stored
+// grouped but uncompressed, which the reader recognises by its length.
+
+final class MatrixFileFormat {
+
+    static final byte[] MAGIC = {'A', 'G', 'S', 'M', 'A', 'T', 'R', 'X'};
+    static final int VERSION = 1;
+    static final byte ELEMENT_TYPE_FLOAT64 = 1;
+    static final byte LAYOUT_ROW_MAJOR_TILES = 1;
+    static final int HEADER_LENGTH = 48;
+    static final int INDEX_ENTRY_LENGTH = Long.BYTES + Integer.BYTES;
+    static final int TILE_LENGTH = 256;
+    // The tile index is read into a single buffer
+    static final int MAX_NUM_TILES = Matrix.MAX_LENGTH / INDEX_ENTRY_LENGTH;
+
+    private MatrixFileFormat() {
+    }
+
+    static void shuffle(double[] tile, int length, byte[] bytes) {
+        for (int index = 0; index < length; index++) {
+            long bits = Double.doubleToRawLongBits(tile[index]);
+            for (int byteIndex = 0; byteIndex < Double.BYTES; byteIndex++) {
+                bytes[byteIndex * length + index] = (byte) (bits >>> (8 * byteIndex));
+            }
+        }
+    }
+
+    static void unshuffle(byte[] bytes, int length, double[] tile) {
+        for (int index = 0; index < length; index++) {
+            long bits = 0;
+            for (int byteIndex = 0; byteIndex < Double.BYTES; byteIndex++) {
+                bits |= (bytes[byteIndex * length + index] & 0xFFL) << (8 * byteIndex);
+            }
+            tile[index] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    // Positional, so that several threads can read from the same channel
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of matrix file");
+            }
+            position += count;
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+}
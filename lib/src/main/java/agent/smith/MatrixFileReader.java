@@ -0,0 +1,274 @@
+package agent.smith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+
+// Reads files written by MatrixFileWriter. Opening a file only reads its header and tile index, and getBlock then
+// reads and decodes just the tiles the block overlaps, so a small block of a large file costs at most a few tiles
+// whatever the size of the file. Reads are positional and keep no state, so one reader can be shared by threads.
+
+public final class MatrixFileReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final int numRows;
+    private final int numCols;
+    private final int tileNumRows;
+    private final int tileNumCols;
+    private final int numTileCols;
+    private final MatrixFileWriter.Compression compression;
+    private final long[] tilePositions;
+    private final int[] tileLengths;
+
+    private MatrixFileReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < MatrixFileFormat.HEADER_LENGTH) {
+            throw new IOException("Not a matrix file");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(MatrixFileFormat.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        MatrixFileFormat.readFully(channel, header, 0);
+        header.flip();
+        byte[] magic = new byte[MatrixFileFormat.MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MatrixFileFormat.MAGIC)) {
+            throw new IOException("Not a matrix file");
+        }
+        int version = header.getInt();
+        if (version != MatrixFileFormat.VERSION) {
+            throw new IOException(String.format("Unsupported matrix file version %d", version));
+        }
+        byte elementType = header.get();
+        if (elementType != MatrixFileFormat.ELEMENT_TYPE_FLOAT64) {
+            throw new IOException(String.format("Unsupported element type %d", elementType));
+        }
+        byte layout = header.get();
+        if (layout != MatrixFileFormat.LAYOUT_ROW_MAJOR_TILES) {
+            throw new IOException(String.format("Unsupported layout %d", layout));
+        }
+        byte compression = header.get();
+        if (compression < 0 || compression >= MatrixFileWriter.Compression.values().length) {
+            throw new IOException(String.format("Unsupported compression %d", compression));
+        }
+        this.compression = MatrixFileWriter.Compression.values()[compression];
+        header.get();
+        this.numRows = header.getInt();
+        this.numCols = header.getInt();
+        this.tileNumRows = header.getInt();
+        this.tileNumCols = header.getInt();
+        long indexPosition = header.getLong();
+        if (
+                this.numRows <= 0 || this.numCols <= 0 ||
+                this.tileNumRows <= 0 || this.tileNumRows > this.numRows ||
+                this.tileNumCols <= 0 || this.tileNumCols > this.numCols ||
+                (long) this.tileNumRows * this.tileNumCols > Matrix.MAX_LENGTH / Double.BYTES
+        ) {
+            throw new IOException("Corrupt matrix file header");
+        }
+
+        this.numTileCols = (this.numCols + this.tileNumCols - 1) / this.tileNumCols;
+        long numTiles = (((long) this.numRows + this.tileNumRows - 1) / this.tileNumRows) * this.numTileCols;
+        if (
+                indexPosition < MatrixFileFormat.HEADER_LENGTH ||
+                numTiles > MatrixFileFormat.MAX_NUM_TILES ||
+                indexPosition + numTiles * MatrixFileFormat.INDEX_ENTRY_LENGTH != size
+        ) {
+            throw new IOException("Corrupt matrix file index");
+        }
+
+        ByteBuffer index = ByteBuffer.allocate((int) numTiles * MatrixFileFormat.INDEX_ENTRY_LENGTH)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        MatrixFileFormat.readFully(channel, index, indexPosition);
+        index.flip();
+        this.tilePositions = new long[(int) numTiles];
+        this.tileLengths = new int[(int) numTiles];
+        for (int tileIndex = 0; tileIndex < numTiles; tileIndex++) {
+            this.tilePositions[tileIndex] = index.getLong();
+            this.tileLengths[tileIndex] = index.getInt();
+            if (
+                    this.tilePositions[tileIndex] < MatrixFileFormat.HEADER_LENGTH ||
+                    this.tileLengths[tileIndex] < 0 ||
+                    this.tilePositions[tileIndex] + this.tileLengths[tileIndex] > indexPosition
+            ) {
+                throw new IOException("Corrupt matrix file index");
+            }
+        }
+    }
+
+    public static MatrixFileReader open(Path path) throws IOException, MatrixIllegalArgumentException {
+        if (path == null) {
+            throw new MatrixIllegalArgumentException("'path' cannot be null");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MatrixFileReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static Matrix read(Path path) throws IOException, MatrixIllegalArgumentException {
+        try (MatrixFileReader reader = MatrixFileReader.open(path)) {
+            return reader.read();
+        }
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+    public int getTileNumRows() {
+        return this.tileNumRows;
+    }
+
+    public int getTileNumCols() {
+        return this.tileNumCols;
+    }
+
+    public MatrixFileWriter.Compression getCompression() {
+        return this.compression;
+    }
+
+    public Matrix read() throws IOException, MatrixIllegalArgumentException {
+        return this.getBlock(0, this.numRows - 1, 0, this.numCols - 1);
+    }
+
+    // For matrices too large for a Matrix
+    public ChunkedMatrix readChunked() throws IOException, MatrixIllegalArgumentException {
+        ChunkedMatrix result = ChunkedMatrix.create(this.numRows, this.numCols);
+        try (TileDecoder decoder = new TileDecoder()) {
+            for (int tileIndex = 0; tileIndex < this.tilePositions.length; tileIndex++) {
+                int rowIndex = (tileIndex / this.numTileCols) * this.tileNumRows;
+                int colIndex = (tileIndex % this.numTileCols) * this.tileNumCols;
+                int numRows = Math.min(this.tileNumRows, this.numRows - rowIndex);
+                int numCols = Math.min(this.tileNumCols, this.numCols - colIndex);
+                double[] tile = decoder.decode(tileIndex, numRows * numCols);
+                for (int tileRowIndex = 0; tileRowIndex < numRows; tileRowIndex++) {
+                    result.write((long) (rowIndex + tileRowIndex) * this.numCols + colIndex, tile,
+                            tileRowIndex * numCols, numCols);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Indexes are inclusive, as for Matrix.getBlock
+    public Matrix getBlock(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
+            throws IOException, MatrixIllegalArgumentException {
+
+        if (
+                rowStartIndex < 0 || colStartIndex < 0 ||
+                rowEndIndex >= this.numRows || colEndIndex >= this.numCols ||
+                rowEndIndex < rowStartIndex || colEndIndex < colStartIndex
+        ) {
+            throw new MatrixIllegalArgumentException("Invalid indexes");
+        }
+        int numRows = rowEndIndex - rowStartIndex + 1;
+        int numCols = colEndIndex - colStartIndex + 1;
+        Matrix.validateLength(numRows, numCols);
+
+        double[] result = new double[numRows * numCols];
+        try (TileDecoder decoder = new TileDecoder()) {
+            int tileRowEnd = rowEndIndex / this.tileNumRows;
+            int tileColEnd = colEndIndex / this.tileNumCols;
+            for (int tileRowIndex = rowStartIndex / this.tileNumRows; tileRowIndex <= tileRowEnd; tileRowIndex++) {
+                int tileRowStart = tileRowIndex * this.tileNumRows;
+                int tileHeight = Math.min(this.tileNumRows, this.numRows - tileRowStart);
+                int rowStart = Math.max(rowStartIndex, tileRowStart);
+                int rowEnd = Math.min(rowEndIndex, tileRowStart + tileHeight - 1);
+                for (int tileColIndex = colStartIndex / this.tileNumCols; tileColIndex <= tileColEnd; tileColIndex++) {
+                    int tileColStart = tileColIndex * this.tileNumCols;
+                    int tileWidth = Math.min(this.tileNumCols, this.numCols - tileColStart);
+                    int colStart = Math.max(colStartIndex, tileColStart);
+                    int colEnd = Math.min(colEndIndex, tileColStart + tileWidth - 1);
+
+                    double[] tile = decoder.decode(tileRowIndex * this.numTileCols + tileColIndex,
+                            tileHeight * tileWidth);
+                    for (int rowIndex = rowStart; rowIndex <= rowEnd; rowIndex++) {
+                        System.arraycopy(tile, (rowIndex - tileRowStart) * tileWidth + colStart - tileColStart,
+                                result, (rowIndex - rowStartIndex) * numCols + colStart - colStartIndex,
+                                colEnd - colStart + 1);
+                    }
+                }
+            }
+        }
+        return Matrix.wrap(result, numRows, numCols);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    // Buffers for decoding the tiles of one read. close() frees the native memory of the inflater
+    private final class TileDecoder implements AutoCloseable {
+
+        private final double[] tile = new double[tileNumRows * tileNumCols];
+        private final byte[] bytes = new byte[this.tile.length * Double.BYTES];
+        private byte[] compressed;
+        private Inflater inflater;
+
+        double[] decode(int tileIndex, int length) throws IOException {
+            int numBytes = length * Double.BYTES;
+            int tileLength = tileLengths[tileIndex];
+            if (tileLength > numBytes || (compression == MatrixFileWriter.Compression.NONE && tileLength != numBytes)) {
+                throw new IOException(String.format("Corrupt tile %d", tileIndex));
+            }
+
+            if (compression == MatrixFileWriter.Compression.NONE) {
+                ByteBuffer buffer = ByteBuffer.wrap(this.bytes, 0, numBytes);
+                MatrixFileFormat.readFully(channel, buffer, tilePositions[tileIndex]);
+                buffer.flip();
+                buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(this.tile, 0, length);
+                return this.tile;
+            }
+
+            if (tileLength == numBytes) {
+                MatrixFileFormat.readFully(channel, ByteBuffer.wrap(this.bytes, 0, numBytes),
+                        tilePositions[tileIndex]);
+            } else {
+                if (this.compressed == null) {
+                    this.compressed = new byte[this.bytes.length];
+                }
+                MatrixFileFormat.readFully(channel, ByteBuffer.wrap(this.compressed, 0, tileLength),
+                        tilePositions[tileIndex]);
+                if (this.inflater == null) {
+                    this.inflater = new Inflater();
+                }
+                this.inflater.reset();
+                this.inflater.setInput(this.compressed, 0, tileLength);
+                try {
+                    if (this.inflater.inflate(this.bytes, 0, numBytes) != numBytes || !this.inflater.finished()) {
+                        throw new IOException(String.format("Corrupt tile %d", tileIndex));
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException(String.format("Corrupt tile %d", tileIndex), e);
+                }
+            }
+            MatrixFileFormat.unshuffle(this.bytes, length, this.tile);
+            return this.tile;
+        }
+
+        @Override
+        public void close() {
+            if (this.inflater != null) {
+                this.inflater.end();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,288 @@
+package agent.smith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+
+
+// Streams a matrix to a file in the tiled binary format of MatrixFileFormat, a band of rows at a time, so that the
+// whole matrix never has to be in memory, e.g.
+//
+//   try (MatrixFileWriter writer = MatrixFileWriter.create(path, numRows, numCols)) {
+//       for (Matrix rows : batches) {
+//           writer.appendRows(rows);
+//       }
+//   }
+//
+// Only tileNumRows rows are buffered. The tile index and the header are written by close(), which fails if fewer
+// rows than numRows were appended; such a file has no valid header and is rejected by MatrixFileReader.
+
+public final class MatrixFileWriter implements AutoCloseable {
+
+    public enum Compression {
+        NONE, DEFLATE
+    }
+
+    private final FileChannel channel;
+    private final int numRows;
+    private final int numCols;
+    private final int tileNumRows;
+    private final int tileNumCols;
+    private final int numTileCols;
+    private final Compression compression;
+    private final long[] tilePositions;
+    private final int[] tileLengths;
+    // The rows of the current band of tiles, row-major
+    private final double[] band;
+    private final double[] tile;
+    private final byte[] bytes;
+    private final byte[] compressed;
+    private final Deflater deflater;
+    private int numRowsAppended;
+    private long position = MatrixFileFormat.HEADER_LENGTH;
+    private boolean closed;
+
+    private MatrixFileWriter(FileChannel channel, int numRows, int numCols, int tileNumRows, int tileNumCols,
+                             Compression compression) {
+        this.channel = channel;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.tileNumRows = tileNumRows;
+        this.tileNumCols = tileNumCols;
+        this.numTileCols = (numCols + tileNumCols - 1) / tileNumCols;
+        this.compression = compression;
+        int numTiles = ((numRows + tileNumRows - 1) / tileNumRows) * this.numTileCols;
+        this.tilePositions = new long[numTiles];
+        this.tileLengths = new int[numTiles];
+        this.band = new double[tileNumRows * numCols];
+        this.tile = new double[tileNumRows * tileNumCols];
+        this.bytes = new byte[this.tile.length * Double.BYTES];
+        this.compressed = compression == Compression.DEFLATE ? new byte[this.bytes.length] : null;
+        this.deflater = compression == Compression.DEFLATE ? new Deflater(Deflater.BEST_SPEED) : null;
+    }
+
+    private static void validatePositive(String name, int value) throws MatrixIllegalArgumentException {
+        if (value <= 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'%s' (%d) has to be a positive integer", name, value));
+        }
+    }
+
+    // Tiles larger than the matrix are shrunk to it
+    public static MatrixFileWriter create(Path path, int numRows, int numCols, int tileNumRows, int tileNumCols,
+                                          Compression compression)
+            throws IOException, MatrixIllegalArgumentException {
+
+        if (path == null) {
+            throw new MatrixIllegalArgumentException("'path' cannot be null");
+        }
+        if (compression == null) {
+            throw new MatrixIllegalArgumentException("'compression' cannot be null");
+        }
+        MatrixFileWriter.validatePositive("numRows", numRows);
+        MatrixFileWriter.validatePositive("numCols", numCols);
+        MatrixFileWriter.validatePositive("tileNumRows", tileNumRows);
+        MatrixFileWriter.validatePositive("tileNumCols", tileNumCols);
+        tileNumRows = Math.min(tileNumRows, numRows);
+        tileNumCols = Math.min(tileNumCols, numCols);
+
+        long maxTileLength = Matrix.MAX_LENGTH / Double.BYTES;
+        if ((long) tileNumRows * tileNumCols > maxTileLength) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'tileNumRows' * 'tileNumCols' (%d) is larger than the maximum length of a tile (%d)",
+                    (long) tileNumRows * tileNumCols, maxTileLength));
+        }
+        if ((long) tileNumRows * numCols > Matrix.MAX_LENGTH) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'tileNumRows' * 'numCols' (%d) is larger than the maximum length of a band of tiles (%d)",
+                    (long) tileNumRows * numCols, Matrix.MAX_LENGTH));
+        }
+        long numTiles = (((long) numRows + tileNumRows - 1) / tileNumRows)
+                * (((long) numCols + tileNumCols - 1) / tileNumCols);
+        if (numTiles > MatrixFileFormat.MAX_NUM_TILES) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Number of tiles (%d) is larger than the maximum (%d)", numTiles, MatrixFileFormat.MAX_NUM_TILES));
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        return new MatrixFileWriter(channel, numRows, numCols, tileNumRows, tileNumCols, compression);
+    }
+
+    public static MatrixFileWriter create(Path path, int numRows, int numCols)
+            throws IOException, MatrixIllegalArgumentException {
+        return MatrixFileWriter.create(path, numRows, numCols, MatrixFileFormat.TILE_LENGTH,
+                MatrixFileFormat.TILE_LENGTH, Compression.DEFLATE);
+    }
+
+    public static void write(Path path, Matrix matrix, int tileNumRows, int tileNumCols, Compression compression)
+            throws IOException, MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        try (MatrixFileWriter writer = MatrixFileWriter.create(path, matrix.getNumRows(), matrix.getNumCols(),
+                tileNumRows, tileNumCols, compression)) {
+            writer.appendRows(matrix);
+        }
+    }
+
+    public static void write(Path path, Matrix matrix) throws IOException, MatrixIllegalArgumentException {
+        MatrixFileWriter.write(path, matrix, MatrixFileFormat.TILE_LENGTH, MatrixFileFormat.TILE_LENGTH,
+                Compression.DEFLATE);
+    }
+
+    public static void write(Path path, ChunkedMatrix matrix) throws IOException, MatrixIllegalArgumentException {
+        if (matrix == null) {
+            throw new MatrixIllegalArgumentException("'matrix' cannot be null");
+        }
+        try (MatrixFileWriter writer = MatrixFileWriter.create(path, matrix.getNumRows(), matrix.getNumCols())) {
+            writer.appendRows(matrix);
+        }
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+    public int getNumRowsAppended() {
+        return this.numRowsAppended;
+    }
+
+    private void validateAppend(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        if (this.closed) {
+            throw new IllegalStateException("Writer has been closed");
+        }
+        if (numCols != this.numCols) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Dimension mismatch for appending rows: %d columns vs %d", numCols, this.numCols));
+        }
+        if ((long) this.numRowsAppended + numRows > this.numRows) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Too many rows: %d appended to the %d of a matrix with %d rows",
+                    numRows, this.numRowsAppended, this.numRows));
+        }
+    }
+
+    public MatrixFileWriter appendRows(Matrix rows) throws IOException, MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(rows);
+        this.validateAppend(rows.getNumRows(), rows.getNumCols());
+        for (int rowIndex = 0; rowIndex < rows.getNumRows(); rowIndex++) {
+            MatrixKernels.copy(rows.array, rows.offset + rowIndex * rows.rowStride, rows.colStride,
+                    this.band, this.getBandIndex(), 1, this.numCols);
+            this.rowAppended();
+        }
+        return this;
+    }
+
+    public MatrixFileWriter appendRows(ChunkedMatrix rows) throws IOException, MatrixIllegalArgumentException {
+        if (rows == null) {
+            throw new MatrixIllegalArgumentException("'rows' cannot be null");
+        }
+        this.validateAppend(rows.getNumRows(), rows.getNumCols());
+        for (int rowIndex = 0; rowIndex < rows.getNumRows(); rowIndex++) {
+            rows.read((long) rowIndex * this.numCols, this.band, this.getBandIndex(), this.numCols);
+            this.rowAppended();
+        }
+        return this;
+    }
+
+    private int getBandIndex() {
+        return (this.numRowsAppended % this.tileNumRows) * this.numCols;
+    }
+
+    private void rowAppended() throws IOException {
+        this.numRowsAppended++;
+        if (this.numRowsAppended % this.tileNumRows == 0 || this.numRowsAppended == this.numRows) {
+            this.writeBand();
+        }
+    }
+
+    private void writeBand() throws IOException {
+        int tileRowIndex = (this.numRowsAppended - 1) / this.tileNumRows;
+        int numRows = this.numRowsAppended - tileRowIndex * this.tileNumRows;
+        for (int tileColIndex = 0; tileColIndex < this.numTileCols; tileColIndex++) {
+            int colIndex = tileColIndex * this.tileNumCols;
+            int numCols = Math.min(this.tileNumCols, this.numCols - colIndex);
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                System.arraycopy(this.band, rowIndex * this.numCols + colIndex, this.tile, rowIndex * numCols,
+                        numCols);
+            }
+            int tileIndex = tileRowIndex * this.numTileCols + tileColIndex;
+            ByteBuffer encoded = this.encode(numRows * numCols);
+            this.tilePositions[tileIndex] = this.position;
+            this.tileLengths[tileIndex] = encoded.remaining();
+            MatrixFileFormat.writeFully(this.channel, encoded, this.position);
+            this.position += this.tileLengths[tileIndex];
+        }
+    }
+
+    private ByteBuffer encode(int length) {
+        int numBytes = length * Double.BYTES;
+        if (this.compression == Compression.NONE) {
+            ByteBuffer encoded = ByteBuffer.wrap(this.bytes, 0, numBytes).order(ByteOrder.LITTLE_ENDIAN);
+            encoded.asDoubleBuffer().put(this.tile, 0, length);
+            return encoded;
+        }
+
+        MatrixFileFormat.shuffle(this.tile, length, this.bytes);
+        this.deflater.reset();
+        this.deflater.setInput(this.bytes, 0, numBytes);
+        this.deflater.finish();
+        // Deflated bytes are only kept when strictly smaller, so that the reader can tell stored tiles apart
+        int numCompressedBytes = this.deflater.deflate(this.compressed, 0, numBytes - 1);
+        if (this.deflater.finished()) {
+            return ByteBuffer.wrap(this.compressed, 0, numCompressedBytes);
+        }
+        return ByteBuffer.wrap(this.bytes, 0, numBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            if (this.deflater != null) {
+                this.deflater.end();
+            }
+            if (this.numRowsAppended != this.numRows) {
+                throw new IllegalStateException(String.format(
+                        "Expected %d rows but %d were appended", this.numRows, this.numRowsAppended));
+            }
+
+            ByteBuffer index = ByteBuffer.allocate(this.tilePositions.length * MatrixFileFormat.INDEX_ENTRY_LENGTH)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int tileIndex = 0; tileIndex < this.tilePositions.length; tileIndex++) {
+                index.putLong(this.tilePositions[tileIndex]).putInt(this.tileLengths[tileIndex]);
+            }
+            index.flip();
+            MatrixFileFormat.writeFully(this.channel, index, this.position);
+
+            ByteBuffer header = ByteBuffer.allocate(MatrixFileFormat.HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MatrixFileFormat.MAGIC)
+                    .putInt(MatrixFileFormat.VERSION)
+                    .put(MatrixFileFormat.ELEMENT_TYPE_FLOAT64)
+                    .put(MatrixFileFormat.LAYOUT_ROW_MAJOR_TILES)
+                    .put((byte) this.compression.ordinal())
+                    .put((byte) 0)
+                    .putInt(this.numRows)
+                    .putInt(this.numCols)
+                    .putInt(this.tileNumRows)
+                    .putInt(this.tileNumCols)
+                    .putLong(this.position)
+                    .putLong(0);
+            header.flip();
+            MatrixFileFormat.writeFully(this.channel, header, 0);
+        } finally {
+            this.channel.close();
+        }
+    }
+
+}
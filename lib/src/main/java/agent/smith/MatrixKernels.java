@@ -0,0 +1,566 @@
+package agent.smith;
+
+
+// Loops behind the element-wise operations of Matrix, working on raw arrays.
+//
+// A vector is addressed as array[offset + index * stride] for 0 <= index < length, a 2D block as
+// array[offset + rowIndex * rowStride + colIndex * colStride]. Every kernel checks once that the whole range it is
+// about to touch lies inside the array and then runs a plain counted loop, which lets the JIT drop its own bounds
+// checks and vectorize the unit stride cases. Strides are never negative.
+//
+// A block whose rows follow each other without gaps (colStride == 1 and rowStride == numCols) is handled as a single
+// row of numRows * numCols elements, so contiguous matrices pay no per-row overhead.
+
+final class MatrixKernels {
+
+    private static final int CHUNK_LENGTH = 512;
+
+    // Reductions are split over this many independent accumulators unless the scalar kernels are asked for with
+    // -Dagent.smith.kernels=scalar. The choice is made once when the class is loaded, so the JIT folds the branches.
+    static final int LANES = 4;
+    static final boolean UNROLLED = !"scalar".equals(System.getProperty("agent.smith.kernels"));
+
+    // A 16 x 16 block of doubles is 2KB and touches 16 cache lines and pages on the side walked against its layout,
+    // so the source and destination blocks fit in L1 and the TLB together
+    private static final int TRANSPOSE_BLOCK_LENGTH = 16;
+
+    private MatrixKernels() {
+    }
+
+    static void checkRange(double[] array, int offset, int stride, int length) {
+        if (length == 0) {
+            return;
+        }
+        if (offset < 0 || stride < 0 || (long) offset + (long) (length - 1) * stride >= array.length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Range (offset = %d, stride = %d, length = %d) is outside of an array of length %d",
+                    offset, stride, length, array.length));
+        }
+    }
+
+    static void checkRange(double[] array, int offset, int numRows, int numCols, int rowStride, int colStride) {
+        if (numRows == 0 || numCols == 0) {
+            return;
+        }
+        if (offset < 0 || rowStride < 0 || colStride < 0 ||
+                (long) offset + (long) (numRows - 1) * rowStride + (long) (numCols - 1) * colStride >= array.length) {
+            throw new IndexOutOfBoundsException(String.format(
+                    "Block (offset = %d, numRows = %d, numCols = %d, rowStride = %d, colStride = %d) is outside of " +
+                            "an array of length %d", offset, numRows, numCols, rowStride, colStride, array.length));
+        }
+    }
+
+    static boolean isContiguous(int numRows, int numCols, int rowStride, int colStride) {
+        return colStride == 1 && (rowStride == numCols || numRows == 1);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // fill / add / multiply by a scalar
+
+    static void fill(double[] array, int offset, int stride, int length, double value) {
+        MatrixKernels.checkRange(array, offset, stride, length);
+        MatrixKernels.fillUnchecked(array, offset, stride, length, value);
+    }
+
+    static void fill(int numRows, int numCols, double[] array, int offset, int rowStride, int colStride,
+                     double value) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            MatrixKernels.fillUnchecked(array, offset, 1, numRows * numCols, value);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                MatrixKernels.fillUnchecked(array, offset + rowIndex * rowStride, colStride, numCols, value);
+            }
+        }
+    }
+
+    private static void fillUnchecked(double[] array, int offset, int stride, int length, double value) {
+        if (stride == 1) {
+            for (int index = offset, end = offset + length; index < end; index++) {
+                array[index] = value;
+            }
+        } else {
+            for (int index = 0; index < length; index++) {
+                array[offset + index * stride] = value;
+            }
+        }
+    }
+
+    static void add(int numRows, int numCols, double[] array, int offset, int rowStride, int colStride,
+                    double value) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            MatrixKernels.addUnchecked(array, offset, 1, numRows * numCols, value);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                MatrixKernels.addUnchecked(array, offset + rowIndex * rowStride, colStride, numCols, value);
+            }
+        }
+    }
+
+    private static void addUnchecked(double[] array, int offset, int stride, int length, double value) {
+        if (stride == 1) {
+            for (int index = offset, end = offset + length; index < end; index++) {
+                array[index] += value;
+            }
+        } else {
+            for (int index = 0; index < length; index++) {
+                array[offset + index * stride] += value;
+            }
+        }
+    }
+
+    static void multiply(int numRows, int numCols, double[] array, int offset, int rowStride, int colStride,
+                         double value) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            MatrixKernels.multiplyUnchecked(array, offset, 1, numRows * numCols, value);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                MatrixKernels.multiplyUnchecked(array, offset + rowIndex * rowStride, colStride, numCols, value);
+            }
+        }
+    }
+
+    private static void multiplyUnchecked(double[] array, int offset, int stride, int length, double value) {
+        if (stride == 1) {
+            for (int index = offset, end = offset + length; index < end; index++) {
+                array[index] *= value;
+            }
+        } else {
+            for (int index = 0; index < length; index++) {
+                array[offset + index * stride] *= value;
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // copy
+
+    static void copy(double[] source, int sourceOffset, int sourceStride,
+                     double[] destination, int destinationOffset, int destinationStride, int length) {
+        MatrixKernels.checkRange(source, sourceOffset, sourceStride, length);
+        MatrixKernels.checkRange(destination, destinationOffset, destinationStride, length);
+        MatrixKernels.copyUnchecked(source, sourceOffset, sourceStride, destination, destinationOffset,
+                destinationStride, length);
+    }
+
+    private static void copyUnchecked(double[] source, int sourceOffset, int sourceStride,
+                                      double[] destination, int destinationOffset, int destinationStride,
+                                      int length) {
+        if (sourceStride == 1 && destinationStride == 1) {
+            System.arraycopy(source, sourceOffset, destination, destinationOffset, length);
+        } else {
+            for (int index = 0; index < length; index++) {
+                destination[destinationOffset + index * destinationStride] = source[sourceOffset + index * sourceStride];
+            }
+        }
+    }
+
+    static void copy(int numRows, int numCols,
+                     double[] source, int sourceOffset, int sourceRowStride, int sourceColStride,
+                     double[] destination, int destinationOffset, int destinationRowStride, int destinationColStride) {
+
+        MatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        MatrixKernels.checkRange(destination, destinationOffset, numRows, numCols, destinationRowStride,
+                destinationColStride);
+
+        if (MatrixKernels.isContiguous(numRows, numCols, sourceRowStride, sourceColStride) &&
+                MatrixKernels.isContiguous(numRows, numCols, destinationRowStride, destinationColStride)) {
+            System.arraycopy(source, sourceOffset, destination, destinationOffset, numRows * numCols);
+        } else if ((sourceColStride > sourceRowStride) != (destinationColStride > destinationRowStride)) {
+            // The two sides are laid out in opposite orders, which is a transpose in disguise
+            MatrixKernels.transposeUnchecked(numRows, numCols,
+                    source, sourceOffset, sourceRowStride, sourceColStride,
+                    destination, destinationOffset, destinationColStride, destinationRowStride);
+        } else {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                MatrixKernels.copyUnchecked(source, sourceOffset + rowIndex * sourceRowStride, sourceColStride,
+                        destination, destinationOffset + rowIndex * destinationRowStride, destinationColStride,
+                        numCols);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // transpose
+
+    // destination (numCols x numRows) = source (numRows x numCols) transposed. One of the two sides is always walked
+    // against its layout, so the block is halved along its longer side until a piece fits in L1 and both the rows
+    // read and the rows written stay cached while the piece is copied, whatever the size of the cache.
+    static void transpose(int numRows, int numCols,
+                          double[] source, int sourceOffset, int sourceRowStride, int sourceColStride,
+                          double[] destination, int destinationOffset, int destinationRowStride,
+                          int destinationColStride) {
+
+        MatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        MatrixKernels.checkRange(destination, destinationOffset, numCols, numRows, destinationRowStride,
+                destinationColStride);
+
+        MatrixKernels.transposeUnchecked(numRows, numCols, source, sourceOffset, sourceRowStride, sourceColStride,
+                destination, destinationOffset, destinationRowStride, destinationColStride);
+    }
+
+    private static void transposeUnchecked(int numRows, int numCols,
+                                           double[] source, int sourceOffset, int sourceRowStride,
+                                           int sourceColStride,
+                                           double[] destination, int destinationOffset, int destinationRowStride,
+                                           int destinationColStride) {
+
+        if (numRows <= TRANSPOSE_BLOCK_LENGTH && numCols <= TRANSPOSE_BLOCK_LENGTH) {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                int sourceRow = sourceOffset + rowIndex * sourceRowStride;
+                int destinationCol = destinationOffset + rowIndex * destinationColStride;
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    destination[destinationCol + colIndex * destinationRowStride] =
+                            source[sourceRow + colIndex * sourceColStride];
+                }
+            }
+        } else if (numRows >= numCols) {
+            int half = numRows / 2;
+            MatrixKernels.transposeUnchecked(half, numCols, source, sourceOffset, sourceRowStride, sourceColStride,
+                    destination, destinationOffset, destinationRowStride, destinationColStride);
+            MatrixKernels.transposeUnchecked(numRows - half, numCols,
+                    source, sourceOffset + half * sourceRowStride, sourceRowStride, sourceColStride,
+                    destination, destinationOffset + half * destinationColStride, destinationRowStride,
+                    destinationColStride);
+        } else {
+            int half = numCols / 2;
+            MatrixKernels.transposeUnchecked(numRows, half, source, sourceOffset, sourceRowStride, sourceColStride,
+                    destination, destinationOffset, destinationRowStride, destinationColStride);
+            MatrixKernels.transposeUnchecked(numRows, numCols - half,
+                    source, sourceOffset + half * sourceColStride, sourceRowStride, sourceColStride,
+                    destination, destinationOffset + half * destinationRowStride, destinationRowStride,
+                    destinationColStride);
+        }
+    }
+
+    // Transposes a square block in place: the diagonal quadrants are transposed recursively and the two off-diagonal
+    // quadrants are swapped with each other while being transposed
+    static void transposeSquare(int numRowsAndCols, double[] array, int offset, int rowStride, int colStride) {
+        MatrixKernels.checkRange(array, offset, numRowsAndCols, numRowsAndCols, rowStride, colStride);
+        MatrixKernels.transposeSquareUnchecked(numRowsAndCols, array, offset, rowStride, colStride);
+    }
+
+    private static void transposeSquareUnchecked(int numRowsAndCols, double[] array, int offset, int rowStride,
+                                                 int colStride) {
+        if (numRowsAndCols <= TRANSPOSE_BLOCK_LENGTH) {
+            for (int rowIndex = 1; rowIndex < numRowsAndCols; rowIndex++) {
+                for (int colIndex = 0; colIndex < rowIndex; colIndex++) {
+                    int index = offset + rowIndex * rowStride + colIndex * colStride;
+                    int otherIndex = offset + colIndex * rowStride + rowIndex * colStride;
+                    double value = array[index];
+                    array[index] = array[otherIndex];
+                    array[otherIndex] = value;
+                }
+            }
+            return;
+        }
+        int half = numRowsAndCols / 2;
+        int lowerOffset = offset + half * rowStride;
+        int upperOffset = offset + half * colStride;
+        MatrixKernels.transposeSquareUnchecked(half, array, offset, rowStride, colStride);
+        MatrixKernels.transposeSquareUnchecked(numRowsAndCols - half, array, lowerOffset + half * colStride,
+                rowStride, colStride);
+        MatrixKernels.swapTransposedUnchecked(numRowsAndCols - half, half, array, lowerOffset, upperOffset,
+                rowStride, colStride);
+    }
+
+    // Swaps the numRows x numCols block at 'offset' with the transpose of the numCols x numRows block at 'otherOffset'
+    private static void swapTransposedUnchecked(int numRows, int numCols, double[] array, int offset, int otherOffset,
+                                                int rowStride, int colStride) {
+        if (numRows <= TRANSPOSE_BLOCK_LENGTH && numCols <= TRANSPOSE_BLOCK_LENGTH) {
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    int index = offset + rowIndex * rowStride + colIndex * colStride;
+                    int otherIndex = otherOffset + colIndex * rowStride + rowIndex * colStride;
+                    double value = array[index];
+                    array[index] = array[otherIndex];
+                    array[otherIndex] = value;
+                }
+            }
+        } else if (numRows >= numCols) {
+            int half = numRows / 2;
+            MatrixKernels.swapTransposedUnchecked(half, numCols, array, offset, otherOffset, rowStride, colStride);
+            MatrixKernels.swapTransposedUnchecked(numRows - half, numCols, array, offset + half * rowStride,
+                    otherOffset + half * colStride, rowStride, colStride);
+        } else {
+            int half = numCols / 2;
+            MatrixKernels.swapTransposedUnchecked(numRows, half, array, offset, otherOffset, rowStride, colStride);
+            MatrixKernels.swapTransposedUnchecked(numRows, numCols - half, array, offset + half * colStride,
+                    otherOffset + half * rowStride, rowStride, colStride);
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // addAll
+
+    // destination = base + sources[0] + sources[1] + ..., element by element. Elements are processed in chunks small
+    // enough to stay in L1 so that the sources can be summed one at a time. Each destination element still receives
+    // base + (0 + s_0 + s_1 + ...) in the order of 'sources', and as a chunk is summed before it is written the
+    // destination may be laid out exactly like the base or one of the sources.
+    static void addAll(int numRows, int numCols,
+                       double[] destination, int destinationOffset, int destinationRowStride, int destinationColStride,
+                       double[] base, int baseOffset, int baseRowStride, int baseColStride,
+                       double[][] sources, int[] sourceOffsets, int[] sourceRowStrides, int[] sourceColStrides) {
+
+        MatrixKernels.checkRange(destination, destinationOffset, numRows, numCols, destinationRowStride,
+                destinationColStride);
+        MatrixKernels.checkRange(base, baseOffset, numRows, numCols, baseRowStride, baseColStride);
+        boolean contiguous = MatrixKernels.isContiguous(numRows, numCols, destinationRowStride, destinationColStride)
+                && MatrixKernels.isContiguous(numRows, numCols, baseRowStride, baseColStride);
+        for (int sourceIndex = 0; sourceIndex < sources.length; sourceIndex++) {
+            MatrixKernels.checkRange(sources[sourceIndex], sourceOffsets[sourceIndex], numRows, numCols,
+                    sourceRowStrides[sourceIndex], sourceColStrides[sourceIndex]);
+            contiguous &= MatrixKernels.isContiguous(numRows, numCols, sourceRowStrides[sourceIndex],
+                    sourceColStrides[sourceIndex]);
+        }
+
+        if (contiguous) {
+            int length = numRows * numCols;
+            double[] chunk = new double[Math.min(CHUNK_LENGTH, length)];
+            MatrixKernels.addAllUnchecked(length, destination, destinationOffset, 1,
+                    base, baseOffset, 1, sources, sourceOffsets, 0, null, null, chunk);
+        } else {
+            // One chunk for all the rows
+            double[] chunk = new double[Math.min(CHUNK_LENGTH, numCols)];
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                MatrixKernels.addAllUnchecked(numCols,
+                        destination, destinationOffset + rowIndex * destinationRowStride, destinationColStride,
+                        base, baseOffset + rowIndex * baseRowStride, baseColStride,
+                        sources, sourceOffsets, rowIndex, sourceRowStrides, sourceColStrides, chunk);
+            }
+        }
+    }
+
+    // A null 'sourceRowStrides' means every source is contiguous and starts at its offset. 'chunk' is scratch space of
+    // at least min(CHUNK_LENGTH, length) elements.
+    private static void addAllUnchecked(int length,
+                                        double[] destination, int destinationOffset, int destinationStride,
+                                        double[] base, int baseOffset, int baseStride,
+                                        double[][] sources, int[] sourceOffsets, int rowIndex,
+                                        int[] sourceRowStrides, int[] sourceColStrides, double[] chunk) {
+
+        for (int chunkStart = 0; chunkStart < length; chunkStart += CHUNK_LENGTH) {
+            int chunkLength = Math.min(CHUNK_LENGTH, length - chunkStart);
+            for (int index = 0; index < chunkLength; index++) {
+                chunk[index] = 0;
+            }
+            for (int sourceIndex = 0; sourceIndex < sources.length; sourceIndex++) {
+                double[] source = sources[sourceIndex];
+                if (sourceRowStrides == null) {
+                    int sourceOffset = sourceOffsets[sourceIndex] + chunkStart;
+                    for (int index = 0; index < chunkLength; index++) {
+                        chunk[index] += source[sourceOffset + index];
+                    }
+                } else {
+                    int sourceStride = sourceColStrides[sourceIndex];
+                    int sourceOffset = sourceOffsets[sourceIndex] + rowIndex * sourceRowStrides[sourceIndex] +
+                            chunkStart * sourceStride;
+                    for (int index = 0; index < chunkLength; index++) {
+                        chunk[index] += source[sourceOffset + index * sourceStride];
+                    }
+                }
+            }
+            int destinationChunk = destinationOffset + chunkStart * destinationStride;
+            int baseChunk = baseOffset + chunkStart * baseStride;
+            for (int index = 0; index < chunkLength; index++) {
+                destination[destinationChunk + index * destinationStride] = base[baseChunk + index * baseStride] +
+                        chunk[index];
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Reductions
+
+    // With UNROLLED the element with row-major position k goes into accumulator k % LANES and the accumulators are
+    // added pairwise at the end. The accumulators do not depend on each other, so the loop is no longer bound by the
+    // latency of a single chain of additions, and the result does not depend on the layout of the block.
+    static double sum(int numRows, int numCols, double[] array, int offset, int rowStride, int colStride) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        if (MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride)) {
+            return MatrixKernels.sumUnchecked(array, offset, 1, numRows * numCols);
+        }
+        if (!UNROLLED) {
+            double value = 0;
+            for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+                int row = offset + rowIndex * rowStride;
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    value += array[row + colIndex * colStride];
+                }
+            }
+            return value;
+        }
+        double[] lanes = new double[LANES];
+        int lane = 0;
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                lanes[lane] += array[row + colIndex * colStride];
+                lane = (lane + 1) & (LANES - 1);
+            }
+        }
+        return (lanes[0] + lanes[1]) + (lanes[2] + lanes[3]);
+    }
+
+    private static double sumUnchecked(double[] array, int offset, int stride, int length) {
+        if (!UNROLLED) {
+            double value = 0;
+            for (int index = 0; index < length; index++) {
+                value += array[offset + index * stride];
+            }
+            return value;
+        }
+        double value0 = 0;
+        double value1 = 0;
+        double value2 = 0;
+        double value3 = 0;
+        int unrolledLength = length & -LANES;
+        int index = 0;
+        if (stride == 1) {
+            for (int position = offset; index < unrolledLength; index += LANES, position += LANES) {
+                value0 += array[position];
+                value1 += array[position + 1];
+                value2 += array[position + 2];
+                value3 += array[position + 3];
+            }
+        } else {
+            for (int position = offset; index < unrolledLength; index += LANES, position += LANES * stride) {
+                value0 += array[position];
+                value1 += array[position + stride];
+                value2 += array[position + 2 * stride];
+                value3 += array[position + 3 * stride];
+            }
+        }
+        int position = offset + index * stride;
+        if (index < length) {
+            value0 += array[position];
+        }
+        if (index + 1 < length) {
+            value1 += array[position + stride];
+        }
+        if (index + 2 < length) {
+            value2 += array[position + 2 * stride];
+        }
+        return (value0 + value1) + (value2 + value3);
+    }
+
+    // destination[colIndex] = sum over rows of the block, rows being accumulated one after the other so the inner
+    // loop runs along a row
+    static void sumOverRows(int numRows, int numCols, double[] source, int sourceOffset, int sourceRowStride,
+                            int sourceColStride, double[] destination, int destinationOffset, int destinationStride) {
+
+        MatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        MatrixKernels.checkRange(destination, destinationOffset, destinationStride, numCols);
+
+        MatrixKernels.fillUnchecked(destination, destinationOffset, destinationStride, numCols, 0);
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int sourceRow = sourceOffset + rowIndex * sourceRowStride;
+            if (sourceColStride == 1 && destinationStride == 1) {
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    destination[destinationOffset + colIndex] += source[sourceRow + colIndex];
+                }
+            } else {
+                for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                    destination[destinationOffset + colIndex * destinationStride] +=
+                            source[sourceRow + colIndex * sourceColStride];
+                }
+            }
+        }
+    }
+
+    // destination[rowIndex] = sum over the columns of the block
+    static void sumOverCols(int numRows, int numCols, double[] source, int sourceOffset, int sourceRowStride,
+                            int sourceColStride, double[] destination, int destinationOffset, int destinationStride) {
+
+        MatrixKernels.checkRange(source, sourceOffset, numRows, numCols, sourceRowStride, sourceColStride);
+        MatrixKernels.checkRange(destination, destinationOffset, destinationStride, numRows);
+
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            destination[destinationOffset + rowIndex * destinationStride] =
+                    MatrixKernels.sumUnchecked(source, sourceOffset + rowIndex * sourceRowStride, sourceColStride,
+                            numCols);
+        }
+    }
+
+    // The maximum does not depend on the order in which elements are visited, so unrolling it is always exact
+    static double maxAbsDifference(int numRows, int numCols,
+                                   double[] array, int offset, int rowStride, int colStride,
+                                   double[] other, int otherOffset, int otherRowStride, int otherColStride,
+                                   double initial) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        MatrixKernels.checkRange(other, otherOffset, numRows, numCols, otherRowStride, otherColStride);
+        if (UNROLLED && MatrixKernels.isContiguous(numRows, numCols, rowStride, colStride) &&
+                MatrixKernels.isContiguous(numRows, numCols, otherRowStride, otherColStride)) {
+            return MatrixKernels.maxAbsDifferenceUnrolled(array, offset, other, otherOffset, numRows * numCols,
+                    initial);
+        }
+        double value = initial;
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            int otherRow = otherOffset + rowIndex * otherRowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                value = Math.max(value,
+                        Math.abs(array[row + colIndex * colStride] - other[otherRow + colIndex * otherColStride]));
+            }
+        }
+        return value;
+    }
+
+    private static double maxAbsDifferenceUnrolled(double[] array, int offset, double[] other, int otherOffset,
+                                                   int length, double initial) {
+        double value0 = initial;
+        double value1 = initial;
+        double value2 = initial;
+        double value3 = initial;
+        int unrolledLength = length & -LANES;
+        int delta = otherOffset - offset;
+        int index = offset;
+        for (int end = offset + unrolledLength; index < end; index += LANES) {
+            value0 = Math.max(value0, Math.abs(array[index] - other[index + delta]));
+            value1 = Math.max(value1, Math.abs(array[index + 1] - other[index + 1 + delta]));
+            value2 = Math.max(value2, Math.abs(array[index + 2] - other[index + 2 + delta]));
+            value3 = Math.max(value3, Math.abs(array[index + 3] - other[index + 3 + delta]));
+        }
+        for (int end = offset + length; index < end; index++) {
+            value0 = Math.max(value0, Math.abs(array[index] - other[index + delta]));
+        }
+        return Math.max(Math.max(value0, value1), Math.max(value2, value3));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // equals / hashCode, with the semantics of Arrays.equals and Arrays.hashCode over the elements in row-major order
+
+    static boolean equals(int numRows, int numCols,
+                          double[] array, int offset, int rowStride, int colStride,
+                          double[] other, int otherOffset, int otherRowStride, int otherColStride) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        MatrixKernels.checkRange(other, otherOffset, numRows, numCols, otherRowStride, otherColStride);
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            int otherRow = otherOffset + rowIndex * otherRowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                if (Double.doubleToLongBits(array[row + colIndex * colStride]) !=
+                        Double.doubleToLongBits(other[otherRow + colIndex * otherColStride])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static int hashCode(int numRows, int numCols, double[] array, int offset, int rowStride, int colStride) {
+        MatrixKernels.checkRange(array, offset, numRows, numCols, rowStride, colStride);
+        int result = 1;
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            int row = offset + rowIndex * rowStride;
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                long bits = Double.doubleToLongBits(array[row + colIndex * colStride]);
+                result = 31 * result + (int) (bits ^ (bits >>> 32));
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,321 @@
+package agent.smith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+// Loads delimited text, e.g. CSV or TSV, straight into the array of a Matrix. The file is mapped into memory in chunks
+// of about CHUNK_LENGTH bytes, each ending at the end of a line, and read in two passes over the chunks, in parallel on
+// a ForkJoinPool:
+//   1. the non-empty lines of every chunk are counted, which gives the row of the first line of each chunk
+//   2. every chunk parses its numbers (with DoubleParser, without creating Strings) into its own rows of the array
+// so that the only copy of the data on the heap is the array of the result. The text is read as ASCII: lines end with
+// '\n' or "\r\n", empty lines are skipped, spaces and double quotes around a number are ignored, and an empty field
+// is a NaN. Every row has to have as many fields as the first one.
+
+public final class MatrixTextReader {
+
+    static final int CHUNK_LENGTH = 1 << 24;
+    private static final int SCAN_LENGTH = 1 << 13;
+
+    private final byte delimiter;
+    private final MappedByteBuffer[] chunks;
+    private final int[] chunkNumRows;
+    private final int numCols;
+    // First exception of a pass. The tasks keep their exceptions rather than letting invokeAll rethrow them before the
+    // other tasks have finished, so that no task is still reading a chunk once the chunks are unmapped
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private double[] array;
+    private int[] chunkRowIndexes;
+
+    private MatrixTextReader(byte delimiter, MappedByteBuffer[] chunks) {
+        this.delimiter = delimiter;
+        this.chunks = chunks;
+        this.chunkNumRows = new int[chunks.length];
+        this.numCols = chunks.length == 0 ? 0 : this.countFirstRowCols();
+    }
+
+    static Matrix read(ForkJoinPool pool, Path path, char delimiter, int numHeaderLines, int chunkLength)
+            throws IOException, MatrixIllegalArgumentException {
+
+        Matrix.validatePoolNonNull(pool);
+        if (path == null) {
+            throw new MatrixIllegalArgumentException("'path' cannot be null");
+        }
+        if (delimiter > 0x7F || delimiter == '\n' || delimiter == '\r' || delimiter == '"' || delimiter == '.'
+                || delimiter == '-' || delimiter == '+' || (delimiter >= '0' && delimiter <= '9')) {
+            throw new MatrixIllegalArgumentException(String.format("Invalid delimiter '%s'", delimiter));
+        }
+        if (numHeaderLines < 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'numHeaderLines' (%d) cannot be negative", numHeaderLines));
+        }
+
+        MappedByteBuffer[] chunks;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            chunks = MatrixTextReader.map(channel, numHeaderLines, chunkLength);
+        }
+        try {
+            MatrixTextReader reader = new MatrixTextReader((byte) delimiter, chunks);
+            reader.runPass(pool, false);
+            reader.allocate();
+            reader.runPass(pool, true);
+            return Matrix.wrap(reader.array, reader.chunkRowIndexes[chunks.length], reader.numCols);
+        } finally {
+            DirectBuffers.release(chunks);
+        }
+    }
+
+    public static Matrix read(ForkJoinPool pool, Path path, char delimiter, int numHeaderLines)
+            throws IOException, MatrixIllegalArgumentException {
+        return MatrixTextReader.read(pool, path, delimiter, numHeaderLines, CHUNK_LENGTH);
+    }
+
+    public static Matrix read(Path path, char delimiter, int numHeaderLines)
+            throws IOException, MatrixIllegalArgumentException {
+        return MatrixTextReader.read(ForkJoinPool.commonPool(), path, delimiter, numHeaderLines, CHUNK_LENGTH);
+    }
+
+    public static Matrix read(Path path, char delimiter) throws IOException, MatrixIllegalArgumentException {
+        return MatrixTextReader.read(path, delimiter, 0);
+    }
+
+    public static Matrix read(Path path) throws IOException, MatrixIllegalArgumentException {
+        return MatrixTextReader.read(path, ',', 0);
+    }
+
+    // The position after the first '\n' at or after 'position', or the size of the file if there is none
+    private static long findNextLine(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_LENGTH);
+        while (position < size) {
+            buffer.clear();
+            buffer.limit((int) Math.min(SCAN_LENGTH, size - position));
+            MatrixFileFormat.readFully(channel, buffer, position);
+            for (int index = 0; index < buffer.position(); index++) {
+                if (buffer.get(index) == '\n') {
+                    return position + index + 1;
+                }
+            }
+            position += buffer.position();
+        }
+        return size;
+    }
+
+    // Maps the file after the header lines in chunks of at least 'chunkLength' bytes which end at the end of a line
+    private static MappedByteBuffer[] map(FileChannel channel, int numHeaderLines, int chunkLength)
+            throws IOException {
+
+        long size = channel.size();
+        long start = 0;
+        for (int lineIndex = 0; lineIndex < numHeaderLines; lineIndex++) {
+            start = MatrixTextReader.findNextLine(channel, start, size);
+        }
+
+        List<Long> starts = new ArrayList<>();
+        while (start < size) {
+            starts.add(start);
+            start = start + chunkLength >= size ? size
+                    : MatrixTextReader.findNextLine(channel, start + chunkLength - 1, size);
+        }
+
+        MappedByteBuffer[] chunks = new MappedByteBuffer[starts.size()];
+        try {
+            for (int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+                long chunkStart = starts.get(chunkIndex);
+                long chunkEnd = chunkIndex + 1 < chunks.length ? starts.get(chunkIndex + 1) : size;
+                if (chunkEnd - chunkStart > Integer.MAX_VALUE) {
+                    throw new MatrixIllegalArgumentException(String.format(
+                            "Line longer than the maximum of %d bytes", Integer.MAX_VALUE));
+                }
+                chunks[chunkIndex] = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+            }
+        } catch (IOException | RuntimeException e) {
+            DirectBuffers.release(chunks);
+            throw e;
+        }
+        return chunks;
+    }
+
+    // The end of the line starting at 'start', without the line terminator
+    private static int findLineEnd(ByteBuffer chunk, int start) {
+        int end = start;
+        while (end < chunk.limit() && chunk.get(end) != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    private static int trimCarriageReturn(ByteBuffer chunk, int start, int end) {
+        return end > start && chunk.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private int countFirstRowCols() {
+        for (ByteBuffer chunk : this.chunks) {
+            for (int start = 0; start < chunk.limit(); ) {
+                int lineEnd = MatrixTextReader.findLineEnd(chunk, start);
+                int end = MatrixTextReader.trimCarriageReturn(chunk, start, lineEnd);
+                if (end > start) {
+                    int numCols = 1;
+                    for (int index = start; index < end; index++) {
+                        numCols += chunk.get(index) == this.delimiter ? 1 : 0;
+                    }
+                    return numCols;
+                }
+                start = lineEnd + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void countRows(int chunkIndex) {
+        ByteBuffer chunk = this.chunks[chunkIndex];
+        int numRows = 0;
+        for (int start = 0; start < chunk.limit(); ) {
+            int lineEnd = MatrixTextReader.findLineEnd(chunk, start);
+            numRows += MatrixTextReader.trimCarriageReturn(chunk, start, lineEnd) > start ? 1 : 0;
+            start = lineEnd + 1;
+        }
+        this.chunkNumRows[chunkIndex] = numRows;
+    }
+
+    private void allocate() throws MatrixIllegalArgumentException {
+        long numRows = 0;
+        for (int numChunkRows : this.chunkNumRows) {
+            numRows += numChunkRows;
+        }
+        if (numRows == 0) {
+            throw new MatrixIllegalArgumentException("File has no rows");
+        }
+        Matrix.validateLength(numRows, this.numCols);
+
+        this.chunkRowIndexes = new int[this.chunks.length + 1];
+        for (int chunkIndex = 0; chunkIndex < this.chunks.length; chunkIndex++) {
+            this.chunkRowIndexes[chunkIndex + 1] = this.chunkRowIndexes[chunkIndex] + this.chunkNumRows[chunkIndex];
+        }
+        this.array = new double[(int) numRows * this.numCols];
+    }
+
+    // Returns once every chunk has been processed, then throws the first exception of the pass if any
+    private void runPass(ForkJoinPool pool, boolean parse) {
+        pool.invoke(new ChunkTask(this, parse, 0, this.chunks.length));
+        Throwable failure = this.failure.get();
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private void parseRows(int chunkIndex) throws MatrixIllegalArgumentException {
+        ByteBuffer chunk = this.chunks[chunkIndex];
+        int rowIndex = this.chunkRowIndexes[chunkIndex];
+        for (int start = 0; start < chunk.limit(); ) {
+            int lineEnd = MatrixTextReader.findLineEnd(chunk, start);
+            int end = MatrixTextReader.trimCarriageReturn(chunk, start, lineEnd);
+            if (end > start) {
+                this.parseRow(chunk, start, end, rowIndex++);
+            }
+            start = lineEnd + 1;
+        }
+    }
+
+    private void parseRow(ByteBuffer chunk, int start, int end, int rowIndex) throws MatrixIllegalArgumentException {
+        int index = rowIndex * this.numCols;
+        int colIndex = 0;
+        int fieldStart = start;
+        for (int position = start; position <= end; position++) {
+            if (position < end && chunk.get(position) != this.delimiter) {
+                continue;
+            }
+            if (colIndex == this.numCols) {
+                colIndex++;
+                break;
+            }
+            this.array[index + colIndex++] = this.parseField(chunk, fieldStart, position, rowIndex);
+            fieldStart = position + 1;
+        }
+        if (colIndex != this.numCols) {
+            int numCols = 1;
+            for (int position = start; position < end; position++) {
+                numCols += chunk.get(position) == this.delimiter ? 1 : 0;
+            }
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Row %d has %d columns vs %d in the first row", rowIndex, numCols, this.numCols));
+        }
+    }
+
+    private double parseField(ByteBuffer chunk, int start, int end, int rowIndex)
+            throws MatrixIllegalArgumentException {
+
+        while (start < end && chunk.get(start) == ' ') {
+            start++;
+        }
+        while (end > start && chunk.get(end - 1) == ' ') {
+            end--;
+        }
+        if (end - start >= 2 && chunk.get(start) == '"' && chunk.get(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        if (start == end) {
+            return Double.NaN;
+        }
+        try {
+            return DoubleParser.parse(chunk, start, end);
+        } catch (NumberFormatException e) {
+            byte[] bytes = new byte[end - start];
+            for (int index = start; index < end; index++) {
+                bytes[index - start] = chunk.get(index);
+            }
+            throw new MatrixIllegalArgumentException(String.format("Invalid number '%s' in row %d",
+                    new String(bytes, StandardCharsets.ISO_8859_1), rowIndex));
+        }
+    }
+
+    // Runs one of the two passes over the chunks from 'first' (inclusive) to 'last' (exclusive), halving the range
+    // until it is a single chunk. Once a chunk has failed the remaining ones are skipped
+    private static final class ChunkTask extends RecursiveAction {
+
+        private final MatrixTextReader reader;
+        private final boolean parse;
+        private final int first;
+        private final int last;
+
+        ChunkTask(MatrixTextReader reader, boolean parse, int first, int last) {
+            this.reader = reader;
+            this.parse = parse;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.last - this.first > 1) {
+                int middle = (this.first + this.last) >>> 1;
+                RecursiveAction.invokeAll(new ChunkTask(this.reader, this.parse, this.first, middle),
+                        new ChunkTask(this.reader, this.parse, middle, this.last));
+            } else if (this.last > this.first && this.reader.failure.get() == null) {
+                try {
+                    if (this.parse) {
+                        this.reader.parseRows(this.first);
+                    } else {
+                        this.reader.countRows(this.first);
+                    }
+                } catch (RuntimeException | Error e) {
+                    this.reader.failure.compareAndSet(null, e);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+package agent.smith;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+// Streams matrices as delimited text, e.g. CSV or TSV, one line per row, through a fixed-size buffer, so that memory
+// use does not grow with the size of the matrix:
+//
+//   try (MatrixTextWriter writer = MatrixTextWriter.of(outputStream, "\t", "\n")) {
+//       writer.writeRows(matrix);
+//   }
+//
+// Elements are written as the shortest decimal that parses back to the same double, in the format of Double.toString
+// (see DoubleFormatter), so that a matrix survives the round trip through text unchanged. The text is encoded in
+// UTF-8, and is ASCII unless the delimiters are not. close() also closes the underlying stream or Appendable when it
+// is Closeable.
+
+public final class MatrixTextWriter implements Closeable, Flushable {
+
+    static final int BUFFER_LENGTH = 1 << 16;
+
+    private final OutputStream outputStream;
+    private final Appendable appendable;
+    private final Charset charset;
+    private final byte[] colDelimiter;
+    private final byte[] rowDelimiter;
+    private final byte[] buffer = new byte[BUFFER_LENGTH];
+    private int position;
+    private boolean closed;
+
+    private MatrixTextWriter(OutputStream outputStream, Appendable appendable, String colDelimiter,
+                             String rowDelimiter) throws MatrixIllegalArgumentException {
+
+        if (colDelimiter == null) {
+            throw new MatrixIllegalArgumentException("'colDelimiter' cannot be null");
+        }
+        if (rowDelimiter == null) {
+            throw new MatrixIllegalArgumentException("'rowDelimiter' cannot be null");
+        }
+        this.outputStream = outputStream;
+        this.appendable = appendable;
+        this.colDelimiter = colDelimiter.getBytes(StandardCharsets.UTF_8);
+        this.rowDelimiter = rowDelimiter.getBytes(StandardCharsets.UTF_8);
+        if (this.colDelimiter.length > BUFFER_LENGTH || this.rowDelimiter.length > BUFFER_LENGTH) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("Delimiters cannot be longer than %d bytes", BUFFER_LENGTH));
+        }
+        // Decoding pure ASCII as ISO-8859-1 is the same, only faster
+        boolean isAscii = colDelimiter.length() == this.colDelimiter.length
+                && rowDelimiter.length() == this.rowDelimiter.length;
+        this.charset = isAscii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+    }
+
+    public static MatrixTextWriter of(OutputStream outputStream, String colDelimiter, String rowDelimiter)
+            throws MatrixIllegalArgumentException {
+        if (outputStream == null) {
+            throw new MatrixIllegalArgumentException("'outputStream' cannot be null");
+        }
+        return new MatrixTextWriter(outputStream, null, colDelimiter, rowDelimiter);
+    }
+
+    public static MatrixTextWriter of(OutputStream outputStream) throws MatrixIllegalArgumentException {
+        return MatrixTextWriter.of(outputStream, ",", "\n");
+    }
+
+    // E.g. a Writer or a StringBuilder
+    public static MatrixTextWriter of(Appendable appendable, String colDelimiter, String rowDelimiter)
+            throws MatrixIllegalArgumentException {
+        if (appendable == null) {
+            throw new MatrixIllegalArgumentException("'appendable' cannot be null");
+        }
+        return new MatrixTextWriter(null, appendable, colDelimiter, rowDelimiter);
+    }
+
+    public static MatrixTextWriter of(Appendable appendable) throws MatrixIllegalArgumentException {
+        return MatrixTextWriter.of(appendable, ",", "\n");
+    }
+
+    public static void write(Path path, Matrix matrix, String colDelimiter, String rowDelimiter)
+            throws IOException, MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        if (path == null) {
+            throw new MatrixIllegalArgumentException("'path' cannot be null");
+        }
+        try (MatrixTextWriter writer = MatrixTextWriter.of(Files.newOutputStream(path), colDelimiter,
+                rowDelimiter)) {
+            writer.writeRows(matrix);
+        }
+    }
+
+    public static void write(Path path, Matrix matrix) throws IOException, MatrixIllegalArgumentException {
+        MatrixTextWriter.write(path, matrix, ",", "\n");
+    }
+
+    // The text of a single double, as written by writeRows
+    static String toString(double value) {
+        byte[] bytes = new byte[DoubleFormatter.MAX_LENGTH];
+        return new String(bytes, 0, DoubleFormatter.write(value, bytes, 0), StandardCharsets.ISO_8859_1);
+    }
+
+    private void validateOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Writer has been closed");
+        }
+    }
+
+    // Every element and delimiter is written whole, so the buffer never ends in the middle of a UTF-8 sequence
+    private void ensureCapacity(int length) throws IOException {
+        if (this.position + length > BUFFER_LENGTH) {
+            this.flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.position == 0) {
+            return;
+        }
+        if (this.outputStream != null) {
+            this.outputStream.write(this.buffer, 0, this.position);
+        } else {
+            this.appendable.append(new String(this.buffer, 0, this.position, this.charset));
+        }
+        this.position = 0;
+    }
+
+    private void writeDelimiter(byte[] delimiter) throws IOException {
+        this.ensureCapacity(delimiter.length);
+        System.arraycopy(delimiter, 0, this.buffer, this.position, delimiter.length);
+        this.position += delimiter.length;
+    }
+
+    private void writeElement(double value) throws IOException {
+        this.ensureCapacity(DoubleFormatter.MAX_LENGTH);
+        this.position = DoubleFormatter.write(value, this.buffer, this.position);
+    }
+
+    // Writes each row followed by the row delimiter
+    public MatrixTextWriter writeRows(Matrix matrix) throws IOException, MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        this.validateOpen();
+        for (int rowIndex = 0; rowIndex < matrix.getNumRows(); rowIndex++) {
+            int index = matrix.offset + rowIndex * matrix.rowStride;
+            for (int colIndex = 0; colIndex < matrix.getNumCols(); colIndex++, index += matrix.colStride) {
+                if (colIndex > 0) {
+                    this.writeDelimiter(this.colDelimiter);
+                }
+                this.writeElement(matrix.array[index]);
+            }
+            this.writeDelimiter(this.rowDelimiter);
+        }
+        return this;
+    }
+
+    public MatrixTextWriter writeRows(ChunkedMatrix matrix) throws IOException, MatrixIllegalArgumentException {
+        if (matrix == null) {
+            throw new MatrixIllegalArgumentException("'matrix' cannot be null");
+        }
+        this.validateOpen();
+        double[] row = new double[Math.min(ChunkedMatrix.BUFFER_LENGTH, matrix.getNumCols())];
+        for (int rowIndex = 0; rowIndex < matrix.getNumRows(); rowIndex++) {
+            for (int colIndex = 0; colIndex < matrix.getNumCols(); colIndex += row.length) {
+                int length = Math.min(row.length, matrix.getNumCols() - colIndex);
+                matrix.read((long) rowIndex * matrix.getNumCols() + colIndex, row, 0, length);
+                for (int index = 0; index < length; index++) {
+                    if (colIndex + index > 0) {
+                        this.writeDelimiter(this.colDelimiter);
+                    }
+                    this.writeElement(row[index]);
+                }
+            }
+            this.writeDelimiter(this.rowDelimiter);
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.validateOpen();
+        this.flushBuffer();
+        if (this.outputStream != null) {
+            this.outputStream.flush();
+        } else if (this.appendable instanceof Flushable) {
+            ((Flushable) this.appendable).flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.flushBuffer();
+        } finally {
+            if (this.outputStream != null) {
+                this.outputStream.close();
+            } else if (this.appendable instanceof Closeable) {
+                ((Closeable) this.appendable).close();
+            }
+        }
+    }
+
+}
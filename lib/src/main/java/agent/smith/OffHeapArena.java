@@ -0,0 +1,52 @@
+package agent.smith;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+
+// Scope for off-heap matrices: closing the arena frees every matrix allocated in it, including the results of
+// operations on them, e.g.
+//
+//   try (OffHeapArena arena = new OffHeapArena()) {
+//       OffHeapMatrix a = OffHeapMatrix.of(arena, matrix);
+//       Matrix result = OffHeapMatrix.prod(a.transpose(), a).toMatrix();
+//   }
+//
+// A matrix of the arena can still be closed earlier on its own, which also removes it from the arena.
+
+public final class OffHeapArena implements AutoCloseable {
+
+    private final Set<OffHeapMatrix> matrices = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean closed;
+
+    synchronized void register(OffHeapMatrix matrix) {
+        if (this.closed) {
+            throw new IllegalStateException("Arena has been closed");
+        }
+        this.matrices.add(matrix);
+    }
+
+    synchronized void deregister(OffHeapMatrix matrix) {
+        this.matrices.remove(matrix);
+    }
+
+    synchronized int getNumMatrices() {
+        return this.matrices.size();
+    }
+
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        // Closing a matrix deregisters it, so iterate over a copy
+        for (OffHeapMatrix matrix : this.matrices.toArray(new OffHeapMatrix[0])) {
+            matrix.close();
+        }
+        this.matrices.clear();
+    }
+
+}
@@ -0,0 +1,123 @@
+package agent.smith;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+
+// Chunked matrix stored outside of the Java heap, in direct buffers, so that very large matrices neither count
+// towards the heap nor get copied around by the garbage collector, and can be handed to native code. A direct buffer
+// holds at most 2^31 - 1 bytes, so the chunks are 2^27 doubles (1 GiB) long.
+//
+// The memory is freed by close(), by closing the arena the matrix was allocated in, or failing both when the matrix
+// is garbage collected. A matrix must not be closed while another thread is still using it. The results of an
+// operation are off-heap matrices allocated in the arena of the matrix the operation is called on.
+
+public final class OffHeapMatrix extends ChunkedMatrix {
+
+    static final int CHUNK_SHIFT = 27;
+
+    private final ByteBuffer[] buffers;
+    private final DoubleBuffer[] chunks;
+    private final OffHeapArena arena;
+
+    private OffHeapMatrix(OffHeapArena arena, int numRows, int numCols, int chunkShift)
+            throws MatrixIllegalArgumentException {
+
+        super(numRows, numCols, chunkShift);
+        this.arena = arena;
+
+        this.buffers = DirectBuffers.allocate(this.length * Double.BYTES, Double.BYTES << chunkShift);
+        this.chunks = new DoubleBuffer[this.buffers.length];
+        for (int chunkIndex = 0; chunkIndex < this.chunks.length; chunkIndex++) {
+            this.chunks[chunkIndex] = this.buffers[chunkIndex].order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+
+        if (arena != null) {
+            try {
+                arena.register(this);
+            } catch (IllegalStateException e) {
+                this.close();
+                throw e;
+            }
+        }
+    }
+
+    // 'chunkShift' is only smaller than CHUNK_SHIFT in tests, to cross chunk boundaries on small matrices
+    static OffHeapMatrix create(OffHeapArena arena, int numRows, int numCols, int chunkShift)
+            throws MatrixIllegalArgumentException {
+        return new OffHeapMatrix(arena, numRows, numCols, chunkShift);
+    }
+
+    // Filled with zeros
+    public static OffHeapMatrix create(OffHeapArena arena, int numRows, int numCols)
+            throws MatrixIllegalArgumentException {
+        if (arena == null) {
+            throw new MatrixIllegalArgumentException("'arena' cannot be null");
+        }
+        return OffHeapMatrix.create(arena, numRows, numCols, CHUNK_SHIFT);
+    }
+
+    public static OffHeapMatrix create(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        return OffHeapMatrix.create(null, numRows, numCols, CHUNK_SHIFT);
+    }
+
+    static OffHeapMatrix of(OffHeapArena arena, Matrix matrix, int chunkShift) throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(matrix);
+        OffHeapMatrix result = OffHeapMatrix.create(arena, matrix.getNumRows(), matrix.getNumCols(), chunkShift);
+        result.setToThis(matrix);
+        return result;
+    }
+
+    public static OffHeapMatrix of(OffHeapArena arena, Matrix matrix) throws MatrixIllegalArgumentException {
+        if (arena == null) {
+            throw new MatrixIllegalArgumentException("'arena' cannot be null");
+        }
+        return OffHeapMatrix.of(arena, matrix, CHUNK_SHIFT);
+    }
+
+    public static OffHeapMatrix of(Matrix matrix) throws MatrixIllegalArgumentException {
+        return OffHeapMatrix.of(null, matrix, CHUNK_SHIFT);
+    }
+
+    @Override
+    ChunkedMatrix like(int numRows, int numCols) {
+        return OffHeapMatrix.create(this.arena, numRows, numCols, this.chunkShift);
+    }
+
+    @Override
+    public void close() {
+        if (this.markClosed()) {
+            DirectBuffers.release(this.buffers);
+            if (this.arena != null) {
+                this.arena.deregister(this);
+            }
+        }
+    }
+
+    // Every access goes through a duplicate of the chunk, so concurrent reads do not share a buffer position
+    @Override
+    void readChunk(int chunkIndex, int position, double[] destination, int offset, int length) {
+        DoubleBuffer chunk = this.chunks[chunkIndex].duplicate();
+        chunk.position(position);
+        chunk.get(destination, offset, length);
+    }
+
+    @Override
+    void writeChunk(int chunkIndex, int position, double[] source, int offset, int length) {
+        DoubleBuffer chunk = this.chunks[chunkIndex].duplicate();
+        chunk.position(position);
+        chunk.put(source, offset, length);
+    }
+
+    @Override
+    double getChunk(int chunkIndex, int position) {
+        return this.chunks[chunkIndex].get(position);
+    }
+
+    @Override
+    void setChunk(int chunkIndex, int position, double value) {
+        this.chunks[chunkIndex].put(position, value);
+    }
+
+}
@@ -0,0 +1,99 @@
+package agent.smith;
+
+
+// Order in which a chain of matrices is multiplied, found with the classic matrix-chain dynamic programme:
+// https://en.wikipedia.org/wiki/Matrix_chain_multiplication
+//
+// Matrix i of the chain has dimensions[i] rows and dimensions[i + 1] columns. Multiplying a p x q by a q x r matrix
+// is costed as p * q * r multiply-adds, i.e. 2 * p * q * r floating point operations.
+
+public final class ProductPlan {
+
+    private final int[] dimensions;
+    private final int[][] splits;
+    private final long multiplyAdds;
+
+    ProductPlan(int[] dimensions) {
+
+        this.dimensions = dimensions;
+        int numMatrices = dimensions.length - 1;
+
+        // costs[first][last] is the cheapest way of multiplying matrices first..last (inclusive), splits[first][last]
+        // the index of the last matrix of the left-hand factor for that cheapest way
+        long[][] costs = new long[numMatrices][numMatrices];
+        this.splits = new int[numMatrices][numMatrices];
+
+        for (int chainLength = 2; chainLength <= numMatrices; chainLength++) {
+            for (int first = 0; first + chainLength - 1 < numMatrices; first++) {
+                int last = first + chainLength - 1;
+                costs[first][last] = Long.MAX_VALUE;
+                // Ties keep the smallest split, i.e. the right-to-left fold first (second (third ...))
+                for (int split = first; split < last; split++) {
+                    long cost = costs[first][split] + costs[split + 1][last] +
+                            (long) dimensions[first] * dimensions[split + 1] * dimensions[last + 1];
+                    if (cost < costs[first][last]) {
+                        costs[first][last] = cost;
+                        this.splits[first][last] = split;
+                    }
+                }
+            }
+        }
+
+        this.multiplyAdds = costs[0][numMatrices - 1];
+    }
+
+    static ProductPlan of(Matrix... matrices) {
+        int[] dimensions = new int[matrices.length + 1];
+        for (int matrixIndex = 0; matrixIndex < matrices.length; matrixIndex++) {
+            dimensions[matrixIndex] = matrices[matrixIndex].getNumRows();
+        }
+        dimensions[matrices.length] = matrices[matrices.length - 1].getNumCols();
+        return new ProductPlan(dimensions);
+    }
+
+    public int getNumMatrices() {
+        return this.dimensions.length - 1;
+    }
+
+    public int getSplit(int first, int last) throws MatrixIllegalArgumentException {
+        if (first < 0 || last >= this.getNumMatrices() || last <= first) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'first' = (%d) and 'last' = (%d) have to satisfy 0 <= first < last <= %d",
+                    first, last, this.getNumMatrices() - 1));
+        }
+        return this.splits[first][last];
+    }
+
+    public long getMultiplyAdds() {
+        return this.multiplyAdds;
+    }
+
+    public long getFlops() {
+        return 2 * this.multiplyAdds;
+    }
+
+    private void appendTo(StringBuilder builder, int first, int last) {
+        if (first == last) {
+            builder.append('M').append(first);
+        } else {
+            int split = this.splits[first][last];
+            builder.append('(');
+            this.appendTo(builder, first, split);
+            builder.append(' ');
+            this.appendTo(builder, split + 1, last);
+            builder.append(')');
+        }
+    }
+
+    public String toParenthesization() {
+        StringBuilder builder = new StringBuilder();
+        this.appendTo(builder, 0, this.getNumMatrices() - 1);
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ProductPlan{" + this.toParenthesization() + ", flops=" + this.getFlops() + "}";
+    }
+
+}
@@ -0,0 +1,349 @@
+package agent.smith;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+
+// Blocked Householder QR decomposition A = Q * R of an m x n matrix, following LAPACK's dgeqrf / dorgqr:
+// http://www.netlib.org/lapack/explore-html/dd/d9a/group__double_g_ecomputational_ga3766ea903391b5cf9008132f7440ec7b.html
+//
+// The factorization works in place on a single row-major copy of A. On exit the upper triangle holds R and the part
+// below the diagonal holds the Householder vectors v_i (with an implicit 1 on the diagonal), Q = H_0 * H_1 * ... with
+// H_i = I - tau_i * v_i * v_i^T. Columns are processed in panels of BLOCK_SIZE: a panel is factorized column by
+// column, then its reflectors are aggregated into the compact WY form I - V * T * V^T (Schreiber & Van Loan) and
+// applied to the trailing columns with two matrix products, which run on the pool.
+
+public final class QRDecomposition {
+
+    static final int BLOCK_SIZE = 32;
+
+    // LAPACK's safmin / eps: reflectors with a smaller norm are computed on a rescaled column (dlarfg), and sums of
+    // squares above it have not lost any significant bits to underflow
+    private static final double SAFE_MIN = Double.MIN_NORMAL / Math.ulp(1.0);
+    private static final int MAX_NUM_RESCALINGS = 20;
+
+    private final double[] qr;
+    private final double[] tau;
+    private final int numRows;
+    private final int numCols;
+    private final int numReflectors;
+    private final ForkJoinPool pool;
+
+    QRDecomposition(ForkJoinPool pool, Matrix matrix) {
+
+        this.pool = pool;
+        this.numRows = matrix.getNumRows();
+        this.numCols = matrix.getNumCols();
+        this.numReflectors = Math.min(this.numRows, this.numCols);
+        this.qr = matrix.getArray();
+        this.tau = new double[this.numReflectors];
+
+        // Workspace shared by all panels: the explicit V of a panel, its T factor, V^T * C, and a vector used for the
+        // dot products of the panel factorization and for building T
+        double[] v = new double[this.numRows * BLOCK_SIZE];
+        double[] t = new double[BLOCK_SIZE * BLOCK_SIZE];
+        double[] y = new double[BLOCK_SIZE * this.numCols];
+        double[] z = new double[BLOCK_SIZE];
+
+        for (int panelStart = 0; panelStart < this.numReflectors; panelStart += BLOCK_SIZE) {
+            int panelSize = Math.min(BLOCK_SIZE, this.numReflectors - panelStart);
+
+            this.factorizePanel(panelStart, panelSize, z);
+
+            int trailingStart = panelStart + panelSize;
+            if (trailingStart < this.numCols) {
+                this.formV(panelStart, panelSize, v);
+                QRDecomposition.formT(this.tau, panelStart, this.numRows - panelStart, panelSize, v, t, z);
+                QRDecomposition.applyBlockReflector(this.pool, this.numRows - panelStart, panelSize,
+                        v, t, y, true, this.qr, panelStart * this.numCols + trailingStart, this.numCols,
+                        this.numCols - trailingStart);
+            }
+        }
+    }
+
+    // Unblocked factorization of the columns [panelStart, panelStart + panelSize), the reflectors only being applied
+    // to the remaining columns of the panel.
+    private void factorizePanel(int panelStart, int panelSize, double[] dots) {
+
+        int n = this.numCols;
+        int panelEnd = panelStart + panelSize;
+
+        for (int index = panelStart; index < panelEnd; index++) {
+
+            int diagonal = index * n + index;
+            double alpha = this.qr[diagonal];
+            double xNorm = this.normBelowDiagonal(index);
+
+            if (xNorm == 0) {
+                // Nothing to annihilate below the diagonal, H = I
+                this.tau[index] = 0;
+                continue;
+            }
+
+            // The reflector as in dlarfg: beta = -sign(alpha) * ||(alpha, x)||, the column being scaled up first
+            // while |beta| is so small that tau and v would be inaccurate
+            double beta = alpha <= 0 ? Math.hypot(alpha, xNorm) : -Math.hypot(alpha, xNorm);
+            int numRescalings = 0;
+            while (Math.abs(beta) < SAFE_MIN && numRescalings < MAX_NUM_RESCALINGS) {
+                numRescalings++;
+                for (int rowIndex = index + 1; rowIndex < this.numRows; rowIndex++) {
+                    this.qr[rowIndex * n + index] /= SAFE_MIN;
+                }
+                alpha /= SAFE_MIN;
+                beta /= SAFE_MIN;
+            }
+            if (numRescalings > 0) {
+                xNorm = this.normBelowDiagonal(index);
+                beta = alpha <= 0 ? Math.hypot(alpha, xNorm) : -Math.hypot(alpha, xNorm);
+            }
+
+            this.tau[index] = (beta - alpha) / beta;
+            double scale = 1 / (alpha - beta);
+            for (int rowIndex = index + 1; rowIndex < this.numRows; rowIndex++) {
+                this.qr[rowIndex * n + index] *= scale;
+            }
+            for (int rescaling = 0; rescaling < numRescalings; rescaling++) {
+                beta *= SAFE_MIN;
+            }
+            this.qr[diagonal] = beta;
+
+            // Apply H = I - tau * v * v^T to the rest of the panel, rows are walked in storage order so the inner
+            // loops run over contiguous memory
+            int colStart = index + 1;
+            int numPanelCols = panelEnd - colStart;
+            if (numPanelCols == 0) {
+                continue;
+            }
+
+            System.arraycopy(this.qr, index * n + colStart, dots, 0, numPanelCols);
+            for (int rowIndex = index + 1; rowIndex < this.numRows; rowIndex++) {
+                int row = rowIndex * n;
+                double vValue = this.qr[row + index];
+                for (int col = 0; col < numPanelCols; col++) {
+                    dots[col] += vValue * this.qr[row + colStart + col];
+                }
+            }
+
+            double tauValue = this.tau[index];
+            for (int col = 0; col < numPanelCols; col++) {
+                dots[col] *= tauValue;
+                this.qr[index * n + colStart + col] -= dots[col];
+            }
+            for (int rowIndex = index + 1; rowIndex < this.numRows; rowIndex++) {
+                int row = rowIndex * n;
+                double vValue = this.qr[row + index];
+                for (int col = 0; col < numPanelCols; col++) {
+                    this.qr[row + colStart + col] -= vValue * dots[col];
+                }
+            }
+        }
+    }
+
+    // 2-norm of column 'index' below the diagonal. The plain sum of squares is used unless it has overflowed or is small
+    // enough to have underflowed, in which case the column is scaled by a power of two first (dnrm2)
+    private double normBelowDiagonal(int index) {
+
+        int n = this.numCols;
+        double sigma = 0;
+        double max = 0;
+        for (int rowIndex = index + 1; rowIndex < this.numRows; rowIndex++) {
+            double value = this.qr[rowIndex * n + index];
+            sigma += value * value;
+            max = Math.max(max, Math.abs(value));
+        }
+        if (max == 0 || (sigma >= SAFE_MIN && sigma <= Double.MAX_VALUE)) {
+            return Math.sqrt(sigma);
+        }
+
+        int exponent = Math.getExponent(max);
+        double scale = Math.scalb(1.0, -exponent);
+        double scaledSigma = 0;
+        for (int rowIndex = index + 1; rowIndex < this.numRows; rowIndex++) {
+            double value = this.qr[rowIndex * n + index] * scale;
+            scaledSigma += value * value;
+        }
+        return Math.scalb(Math.sqrt(scaledSigma), exponent);
+    }
+
+    // Copies the reflectors of a panel into an explicit (numRows - panelStart) x panelSize unit lower trapezoidal
+    // matrix, row-major with row stride panelSize
+    private void formV(int panelStart, int panelSize, double[] v) {
+        for (int rowIndex = panelStart; rowIndex < this.numRows; rowIndex++) {
+            int row = (rowIndex - panelStart) * panelSize;
+            int diagonalCol = rowIndex - panelStart;
+            for (int col = 0; col < panelSize; col++) {
+                double value;
+                if (col < diagonalCol) {
+                    value = this.qr[rowIndex * this.numCols + panelStart + col];
+                } else {
+                    value = col == diagonalCol ? 1 : 0;
+                }
+                v[row + col] = value;
+            }
+        }
+    }
+
+    // Upper triangular T such that H_panelStart * ... * H_panelEnd-1 = I - V * T * V^T (dlarft, forward columnwise),
+    // row-major with row stride panelSize, for the numVRows x panelSize V of formV and the factors tau[panelStart...]
+    static void formT(double[] tau, int panelStart, int numVRows, int panelSize, double[] v, double[] t,
+                      double[] z) {
+
+        for (int index = 0; index < panelSize; index++) {
+            double tauValue = tau[panelStart + index];
+            t[index * panelSize + index] = tauValue;
+            if (index == 0) {
+                continue;
+            }
+
+            // z = -tau * V[:, 0:index]^T * v_index, v_index being zero above row 'index'
+            Arrays.fill(z, 0, index, 0);
+            for (int rowIndex = index; rowIndex < numVRows; rowIndex++) {
+                int row = rowIndex * panelSize;
+                double vValue = v[row + index];
+                for (int col = 0; col < index; col++) {
+                    z[col] += v[row + col] * vValue;
+                }
+            }
+
+            // T[0:index, index] = T[0:index, 0:index] * z
+            for (int rowIndex = 0; rowIndex < index; rowIndex++) {
+                double value = 0;
+                for (int col = rowIndex; col < index; col++) {
+                    value += t[rowIndex * panelSize + col] * z[col];
+                }
+                t[rowIndex * panelSize + index] = -tauValue * value;
+            }
+        }
+    }
+
+    // C := (I - V * T * V^T) * C, or with T^T when 'transpose' is set, where C is the numVRows x numCols block of 'c'
+    // starting at cOffset with row stride cRowStride
+    static void applyBlockReflector(ForkJoinPool pool, int numVRows, int panelSize, double[] v, double[] t,
+                                    double[] y, boolean transpose, double[] c, int cOffset, int cRowStride,
+                                    int numCols) {
+
+        // Y = V^T * C
+        Arrays.fill(y, 0, panelSize * numCols, 0);
+        Gemm.multiply(pool, panelSize, numCols, numVRows, 1,
+                v, 0, 1, panelSize,
+                c, cOffset, cRowStride, 1,
+                y, 0, numCols, 1);
+
+        // Y = T * Y or T^T * Y, in place: each updated row only depends on rows that are still to be updated
+        if (transpose) {
+            for (int rowIndex = panelSize - 1; rowIndex >= 0; rowIndex--) {
+                QRDecomposition.combineRows(y, numCols, rowIndex, t, panelSize, 0, rowIndex, true);
+            }
+        } else {
+            for (int rowIndex = 0; rowIndex < panelSize; rowIndex++) {
+                QRDecomposition.combineRows(y, numCols, rowIndex, t, panelSize, rowIndex, panelSize - 1, false);
+            }
+        }
+
+        // C = C - V * Y
+        Gemm.multiply(pool, numVRows, numCols, panelSize, -1,
+                v, 0, panelSize, 1,
+                y, 0, numCols, 1,
+                c, cOffset, cRowStride, 1);
+    }
+
+    // y[rowIndex] = sum over 'from' <= index <= 'to' of (T or T^T)[rowIndex][index] * y[index]
+    private static void combineRows(double[] y, int numCols, int rowIndex, double[] t, int panelSize, int from,
+                                    int to, boolean transpose) {
+        int row = rowIndex * numCols;
+        double diagonal = t[rowIndex * panelSize + rowIndex];
+        for (int col = 0; col < numCols; col++) {
+            y[row + col] *= diagonal;
+        }
+        for (int index = from; index <= to; index++) {
+            if (index == rowIndex) {
+                continue;
+            }
+            double factor = transpose ? t[index * panelSize + rowIndex] : t[rowIndex * panelSize + index];
+            if (factor == 0) {
+                continue;
+            }
+            int other = index * numCols;
+            for (int col = 0; col < numCols; col++) {
+                y[row + col] += factor * y[other + col];
+            }
+        }
+    }
+
+    // Applies Q (or Q^T) to the numRows x numCols matrix held row-major in 'c', block reflectors being applied in
+    // reverse order for Q and in forward order for Q^T. When 'c' starts out as the leading columns of the identity,
+    // as when forming Q explicitly, the reflectors of a panel leave the columns before the panel untouched and they
+    // are skipped.
+    private void applyQ(double[] c, int numCols, boolean transpose, boolean fromIdentity) {
+
+        double[] v = new double[this.numRows * BLOCK_SIZE];
+        double[] t = new double[BLOCK_SIZE * BLOCK_SIZE];
+        double[] y = new double[BLOCK_SIZE * numCols];
+        double[] z = new double[BLOCK_SIZE];
+
+        int numPanels = (this.numReflectors + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int panel = 0; panel < numPanels; panel++) {
+            int panelStart = (transpose ? panel : numPanels - 1 - panel) * BLOCK_SIZE;
+            int panelSize = Math.min(BLOCK_SIZE, this.numReflectors - panelStart);
+            int colStart = fromIdentity ? panelStart : 0;
+            this.formV(panelStart, panelSize, v);
+            QRDecomposition.formT(this.tau, panelStart, this.numRows - panelStart, panelSize, v, t, z);
+            QRDecomposition.applyBlockReflector(this.pool, this.numRows - panelStart, panelSize,
+                    v, t, y, transpose, c, panelStart * numCols + colStart, numCols, numCols - colStart);
+        }
+    }
+
+    private void validateApplyQ(Matrix matrix) throws MatrixIllegalArgumentException {
+        if (matrix == null) {
+            throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+        }
+        if (matrix.getNumRows() != this.numRows) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Dimension mismatch for 'numRows': 'Q' = (%d) vs 'matrix' = (%d)",
+                    this.numRows, matrix.getNumRows()));
+        }
+    }
+
+    public Matrix applyQ(Matrix matrix) throws MatrixIllegalArgumentException {
+        this.validateApplyQ(matrix);
+        double[] result = matrix.getArray();
+        this.applyQ(result, matrix.getNumCols(), false, false);
+        return Matrix.wrap(result, this.numRows, matrix.getNumCols());
+    }
+
+    public Matrix applyQTranspose(Matrix matrix) throws MatrixIllegalArgumentException {
+        this.validateApplyQ(matrix);
+        double[] result = matrix.getArray();
+        this.applyQ(result, matrix.getNumCols(), true, false);
+        return Matrix.wrap(result, this.numRows, matrix.getNumCols());
+    }
+
+    // Thin Q, i.e. the first min(numRows, numCols) columns of the orthogonal factor
+    public Matrix getQ() {
+        double[] q = new double[this.numRows * this.numReflectors];
+        for (int index = 0; index < this.numReflectors; index++) {
+            q[index * this.numReflectors + index] = 1;
+        }
+        this.applyQ(q, this.numReflectors, false, true);
+        return Matrix.wrap(q, this.numRows, this.numReflectors);
+    }
+
+    // min(numRows, numCols) x numCols upper trapezoidal factor
+    public Matrix getR() {
+        double[] r = new double[this.numReflectors * this.numCols];
+        for (int rowIndex = 0; rowIndex < this.numReflectors; rowIndex++) {
+            System.arraycopy(this.qr, rowIndex * this.numCols + rowIndex, r, rowIndex * this.numCols + rowIndex,
+                    this.numCols - rowIndex);
+        }
+        return Matrix.wrap(r, this.numReflectors, this.numCols);
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+}
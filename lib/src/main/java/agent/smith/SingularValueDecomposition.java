@@ -0,0 +1,423 @@
+package agent.smith;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// Thin singular value decomposition A = U * diag(sigma) * V^T of an m x n matrix, with k = min(m, n) singular values
+// in descending order, U m x k and V n x k, by one-sided Jacobi rotations (Hestenes), following Drmac & Veselic's
+// preconditioned Jacobi SVD (LAPACK's dgejsv / dgesvj):
+//
+// - A wide matrix is handled through its transpose, so that B = A or A^T is tall, m' x n' with m' >= n'.
+// - B is first reduced by QR, B = Q * R, and the rotations work on the small n' x n' matrix G = R^T rather than on B:
+// for the 20000 x 500 matrices this was written for that is 50 times less data per sweep, and the rows of R being
+// much closer to orthogonal than the columns of B, fewer sweeps are needed.
+// - Each rotation makes two columns of G orthogonal. A sweep goes through all the pairs of columns in round-robin
+// order, where each round is a set of disjoint pairs that are rotated in parallel, and the sweeps stop once every
+// pair is orthogonal to working precision. Then G * J = W, with J the product of the rotations, the singular values
+// are the norms of the columns of W and B = (Q * J) * diag(sigma) * W_normalised^T.
+//
+// W_normalised gives V for a tall A and U for a wide one for free. The other factor needs Q * J, the most expensive
+// step after the QR reduction, so it is only formed when its getter is called. Matrix.singularValues() skips the
+// rotations J as well.
+
+public final class SingularValueDecomposition {
+
+    // Elements of the columns rotated by a task, 512 KiB
+    private static final long BLOCK_NUM_ELEMENTS = 1L << 16;
+
+    private static final int MAX_NUM_SWEEPS = 30;
+
+    private static final double EPSILON = Math.ulp(1.0);
+
+    private final int numRows;
+    private final int numCols;
+    // Whether A is wide, and the rotations worked on A^T
+    private final boolean transposed;
+    private final QRDecomposition qr;
+    // Singular values in descending order, and the matching columns of W_normalised and of J, both n' x n' row-major
+    private final double[] singularValues;
+    private final double[] w;
+    private final double[] j;
+
+    private SingularValueDecomposition(int numRows, int numCols, boolean transposed, QRDecomposition qr,
+                                       double[] singularValues, double[] w, double[] j) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.transposed = transposed;
+        this.qr = qr;
+        this.singularValues = singularValues;
+        this.w = w;
+        this.j = j;
+    }
+
+    static SingularValueDecomposition of(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+        return new Jacobi(pool, matrix, true).toDecomposition();
+    }
+
+    static double[] singularValues(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+        return new Jacobi(pool, matrix, false).singularValues;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Jacobi rotations
+
+    private static final class Jacobi {
+
+        private final ForkJoinPool pool;
+        private final int numRows;
+        private final int numCols;
+        private final boolean transposed;
+        private final QRDecomposition qr;
+        // n', and the n' x n' G = R^T and J, the rotations only being accumulated when the vectors are wanted. A
+        // column of each is stored as a row, so that the rotations run over contiguous memory
+        private final int size;
+        private final double[] g;
+        private final double[] j;
+        private final double[] singularValues;
+        private final int[] order;
+        // Squared norms of the columns of G, kept up to date through the rotations
+        private final double[] norms;
+        private final int blockSize;
+        // The rotations stop once the cosine of every pair of columns is below sqrt(n') * eps
+        private final double tolerance;
+
+        Jacobi(ForkJoinPool pool, Matrix matrix, boolean accumulate) throws MatrixIllegalArgumentException {
+
+            this.pool = pool;
+            this.numRows = matrix.getNumRows();
+            this.numCols = matrix.getNumCols();
+            this.transposed = this.numRows < this.numCols;
+            this.size = Math.min(this.numRows, this.numCols);
+
+            // Scaled by a power of two so that the squared norms of the columns neither overflow nor underflow
+            double max = 0;
+            for (int rowIndex = 0; rowIndex < this.numRows; rowIndex++) {
+                for (int colIndex = 0; colIndex < this.numCols; colIndex++) {
+                    double value = matrix.get(rowIndex, colIndex);
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        throw new MatrixIllegalArgumentException(String.format(
+                                "Element (%d, %d) is not finite", rowIndex, colIndex));
+                    }
+                    max = Math.max(max, Math.abs(value));
+                }
+            }
+            int exponent = max == 0 ? 0 : Math.getExponent(max);
+            Matrix tall = this.transposed ? matrix.transposeView() : matrix;
+            if (Math.abs(exponent) > 256) {
+                tall = tall.multiply(Math.scalb(1.0, -exponent));
+            } else {
+                exponent = 0;
+            }
+
+            // The rows of R are the columns of G = R^T
+            this.qr = new QRDecomposition(pool, tall);
+            this.g = this.qr.getR().getArray();
+            this.j = accumulate ? Matrix.instanceOfEye(this.size).getArray() : null;
+            this.norms = new double[this.size];
+            this.tolerance = Math.sqrt(this.size) * EPSILON;
+            // A pair of blocks of G and J should fit in BLOCK_NUM_ELEMENTS, with enough pairs in a round for the pool
+            int blockSize = (int) Math.min(BLOCK_NUM_ELEMENTS / (4L * this.size),
+                    this.size / (2L * pool.getParallelism()));
+            this.blockSize = Math.max(blockSize, 1);
+
+            int numSweeps = 0;
+            while (numSweeps < MAX_NUM_SWEEPS && this.sweep() > 0) {
+                numSweeps++;
+            }
+
+            double[] values = new double[this.size];
+            for (int index = 0; index < this.size; index++) {
+                values[index] = Math.scalb(Math.sqrt(SingularValueDecomposition.dot(this.g, index * this.size,
+                        index * this.size, this.size)), exponent);
+            }
+            Integer[] sorted = new Integer[this.size];
+            for (int index = 0; index < this.size; index++) {
+                sorted[index] = index;
+            }
+            Arrays.sort(sorted, (index, other) -> Double.compare(values[other], values[index]));
+            this.order = new int[this.size];
+            this.singularValues = new double[this.size];
+            for (int index = 0; index < this.size; index++) {
+                this.order[index] = sorted[index];
+                this.singularValues[index] = values[sorted[index]];
+            }
+        }
+
+        // One sweep over all the pairs of columns, returning the number of rotations. The columns are grouped into
+        // blocks, the pairs within each block come first, then the rounds of disjoint pairs of blocks in round-robin
+        // order, with a dummy block sitting out one pair in each round when there is an odd number of them
+        private int sweep() {
+
+            int n = this.size;
+            int numBlocks = (n + this.blockSize - 1) / this.blockSize;
+            for (int index = 0; index < n; index++) {
+                this.norms[index] = SingularValueDecomposition.dot(this.g, index * n, index * n, n);
+            }
+
+            int[] pairs = new int[2 * numBlocks];
+            for (int block = 0; block < numBlocks; block++) {
+                pairs[2 * block] = block;
+                pairs[2 * block + 1] = block;
+            }
+            BlockTask task = new BlockTask(this, pairs, 0, numBlocks);
+            this.pool.invoke(task);
+            int numRotations = task.numRotations;
+
+            int numPlayers = numBlocks + (numBlocks & 1);
+            int[] players = new int[numPlayers];
+            for (int index = 0; index < numPlayers; index++) {
+                players[index] = index;
+            }
+            for (int round = 0; round < numPlayers - 1; round++) {
+                int numRoundPairs = 0;
+                for (int index = 0; index < numPlayers / 2; index++) {
+                    int first = players[index];
+                    int second = players[numPlayers - 1 - index];
+                    if (first < numBlocks && second < numBlocks) {
+                        pairs[2 * numRoundPairs] = first;
+                        pairs[2 * numRoundPairs + 1] = second;
+                        numRoundPairs++;
+                    }
+                }
+                task = new BlockTask(this, pairs, 0, numRoundPairs);
+                this.pool.invoke(task);
+                numRotations += task.numRotations;
+
+                // Player 0 stays put and the others move round by one place
+                int last = players[numPlayers - 1];
+                System.arraycopy(players, 1, players, 2, numPlayers - 2);
+                players[1] = last;
+            }
+            return numRotations;
+        }
+
+        // Makes columns 'first' and 'second' of G orthogonal, unless they already are to working precision, applying
+        // the same rotation to those of J when they are accumulated. Returns whether a rotation was applied
+        private boolean rotate(int first, int second) {
+
+            int n = this.size;
+            double alpha = this.norms[first];
+            double beta = this.norms[second];
+            if (alpha == 0 || beta == 0) {
+                return false;
+            }
+            int firstOffset = first * n;
+            int secondOffset = second * n;
+            double gamma = SingularValueDecomposition.dot(this.g, firstOffset, secondOffset, n);
+            if (Math.abs(gamma) <= this.tolerance * Math.sqrt(alpha) * Math.sqrt(beta)) {
+                return false;
+            }
+
+            // tan of the smaller angle that zeroes gamma
+            double zeta = (beta - alpha) / (2 * gamma);
+            double t = zeta == 0 ? 1 : Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+            double c = 1 / Math.sqrt(1 + t * t);
+            double s = c * t;
+            SingularValueDecomposition.rotate(this.g, firstOffset, secondOffset, n, c, s);
+            if (this.j != null) {
+                SingularValueDecomposition.rotate(this.j, firstOffset, secondOffset, n, c, s);
+            }
+
+            // The squared norms follow from the rotation, unless most of one of them cancels out
+            double newAlpha = alpha - t * gamma;
+            double newBeta = beta + t * gamma;
+            this.norms[first] = newAlpha > alpha / 16 ? newAlpha
+                    : SingularValueDecomposition.dot(this.g, firstOffset, firstOffset, n);
+            this.norms[second] = newBeta > beta / 16 ? newBeta
+                    : SingularValueDecomposition.dot(this.g, secondOffset, secondOffset, n);
+            return true;
+        }
+
+        SingularValueDecomposition toDecomposition() {
+
+            int n = this.size;
+            double[] w = new double[n * n];
+            double[] j = new double[n * n];
+            for (int index = 0; index < n; index++) {
+                int source = this.order[index];
+                double norm = Math.sqrt(SingularValueDecomposition.dot(this.g, source * n, source * n, n));
+                for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+                    w[rowIndex * n + index] = norm == 0 ? 0 : this.g[source * n + rowIndex] / norm;
+                    j[rowIndex * n + index] = this.j[source * n + rowIndex];
+                }
+            }
+            SingularValueDecomposition.completeBasis(w, n, this.singularValues);
+            return new SingularValueDecomposition(this.numRows, this.numCols, this.transposed, this.qr,
+                    this.singularValues, w, j);
+        }
+    }
+
+    // Rotates every pair of columns with one column in each block of the pairs [pairStart, pairEnd) of a round, or
+    // every pair within the block for a block paired with itself. The blocks of a round are distinct, and the columns
+    // of a pair of blocks are few enough to stay in cache while all their pairs are rotated
+    private static final class BlockTask extends RecursiveAction {
+
+        private final Jacobi jacobi;
+        private final int[] pairs;
+        private final int pairStart;
+        private final int pairEnd;
+        private int numRotations;
+
+        BlockTask(Jacobi jacobi, int[] pairs, int pairStart, int pairEnd) {
+            this.jacobi = jacobi;
+            this.pairs = pairs;
+            this.pairStart = pairStart;
+            this.pairEnd = pairEnd;
+        }
+
+        @Override
+        protected void compute() {
+
+            int numPairs = this.pairEnd - this.pairStart;
+            if (numPairs == 1) {
+                int blockSize = this.jacobi.blockSize;
+                int size = this.jacobi.size;
+                int firstStart = this.pairs[2 * this.pairStart] * blockSize;
+                int firstEnd = Math.min(firstStart + blockSize, size);
+                int secondStart = this.pairs[2 * this.pairStart + 1] * blockSize;
+                int secondEnd = Math.min(secondStart + blockSize, size);
+                boolean sameBlock = firstStart == secondStart;
+                for (int first = firstStart; first < firstEnd; first++) {
+                    for (int second = sameBlock ? first + 1 : secondStart; second < secondEnd; second++) {
+                        if (this.jacobi.rotate(first, second)) {
+                            this.numRotations++;
+                        }
+                    }
+                }
+                return;
+            }
+            if (numPairs == 0) {
+                return;
+            }
+
+            int half = this.pairStart + numPairs / 2;
+            BlockTask firstTask = new BlockTask(this.jacobi, this.pairs, this.pairStart, half);
+            BlockTask secondTask = new BlockTask(this.jacobi, this.pairs, half, this.pairEnd);
+            RecursiveAction.invokeAll(firstTask, secondTask);
+            this.numRotations = firstTask.numRotations + secondTask.numRotations;
+        }
+    }
+
+    private static double dot(double[] array, int first, int second, int length) {
+        double value0 = 0;
+        double value1 = 0;
+        int index = 0;
+        for (; index + 1 < length; index += 2) {
+            value0 += array[first + index] * array[second + index];
+            value1 += array[first + index + 1] * array[second + index + 1];
+        }
+        if (index < length) {
+            value0 += array[first + index] * array[second + index];
+        }
+        return value0 + value1;
+    }
+
+    // (x, y) := (c * x - s * y, s * x + c * y) for the vectors of 'array' starting at 'first' and 'second'
+    private static void rotate(double[] array, int first, int second, int length, double c, double s) {
+        for (int index = 0; index < length; index++) {
+            double x = array[first + index];
+            double y = array[second + index];
+            array[first + index] = c * x - s * y;
+            array[second + index] = s * x + c * y;
+        }
+    }
+
+    // Columns of the row-major n x n 'w' for singular values that are zero to working precision are replaced by unit
+    // vectors orthogonal to all the other columns, dividing by their norms having left them meaningless
+    private static void completeBasis(double[] w, int n, double[] singularValues) {
+
+        double tolerance = n * EPSILON * singularValues[0];
+        double[] x = new double[n];
+        int candidate = 0;
+        for (int col = 0; col < n; col++) {
+            if (singularValues[col] > tolerance && singularValues[col] > 0) {
+                continue;
+            }
+            // Unit vectors are tried in turn until one keeps enough of its norm once projected
+            while (true) {
+                Arrays.fill(x, 0);
+                x[candidate++ % n] = 1;
+                for (int pass = 0; pass < 2; pass++) {
+                    for (int other = 0; other < n; other++) {
+                        if (other == col || (other > col && !(singularValues[other] > tolerance))) {
+                            continue;
+                        }
+                        double dot = 0;
+                        for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+                            dot += w[rowIndex * n + other] * x[rowIndex];
+                        }
+                        for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+                            x[rowIndex] -= dot * w[rowIndex * n + other];
+                        }
+                    }
+                }
+                double norm = Math.sqrt(SingularValueDecomposition.dot(x, 0, 0, n));
+                if (norm > 0.5) {
+                    for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+                        w[rowIndex * n + col] = x[rowIndex] / norm;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Results
+
+    // Q * J, m' x k
+    private Matrix formQJ() {
+        int n = this.singularValues.length;
+        int numTallRows = Math.max(this.numRows, this.numCols);
+        double[] qj = new double[numTallRows * n];
+        System.arraycopy(this.j, 0, qj, 0, n * n);
+        return this.qr.applyQ(Matrix.wrap(qj, numTallRows, n));
+    }
+
+    // Column vector of the singular values, in descending order
+    public Matrix getSingularValues() {
+        return Matrix.wrap(this.singularValues.clone(), this.singularValues.length, 1);
+    }
+
+    // Left singular vectors, m x k. Formed on each call, through the QR reduction for a tall matrix
+    public Matrix getU() {
+        int n = this.singularValues.length;
+        return this.transposed ? Matrix.wrap(this.w.clone(), n, n) : this.formQJ();
+    }
+
+    // Right singular vectors, n x k. Formed on each call, through the QR reduction for a wide matrix
+    public Matrix getV() {
+        int n = this.singularValues.length;
+        return this.transposed ? this.formQJ() : Matrix.wrap(this.w.clone(), n, n);
+    }
+
+    // Ratio of the largest singular value to the smallest, infinite for a rank-deficient matrix, including the zero
+    // matrix, for which the ratio would be 0 / 0
+    public double conditionNumber() {
+        double smallest = this.singularValues[this.singularValues.length - 1];
+        return smallest == 0 ? Double.POSITIVE_INFINITY : this.singularValues[0] / smallest;
+    }
+
+    // Moore-Penrose pseudo-inverse V * diag(1 / sigma) * U^T, n x m, singular values below
+    // max(m, n) * eps * sigma_max being taken as zero
+    public Matrix pseudoInverse() {
+        double tolerance = Math.max(this.numRows, this.numCols) * EPSILON * this.singularValues[0];
+        Matrix v = this.getV();
+        for (int index = 0; index < this.singularValues.length; index++) {
+            double sigma = this.singularValues[index];
+            v.getColView(index).multiplyToThis(sigma > tolerance ? 1 / sigma : 0);
+        }
+        return v.multiply(this.getU().transposeView());
+    }
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+}
@@ -0,0 +1,812 @@
+package agent.smith;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// Matrix of any shape which only stores its non-zero elements, compressed by row (CsrMatrix) or by column
+// (CscMatrix). The elements are grouped by their major index, the row of a CsrMatrix and the column of a CscMatrix:
+// those of major index i are at positions pointers[i] (inclusive) to pointers[i + 1] (exclusive) of 'indexes', which
+// holds their minor index in increasing order, and of 'values'. The arrays of a CscMatrix are therefore those of the
+// CsrMatrix of its transpose, so transpose() only swaps the kind, and every kernel below is written once in terms of
+// major and minor indexes.
+//
+// Sparse matrices are immutable, so results share arrays with their operands whenever they can. Except for the
+// conversions from and to Matrix, memory and time are proportional to the number of non-zeros plus the number of
+// rows or columns, never to numRows * numCols. Sums and products do not store the zeros they produce.
+//
+// The results of an operation are of the same kind as the matrix the operation is called on, or as the left operand
+// of a product.
+
+public abstract class SparseMatrix {
+
+    // Multiply-adds of a product below which it is not split further among threads
+    private static final long TASK_LENGTH = 1L << 15;
+
+    final boolean byRow;
+    final int numRows;
+    final int numCols;
+    final int numMajor;
+    final int numMinor;
+    final int[] pointers;
+    final int[] indexes;
+    final double[] values;
+
+    SparseMatrix(boolean byRow, int numRows, int numCols, int[] pointers, int[] indexes, double[] values) {
+        this.byRow = byRow;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.numMajor = byRow ? numRows : numCols;
+        this.numMinor = byRow ? numCols : numRows;
+        this.pointers = pointers;
+        this.indexes = indexes;
+        this.values = values;
+    }
+
+    // Takes ownership of the arrays, which are already valid
+    static SparseMatrix wrap(boolean byRow, int numRows, int numCols, int[] pointers, int[] indexes,
+                             double[] values) {
+        return byRow
+                ? new CsrMatrix(numRows, numCols, pointers, indexes, values)
+                : new CscMatrix(numRows, numCols, pointers, indexes, values);
+    }
+
+    // Matrix of the same kind, with its dimensions given as major and minor
+    private SparseMatrix like(int numMajor, int numMinor, int[] pointers, int[] indexes, double[] values) {
+        return this.byRow
+                ? SparseMatrix.wrap(true, numMajor, numMinor, pointers, indexes, values)
+                : SparseMatrix.wrap(false, numMinor, numMajor, pointers, indexes, values);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Validation
+
+    static void validateDimensions(int numRows, int numCols) throws MatrixIllegalArgumentException {
+        if (numRows <= 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'numRows' (%d) has to be a positive integer", numRows));
+        }
+        if (numCols <= 0) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'numCols' (%d) has to be a positive integer", numCols));
+        }
+    }
+
+    static void validateMatricesNonNull(SparseMatrix... matrices) throws MatrixIllegalArgumentException {
+        for (SparseMatrix matrix : matrices) {
+            if (matrix == null) {
+                throw new MatrixIllegalArgumentException("Input matrix cannot be null");
+            }
+        }
+    }
+
+    private static void validateNumNonZeros(long numNonZeros) throws MatrixIllegalArgumentException {
+        if (numNonZeros > Matrix.MAX_LENGTH) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "Number of non-zeros (%d) is larger than the maximum length of a SparseMatrix (%d)",
+                    numNonZeros, Matrix.MAX_LENGTH));
+        }
+    }
+
+    private void validateRowIndex(int rowIndex) throws MatrixIllegalArgumentException {
+        if (rowIndex < 0 || rowIndex >= this.numRows) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'rowIndex' = (%d) has to be between 0 and %d", rowIndex, this.numRows - 1));
+        }
+    }
+
+    private void validateColIndex(int colIndex) throws MatrixIllegalArgumentException {
+        if (colIndex < 0 || colIndex >= this.numCols) {
+            throw new MatrixIllegalArgumentException(
+                    String.format("'colIndex' = (%d) has to be between 0 and %d", colIndex, this.numCols - 1));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Creation and conversion
+
+    // Copies compressed arrays given by the caller. 'pointersName', 'indexesName' and 'majorName' only name them in
+    // the messages, e.g. "rowPointers", "colIndexes" and "row" for a CsrMatrix
+    static SparseMatrix create(boolean byRow, int numRows, int numCols, int[] pointers, int[] indexes,
+                               double[] values, String pointersName, String indexesName, String majorName)
+            throws MatrixIllegalArgumentException {
+
+        SparseMatrix.validateDimensions(numRows, numCols);
+        if (pointers == null || indexes == null || values == null) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'%s', '%s' and 'values' cannot be null", pointersName, indexesName));
+        }
+        int numMajor = byRow ? numRows : numCols;
+        int numMinor = byRow ? numCols : numRows;
+        if (pointers.length != numMajor + 1) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'%s' has length %d instead of %d", pointersName, pointers.length, numMajor + 1));
+        }
+        if (pointers[0] != 0) {
+            throw new MatrixIllegalArgumentException(String.format("'%s' has to start at 0", pointersName));
+        }
+        for (int majorIndex = 0; majorIndex < numMajor; majorIndex++) {
+            if (pointers[majorIndex + 1] < pointers[majorIndex]) {
+                throw new MatrixIllegalArgumentException(String.format(
+                        "'%s' has to be non-decreasing", pointersName));
+            }
+        }
+        int numNonZeros = pointers[numMajor];
+        if (indexes.length != numNonZeros || values.length != numNonZeros) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'%s' and 'values' have to have the length %d given by the last of '%s'",
+                    indexesName, numNonZeros, pointersName));
+        }
+        for (int majorIndex = 0; majorIndex < numMajor; majorIndex++) {
+            for (int position = pointers[majorIndex]; position < pointers[majorIndex + 1]; position++) {
+                int minorIndex = indexes[position];
+                if (minorIndex < 0 || minorIndex >= numMinor ||
+                        (position > pointers[majorIndex] && minorIndex <= indexes[position - 1])) {
+                    throw new MatrixIllegalArgumentException(String.format(
+                            "'%s' have to be increasing and between 0 and %d in each %s, not in %s %d",
+                            indexesName, numMinor - 1, majorName, majorName, majorIndex));
+                }
+            }
+        }
+
+        return SparseMatrix.wrap(byRow, numRows, numCols, pointers.clone(), indexes.clone(), values.clone());
+    }
+
+    // Duplicates are added up, and the elements which are then zero are not stored
+    static SparseMatrix fromTriplets(boolean byRow, int numRows, int numCols, int[] rowIndexes, int[] colIndexes,
+                                     double[] values) throws MatrixIllegalArgumentException {
+
+        SparseMatrix.validateDimensions(numRows, numCols);
+        if (rowIndexes == null || colIndexes == null || values == null) {
+            throw new MatrixIllegalArgumentException("'rowIndexes', 'colIndexes' and 'values' cannot be null");
+        }
+        if (rowIndexes.length != values.length || colIndexes.length != values.length) {
+            throw new MatrixIllegalArgumentException(String.format(
+                    "'rowIndexes' (%d), 'colIndexes' (%d) and 'values' (%d) have to have the same length",
+                    rowIndexes.length, colIndexes.length, values.length));
+        }
+        for (int index = 0; index < values.length; index++) {
+            if (rowIndexes[index] < 0 || rowIndexes[index] >= numRows ||
+                    colIndexes[index] < 0 || colIndexes[index] >= numCols) {
+                throw new MatrixIllegalArgumentException(String.format(
+                        "Element %d at (%d, %d) is outside of a matrix of shape (%d, %d)",
+                        index, rowIndexes[index], colIndexes[index], numRows, numCols));
+            }
+        }
+
+        // Bucketed by minor index first, so that the conversion to the other kind leaves the minor indexes of every
+        // major index sorted, with the duplicates next to each other
+        int[] majorIndexes = byRow ? rowIndexes : colIndexes;
+        int[] minorIndexes = byRow ? colIndexes : rowIndexes;
+        int numMinor = byRow ? numCols : numRows;
+        int[] pointers = new int[numMinor + 1];
+        for (int minorIndex : minorIndexes) {
+            pointers[minorIndex + 1]++;
+        }
+        for (int minorIndex = 0; minorIndex < numMinor; minorIndex++) {
+            pointers[minorIndex + 1] += pointers[minorIndex];
+        }
+        int[] next = Arrays.copyOf(pointers, numMinor);
+        int[] bucketIndexes = new int[values.length];
+        double[] bucketValues = new double[values.length];
+        for (int index = 0; index < values.length; index++) {
+            int position = next[minorIndexes[index]]++;
+            bucketIndexes[position] = majorIndexes[index];
+            bucketValues[position] = values[index];
+        }
+        SparseMatrix sorted = SparseMatrix.wrap(!byRow, numRows, numCols, pointers, bucketIndexes, bucketValues)
+                .convert();
+
+        // Adds up the runs of equal minor indexes in place
+        int[] sortedPointers = sorted.pointers;
+        int[] sortedIndexes = sorted.indexes;
+        double[] sortedValues = sorted.values;
+        int length = 0;
+        int start = 0;
+        for (int majorIndex = 0; majorIndex < sorted.numMajor; majorIndex++) {
+            int end = sortedPointers[majorIndex + 1];
+            for (int position = start; position < end; ) {
+                int minorIndex = sortedIndexes[position];
+                double value = sortedValues[position++];
+                while (position < end && sortedIndexes[position] == minorIndex) {
+                    value += sortedValues[position++];
+                }
+                if (value != 0) {
+                    sortedIndexes[length] = minorIndex;
+                    sortedValues[length++] = value;
+                }
+            }
+            start = end;
+            sortedPointers[majorIndex + 1] = length;
+        }
+        return SparseMatrix.wrap(byRow, numRows, numCols, sortedPointers, Arrays.copyOf(sortedIndexes, length),
+                Arrays.copyOf(sortedValues, length));
+    }
+
+    static SparseMatrix of(Matrix matrix, boolean byRow) throws MatrixIllegalArgumentException {
+
+        Matrix.validateMatricesNonNull(matrix);
+        // Walked along its major index, which for a CscMatrix is a column of 'matrix'
+        Matrix source = byRow ? matrix : matrix.transposeView();
+        int numMajor = source.getNumRows();
+        int numMinor = source.getNumCols();
+
+        int[] pointers = new int[numMajor + 1];
+        for (int majorIndex = 0; majorIndex < numMajor; majorIndex++) {
+            int start = source.offset + majorIndex * source.rowStride;
+            int numNonZeros = 0;
+            for (int minorIndex = 0; minorIndex < numMinor; minorIndex++) {
+                numNonZeros += source.array[start + minorIndex * source.colStride] != 0 ? 1 : 0;
+            }
+            pointers[majorIndex + 1] = pointers[majorIndex] + numNonZeros;
+        }
+
+        int[] indexes = new int[pointers[numMajor]];
+        double[] values = new double[pointers[numMajor]];
+        int position = 0;
+        for (int majorIndex = 0; majorIndex < numMajor; majorIndex++) {
+            int start = source.offset + majorIndex * source.rowStride;
+            for (int minorIndex = 0; minorIndex < numMinor; minorIndex++) {
+                double value = source.array[start + minorIndex * source.colStride];
+                if (value != 0) {
+                    indexes[position] = minorIndex;
+                    values[position++] = value;
+                }
+            }
+        }
+        return SparseMatrix.wrap(byRow, matrix.getNumRows(), matrix.getNumCols(), pointers, indexes, values);
+    }
+
+    public Matrix toMatrix() throws MatrixIllegalArgumentException {
+        Matrix.validateLength(this.numRows, this.numCols);
+        double[] array = new double[this.numRows * this.numCols];
+        int majorStride = this.byRow ? this.numCols : 1;
+        int minorStride = this.byRow ? 1 : this.numCols;
+        for (int majorIndex = 0; majorIndex < this.numMajor; majorIndex++) {
+            for (int position = this.pointers[majorIndex]; position < this.pointers[majorIndex + 1]; position++) {
+                array[majorIndex * majorStride + this.indexes[position] * minorStride] = this.values[position];
+            }
+        }
+        return Matrix.wrap(array, this.numRows, this.numCols);
+    }
+
+    // Same matrix compressed the other way, by a counting sort of the elements on their minor index. The elements of
+    // each new major index come in increasing order of the old major index, so they are sorted
+    SparseMatrix convert() {
+        int[] pointers = new int[this.numMinor + 1];
+        int numNonZeros = this.pointers[this.numMajor];
+        for (int position = 0; position < numNonZeros; position++) {
+            pointers[this.indexes[position] + 1]++;
+        }
+        for (int minorIndex = 0; minorIndex < this.numMinor; minorIndex++) {
+            pointers[minorIndex + 1] += pointers[minorIndex];
+        }
+
+        int[] next = Arrays.copyOf(pointers, this.numMinor);
+        int[] indexes = new int[numNonZeros];
+        double[] values = new double[numNonZeros];
+        for (int majorIndex = 0; majorIndex < this.numMajor; majorIndex++) {
+            for (int position = this.pointers[majorIndex]; position < this.pointers[majorIndex + 1]; position++) {
+                int newPosition = next[this.indexes[position]]++;
+                indexes[newPosition] = majorIndex;
+                values[newPosition] = this.values[position];
+            }
+        }
+        return SparseMatrix.wrap(!this.byRow, this.numRows, this.numCols, pointers, indexes, values);
+    }
+
+    private SparseMatrix convert(boolean byRow) {
+        return this.byRow == byRow ? this : this.convert();
+    }
+
+    public CsrMatrix toCsr() {
+        return (CsrMatrix) this.convert(true);
+    }
+
+    public CscMatrix toCsc() {
+        return (CscMatrix) this.convert(false);
+    }
+
+    // Shares the arrays of this matrix, which are those of its transpose compressed the other way
+    public abstract SparseMatrix transpose();
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Access
+
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    public int getNumCols() {
+        return this.numCols;
+    }
+
+    public int getNumNonZeros() {
+        return this.pointers[this.numMajor];
+    }
+
+    // Position of element (majorIndex, minorIndex) in 'indexes' and 'values', or a negative number if it is zero
+    private int find(int majorIndex, int minorIndex) {
+        return Arrays.binarySearch(this.indexes, this.pointers[majorIndex], this.pointers[majorIndex + 1],
+                minorIndex);
+    }
+
+    public double get(int rowIndex, int colIndex) throws MatrixIllegalArgumentException {
+        this.validateRowIndex(rowIndex);
+        this.validateColIndex(colIndex);
+        int position = this.byRow ? this.find(rowIndex, colIndex) : this.find(colIndex, rowIndex);
+        return position < 0 ? 0 : this.values[position];
+    }
+
+    private SparseMatrix getMajor(int majorIndex) {
+        int start = this.pointers[majorIndex];
+        int end = this.pointers[majorIndex + 1];
+        return this.like(1, this.numMinor, new int[]{0, end - start},
+                Arrays.copyOfRange(this.indexes, start, end), Arrays.copyOfRange(this.values, start, end));
+    }
+
+    // A binary search in every major index
+    private SparseMatrix getMinor(int minorIndex) {
+        int[] pointers = new int[this.numMajor + 1];
+        double[] values = new double[this.numMajor];
+        int length = 0;
+        for (int majorIndex = 0; majorIndex < this.numMajor; majorIndex++) {
+            int position = this.find(majorIndex, minorIndex);
+            if (position >= 0) {
+                values[length++] = this.values[position];
+            }
+            pointers[majorIndex + 1] = length;
+        }
+        return this.like(this.numMajor, 1, pointers, new int[length], Arrays.copyOf(values, length));
+    }
+
+    // Of the same kind, with the dimensions of a row, i.e. (1, numCols)
+    public SparseMatrix getRow(int rowIndex) throws MatrixIllegalArgumentException {
+        this.validateRowIndex(rowIndex);
+        return this.byRow ? this.getMajor(rowIndex) : this.getMinor(rowIndex);
+    }
+
+    // Of the same kind, with the dimensions of a column, i.e. (numRows, 1)
+    public SparseMatrix getCol(int colIndex) throws MatrixIllegalArgumentException {
+        this.validateColIndex(colIndex);
+        return this.byRow ? this.getMinor(colIndex) : this.getMajor(colIndex);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Reductions
+
+    public double sum() {
+        int numNonZeros = this.getNumNonZeros();
+        return numNonZeros == 0 ? 0 : MatrixKernels.sum(1, numNonZeros, this.values, 0, numNonZeros, 1);
+    }
+
+    private double[] sumOverMinor() {
+        double[] result = new double[this.numMajor];
+        for (int majorIndex = 0; majorIndex < this.numMajor; majorIndex++) {
+            double value = 0;
+            for (int position = this.pointers[majorIndex]; position < this.pointers[majorIndex + 1]; position++) {
+                value += this.values[position];
+            }
+            result[majorIndex] = value;
+        }
+        return result;
+    }
+
+    private double[] sumOverMajor() {
+        double[] result = new double[this.numMinor];
+        int numNonZeros = this.getNumNonZeros();
+        for (int position = 0; position < numNonZeros; position++) {
+            result[this.indexes[position]] += this.values[position];
+        }
+        return result;
+    }
+
+    // A dense (1, numCols) row for axis 0 and (numRows, 1) column for axis 1, as Matrix.sum(axis)
+    public Matrix sum(int axis) throws MatrixIllegalArgumentException {
+
+        if (axis != 0 && axis != 1) {
+            throw new MatrixIllegalArgumentException(String.format("'axis' (%d) has to be 0 or 1", axis));
+        }
+
+        if (axis == 0) {
+            return Matrix.wrap(this.byRow ? this.sumOverMajor() : this.sumOverMinor(), 1, this.numCols);
+        }
+        return Matrix.wrap(this.byRow ? this.sumOverMinor() : this.sumOverMajor(), this.numRows, 1);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Addition
+
+    // Merges major index 'majorIndex' of this matrix and 'other', which is of the same kind, from 'position' on and
+    // returns the next position. Only counts the elements when 'indexes' is null
+    private int merge(SparseMatrix other, int majorIndex, int[] indexes, double[] values, int position) {
+        int thisPosition = this.pointers[majorIndex];
+        int thisEnd = this.pointers[majorIndex + 1];
+        int otherPosition = other.pointers[majorIndex];
+        int otherEnd = other.pointers[majorIndex + 1];
+        while (thisPosition < thisEnd || otherPosition < otherEnd) {
+            int thisIndex = thisPosition < thisEnd ? this.indexes[thisPosition] : Integer.MAX_VALUE;
+            int otherIndex = otherPosition < otherEnd ? other.indexes[otherPosition] : Integer.MAX_VALUE;
+            int minorIndex = Math.min(thisIndex, otherIndex);
+            double value = 0;
+            if (thisIndex == minorIndex) {
+                value += this.values[thisPosition++];
+            }
+            if (otherIndex == minorIndex) {
+                value += other.values[otherPosition++];
+            }
+            if (value != 0) {
+                if (indexes != null) {
+                    indexes[position] = minorIndex;
+                    values[position] = value;
+                }
+                position++;
+            }
+        }
+        return position;
+    }
+
+    // Counts the non-zeros of the sum first, so that the result is allocated at its exact size
+    public SparseMatrix add(SparseMatrix matrix) throws MatrixIllegalArgumentException {
+
+        SparseMatrix.validateMatricesNonNull(matrix);
+        if (this.numRows != matrix.numRows || this.numCols != matrix.numCols) {
+            throw new MatrixIllegalArgumentException("Dimension mismatch for adding matrices");
+        }
+
+        SparseMatrix other = matrix.convert(this.byRow);
+        long numNonZeros = 0;
+        for (int majorIndex = 0; majorIndex < this.numMajor; majorIndex++) {
+            numNonZeros += this.merge(other, majorIndex, null, null, 0);
+        }
+        SparseMatrix.validateNumNonZeros(numNonZeros);
+
+        int[] pointers = new int[this.numMajor + 1];
+        int[] indexes = new int[(int) numNonZeros];
+        double[] values = new double[(int) numNonZeros];
+        for (int majorIndex = 0; majorIndex < this.numMajor; majorIndex++) {
+            pointers[majorIndex + 1] = this.merge(other, majorIndex, indexes, values, pointers[majorIndex]);
+        }
+        return this.like(this.numMajor, this.numMinor, pointers, indexes, values);
+    }
+
+    // Dense sum
+    public Matrix add(Matrix matrix) throws MatrixIllegalArgumentException {
+
+        Matrix.validateMatricesNonNull(matrix);
+        if (this.numRows != matrix.getNumRows() || this.numCols != matrix.getNumCols()) {
+            throw new MatrixIllegalArgumentException("Dimension mismatch for adding matrices");
+        }
+
+        Matrix result = matrix.copy();
+        int majorStride = this.byRow ? result.rowStride : result.colStride;
+        int minorStride = this.byRow ? result.colStride : result.rowStride;
+        for (int majorIndex = 0; majorIndex < this.numMajor; majorIndex++) {
+            for (int position = this.pointers[majorIndex]; position < this.pointers[majorIndex + 1]; position++) {
+                result.array[result.offset + majorIndex * majorStride + this.indexes[position] * minorStride] +=
+                        this.values[position];
+            }
+        }
+        return result;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Sparse x dense products
+
+    private static void validateDimensionsProd(int leftNumCols, int rightNumRows)
+            throws MatrixIllegalArgumentException {
+        if (leftNumCols != rightNumRows) {
+            throw new MatrixIllegalArgumentException("Dimension mismatch for taking product of matrices");
+        }
+    }
+
+    // destination[destinationOffset + index * destinationStride] += alpha * source[sourceOffset + index * sourceStride]
+    private static void addScaled(int length, double alpha, double[] source, int sourceOffset, int sourceStride,
+                                  double[] destination, int destinationOffset, int destinationStride) {
+        if (sourceStride == 1 && destinationStride == 1) {
+            for (int index = 0; index < length; index++) {
+                destination[destinationOffset + index] += alpha * source[sourceOffset + index];
+            }
+        } else {
+            for (int index = 0; index < length; index++) {
+                destination[destinationOffset + index * destinationStride] +=
+                        alpha * source[sourceOffset + index * sourceStride];
+            }
+        }
+    }
+
+    // result += this * matrix for the rows 'first' to 'last' (exclusive) of 'result' when compressed by row, each of
+    // them gathering the rows of 'matrix' picked by its non-zeros. Compressed by column, every non-zero scatters a row
+    // of 'matrix' into a row of 'result', so the threads share out the columns 'first' to 'last' of 'result' instead
+    private void addProdTo(Matrix matrix, Matrix result, int first, int last) {
+        if (this.byRow) {
+            for (int rowIndex = first; rowIndex < last; rowIndex++) {
+                int resultRow = result.offset + rowIndex * result.rowStride;
+                for (int position = this.pointers[rowIndex]; position < this.pointers[rowIndex + 1]; position++) {
+                    SparseMatrix.addScaled(result.getNumCols(), this.values[position],
+                            matrix.array, matrix.offset + this.indexes[position] * matrix.rowStride, matrix.colStride,
+                            result.array, resultRow, result.colStride);
+                }
+            }
+        } else {
+            for (int colIndex = 0; colIndex < this.numCols; colIndex++) {
+                int matrixRow = matrix.offset + colIndex * matrix.rowStride + first * matrix.colStride;
+                for (int position = this.pointers[colIndex]; position < this.pointers[colIndex + 1]; position++) {
+                    SparseMatrix.addScaled(last - first, this.values[position],
+                            matrix.array, matrixRow, matrix.colStride,
+                            result.array, result.offset + this.indexes[position] * result.rowStride +
+                                    first * result.colStride, result.colStride);
+                }
+            }
+        }
+    }
+
+    private void addProdTo(ForkJoinPool pool, Matrix matrix, Matrix result) {
+        MatrixKernels.checkRange(matrix.array, matrix.offset, matrix.getNumRows(), matrix.getNumCols(),
+                matrix.rowStride, matrix.colStride);
+        MatrixKernels.checkRange(result.array, result.offset, result.getNumRows(), result.getNumCols(),
+                result.rowStride, result.colStride);
+        int length = this.byRow ? this.numRows : result.getNumCols();
+        if (pool.getParallelism() <= 1) {
+            this.addProdTo(matrix, result, 0, length);
+        } else {
+            pool.invoke(new ProdTask(this, matrix, result, 0, length));
+        }
+    }
+
+    // Dense result of a sparse matrix times a dense one
+    public static Matrix prod(ForkJoinPool pool, SparseMatrix left, Matrix right)
+            throws MatrixIllegalArgumentException {
+        SparseMatrix.validateMatricesNonNull(left);
+        Matrix.validateMatricesNonNull(right);
+        SparseMatrix.validateDimensionsProd(left.numCols, right.getNumRows());
+        Matrix.validatePoolNonNull(pool);
+
+        Matrix result = Matrix.ofZeros(left.numRows, right.getNumCols());
+        left.addProdTo(pool, right, result);
+        return result;
+    }
+
+    public static Matrix prod(SparseMatrix left, Matrix right) throws MatrixIllegalArgumentException {
+        return SparseMatrix.prod(ForkJoinPool.commonPool(), left, right);
+    }
+
+    // Computed as (right^T * left^T)^T, where right^T is a free transpose() and the others are transposed views, so
+    // a CsrMatrix on the right is scattered as a CscMatrix on the left and the other way around
+    public static Matrix prod(ForkJoinPool pool, Matrix left, SparseMatrix right)
+            throws MatrixIllegalArgumentException {
+        Matrix.validateMatricesNonNull(left);
+        SparseMatrix.validateMatricesNonNull(right);
+        SparseMatrix.validateDimensionsProd(left.getNumCols(), right.numRows);
+        Matrix.validatePoolNonNull(pool);
+
+        Matrix result = Matrix.ofZeros(left.getNumRows(), right.numCols);
+        right.transpose().addProdTo(pool, left.transposeView(), result.transposeView());
+        return result;
+    }
+
+    public static Matrix prod(Matrix left, SparseMatrix right) throws MatrixIllegalArgumentException {
+        return SparseMatrix.prod(ForkJoinPool.commonPool(), left, right);
+    }
+
+    public Matrix multiply(Matrix matrix) throws MatrixIllegalArgumentException {
+        return SparseMatrix.prod(this, matrix);
+    }
+
+    public Matrix multiplyLeft(Matrix matrix) throws MatrixIllegalArgumentException {
+        return SparseMatrix.prod(matrix, this);
+    }
+
+    // Splits its range of rows or columns of the result in two until there are about TASK_LENGTH multiply-adds left.
+    // Rows are split where the non-zeros are split in half, as some rows of a graph have many more than others
+    private static final class ProdTask extends RecursiveAction {
+
+        private final SparseMatrix sparse;
+        private final Matrix matrix;
+        private final Matrix result;
+        private final int first;
+        private final int last;
+
+        ProdTask(SparseMatrix sparse, Matrix matrix, Matrix result, int first, int last) {
+            this.sparse = sparse;
+            this.matrix = matrix;
+            this.result = result;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            int[] pointers = this.sparse.pointers;
+            int middle;
+            long length;
+            if (this.sparse.byRow) {
+                length = (long) (pointers[this.last] - pointers[this.first]) * this.result.getNumCols();
+                int half = (pointers[this.first] + pointers[this.last]) >>> 1;
+                middle = Arrays.binarySearch(pointers, this.first, this.last + 1, half);
+                middle = Math.max(this.first + 1, Math.min(this.last - 1, middle < 0 ? -middle - 1 : middle));
+            } else {
+                length = (long) pointers[this.sparse.numMajor] * (this.last - this.first);
+                middle = (this.first + this.last) >>> 1;
+            }
+            if (length <= TASK_LENGTH || this.last - this.first < 2) {
+                this.sparse.addProdTo(this.matrix, this.result, this.first, this.last);
+            } else {
+                RecursiveAction.invokeAll(new ProdTask(this.sparse, this.matrix, this.result, this.first, middle),
+                        new ProdTask(this.sparse, this.matrix, this.result, middle, this.last));
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Sparse x sparse products
+
+    // Row-by-row (Gustavson) product of two compressed matrices of the same kind: major index i of the result is the
+    // sum of the major indexes of 'inner' picked by the non-zeros of major index i of 'outer', scaled by them. For rows
+    // 'outer' is the left operand, for columns it is the right one. The minor indexes of a major index of the result
+    // come out in the order they are met, see SparseMatrix.prod. 'work' holds the prefix sums of the multiply-adds of
+    // each major index of 'outer', to share them out among the threads
+    private static final class SparseProdTask extends RecursiveAction {
+
+        private final SparseMatrix outer;
+        private final SparseMatrix inner;
+        private final long[] work;
+        private final int first;
+        private final int last;
+        private SparseProdTask firstHalf;
+        private SparseProdTask secondHalf;
+        private int[] counts;
+        private int[] indexes;
+        private double[] values;
+
+        SparseProdTask(SparseMatrix outer, SparseMatrix inner, long[] work, int first, int last) {
+            this.outer = outer;
+            this.inner = inner;
+            this.work = work;
+            this.first = first;
+            this.last = last;
+        }
+
+        // A task allocates a workspace as long as a major index of the result, so it is only split while the halves
+        // still have more work than that
+        @Override
+        protected void compute() {
+            long length = this.work[this.last] - this.work[this.first];
+            if (length > 2 * Math.max(TASK_LENGTH, this.inner.numMinor) && this.last - this.first >= 2) {
+                long half = (this.work[this.first] + this.work[this.last]) >>> 1;
+                int middle = Arrays.binarySearch(this.work, this.first, this.last + 1, half);
+                middle = Math.max(this.first + 1, Math.min(this.last - 1, middle < 0 ? -middle - 1 : middle));
+                this.firstHalf = new SparseProdTask(this.outer, this.inner, this.work, this.first, middle);
+                this.secondHalf = new SparseProdTask(this.outer, this.inner, this.work, middle, this.last);
+                RecursiveAction.invokeAll(this.firstHalf, this.secondHalf);
+            } else {
+                this.multiply();
+            }
+        }
+
+        // 'marks' records the last major index in which each minor index was met, so that a minor index is listed
+        // once per major index in 'touched'
+        private void multiply() {
+            int numMinor = this.inner.numMinor;
+            double[] accumulator = new double[numMinor];
+            int[] marks = new int[numMinor];
+            Arrays.fill(marks, -1);
+            int[] touched = new int[numMinor];
+            this.counts = new int[this.last - this.first];
+            this.indexes = new int[16];
+            this.values = new double[16];
+            int length = 0;
+
+            for (int majorIndex = this.first; majorIndex < this.last; majorIndex++) {
+                int numTouched = 0;
+                for (int position = this.outer.pointers[majorIndex];
+                     position < this.outer.pointers[majorIndex + 1]; position++) {
+                    double value = this.outer.values[position];
+                    int innerIndex = this.outer.indexes[position];
+                    for (int innerPosition = this.inner.pointers[innerIndex];
+                         innerPosition < this.inner.pointers[innerIndex + 1]; innerPosition++) {
+                        int minorIndex = this.inner.indexes[innerPosition];
+                        if (marks[minorIndex] != majorIndex) {
+                            marks[minorIndex] = majorIndex;
+                            accumulator[minorIndex] = 0;
+                            touched[numTouched++] = minorIndex;
+                        }
+                        accumulator[minorIndex] += value * this.inner.values[innerPosition];
+                    }
+                }
+
+                if (length + numTouched > this.indexes.length) {
+                    SparseMatrix.validateNumNonZeros((long) length + numTouched);
+                    int capacity = (int) Math.min(Matrix.MAX_LENGTH,
+                            Math.max((long) length + numTouched, 2L * this.indexes.length));
+                    this.indexes = Arrays.copyOf(this.indexes, capacity);
+                    this.values = Arrays.copyOf(this.values, capacity);
+                }
+                int start = length;
+                for (int index = 0; index < numTouched; index++) {
+                    double value = accumulator[touched[index]];
+                    if (value != 0) {
+                        this.indexes[length] = touched[index];
+                        this.values[length++] = value;
+                    }
+                }
+                this.counts[majorIndex - this.first] = length - start;
+            }
+        }
+
+        // Moves the result of the leaves below this task, from left to right, and returns the next position
+        private int collect(int[] pointers, int[] indexes, double[] values, int position) {
+            if (this.firstHalf != null) {
+                position = this.firstHalf.collect(pointers, indexes, values, position);
+                return this.secondHalf.collect(pointers, indexes, values, position);
+            }
+            int length = 0;
+            for (int majorIndex = this.first; majorIndex < this.last; majorIndex++) {
+                length += this.counts[majorIndex - this.first];
+                pointers[majorIndex + 1] = position + length;
+            }
+            System.arraycopy(this.indexes, 0, indexes, position, length);
+            System.arraycopy(this.values, 0, values, position, length);
+            this.indexes = null;
+            this.values = null;
+            return position + length;
+        }
+
+        private long countNonZeros() {
+            if (this.firstHalf != null) {
+                return this.firstHalf.countNonZeros() + this.secondHalf.countNonZeros();
+            }
+            long numNonZeros = 0;
+            for (int count : this.counts) {
+                numNonZeros += count;
+            }
+            return numNonZeros;
+        }
+    }
+
+    // The product is computed compressed the other way, with its minor indexes unsorted, and then converted, which
+    // sorts them in time proportional to the non-zeros. Sorting every major index instead costs a log factor, which
+    // doubles the time taken by products with a few hundred non-zeros per row
+    public static SparseMatrix prod(ForkJoinPool pool, SparseMatrix left, SparseMatrix right)
+            throws MatrixIllegalArgumentException {
+        SparseMatrix.validateMatricesNonNull(left, right);
+        SparseMatrix.validateDimensionsProd(left.numCols, right.numRows);
+        Matrix.validatePoolNonNull(pool);
+
+        SparseMatrix outer = left.byRow ? right.convert(false) : left.convert(true);
+        SparseMatrix inner = left.byRow ? left.convert(false) : right.convert(true);
+        long[] work = new long[outer.numMajor + 1];
+        for (int majorIndex = 0; majorIndex < outer.numMajor; majorIndex++) {
+            long length = 0;
+            for (int position = outer.pointers[majorIndex]; position < outer.pointers[majorIndex + 1]; position++) {
+                int innerIndex = outer.indexes[position];
+                length += inner.pointers[innerIndex + 1] - inner.pointers[innerIndex];
+            }
+            work[majorIndex + 1] = work[majorIndex] + length;
+        }
+
+        SparseProdTask task = new SparseProdTask(outer, inner, work, 0, outer.numMajor);
+        if (pool.getParallelism() <= 1) {
+            task.multiply();
+        } else {
+            pool.invoke(task);
+        }
+        long numNonZeros = task.countNonZeros();
+        SparseMatrix.validateNumNonZeros(numNonZeros);
+        int[] pointers = new int[outer.numMajor + 1];
+        int[] indexes = new int[(int) numNonZeros];
+        double[] values = new double[(int) numNonZeros];
+        task.collect(pointers, indexes, values, 0);
+        return SparseMatrix.wrap(!left.byRow, left.numRows, right.numCols, pointers, indexes, values).convert();
+    }
+
+    public static SparseMatrix prod(SparseMatrix left, SparseMatrix right) throws MatrixIllegalArgumentException {
+        return SparseMatrix.prod(ForkJoinPool.commonPool(), left, right);
+    }
+
+    public SparseMatrix multiply(SparseMatrix matrix) throws MatrixIllegalArgumentException {
+        return SparseMatrix.prod(this, matrix);
+    }
+
+}
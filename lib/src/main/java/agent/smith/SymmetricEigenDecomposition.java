@@ -0,0 +1,1129 @@
+package agent.smith;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+// Eigenvalues and eigenvectors A = Z * diag(lambda) * Z^T of a symmetric matrix, of which only the lower triangle is
+// read. The matrix is first reduced to a tridiagonal T = Q^T * A * Q by blocked Householder reflections, following
+// LAPACK's dsytrd / dlatrd: the reflectors of a panel of BLOCK_SIZE columns are accumulated into V and W and the
+// trailing matrix gets A22 -= V * W^T + W * V^T through Gemm, the matrix-vector products with A22 being spread over the
+// pool. Then, depending on what is asked for:
+//
+// - all the eigenpairs: Cuppen's divide-and-conquer on T, following dstedc / dlaed0-3. T is torn in two by a rank-one
+// change, the halves are solved recursively and in parallel, and the eigenpairs of the rank-one change of their
+// diagonal form come from the secular equation, with deflation and the Gu-Eisenstat recomputation of z that keeps
+// the eigenvectors orthogonal. The eigenvectors of the halves are combined with Gemm.
+// - a range of eigenpairs, by index: bisection on Sturm counts for the eigenvalues (dstebz) and inverse iteration for
+// the eigenvectors (dstein), reorthogonalised within clusters, so that the work grows with the size of the range
+// rather than with the cube of the size of the matrix.
+// - the eigenvalues only: implicit QL with Wilkinson shifts on T (EISPACK's tql1), in O(n^2) after the reduction.
+//
+// In every case the eigenvectors of T are turned into those of A by applying Q in compact WY form, as in
+// QRDecomposition. Eigenvalues are in ascending order, the eigenvector for eigenvalue i being column i.
+
+public final class SymmetricEigenDecomposition {
+
+    static final int BLOCK_SIZE = 32;
+
+    // Tridiagonal problems up to this size are solved by QL rather than divided further
+    static final int LEAF_SIZE = 32;
+
+    // Matrix-vector products of the reduction are split into groups of rows with fewer multiply-adds than this
+    private static final long TASK_THRESHOLD = 1L << 16;
+
+    // Trailing updates of the reduction are split into tiles with fewer multiply-adds than this
+    private static final long UPDATE_THRESHOLD = 1L << 20;
+
+    private static final double EPSILON = Math.ulp(1.0);
+
+    // Iterations of inverse iteration per eigenvector, each one multiplying the error by the ratio of the distances
+    // to the nearest other eigenvalue and to the computed one
+    private static final int NUM_INVERSE_ITERATIONS = 3;
+
+    private final double[] eigenvalues;
+    private final double[] eigenvectors;
+    private final int numRowsAndCols;
+    private final int firstIndex;
+
+    private SymmetricEigenDecomposition(double[] eigenvalues, double[] eigenvectors, int numRowsAndCols,
+                                        int firstIndex) {
+        this.eigenvalues = eigenvalues;
+        this.eigenvectors = eigenvectors;
+        this.numRowsAndCols = numRowsAndCols;
+        this.firstIndex = firstIndex;
+    }
+
+    // All the eigenpairs, by divide-and-conquer
+    static SymmetricEigenDecomposition of(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+        Tridiagonal tridiagonal = new Tridiagonal(pool, matrix);
+        int n = tridiagonal.n;
+        DivideTask task = new DivideTask(pool, tridiagonal.d, tridiagonal.e, 0, n);
+        pool.invoke(task);
+        tridiagonal.applyQ(task.q, n);
+        tridiagonal.unscale(tridiagonal.d);
+        return new SymmetricEigenDecomposition(tridiagonal.d, task.q, n, 0);
+    }
+
+    // Eigenpairs firstIndex to lastIndex (inclusive) in ascending order of the eigenvalues, by bisection and inverse
+    // iteration
+    static SymmetricEigenDecomposition of(ForkJoinPool pool, Matrix matrix, int firstIndex, int lastIndex)
+            throws MatrixIllegalArgumentException {
+        Tridiagonal tridiagonal = new Tridiagonal(pool, matrix);
+        int n = tridiagonal.n;
+        double[] values = SymmetricEigenDecomposition.bisect(tridiagonal.d, tridiagonal.e, n, firstIndex, lastIndex);
+        double[] vectors = SymmetricEigenDecomposition.inverseIterate(tridiagonal.d, tridiagonal.e, n, values);
+        tridiagonal.applyQ(vectors, values.length);
+        tridiagonal.unscale(values);
+        return new SymmetricEigenDecomposition(values, vectors, n, firstIndex);
+    }
+
+    // All the eigenvalues in ascending order, by QL
+    static double[] eigenvalues(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+        Tridiagonal tridiagonal = new Tridiagonal(pool, matrix);
+        double[] d = tridiagonal.d;
+        SymmetricEigenDecomposition.ql(d, tridiagonal.e, 0, tridiagonal.n, null);
+        tridiagonal.unscale(d);
+        Arrays.sort(d);
+        return d;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Tridiagonal reduction
+
+    private static final class Tridiagonal {
+
+        private final ForkJoinPool pool;
+        private final int n;
+        // Row-major working copy, column i below row i + 1 holding the Householder vector v_i (with an implicit 1 at
+        // row i + 1) once the reduction is done
+        private final double[] a;
+        private final double[] tau;
+        // Diagonal, and off-diagonal with e[i] between rows i and i + 1 and e[n - 1] = 0
+        private final double[] d;
+        private final double[] e;
+        // The matrix is reduced times 2^-exponent, see unscale
+        private final int exponent;
+
+        Tridiagonal(ForkJoinPool pool, Matrix matrix) throws MatrixIllegalArgumentException {
+
+            this.pool = pool;
+            this.n = matrix.getNumRows();
+            this.a = matrix.getArray();
+            this.tau = new double[Math.max(this.n - 1, 0)];
+            this.d = new double[this.n];
+            this.e = new double[this.n];
+
+            int n = this.n;
+            // The upper triangle is overwritten with the lower one, the reduction then works on the full matrix so
+            // that the matrix-vector products and the trailing updates run over contiguous rows
+            double max = 0;
+            for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+                for (int colIndex = 0; colIndex <= rowIndex; colIndex++) {
+                    double value = this.a[rowIndex * n + colIndex];
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        throw new MatrixIllegalArgumentException(String.format(
+                                "Element (%d, %d) is not finite", rowIndex, colIndex));
+                    }
+                    this.a[colIndex * n + rowIndex] = value;
+                    max = Math.max(max, Math.abs(value));
+                }
+            }
+
+            // Scaled by a power of two, as dsyev does, so that the squared norms of the Householder vectors neither
+            // overflow nor underflow. The eigenvectors do not change and the eigenvalues are scaled back by unscale
+            int exponent = max == 0 ? 0 : Math.getExponent(max);
+            if (Math.abs(exponent) > 256) {
+                double scale = Math.scalb(1.0, -exponent);
+                for (int index = 0; index < this.a.length; index++) {
+                    this.a[index] *= scale;
+                }
+            } else {
+                exponent = 0;
+            }
+            this.exponent = exponent;
+
+            // V and W of the current panel, row-major with row stride BLOCK_SIZE
+            double[] v = new double[n * BLOCK_SIZE];
+            double[] w = new double[n * BLOCK_SIZE];
+            double[] x = new double[n];
+            double[] y = new double[n];
+            double[] dots = new double[2 * BLOCK_SIZE];
+
+            for (int panelStart = 0; panelStart < n - 1; panelStart += BLOCK_SIZE) {
+                int panelSize = Math.min(BLOCK_SIZE, n - 1 - panelStart);
+                this.reducePanel(panelStart, panelSize, v, w, x, y, dots);
+
+                int trailingStart = panelStart + panelSize;
+                this.pool.invoke(new UpdateTask(this.a, n, v, w, panelSize, trailingStart, n, trailingStart, n));
+            }
+            if (n > 0) {
+                this.d[n - 1] = this.a[(n - 1) * n + n - 1];
+            }
+        }
+
+        // Eigenvalues of the reduced matrix to those of the original one
+        private void unscale(double[] values) {
+            if (this.exponent != 0) {
+                for (int index = 0; index < values.length; index++) {
+                    values[index] = Math.scalb(values[index], this.exponent);
+                }
+            }
+        }
+
+        // Reduces the columns [panelStart, panelStart + panelSize), only updating the columns of the panel as they are
+        // reached. Column j of V holds v_i for i = panelStart + j, and column j of W the w_i such that applying the
+        // reflectors of the panel to A22 is A22 - V * W^T - W * V^T (dlatrd)
+        private void reducePanel(int panelStart, int panelSize, double[] v, double[] w, double[] x, double[] y,
+                                 double[] dots) {
+
+            int n = this.n;
+            for (int j = 0; j < panelSize; j++) {
+                int index = panelStart + j;
+
+                // Brings column 'index', from the diagonal down, up to date with the previous reflectors of the panel
+                if (j > 0) {
+                    for (int rowIndex = index; rowIndex < n; rowIndex++) {
+                        int row = rowIndex * BLOCK_SIZE;
+                        double value = 0;
+                        for (int p = 0; p < j; p++) {
+                            value += v[row + p] * w[index * BLOCK_SIZE + p] + w[row + p] * v[index * BLOCK_SIZE + p];
+                        }
+                        this.a[rowIndex * n + index] -= value;
+                    }
+                }
+                this.d[index] = this.a[index * n + index];
+
+                // Reflector annihilating the column below row index + 1, as in QRDecomposition
+                double alpha = this.a[(index + 1) * n + index];
+                double sigma = 0;
+                for (int rowIndex = index + 2; rowIndex < n; rowIndex++) {
+                    double value = this.a[rowIndex * n + index];
+                    sigma += value * value;
+                }
+                double tauValue;
+                if (sigma == 0) {
+                    tauValue = 0;
+                    this.e[index] = alpha;
+                } else {
+                    double norm = Math.sqrt(alpha * alpha + sigma);
+                    double beta = alpha <= 0 ? norm : -norm;
+                    tauValue = (beta - alpha) / beta;
+                    double scale = 1 / (alpha - beta);
+                    for (int rowIndex = index + 2; rowIndex < n; rowIndex++) {
+                        this.a[rowIndex * n + index] *= scale;
+                    }
+                    this.a[(index + 1) * n + index] = beta;
+                    this.e[index] = beta;
+                }
+                this.tau[index] = tauValue;
+
+                x[index + 1] = 1;
+                v[(index + 1) * BLOCK_SIZE + j] = 1;
+                for (int rowIndex = index + 2; rowIndex < n; rowIndex++) {
+                    x[rowIndex] = this.a[rowIndex * n + index];
+                    v[rowIndex * BLOCK_SIZE + j] = x[rowIndex];
+                }
+                if (tauValue == 0) {
+                    for (int rowIndex = index + 1; rowIndex < n; rowIndex++) {
+                        w[rowIndex * BLOCK_SIZE + j] = 0;
+                    }
+                    continue;
+                }
+
+                // y = A22 * v, A22 being as it was at the start of the panel
+                int start = index + 1;
+                this.pool.invoke(new MatVecTask(this.a, n, start, start, n, x, y));
+
+                // y = y - V * (W^T * v) - W * (V^T * v), over the previous columns of the panel
+                for (int p = 0; p < j; p++) {
+                    double wDot = 0;
+                    double vDot = 0;
+                    for (int rowIndex = start; rowIndex < n; rowIndex++) {
+                        wDot += w[rowIndex * BLOCK_SIZE + p] * x[rowIndex];
+                        vDot += v[rowIndex * BLOCK_SIZE + p] * x[rowIndex];
+                    }
+                    dots[p] = wDot;
+                    dots[BLOCK_SIZE + p] = vDot;
+                }
+                for (int rowIndex = start; rowIndex < n; rowIndex++) {
+                    int row = rowIndex * BLOCK_SIZE;
+                    double value = 0;
+                    for (int p = 0; p < j; p++) {
+                        value += v[row + p] * dots[p] + w[row + p] * dots[BLOCK_SIZE + p];
+                    }
+                    y[rowIndex] -= value;
+                }
+
+                // w = tau * y - (tau^2 / 2) * (y^T * v) * v
+                double dot = 0;
+                for (int rowIndex = start; rowIndex < n; rowIndex++) {
+                    y[rowIndex] *= tauValue;
+                    dot += y[rowIndex] * x[rowIndex];
+                }
+                double factor = -0.5 * tauValue * dot;
+                for (int rowIndex = start; rowIndex < n; rowIndex++) {
+                    w[rowIndex * BLOCK_SIZE + j] = y[rowIndex] + factor * x[rowIndex];
+                }
+            }
+        }
+
+        // Z := Q * Z for the n x numCols row-major 'z', Q = H_0 * H_1 * ... * H_n-2, the blocks of reflectors being
+        // applied in reverse order. Reflector i acts on rows i + 1 and below, so the blocks are those of a QR
+        // decomposition of the trailing (n - 1) x (n - 1) matrix
+        void applyQ(double[] z, int numCols) {
+
+            int n = this.n;
+            int numReflectors = n - 1;
+            if (numReflectors <= 0 || numCols == 0) {
+                return;
+            }
+            double[] v = new double[numReflectors * BLOCK_SIZE];
+            double[] t = new double[BLOCK_SIZE * BLOCK_SIZE];
+            double[] y = new double[BLOCK_SIZE * numCols];
+            double[] work = new double[BLOCK_SIZE];
+
+            int numPanels = (numReflectors + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            for (int panel = numPanels - 1; panel >= 0; panel--) {
+                int panelStart = panel * BLOCK_SIZE;
+                int panelSize = Math.min(BLOCK_SIZE, numReflectors - panelStart);
+                int numVRows = n - 1 - panelStart;
+                for (int rowIndex = 0; rowIndex < numVRows; rowIndex++) {
+                    int row = rowIndex * panelSize;
+                    int aRow = (panelStart + 1 + rowIndex) * n + panelStart;
+                    for (int col = 0; col < panelSize; col++) {
+                        v[row + col] = col < rowIndex ? this.a[aRow + col] : (col == rowIndex ? 1 : 0);
+                    }
+                }
+                QRDecomposition.formT(this.tau, panelStart, numVRows, panelSize, v, t, work);
+                QRDecomposition.applyBlockReflector(this.pool, numVRows, panelSize, v, t, y, false,
+                        z, (panelStart + 1) * numCols, numCols, numCols);
+            }
+        }
+    }
+
+    // Tile [rowStart, rowEnd) x [colStart, colEnd) of A22 -= V * W^T + W * V^T. As the update is symmetric only the
+    // tiles on or below the diagonal are computed, as in CholeskyDecomposition, and those strictly below it are then
+    // copied to their mirror image above, the matrix-vector products of the next panel reading whole rows
+    private static final class UpdateTask extends RecursiveAction {
+
+        private final double[] a;
+        private final int n;
+        private final double[] v;
+        private final double[] w;
+        private final int panelSize;
+        private final int rowStart;
+        private final int rowEnd;
+        private final int colStart;
+        private final int colEnd;
+
+        UpdateTask(double[] a, int n, double[] v, double[] w, int panelSize, int rowStart, int rowEnd, int colStart,
+                   int colEnd) {
+            this.a = a;
+            this.n = n;
+            this.v = v;
+            this.w = w;
+            this.panelSize = panelSize;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (this.rowEnd <= this.colStart) {
+                return;
+            }
+
+            int numRows = this.rowEnd - this.rowStart;
+            int numCols = this.colEnd - this.colStart;
+            boolean splitRows = numRows >= numCols && numRows >= 2 * Gemm.MR;
+            boolean splitCols = !splitRows && numCols >= 2 * Gemm.NR;
+
+            if ((long) numRows * numCols * this.panelSize <= UPDATE_THRESHOLD || (!splitRows && !splitCols)) {
+                int cOffset = this.rowStart * this.n + this.colStart;
+                Gemm.multiply(numRows, numCols, this.panelSize, -1,
+                        this.v, this.rowStart * BLOCK_SIZE, BLOCK_SIZE, 1,
+                        this.w, this.colStart * BLOCK_SIZE, 1, BLOCK_SIZE,
+                        this.a, cOffset, this.n, 1);
+                Gemm.multiply(numRows, numCols, this.panelSize, -1,
+                        this.w, this.rowStart * BLOCK_SIZE, BLOCK_SIZE, 1,
+                        this.v, this.colStart * BLOCK_SIZE, 1, BLOCK_SIZE,
+                        this.a, cOffset, this.n, 1);
+                if (this.colEnd <= this.rowStart) {
+                    for (int rowIndex = this.rowStart; rowIndex < this.rowEnd; rowIndex++) {
+                        for (int colIndex = this.colStart; colIndex < this.colEnd; colIndex++) {
+                            this.a[colIndex * this.n + rowIndex] = this.a[rowIndex * this.n + colIndex];
+                        }
+                    }
+                }
+                return;
+            }
+
+            UpdateTask first;
+            UpdateTask second;
+            if (splitRows) {
+                int half = this.rowStart + Gemm.roundUp(numRows / 2, Gemm.MR);
+                first = new UpdateTask(this.a, this.n, this.v, this.w, this.panelSize, this.rowStart, half,
+                        this.colStart, this.colEnd);
+                second = new UpdateTask(this.a, this.n, this.v, this.w, this.panelSize, half, this.rowEnd,
+                        this.colStart, this.colEnd);
+            } else {
+                int half = this.colStart + Gemm.roundUp(numCols / 2, Gemm.NR);
+                first = new UpdateTask(this.a, this.n, this.v, this.w, this.panelSize, this.rowStart, this.rowEnd,
+                        this.colStart, half);
+                second = new UpdateTask(this.a, this.n, this.v, this.w, this.panelSize, this.rowStart, this.rowEnd,
+                        half, this.colEnd);
+            }
+            RecursiveAction.invokeAll(first, second);
+        }
+    }
+
+    // y[rowIndex] = sum over colIndex >= colStart of a[rowIndex][colIndex] * x[colIndex], for rows [rowStart, rowEnd)
+    private static final class MatVecTask extends RecursiveAction {
+
+        private final double[] a;
+        private final int n;
+        private final int colStart;
+        private final int rowStart;
+        private final int rowEnd;
+        private final double[] x;
+        private final double[] y;
+
+        MatVecTask(double[] a, int n, int colStart, int rowStart, int rowEnd, double[] x, double[] y) {
+            this.a = a;
+            this.n = n;
+            this.colStart = colStart;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        protected void compute() {
+
+            int numRows = this.rowEnd - this.rowStart;
+            if ((long) numRows * (this.n - this.colStart) <= TASK_THRESHOLD || numRows < 2) {
+                for (int rowIndex = this.rowStart; rowIndex < this.rowEnd; rowIndex++) {
+                    int row = rowIndex * this.n;
+                    double value0 = 0;
+                    double value1 = 0;
+                    double value2 = 0;
+                    double value3 = 0;
+                    int col = this.colStart;
+                    for (; col + 3 < this.n; col += 4) {
+                        value0 += this.a[row + col] * this.x[col];
+                        value1 += this.a[row + col + 1] * this.x[col + 1];
+                        value2 += this.a[row + col + 2] * this.x[col + 2];
+                        value3 += this.a[row + col + 3] * this.x[col + 3];
+                    }
+                    for (; col < this.n; col++) {
+                        value0 += this.a[row + col] * this.x[col];
+                    }
+                    this.y[rowIndex] = (value0 + value1) + (value2 + value3);
+                }
+                return;
+            }
+
+            int half = this.rowStart + numRows / 2;
+            RecursiveAction.invokeAll(
+                    new MatVecTask(this.a, this.n, this.colStart, this.rowStart, half, this.x, this.y),
+                    new MatVecTask(this.a, this.n, this.colStart, half, this.rowEnd, this.x, this.y));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // QL
+
+    // sqrt(a^2 + b^2) without overflow or underflow, much faster than Math.hypot
+    private static double hypot(double a, double b) {
+        double absA = Math.abs(a);
+        double absB = Math.abs(b);
+        if (absA > absB) {
+            double ratio = b / a;
+            return absA * Math.sqrt(1 + ratio * ratio);
+        } else if (absB != 0) {
+            double ratio = a / b;
+            return absB * Math.sqrt(1 + ratio * ratio);
+        }
+        return 0;
+    }
+
+    // Implicit QL with Wilkinson shifts on the size x size tridiagonal matrix at d[offset...], e[offset...], from
+    // EISPACK's tql2 as in JAMA. The eigenvalues are left unsorted in d and e is destroyed, e[offset + size - 1] being
+    // taken as 0. When q is not null the rotations are applied to its columns, q being row-major size x size
+    private static void ql(double[] d, double[] e, int offset, int size, double[] q) {
+
+        if (size == 0) {
+            return;
+        }
+        e[offset + size - 1] = 0;
+        double shift = 0;
+        double norm = 0;
+        for (int l = offset; l < offset + size; l++) {
+
+            norm = Math.max(norm, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (Math.abs(e[m]) > EPSILON * norm) {
+                m++;
+            }
+
+            while (m > l) {
+                double g = d[l];
+                double p = (d[l + 1] - g) / (2 * e[l]);
+                double r = SymmetricEigenDecomposition.hypot(p, 1);
+                if (p < 0) {
+                    r = -r;
+                }
+                d[l] = e[l] / (p + r);
+                d[l + 1] = e[l] * (p + r);
+                double dl1 = d[l + 1];
+                double h = g - d[l];
+                for (int index = l + 2; index < offset + size; index++) {
+                    d[index] -= h;
+                }
+                shift += h;
+
+                p = d[m];
+                double c = 1;
+                double c2 = 1;
+                double c3 = 1;
+                double el1 = e[l + 1];
+                double s = 0;
+                double s2 = 0;
+                for (int index = m - 1; index >= l; index--) {
+                    c3 = c2;
+                    c2 = c;
+                    s2 = s;
+                    g = c * e[index];
+                    h = c * p;
+                    r = SymmetricEigenDecomposition.hypot(p, e[index]);
+                    e[index + 1] = s * r;
+                    s = e[index] / r;
+                    c = p / r;
+                    p = c * d[index] - s * g;
+                    d[index + 1] = h + s * (c * g + s * d[index]);
+                    if (q != null) {
+                        int col = index - offset;
+                        for (int row = 0; row < size * size; row += size) {
+                            double value = q[row + col + 1];
+                            q[row + col + 1] = s * q[row + col] + c * value;
+                            q[row + col] = c * q[row + col] - s * value;
+                        }
+                    }
+                }
+                p = -s * s2 * c3 * el1 * e[l] / dl1;
+                e[l] = s * p;
+                d[l] = c * p;
+
+                if (Math.abs(e[l]) <= EPSILON * norm) {
+                    break;
+                }
+            }
+            d[l] += shift;
+            e[l] = 0;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Divide-and-conquer
+
+    // Eigenpairs of the size x size tridiagonal matrix at d[offset...], e[offset...], the coupling e[offset + size - 1]
+    // to the rest of the matrix being ignored. On completion d[offset...] holds the eigenvalues in ascending order and
+    // q the eigenvectors as its columns, row-major size x size
+    private static final class DivideTask extends RecursiveAction {
+
+        private final ForkJoinPool pool;
+        private final double[] d;
+        private final double[] e;
+        private final int offset;
+        private final int size;
+        private double[] q;
+
+        DivideTask(ForkJoinPool pool, double[] d, double[] e, int offset, int size) {
+            this.pool = pool;
+            this.d = d;
+            this.e = e;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (this.size <= LEAF_SIZE) {
+                this.q = new double[this.size * this.size];
+                for (int index = 0; index < this.size; index++) {
+                    this.q[index * this.size + index] = 1;
+                }
+                // The off-diagonal of the leaf is not needed afterwards, the coupling to the rest having been read
+                // by the parent
+                SymmetricEigenDecomposition.ql(this.d, this.e, this.offset, this.size, this.q);
+                SymmetricEigenDecomposition.sortEigenpairs(this.d, this.offset, this.size, this.q);
+                return;
+            }
+
+            // T = diag(T1, T2) + rho * u * u^T with u = e_last(T1) + sign * e_first(T2), rho >= 0
+            int size1 = this.size / 2;
+            int size2 = this.size - size1;
+            double beta = this.e[this.offset + size1 - 1];
+            double rho = Math.abs(beta);
+            double sign = beta < 0 ? -1 : 1;
+            this.d[this.offset + size1 - 1] -= rho;
+            this.d[this.offset + size1] -= rho;
+
+            DivideTask first = new DivideTask(this.pool, this.d, this.e, this.offset, size1);
+            DivideTask second = new DivideTask(this.pool, this.d, this.e, this.offset + size1, size2);
+            RecursiveAction.invokeAll(first, second);
+
+            this.q = SymmetricEigenDecomposition.merge(this.pool, this.d, this.offset, first.q, size1, second.q,
+                    size2, rho, sign);
+        }
+    }
+
+    // Sorts the eigenvalues at d[offset...] in ascending order along with the columns of the row-major size x size q
+    private static void sortEigenpairs(double[] d, int offset, int size, double[] q) {
+        for (int index = 0; index < size - 1; index++) {
+            int min = index;
+            for (int other = index + 1; other < size; other++) {
+                if (d[offset + other] < d[offset + min]) {
+                    min = other;
+                }
+            }
+            if (min != index) {
+                double value = d[offset + index];
+                d[offset + index] = d[offset + min];
+                d[offset + min] = value;
+                for (int row = 0; row < size * size; row += size) {
+                    value = q[row + index];
+                    q[row + index] = q[row + min];
+                    q[row + min] = value;
+                }
+            }
+        }
+    }
+
+    // Eigenpairs of diag(Q1, Q2) * (diag(D1, D2) + rho * z * z^T) * diag(Q1, Q2)^T, with D1, D2 at d[offset...] and
+    // z = (last row of Q1, sign * first row of Q2), following dlaed1-3
+    private static double[] merge(ForkJoinPool pool, double[] d, int offset, double[] q1, int size1, double[] q2,
+                                  int size2, double rho, double sign) {
+
+        int n = size1 + size2;
+
+        // The two lists of eigenvalues are already sorted, so they are merged rather than sorted. The columns of
+        // diag(Q1, Q2) are copied in that order, recording which halves of the rows they touch
+        double[] poles = new double[n];
+        double[] z = new double[n];
+        double[] columns = new double[n * n];
+        boolean[] top = new boolean[n];
+        boolean[] bottom = new boolean[n];
+        double scale = 1 / Math.sqrt(2);
+        int index1 = 0;
+        int index2 = 0;
+        for (int col = 0; col < n; col++) {
+            boolean fromFirst = index2 == size2 ||
+                    (index1 < size1 && d[offset + index1] <= d[offset + size1 + index2]);
+            if (fromFirst) {
+                poles[col] = d[offset + index1];
+                z[col] = q1[(size1 - 1) * size1 + index1] * scale;
+                for (int rowIndex = 0; rowIndex < size1; rowIndex++) {
+                    columns[rowIndex * n + col] = q1[rowIndex * size1 + index1];
+                }
+                top[col] = true;
+                index1++;
+            } else {
+                poles[col] = d[offset + size1 + index2];
+                z[col] = sign * q2[index2] * scale;
+                for (int rowIndex = 0; rowIndex < size2; rowIndex++) {
+                    columns[(size1 + rowIndex) * n + col] = q2[rowIndex * size2 + index2];
+                }
+                bottom[col] = true;
+                index2++;
+            }
+        }
+        // z was scaled to unit length, its norm being sqrt(2)
+        rho *= 2;
+
+        // Deflation: a tiny component of z leaves its pole as an eigenvalue, and two close poles are rotated into one
+        // with a zero component of z (dlaed2)
+        double maxPole = 0;
+        for (double pole : poles) {
+            maxPole = Math.max(maxPole, Math.abs(pole));
+        }
+        double tolerance = 8 * EPSILON * Math.max(maxPole, rho);
+        int[] kept = new int[n];
+        int numKept = 0;
+        boolean[] deflated = new boolean[n];
+        for (int col = 0; col < n; col++) {
+            if (rho * Math.abs(z[col]) <= tolerance) {
+                deflated[col] = true;
+                continue;
+            }
+            if (numKept > 0) {
+                int previous = kept[numKept - 1];
+                double t = SymmetricEigenDecomposition.hypot(z[previous], z[col]);
+                double c = z[col] / t;
+                double s = z[previous] / t;
+                if (Math.abs(c * s * (poles[col] - poles[previous])) <= tolerance) {
+                    for (int row = 0; row < n * n; row += n) {
+                        double value = columns[row + previous];
+                        double other = columns[row + col];
+                        columns[row + previous] = c * value - s * other;
+                        columns[row + col] = s * value + c * other;
+                    }
+                    double pole = poles[previous];
+                    double otherPole = poles[col];
+                    poles[previous] = c * c * pole + s * s * otherPole;
+                    poles[col] = s * s * pole + c * c * otherPole;
+                    z[previous] = 0;
+                    z[col] = t;
+                    top[col] |= top[previous];
+                    bottom[col] |= bottom[previous];
+                    deflated[previous] = true;
+                    kept[numKept - 1] = col;
+                    continue;
+                }
+            }
+            kept[numKept++] = col;
+        }
+
+        // Roots of the secular equation, as offsets from their nearest pole so that the differences to the poles are
+        // accurate: delta[j * k + i] = pole_j - lambda_i
+        int k = numKept;
+        double[] keptPoles = new double[k];
+        double[] keptZ = new double[k];
+        for (int index = 0; index < k; index++) {
+            keptPoles[index] = poles[kept[index]];
+            keptZ[index] = z[kept[index]];
+        }
+        double[] roots = new double[k];
+        double[] delta = new double[k * k];
+        for (int index = 0; index < k; index++) {
+            roots[index] = SymmetricEigenDecomposition.solveSecular(keptPoles, keptZ, rho, index, delta);
+        }
+
+        // Gu-Eisenstat: the z for which the computed roots are exact, then the eigenvectors of the rank-one change
+        double[] u = new double[k * k];
+        double[] zHat = new double[k];
+        for (int index = 0; index < k; index++) {
+            double value = delta[index * k + index];
+            for (int root = 0; root < k; root++) {
+                if (root != index) {
+                    value *= delta[index * k + root] / (keptPoles[index] - keptPoles[root]);
+                }
+            }
+            zHat[index] = Math.copySign(Math.sqrt(-value), keptZ[index]);
+        }
+        for (int root = 0; root < k; root++) {
+            double norm = 0;
+            for (int index = 0; index < k; index++) {
+                double value = zHat[index] / delta[index * k + root];
+                u[index * k + root] = value;
+                norm += value * value;
+            }
+            double inverseNorm = 1 / Math.sqrt(norm);
+            for (int index = 0; index < k; index++) {
+                u[index * k + root] *= inverseNorm;
+            }
+        }
+
+        // Eigenvectors of the kept part, columns * U. Columns touching only the top or only the bottom rows are
+        // grouped so that each half of the rows is a single product over the columns that touch it (dlaed3)
+        int[] order = new int[k];
+        int numTop = 0;
+        int numMixed = 0;
+        for (int index = 0; index < k; index++) {
+            int col = kept[index];
+            if (top[col] && !bottom[col]) {
+                order[numTop++] = index;
+            }
+        }
+        for (int index = 0; index < k; index++) {
+            int col = kept[index];
+            if (top[col] && bottom[col]) {
+                order[numTop + numMixed++] = index;
+            }
+        }
+        int numBottom = 0;
+        for (int index = 0; index < k; index++) {
+            int col = kept[index];
+            if (!top[col]) {
+                order[numTop + numMixed + numBottom++] = index;
+            }
+        }
+        double[] orderedU = new double[k * k];
+        int numTopCols = numTop + numMixed;
+        int numBottomCols = numMixed + numBottom;
+        double[] topColumns = new double[size1 * numTopCols];
+        double[] bottomColumns = new double[size2 * numBottomCols];
+        for (int position = 0; position < k; position++) {
+            int index = order[position];
+            int col = kept[index];
+            System.arraycopy(u, index * k, orderedU, position * k, k);
+            if (position < numTopCols) {
+                for (int rowIndex = 0; rowIndex < size1; rowIndex++) {
+                    topColumns[rowIndex * numTopCols + position] = columns[rowIndex * n + col];
+                }
+            }
+            if (position >= numTop) {
+                for (int rowIndex = 0; rowIndex < size2; rowIndex++) {
+                    bottomColumns[rowIndex * numBottomCols + position - numTop] = columns[(size1 + rowIndex) * n + col];
+                }
+            }
+        }
+        double[] vectors = new double[n * n];
+        Gemm.multiply(pool, size1, k, numTopCols, 1,
+                topColumns, 0, numTopCols, 1,
+                orderedU, 0, k, 1,
+                vectors, 0, n, 1);
+        Gemm.multiply(pool, size2, k, numBottomCols, 1,
+                bottomColumns, 0, numBottomCols, 1,
+                orderedU, numTop * k, k, 1,
+                vectors, size1 * n, n, 1);
+
+        // The deflated eigenpairs go after the kept ones, then everything is sorted by eigenvalue
+        double[] values = new double[n];
+        System.arraycopy(roots, 0, values, 0, k);
+        int position = k;
+        for (int col = 0; col < n; col++) {
+            if (deflated[col]) {
+                values[position] = poles[col];
+                for (int row = 0; row < n * n; row += n) {
+                    vectors[row + position] = columns[row + col];
+                }
+                position++;
+            }
+        }
+
+        Integer[] sorted = new Integer[n];
+        for (int index = 0; index < n; index++) {
+            sorted[index] = index;
+        }
+        Arrays.sort(sorted, (index, other) -> Double.compare(values[index], values[other]));
+        double[] q = new double[n * n];
+        for (int col = 0; col < n; col++) {
+            int source = sorted[col];
+            d[offset + col] = values[source];
+            for (int row = 0; row < n * n; row += n) {
+                q[row + col] = vectors[row + source];
+            }
+        }
+        return q;
+    }
+
+    // Root 'index' of 1 + rho * sum of z_j^2 / (pole_j - lambda) = 0, which lies between pole 'index' and the next one,
+    // or above the last pole by at most rho. It is found as lambda = pole_origin + tau for the nearer pole 'origin', by
+    // Newton's method on (pole_origin - lambda) * f(lambda), which has no pole at the origin, safeguarded by bisection.
+    // Fills column 'index' of delta with pole_j - lambda
+    private static double solveSecular(double[] poles, double[] z, double rho, int index, double[] delta) {
+
+        int k = poles.length;
+        int origin;
+        double low;
+        double high;
+        if (index < k - 1) {
+            double middle = (poles[index + 1] - poles[index]) / 2;
+            double value = 1;
+            for (int j = 0; j < k; j++) {
+                value += rho * z[j] * z[j] / ((poles[j] - poles[index]) - middle);
+            }
+            if (value >= 0) {
+                origin = index;
+                low = 0;
+                high = middle;
+            } else {
+                origin = index + 1;
+                low = -middle;
+                high = 0;
+            }
+        } else {
+            origin = index;
+            low = 0;
+            double norm = 0;
+            for (double value : z) {
+                norm += value * value;
+            }
+            high = rho * norm;
+        }
+
+        double tau = (low + high) / 2;
+        for (int iteration = 0; iteration < 200; iteration++) {
+            // f(tau) and f'(tau) with the poles relative to the origin
+            double value = 1;
+            double derivative = 0;
+            for (int j = 0; j < k; j++) {
+                double difference = (poles[j] - poles[origin]) - tau;
+                double term = rho * z[j] * z[j] / difference;
+                value += term;
+                derivative += term / difference;
+            }
+            if (value == 0) {
+                break;
+            }
+            // f increases with lambda
+            if (value < 0) {
+                low = tau;
+            } else {
+                high = tau;
+            }
+            // Newton on g(tau) = -tau * f(tau): tau - g / g' = tau - tau * f / (f + tau * f')
+            double next = tau - tau * value / (value + tau * derivative);
+            if (!(next > low && next < high)) {
+                next = (low + high) / 2;
+            }
+            if (next == tau || high - low <= 2 * EPSILON * Math.max(Math.abs(low), Math.abs(high))) {
+                tau = next;
+                break;
+            }
+            tau = next;
+        }
+
+        for (int j = 0; j < k; j++) {
+            delta[j * k + index] = (poles[j] - poles[origin]) - tau;
+        }
+        return poles[origin] + tau;
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Bisection and inverse iteration
+
+    // Number of eigenvalues of the tridiagonal matrix smaller than x, from the signs of the pivots of T - x * I
+    private static int countBelow(double[] d, double[] e, int n, double x, double pivotMin) {
+        int count = 0;
+        double pivot = 1;
+        for (int index = 0; index < n; index++) {
+            double offDiagonal = index == 0 ? 0 : e[index - 1];
+            pivot = (d[index] - x) - offDiagonal * offDiagonal / pivot;
+            if (Math.abs(pivot) < pivotMin) {
+                pivot = -pivotMin;
+            }
+            if (pivot < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Eigenvalues firstIndex to lastIndex of the tridiagonal matrix, each one by bisection of the Gershgorin interval
+    private static double[] bisect(double[] d, double[] e, int n, int firstIndex, int lastIndex) {
+
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        double maxSquare = 0;
+        for (int index = 0; index < n; index++) {
+            double radius = Math.abs(e[index]) + (index == 0 ? 0 : Math.abs(e[index - 1]));
+            low = Math.min(low, d[index] - radius);
+            high = Math.max(high, d[index] + radius);
+            maxSquare = Math.max(maxSquare, e[index] * e[index]);
+        }
+        double[] values = new double[lastIndex - firstIndex + 1];
+        // A diagonal with equal elements, e.g. the zero matrix, for which bisection would stop at pivotMin
+        if (low == high) {
+            Arrays.fill(values, low);
+            return values;
+        }
+        double pivotMin = Double.MIN_NORMAL * Math.max(1, maxSquare);
+        double norm = Math.max(Math.abs(low), Math.abs(high));
+        low -= 2 * EPSILON * norm * n + 2 * pivotMin;
+        high += 2 * EPSILON * norm * n + 2 * pivotMin;
+
+        for (int index = firstIndex; index <= lastIndex; index++) {
+            // Eigenvalues are found in ascending order, so the previous one is a lower bound
+            double left = index == firstIndex ? low : values[index - firstIndex - 1];
+            double right = high;
+            while (right - left > 2 * EPSILON * Math.max(Math.abs(left), Math.abs(right)) + pivotMin) {
+                double middle = (left + right) / 2;
+                if (middle == left || middle == right) {
+                    break;
+                }
+                if (SymmetricEigenDecomposition.countBelow(d, e, n, middle, pivotMin) <= index) {
+                    left = middle;
+                } else {
+                    right = middle;
+                }
+            }
+            values[index - firstIndex] = (left + right) / 2;
+        }
+        return values;
+    }
+
+    // Eigenvectors of the tridiagonal matrix for the given ascending eigenvalues by inverse iteration (dstein), as the
+    // columns of a row-major n x values.length array. Each solve with T - lambda * I is done by Gaussian elimination
+    // with partial pivoting, and vectors whose eigenvalues are closer than 1e-3 * ||T|| are reorthogonalised
+    private static double[] inverseIterate(double[] d, double[] e, int n, double[] values) {
+
+        int k = values.length;
+        double norm = 0;
+        for (int index = 0; index < n; index++) {
+            norm = Math.max(norm, Math.abs(d[index]) + Math.abs(e[index]) +
+                    (index == 0 ? 0 : Math.abs(e[index - 1])));
+        }
+        // Every vector is an eigenvector of the zero matrix, and the solves below would divide by zero pivots
+        if (norm == 0) {
+            double[] result = new double[n * k];
+            for (int index = 0; index < k; index++) {
+                result[index * k + index] = 1;
+            }
+            return result;
+        }
+        double orthogonalTolerance = 1e-3 * norm;
+        // Separation forced between equal eigenvalues, and replacement for zero pivots
+        double perturbation = EPSILON * Math.max(norm, Double.MIN_NORMAL);
+
+        Random random = new Random(1L);
+        double[][] vectors = new double[k][];
+        double[] diagonal = new double[n];
+        double[] lower = new double[n];
+        double[] upper = new double[n];
+        double[] upper2 = new double[n];
+        boolean[] swapped = new boolean[n];
+
+        int clusterStart = 0;
+        double previous = Double.NEGATIVE_INFINITY;
+        for (int index = 0; index < k; index++) {
+
+            double lambda = values[index];
+            if (index > 0 && values[index] - values[index - 1] > orthogonalTolerance) {
+                clusterStart = index;
+            }
+            if (lambda - previous < perturbation) {
+                lambda = previous + perturbation;
+            }
+            previous = lambda;
+
+            // LU with partial pivoting of T - lambda * I, U having two diagonals above the main one
+            for (int row = 0; row < n; row++) {
+                diagonal[row] = d[row] - lambda;
+                lower[row] = e[row];
+                upper[row] = e[row];
+                upper2[row] = 0;
+            }
+            for (int row = 0; row < n - 1; row++) {
+                if (Math.abs(diagonal[row]) >= Math.abs(lower[row])) {
+                    swapped[row] = false;
+                    if (diagonal[row] == 0) {
+                        diagonal[row] = perturbation;
+                    }
+                    double factor = lower[row] / diagonal[row];
+                    lower[row] = factor;
+                    diagonal[row + 1] -= factor * upper[row];
+                } else {
+                    swapped[row] = true;
+                    double factor = diagonal[row] / lower[row];
+                    diagonal[row] = lower[row];
+                    lower[row] = factor;
+                    double value = upper[row];
+                    upper[row] = diagonal[row + 1];
+                    diagonal[row + 1] = value - factor * diagonal[row + 1];
+                    if (row < n - 2) {
+                        upper2[row] = upper[row + 1];
+                        upper[row + 1] = -factor * upper[row + 1];
+                    }
+                }
+            }
+            if (diagonal[n - 1] == 0) {
+                diagonal[n - 1] = perturbation;
+            }
+
+            double[] x = new double[n];
+            for (int row = 0; row < n; row++) {
+                x[row] = 2 * random.nextDouble() - 1;
+            }
+            for (int iteration = 0; iteration < NUM_INVERSE_ITERATIONS; iteration++) {
+                for (int row = 0; row < n - 1; row++) {
+                    if (swapped[row]) {
+                        double value = x[row];
+                        x[row] = x[row + 1];
+                        x[row + 1] = value;
+                    }
+                    x[row + 1] -= lower[row] * x[row];
+                }
+                for (int row = n - 1; row >= 0; row--) {
+                    double value = x[row];
+                    if (row < n - 1) {
+                        value -= upper[row] * x[row + 1];
+                    }
+                    if (row < n - 2) {
+                        value -= upper2[row] * x[row + 2];
+                    }
+                    x[row] = value / diagonal[row];
+                }
+                SymmetricEigenDecomposition.normalize(x);
+                // Twice is enough, a single Gram-Schmidt pass loses orthogonality in tight clusters
+                for (int pass = 0; pass < 2; pass++) {
+                    for (int other = clusterStart; other < index; other++) {
+                        double[] vector = vectors[other];
+                        double dot = 0;
+                        for (int row = 0; row < n; row++) {
+                            dot += vector[row] * x[row];
+                        }
+                        for (int row = 0; row < n; row++) {
+                            x[row] -= dot * vector[row];
+                        }
+                    }
+                    SymmetricEigenDecomposition.normalize(x);
+                }
+            }
+            vectors[index] = x;
+        }
+
+        double[] result = new double[n * k];
+        for (int index = 0; index < k; index++) {
+            for (int row = 0; row < n; row++) {
+                result[row * k + index] = vectors[index][row];
+            }
+        }
+        return result;
+    }
+
+    private static void normalize(double[] x) {
+        double max = 0;
+        for (double value : x) {
+            max = Math.max(max, Math.abs(value));
+        }
+        // Scaled first, as inverse iteration makes the elements overflow-prone
+        for (int row = 0; row < x.length; row++) {
+            x[row] /= max;
+        }
+        double norm = 0;
+        for (double value : x) {
+            norm += value * value;
+        }
+        double scale = 1 / Math.sqrt(norm);
+        for (int row = 0; row < x.length; row++) {
+            x[row] *= scale;
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Results
+
+    // Column vector of the eigenvalues, in ascending order
+    public Matrix getEigenvalues() {
+        return Matrix.wrap(this.eigenvalues.clone(), this.eigenvalues.length, 1);
+    }
+
+    // Orthonormal eigenvectors as the columns, column i being that of getEigenvalues() i
+    public Matrix getEigenvectors() {
+        return Matrix.wrap(this.eigenvectors.clone(), this.numRowsAndCols, this.eigenvalues.length);
+    }
+
+    // Index in the ascending order of all the eigenvalues of the first one computed, 0 unless a range was asked for
+    public int getFirstIndex() {
+        return this.firstIndex;
+    }
+
+    public int getNumEigenpairs() {
+        return this.eigenvalues.length;
+    }
+
+    public int getNumRowsAndCols() {
+        return this.numRowsAndCols;
+    }
+
+}
@@ -0,0 +1,114 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class CholeskyDecompositionTest {
+
+    // Gram matrix of a random matrix, shifted to keep it well conditioned
+    private static Matrix instanceOfSPD(long seed, int numRowsAndCols) {
+        Matrix matrix = Matrix.instanceOfRandom(seed, numRowsAndCols);
+        return matrix.transposeView().multiply(matrix).addToThis(Matrix.instanceOfEye(numRowsAndCols));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final Matrix MATRIX = Matrix.from(new double[][]{{4, 2}, {2, 3}});
+    private static final Matrix NOT_POSITIVE_DEFINITE =
+            CholeskyDecompositionTest.instanceOfSPD(1L, 100).setToThis(70, 70, -1);
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> choleskyDecompositionExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> Matrix.ofOnes(2, 3).decomposeCholesky(), "Matrix is not square")
+            , Arguments.of((Executable) () -> MATRIX.decomposeCholesky(null), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.decomposeCholesky().solve(null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.decomposeCholesky().solve(Matrix.ofOnes(3, 1)),
+                    "Dimension mismatch for 'numRows': 'A' = (2) vs 'B' = (3)")
+            , Arguments.of((Executable) () -> Matrix.from(new double[][]{{-1}}).decomposeCholesky(),
+                    "Matrix is not positive definite: the leading minor of order 1 is not positive")
+            , Arguments.of((Executable) () -> Matrix.from(new double[][]{{1, 2}, {2, 4}}).decomposeCholesky(),
+                    "Matrix is not positive definite: the leading minor of order 2 is not positive")
+            , Arguments.of((Executable) () -> Matrix.from(new double[][]{{1, 0}, {Double.NaN, 1}}).decomposeCholesky(),
+                    "Matrix is not positive definite: the leading minor of order 2 is not positive")
+            , Arguments.of((Executable) () -> NOT_POSITIVE_DEFINITE.decomposeCholesky(),
+                    "Matrix is not positive definite: the leading minor of order 71 is not positive")
+    );
+    @ParameterizedTest
+    @VariableSource("choleskyDecompositionExceptionArguments")
+    public void testCholeskyDecompositionException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // A = L * L^T, solve and logDeterminant
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeCholeskyArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{4}}), Matrix.from(new double[][]{{2}}))
+            , Arguments.of(Matrix.from(new double[][]{{4, 2}, {2, 5}}), Matrix.from(new double[][]{{2, 0}, {1, 2}}))
+            , Arguments.of(Matrix.from(new double[][]{{9, 6, -3}, {6, 5, 1}, {-3, 1, 11}}),
+                    Matrix.from(new double[][]{{3, 0, 0}, {2, 1, 0}, {-1, 3, 1}}))
+            , Arguments.of(CholeskyDecompositionTest.instanceOfSPD(2L, 64), null)
+            , Arguments.of(CholeskyDecompositionTest.instanceOfSPD(3L, 150), null)
+            , Arguments.of(CholeskyDecompositionTest.instanceOfSPD(4L, 333).transposeView(), null)
+    );
+    @ParameterizedTest
+    @VariableSource("decomposeCholeskyArguments")
+    public void testDecomposeCholesky(Matrix matrix, Matrix expectedL) {
+        int n = matrix.getNumRows();
+        Matrix other = Matrix.instanceOfRandom(5L, n, 7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CholeskyDecomposition cholesky = matrix.decomposeCholesky(pool);
+            Matrix L = cholesky.getL();
+            if (expectedL != null) {
+                assertTrue(Matrix.equalsWithinTolerance(expectedL, L, 1e-14));
+            }
+            assertTrue(Matrix.equalsWithinTolerance(matrix, L.multiply(L.transposeView()), 1e-10));
+            for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+                assertTrue(L.get(rowIndex, rowIndex) > 0);
+                for (int colIndex = rowIndex + 1; colIndex < n; colIndex++) {
+                    assertEquals(0, L.get(rowIndex, colIndex));
+                }
+            }
+
+            Matrix x = cholesky.solve(other);
+            assertTrue(Matrix.equalsWithinTolerance(other, matrix.multiply(x), 1e-10));
+            assertTrue(Matrix.equalsWithinTolerance(matrix.solve(other), x, 1e-10));
+
+            double logDeterminant = Math.log(Math.abs(matrix.determinant()));
+            assertEquals(logDeterminant, cholesky.logDeterminant(), Math.abs(logDeterminant) * 1e-12);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Only the lower triangle is read
+    @Test
+    public void testLowerTriangleOnly() {
+        Matrix matrix = CholeskyDecompositionTest.instanceOfSPD(6L, 200);
+        Matrix lower = matrix.copy();
+        for (int rowIndex = 0; rowIndex < 200; rowIndex++) {
+            for (int colIndex = rowIndex + 1; colIndex < 200; colIndex++) {
+                lower.setToThis(rowIndex, colIndex, Double.NaN);
+            }
+        }
+        assertEquals(matrix.decomposeCholesky().getL(), lower.decomposeCholesky().getL());
+    }
+
+    // The determinant of 2 * I of order 2000 overflows, its logarithm does not
+    @Test
+    public void testLogDeterminantLarge() {
+        Matrix matrix = Matrix.instanceOfEye(2000).multiplyToThis(2);
+        assertEquals(Double.POSITIVE_INFINITY, matrix.determinant());
+        assertEquals(2000 * Math.log(2), matrix.decomposeCholesky().logDeterminant(), 1e-9);
+    }
+
+}
@@ -0,0 +1,156 @@
+package agent.smith;
+
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class ChunkedMatrixTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final ChunkedMatrix MATRIX = ChunkedMatrix.of(Matrix.ofOnes(2, 3));
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> chunkedMatrixExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> ChunkedMatrix.create(0, 3), "'numRows' (0) has to be a positive integer")
+            , Arguments.of((Executable) () -> ChunkedMatrix.create(3, 0), "'numCols' (0) has to be a positive integer")
+            , Arguments.of((Executable) () -> ChunkedMatrix.of(null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.get(-1, 0), "'rowIndex' = (-1) has to be between 0 and 1")
+            , Arguments.of((Executable) () -> MATRIX.getBlock(1, 0, 0, 1), "Invalid indexes")
+            , Arguments.of((Executable) () -> MATRIX.setBlockToThis(1, 0, Matrix.ofOnes(2, 1)), "Invalid indexes")
+            , Arguments.of((Executable) () -> MATRIX.setBlockToThis(0, 0, null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.add(MATRIX, MATRIX.transpose()),
+                    "Dimension mismatch for adding matrices")
+            , Arguments.of((Executable) () -> ChunkedMatrix.prod(MATRIX, MATRIX.transpose(), MATRIX.transpose()),
+                    "Dimension mismatch for taking product of matrices")
+            , Arguments.of((Executable) () -> MATRIX.sum(2), "'axis' (2) has to be 0 or 1")
+            , Arguments.of((Executable) () -> MATRIX.maxDifference(null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.maxDifference(MATRIX.transpose()),
+                    "Dimension mismatch for comparing matrices")
+            , Arguments.of((Executable) () -> MATRIX.equalsMaxWithinTolerance(null, 1e-15),
+                    "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.getRow(2), "'rowIndex' = (2) has to be between 0 and 1")
+            , Arguments.of((Executable) () -> MATRIX.getCol(-1), "'colIndex' = (-1) has to be between 0 and 2")
+            , Arguments.of((Executable) () -> MATRIX.map(null), "'function' cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("chunkedMatrixExceptionArguments")
+    public void testChunkedMatrixException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Operations
+    @SuppressWarnings("unused")
+    static Stream<Arguments> operationsArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), ChunkedMatrix.HEAP_CHUNK_SHIFT)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 3, 5), ChunkedMatrix.HEAP_CHUNK_SHIFT)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 3, 5), 0)
+            , Arguments.of(Matrix.instanceOfRandom(4L, 7, 9), 3)
+            , Arguments.of(Matrix.instanceOfRandom(5L, 300, 270), 11)
+            , Arguments.of(Matrix.instanceOfRandom(6L, 310, 290).getBlockView(7, 266, 11, 280), 13)
+            , Arguments.of(Matrix.instanceOfRandom(7L, 3, 4500), 12)
+    );
+    @ParameterizedTest
+    @VariableSource("operationsArguments")
+    public void testOperations(Matrix matrix, int chunkShift) {
+
+        Matrix other = Matrix.instanceOfRandom(10L, matrix);
+        Matrix right = Matrix.instanceOfRandom(11L, matrix.getNumCols(), 5);
+        int lastRow = matrix.getNumRows() - 1;
+        int lastCol = matrix.getNumCols() - 1;
+
+        ChunkedMatrix chunked = ChunkedMatrix.of(matrix, chunkShift);
+        ChunkedMatrix chunkedOther = ChunkedMatrix.of(other, chunkShift + 1);
+        ChunkedMatrix chunkedRight = ChunkedMatrix.of(right, chunkShift);
+
+        assertEquals((long) matrix.getNumRows() * matrix.getNumCols(), chunked.getLength());
+        assertEquals(matrix, chunked.toMatrix());
+        assertEquals(matrix.get(lastRow / 2, lastCol), chunked.get(lastRow / 2, lastCol));
+        assertEquals(matrix, chunked.copy().toMatrix());
+        assertEquals(matrix.add(-1.5), chunked.add(-1.5).toMatrix());
+        assertEquals(matrix.multiply(0.25), chunked.multiply(0.25).toMatrix());
+        assertEquals(matrix.add(other, other, matrix), chunked.add(chunkedOther, chunkedOther, chunked).toMatrix());
+        assertEquals(matrix.transpose(), chunked.transpose().toMatrix());
+        assertEquals(matrix.getBlock(0, lastRow / 2, lastCol / 2, lastCol),
+                chunked.getBlock(0, lastRow / 2, lastCol / 2, lastCol).toMatrix());
+        assertEquals(matrix.sum(), chunked.sum(), 1e-9);
+        assertEquals(matrix.getRow(lastRow), chunked.getRow(lastRow).toMatrix());
+        assertEquals(matrix.getCol(lastCol / 2), chunked.getCol(lastCol / 2).toMatrix());
+        assertEquals(matrix.getDiagonal(), chunked.getDiagonal().toMatrix());
+        assertEquals(matrix.map(value -> value * value - 1), chunked.map(value -> value * value - 1).toMatrix());
+        assertEquals(matrix.sum(0), chunked.sum(0).toMatrix());
+        assertTrue(Matrix.equalsWithinTolerance(matrix.sum(1), chunked.sum(1).toMatrix(), 1e-10));
+        assertEquals(matrix.maxDifference(other), chunked.maxDifference(chunkedOther));
+        assertTrue(chunked.equalsMaxWithinTolerance(chunked.copy(), 1e-15));
+        assertFalse(chunked.equalsMaxWithinTolerance(chunkedOther, 1e-15));
+        assertFalse(chunked.equalsMaxWithinTolerance(
+                ChunkedMatrix.create(matrix.getNumRows() + 1, matrix.getNumCols()), Double.MAX_VALUE));
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(matrix, right),
+                ChunkedMatrix.prod(chunked, chunkedRight).toMatrix(), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(right.transpose(), matrix.transpose(), matrix),
+                ChunkedMatrix.prod(chunkedRight.transpose(), chunked.transpose(), chunked).toMatrix(), 1e-9));
+
+        // Chunked matrices of different kinds can be mixed
+        try (OffHeapMatrix offHeap = OffHeapMatrix.of(other)) {
+            assertEquals(matrix.add(other), chunked.add(offHeap).toMatrix());
+            assertEquals(other.add(matrix), offHeap.add(chunked).toMatrix());
+        }
+
+        assertSame(chunked, chunked.setToThis(0, lastCol, -7));
+        assertSame(chunked, chunked.addToThis(chunkedOther).multiplyToThis(3).addToThis(0.5).mapToThis(Math::sqrt));
+        assertEquals(matrix.set(0, lastCol, -7).add(other).multiply(3).add(0.5).map(Math::sqrt), chunked.toMatrix());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // prod over several tiles of the result and of the inner dimension, in parallel
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 600, 300), Matrix.instanceOfRandom(2L, 300, 520))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 257, 513), Matrix.instanceOfRandom(4L, 513, 256))
+    );
+    @ParameterizedTest
+    @VariableSource("prodArguments")
+    public void testProd(Matrix left, Matrix right) {
+        Matrix expected = Matrix.prod(left, right);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (OffHeapMatrix offHeapLeft = OffHeapMatrix.of(left); OffHeapMatrix offHeapRight = OffHeapMatrix.of(right)) {
+            assertTrue(Matrix.equalsWithinTolerance(expected,
+                    ChunkedMatrix.prod(pool, ChunkedMatrix.of(left, 10), ChunkedMatrix.of(right, 12)).toMatrix(),
+                    1e-10));
+            assertTrue(Matrix.equalsWithinTolerance(expected,
+                    ChunkedMatrix.prod(pool, offHeapLeft, offHeapRight).toMatrix(), 1e-10));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // close
+    @SuppressWarnings("unused")
+    static Stream<Arguments> closeArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 20, 30))
+    );
+    @ParameterizedTest
+    @VariableSource("closeArguments")
+    public void testClose(Matrix matrix) {
+        ChunkedMatrix chunked = ChunkedMatrix.of(matrix);
+        ChunkedMatrix copy = chunked.copy();
+        chunked.close();
+        assertTrue(chunked.isClosed());
+        assertFalse(copy.isClosed());
+        Exception thrown = assertThrows(IllegalStateException.class, chunked::sum);
+        assertEquals("Matrix has been closed", thrown.getMessage());
+        thrown = assertThrows(IllegalStateException.class, () -> copy.add(chunked));
+        assertEquals("Matrix has been closed", thrown.getMessage());
+        assertEquals(matrix, copy.toMatrix());
+    }
+
+}
@@ -0,0 +1,208 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class FloatMatrixTest {
+
+    // Matrices whose elements are all floats, so that every operation below can be checked against Matrix
+    private static final Matrix[] MATRICES = {
+            Matrix.from(new double[][]{{1}})
+            , Matrix.from(new double[][]{{1, -2.5, 3}, {0.25, 5, -6}})
+            , Matrix.of(-0.5, 7, 1)
+            , FloatMatrix.instanceOfRandom(1L, 37, 53).toMatrix()
+            , FloatMatrix.instanceOfRandom(2L, 130, 129).toMatrix()
+    };
+
+    private static void assertClose(Matrix expected, FloatMatrix actual, double tolerance) {
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+        assertEquals(expected.getNumCols(), actual.getNumCols());
+        assertTrue(expected.equalsMaxWithinTolerance(actual.toMatrix(), tolerance),
+                () -> String.format("%s vs %s", expected, actual));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final FloatMatrix MATRIX = FloatMatrix.ofOnes(2, 3);
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> floatMatrixExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> FloatMatrix.create(new float[]{1, 2, 3}, 2, 2),
+                    "Length of 'array' (3) does not match 'numRows' * 'numCols' (4)")
+            , Arguments.of((Executable) () -> FloatMatrix.create(null, 2, 2), "'array' cannot be null")
+            , Arguments.of((Executable) () -> FloatMatrix.ofZeros(0, 2), "'numRows' (0) has to be a positive integer")
+            , Arguments.of((Executable) () -> FloatMatrix.ofZeros(2, -1), "'numCols' (-1) has to be a positive integer")
+            , Arguments.of((Executable) () -> FloatMatrix.from(new float[][]{{1, 2}, {3}}),
+                    "Inconsistent number of rows for 'nestedArray'")
+            , Arguments.of((Executable) () -> FloatMatrix.of((Matrix) null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.get(2, 0), "'rowIndex' = (2) has to be between 0 and 1")
+            , Arguments.of((Executable) () -> MATRIX.get(0, 3), "'colIndex' = (3) has to be between 0 and 2")
+            , Arguments.of((Executable) () -> MATRIX.add(FloatMatrix.ofOnes(3, 2)),
+                    "Dimension mismatch for adding matrices")
+            , Arguments.of((Executable) () -> MATRIX.multiply(MATRIX),
+                    "Dimension mismatch for taking product of matrices")
+            , Arguments.of((Executable) () -> FloatMatrix.prod((ForkJoinPool) null, MATRIX), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> FloatMatrix.horizontalConcatenate(MATRIX, FloatMatrix.ofOnes(3, 1)),
+                    "Dimension mismatch for 'numRows'")
+            , Arguments.of((Executable) () -> FloatMatrix.verticalConcatenate(MATRIX, FloatMatrix.ofOnes(1, 2)),
+                    "Dimension mismatch for 'numCols'")
+            , Arguments.of((Executable) () -> FloatMatrix.sum(new FloatMatrix[0]), "Need at least one matrix")
+            , Arguments.of((Executable) () -> MATRIX.sum(2), "'axis' (2) has to be 0 or 1")
+            , Arguments.of((Executable) () -> MATRIX.transposeToThis(), "Matrix is not square")
+            , Arguments.of((Executable) () -> MATRIX.getBlock(1, 0, 0, 0), "Invalid indexes")
+            , Arguments.of((Executable) () -> MATRIX.transposeView().reshapeView(3, 2),
+                    "Only a contiguous matrix can be reshaped without copying")
+            , Arguments.of((Executable) () -> MATRIX.copyInto(FloatMatrix.ofOnes(3, 2)),
+                    "Dimension mismatch for 'destination': expected = (2, 3) vs 'destination' = (3, 2)")
+            , Arguments.of((Executable) () -> MATRIX.addInto(
+                    MATRIX.getBlockView(0, 1, 1, 2).transposeView().reshapeView(2, 2), MATRIX),
+                    "Only a contiguous matrix can be reshaped without copying")
+    );
+    @ParameterizedTest
+    @VariableSource("floatMatrixExceptionArguments")
+    public void testFloatMatrixException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // of / toMatrix
+    @Test
+    public void testConversion() {
+        Matrix matrix = Matrix.from(new double[][]{{0.1, 1e300, -1e-50}, {1.0 / 3, Double.NaN, -0.0}});
+        FloatMatrix floatMatrix = FloatMatrix.of(matrix);
+        assertEquals(FloatMatrix.from(new float[][]{{0.1f, Float.POSITIVE_INFINITY, -0f}, {1f / 3, Float.NaN, -0f}}),
+                floatMatrix);
+        assertEquals(Matrix.from(new double[][]{{0.1f, Double.POSITIVE_INFINITY, -0.0}, {1f / 3, Double.NaN, -0.0}}),
+                floatMatrix.toMatrix());
+
+        // Views are converted element by element
+        Matrix view = Matrix.instanceOfRandom(3L, 9, 7).getBlockView(2, 6, 1, 5).transposeView();
+        FloatMatrix floatView = FloatMatrix.of(view);
+        assertEquals(FloatMatrix.of(view.copy()), floatView);
+        assertEquals(floatView.toMatrix(), floatView.transposeView().toMatrix().transpose());
+        assertTrue(view.equalsMaxWithinTolerance(floatView.toMatrix(), 1e-6));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Element-wise operations and their views
+    @SuppressWarnings("unused")
+    static Stream<Arguments> elementWiseArguments = Stream.of(MATRICES).map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("elementWiseArguments")
+    public void testElementWise(Matrix matrix) {
+        FloatMatrix floatMatrix = FloatMatrix.of(matrix);
+        assertEquals(matrix, floatMatrix.toMatrix());
+        assertEquals(FloatMatrix.of(matrix.transpose()), floatMatrix.transpose());
+        assertEquals(floatMatrix.transpose(), floatMatrix.transposeView().copy());
+        assertEquals(floatMatrix, floatMatrix.transposeView().transpose());
+        assertEquals(floatMatrix.hashCode(), floatMatrix.transposeView().transposeView().hashCode());
+        assertEquals(FloatMatrix.of(matrix.add(2)), floatMatrix.add(2f));
+        assertEquals(FloatMatrix.of(matrix.multiply(0.5)), floatMatrix.multiply(0.5f));
+        assertEquals(FloatMatrix.of(matrix.add(matrix, matrix)), floatMatrix.add(floatMatrix, floatMatrix));
+        assertEquals(FloatMatrix.of(matrix.add(matrix, matrix)),
+                FloatMatrix.sum(floatMatrix.transposeView().transpose(), floatMatrix, floatMatrix));
+        assertEquals(FloatMatrix.of(matrix.getDiagonal()), floatMatrix.getDiagonal());
+        assertEquals(FloatMatrix.of(matrix.reshape(1, matrix.getNumRows() * matrix.getNumCols())),
+                floatMatrix.reshapeView(1, matrix.getNumRows() * matrix.getNumCols()));
+        assertEquals(FloatMatrix.of(Matrix.horizontalConcatenate(matrix, matrix)),
+                FloatMatrix.horizontalConcatenate(floatMatrix, floatMatrix.transposeView().transposeView()));
+        assertEquals(FloatMatrix.of(Matrix.verticalConcatenate(matrix, matrix)),
+                FloatMatrix.verticalConcatenate(floatMatrix, floatMatrix));
+
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+        assertEquals(FloatMatrix.of(matrix.getBlock(numRows / 2, numRows - 1, numCols / 3, numCols - 1)),
+                floatMatrix.getBlock(numRows / 2, numRows - 1, numCols / 3, numCols - 1));
+        assertEquals(FloatMatrix.of(matrix.getRow(numRows - 1)), floatMatrix.getRowView(numRows - 1).copy());
+        assertEquals(FloatMatrix.of(matrix.getCol(numCols - 1)), floatMatrix.getCol(numCols - 1));
+
+        FloatMatrix view = floatMatrix.copy().transposeView();
+        view.multiplyToThis(2).addToThis(view).addToThis(1);
+        assertEquals(FloatMatrix.of(matrix.multiply(4).add(1).transpose()), view);
+        assertEquals(view.getBuffer().get(0), view.get(0, 0));
+    }
+
+    // Squares of every size around the transpose block length, transposed in place
+    @Test
+    public void testTransposeToThis() {
+        for (int numRowsAndCols = 1; numRowsAndCols < 40; numRowsAndCols += 3) {
+            FloatMatrix matrix = FloatMatrix.instanceOfRandom(4L, numRowsAndCols);
+            FloatMatrix expected = matrix.transpose();
+            assertEquals(expected, matrix.copy().transposeToThis());
+            FloatMatrix view = matrix.copy().transposeView();
+            assertEquals(matrix, view.transposeToThis().copy());
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // sum, accumulated in double
+    @SuppressWarnings("unused")
+    static Stream<Arguments> sumArguments = Stream.of(MATRICES).map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("sumArguments")
+    public void testSum(Matrix matrix) {
+        FloatMatrix floatMatrix = FloatMatrix.of(matrix);
+        assertEquals(matrix.sum(), floatMatrix.sum(), 1e-12);
+        assertEquals(matrix.sum(), floatMatrix.transposeView().sum(), 1e-12);
+        assertEquals(FloatMatrix.of(matrix.sum(0)), floatMatrix.sum(0));
+        assertEquals(FloatMatrix.of(matrix.sum(1)), floatMatrix.sum(1));
+        assertEquals(FloatMatrix.of(matrix.transpose().sum(1)), floatMatrix.transposeView().sum(1));
+    }
+
+    // A float accumulator stops counting at 2^24, a double one does not
+    @Test
+    public void testSumLarge() {
+        FloatMatrix matrix = FloatMatrix.ofOnes(1 << 13, 1 << 12);
+        assertEquals(1 << 25, matrix.sum());
+        assertEquals(FloatMatrix.of(1 << 13, 1, 1 << 12), matrix.sum(0));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // prod
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodArguments = Stream.of(
+            Arguments.of(3, 4, 5)
+            , Arguments.of(1, 70, 1)
+            , Arguments.of(33, 40, 35)
+            , Arguments.of(131, 257, 130)
+            , Arguments.of(300, 600, 270)
+            , Arguments.of(3, 600, 900)
+            , Arguments.of(900, 600, 2)
+    );
+    @ParameterizedTest
+    @VariableSource("prodArguments")
+    public void testProd(int numRows, int numInner, int numCols) {
+        FloatMatrix left = FloatMatrix.instanceOfRandom(5L, numRows, numInner);
+        FloatMatrix right = FloatMatrix.instanceOfRandom(6L, numInner, numCols);
+        Matrix expected = Matrix.prod(left.toMatrix(), right.toMatrix());
+        // Rounding errors of float products grow with the square root of the inner dimension
+        double tolerance = 1e-5 * Math.sqrt(numInner) * 4;
+
+        assertClose(expected, FloatMatrix.prod(left, right), tolerance);
+        assertClose(expected, left.multiply(right), tolerance);
+        assertClose(expected, right.multiplyLeft(left), tolerance);
+        assertClose(expected, FloatMatrix.prod(left.transpose().transposeView(), right.transpose().transposeView()),
+                tolerance);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertClose(expected, left.multiply(pool, right), tolerance);
+            FloatMatrix destination = FloatMatrix.ofOnes(numCols, numRows);
+            FloatMatrix.prodInto(pool, destination.transposeView(), left, right);
+            assertClose(expected.transpose(), destination, tolerance);
+        } finally {
+            pool.shutdown();
+        }
+
+        FloatMatrix eye = FloatMatrix.instanceOfEye(numInner);
+        assertEquals(left, FloatMatrix.prod(left, eye, eye));
+    }
+
+}
@@ -0,0 +1,126 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class LUDecompositionTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final Matrix SINGULAR = Matrix.from(new double[][]{{1, 2}, {2, 4}});
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> luDecompositionExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> Matrix.ofOnes(2, 3).decomposeLU(), "Matrix is not square")
+            , Arguments.of((Executable) () -> Matrix.ofOnes(2).decomposeLU(null), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> Matrix.instanceOfEye(3).solve(null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> Matrix.instanceOfEye(3).solve(Matrix.ofOnes(2, 1)),
+                    "Dimension mismatch for 'numRows': 'A' = (3) vs 'B' = (2)")
+            , Arguments.of((Executable) () -> SINGULAR.solve(Matrix.ofOnes(2, 1)), "Matrix is singular")
+            , Arguments.of((Executable) () -> SINGULAR.inverse(), "Matrix is singular")
+            , Arguments.of((Executable) () -> Matrix.ofZeros(70).inverse(), "Matrix is singular")
+    );
+    @ParameterizedTest
+    @VariableSource("luDecompositionExceptionArguments")
+    public void testLUDecompositionException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // P * A = L * U
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeLUArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{4}}))
+            , Arguments.of(Matrix.from(new double[][]{{0, 1}, {1, 0}}))
+            , Arguments.of(Matrix.from(new double[][]{{1, 2, 3}, {2, 4, 6}, {1, 0, 1}}))
+            , Arguments.of(Matrix.instanceOfRandom(1L, 5))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 64))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 150))
+            , Arguments.of(Matrix.instanceOfRandom(4L, 131).transposeView())
+    );
+    @ParameterizedTest
+    @VariableSource("decomposeLUArguments")
+    public void testDecomposeLU(Matrix matrix) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LUDecomposition lu = matrix.decomposeLU(pool);
+            Matrix L = lu.getL();
+            Matrix U = lu.getU();
+            assertTrue(Matrix.equalsWithinTolerance(lu.getP().multiply(matrix), L.multiply(U), 1e-12));
+            for (int rowIndex = 0; rowIndex < matrix.getNumRows(); rowIndex++) {
+                assertEquals(matrix.getRow(lu.getPivot()[rowIndex]), lu.getP().multiply(matrix).getRow(rowIndex));
+                assertEquals(1, L.get(rowIndex, rowIndex));
+                for (int colIndex = 0; colIndex < rowIndex; colIndex++) {
+                    // Partial pivoting keeps every multiplier at most 1 in absolute value
+                    assertTrue(Math.abs(L.get(rowIndex, colIndex)) <= 1);
+                    assertEquals(0, U.get(rowIndex, colIndex));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // solve / inverse
+    @SuppressWarnings("unused")
+    static Stream<Arguments> solveArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{2, 1}, {1, 3}}), Matrix.from(new double[][]{{3}, {5}}))
+            , Arguments.of(Matrix.instanceOfRandom(5L, 7), Matrix.instanceOfRandom(6L, 7, 3))
+            , Arguments.of(Matrix.instanceOfRandom(7L, 65), Matrix.instanceOfRandom(8L, 65, 1))
+            , Arguments.of(Matrix.instanceOfRandom(9L, 200), Matrix.instanceOfRandom(10L, 200, 130))
+            , Arguments.of(Matrix.instanceOfRandom(11L, 129), Matrix.instanceOfRandom(12L, 5, 129).transposeView())
+    );
+    @ParameterizedTest
+    @VariableSource("solveArguments")
+    public void testSolve(Matrix matrix, Matrix other) {
+        Matrix x = matrix.solve(other);
+        assertEquals(other.getNumCols(), x.getNumCols());
+        assertTrue(Matrix.equalsWithinTolerance(other, matrix.multiply(x), 1e-10));
+
+        Matrix inverse = matrix.inverse();
+        Matrix eye = Matrix.instanceOfEye(matrix);
+        assertTrue(Matrix.equalsWithinTolerance(eye, matrix.multiply(inverse), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(eye, inverse.multiply(matrix), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(x, inverse.multiply(other), 1e-10));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // determinant
+    @SuppressWarnings("unused")
+    static Stream<Arguments> determinantArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{4}}), 4)
+            , Arguments.of(Matrix.from(new double[][]{{1, 2}, {3, 4}}), -2)
+            , Arguments.of(Matrix.from(new double[][]{{0, 1}, {1, 0}}), -1)
+            , Arguments.of(Matrix.from(new double[][]{{0, 1, 0}, {0, 0, 1}, {1, 0, 0}}), 1)
+            , Arguments.of(Matrix.from(new double[][]{{1, 2}, {2, 4}}), 0)
+            , Arguments.of(Matrix.from(new double[][]{{2, -1, 0}, {-1, 2, -1}, {0, -1, 2}}), 4)
+            , Arguments.of(Matrix.instanceOfEye(100).multiplyToThis(2), Math.pow(2, 100))
+            , Arguments.of(Matrix.ofOnes(100), 0)
+    );
+    @ParameterizedTest
+    @VariableSource("determinantArguments")
+    public void testDeterminant(Matrix matrix, double expected) {
+        assertEquals(expected, matrix.determinant(), Math.abs(expected) * 1e-12);
+        assertEquals(expected == 0, matrix.decomposeLU().isSingular());
+        assertEquals(expected, matrix.transpose().determinant(), Math.abs(expected) * 1e-12);
+    }
+
+    // The determinant is multiplicative, det(A * B) = det(A) * det(B)
+    @Test
+    public void testDeterminantProduct() {
+        Matrix matrix = Matrix.instanceOfRandom(13L, 90);
+        Matrix other = Matrix.instanceOfRandom(14L, 90);
+        double expected = matrix.determinant() * other.determinant();
+        assertEquals(expected, matrix.multiply(other).determinant(), Math.abs(expected) * 1e-9);
+    }
+
+}
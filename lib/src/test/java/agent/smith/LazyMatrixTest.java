@@ -0,0 +1,188 @@
+package agent.smith;
+
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.Stream;
+
+public class LazyMatrixTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final LazyMatrix MATRIX = Matrix.ofOnes(2, 3).lazy();
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> lazyMatrixExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> LazyMatrix.of(null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.add((LazyMatrix) null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.add(MATRIX.transpose()), "Dimension mismatch for adding matrices")
+            , Arguments.of((Executable) () -> MATRIX.map(null), "'function' cannot be null")
+            , Arguments.of((Executable) LazyMatrix::prod, "Need at least one matrix")
+            , Arguments.of((Executable) () -> MATRIX.multiply(MATRIX),
+                    "Dimension mismatch for taking product of matrices")
+            , Arguments.of((Executable) () -> MATRIX.sum(2), "'axis' (2) has to be 0 or 1")
+            , Arguments.of((Executable) () -> MATRIX.getBlock(0, 2, 0, 1), "Invalid indexes")
+            , Arguments.of((Executable) () -> MATRIX.getBlock(1, 0, 0, 1), "Invalid indexes")
+            , Arguments.of((Executable) () -> LazyMatrix.evaluate(MATRIX, null), "Input matrix cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("lazyMatrixExceptionArguments")
+    public void testLazyMatrixException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // evaluate
+    @SuppressWarnings("unused")
+    static Stream<Arguments> evaluateArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 5))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 40))
+            , Arguments.of(Matrix.instanceOfRandom(4L, 50).getBlockView(3, 32, 5, 34))
+    );
+    @ParameterizedTest
+    @VariableSource("evaluateArguments")
+    public void testEvaluate(Matrix a) {
+
+        Matrix b = Matrix.instanceOfRandom(10L, a);
+        Matrix c = Matrix.instanceOfRandom(11L, a);
+        LazyMatrix lazyA = a.lazy();
+        LazyMatrix lazyB = b.lazy();
+        LazyMatrix lazyC = c.lazy();
+        int last = a.getNumRows() - 1;
+        int middle = last / 2;
+
+        // Element-wise operations and reductions round like the eager ones
+        assertEquals(a, lazyA.evaluate());
+        assertEquals(a.multiply(2).add(1).map(Math::exp), lazyA.multiply(2).add(1).map(Math::exp).evaluate());
+        assertEquals(a.add(b, c).multiply(-0.5), lazyA.add(lazyB, lazyC).multiply(-0.5).evaluate());
+        assertEquals(a.transpose().add(b.transpose()), lazyA.transpose().add(lazyB.transpose()).evaluate());
+        assertEquals(a.transpose().transpose(), lazyA.transpose().transpose().evaluate());
+        assertEquals(a.add(b).sum(0), lazyA.add(lazyB).sum(0).evaluate());
+        assertEquals(a.add(b).sum(1), lazyA.add(lazyB).sum(1).evaluate());
+        assertEquals(a.add(b).multiply(3).getBlock(middle, last, 0, middle),
+                lazyA.add(lazyB).multiply(3).getBlock(middle, last, 0, middle).evaluate());
+        assertEquals(a.transpose().map(Math::abs).getBlock(0, middle, middle, last),
+                lazyA.transpose().map(Math::abs).getBlock(0, middle, middle, last).evaluate());
+        assertEquals(a.add(b).sum(0).getBlock(0, 0, middle, last),
+                lazyA.add(lazyB).sum(0).getBlock(0, 0, middle, last).evaluate());
+        assertEquals(a.add(b).sum(1).getBlock(middle, last, 0, 0),
+                lazyA.add(lazyB).sum(1).getBlock(middle, last, 0, 0).evaluate());
+        assertTrue(Matrix.equalsWithinTolerance(a.transpose().sum(1), lazyA.transpose().sum(1).evaluate(), 1e-12));
+        assertTrue(Matrix.equalsWithinTolerance(a.add(b.multiply(2.5)), lazyA.add(lazyB.multiply(2.5)).evaluate(),
+                1e-12));
+
+        // Products
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(a.transpose(), b),
+                LazyMatrix.prod(lazyA.transpose(), lazyB).evaluate(), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(a, b, c),
+                lazyA.multiply(lazyB.multiply(lazyC)).evaluate(), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(a, b).transpose(),
+                lazyA.multiply(lazyB).transpose().evaluate(), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(a, b.transpose()).add(c).getBlock(middle, last, 0, middle),
+                lazyA.multiply(lazyB.transpose()).add(lazyC).getBlock(middle, last, 0, middle).evaluate(), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(a, b, c).transpose().getBlock(0, middle, middle, last),
+                LazyMatrix.prod(lazyA, lazyB, lazyC).transpose().getBlock(0, middle, middle, last).evaluate(),
+                1e-10));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Common subexpressions and pushdown
+    @SuppressWarnings("unused")
+    static Stream<Arguments> numEvaluationsArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 7))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 30))
+    );
+    @ParameterizedTest
+    @VariableSource("numEvaluationsArguments")
+    public void testNumEvaluations(Matrix a) {
+
+        AtomicInteger numEvaluations = new AtomicInteger();
+        DoubleUnaryOperator function = value -> {
+            numEvaluations.incrementAndGet();
+            return 2 * value;
+        };
+        int length = a.getNumRows() * a.getNumCols();
+        int last = a.getNumRows() - 1;
+
+        // Built twice, evaluated once
+        LazyMatrix first = a.lazy().map(function);
+        LazyMatrix second = a.lazy().map(function);
+        Matrix[] results = LazyMatrix.evaluate(first.add(second.transpose()), second.transpose(), first);
+        assertEquals(length, numEvaluations.get());
+        assertEquals(a.multiply(2).add(a.multiply(2).transpose()), results[0]);
+        assertEquals(a.multiply(2).transpose(), results[1]);
+        assertEquals(a.multiply(2), results[2]);
+
+        // Only the block is computed
+        numEvaluations.set(0);
+        assertEquals(a.multiply(2).getBlock(last, last, 0, last),
+                a.lazy().transpose().map(function).transpose().getBlock(last, last, 0, last).evaluate());
+        assertEquals(a.getNumCols(), numEvaluations.get());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> evaluateCopiesArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 4, 6))
+    );
+    @ParameterizedTest
+    @VariableSource("evaluateCopiesArguments")
+    public void testEvaluateCopies(Matrix a) {
+        Matrix original = a.copy();
+        LazyMatrix lazyA = a.lazy();
+        Matrix[] results = LazyMatrix.evaluate(lazyA, lazyA.transpose().transpose(), lazyA.getBlock(0, 0, 0, 0),
+                lazyA.multiply(1));
+        for (Matrix result : results) {
+            result.setToThis(0, 0, 42);
+            assertNotSame(a, result);
+        }
+        assertEquals(original, a);
+        assertNotSame(results[0], results[1]);
+        assertFalse(results[2].isView());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Deep graphs
+    @SuppressWarnings("unused")
+    static Stream<Arguments> evaluateDeepArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 3, 5))
+    );
+    @ParameterizedTest
+    @VariableSource("evaluateDeepArguments")
+    public void testEvaluateDeep(Matrix a) {
+
+        int numSteps = 5000;
+        int last = a.getNumCols() - 1;
+
+        // A chain of element-wise operations, fused a bounded number of steps at a time
+        Matrix expected = a;
+        LazyMatrix lazy = a.lazy();
+        for (int step = 0; step < numSteps; step++) {
+            expected = expected.add(1.0).multiply(1.0000001);
+            lazy = lazy.add(1.0).multiply(1.0000001);
+        }
+        assertEquals(expected, lazy.evaluate());
+        assertEquals(expected.getBlock(0, 0, 0, last), lazy.getBlock(0, 0, 0, last).evaluate());
+        assertEquals(expected.transpose(), lazy.transpose().evaluate());
+
+        // Every intermediate is read twice, so none of them is fused
+        expected = a;
+        lazy = a.lazy();
+        for (int step = 0; step < numSteps; step++) {
+            expected = expected.add(expected.map(value -> value * 1e-4));
+            LazyMatrix previous = lazy;
+            lazy = previous.add(previous.map(value -> value * 1e-4));
+        }
+        assertEquals(expected, lazy.evaluate());
+    }
+
+}
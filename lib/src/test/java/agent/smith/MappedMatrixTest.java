@@ -0,0 +1,136 @@
+package agent.smith;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class MappedMatrixTest {
+
+    @TempDir
+    Path directory;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    @SuppressWarnings("unused")
+    static Stream<Arguments> openExceptionArguments = Stream.of(
+            Arguments.of(0L, 2, 2, MappedMatrix.Mode.READ_ONLY,
+                    "File is too small for the matrix: expected at least 32 bytes vs 24 bytes")
+            , Arguments.of(8L, 1, 3, MappedMatrix.Mode.READ_ONLY,
+                    "File is too small for the matrix: expected at least 32 bytes vs 24 bytes")
+            , Arguments.of(-1L, 1, 1, MappedMatrix.Mode.READ_ONLY, "'position' (-1) cannot be negative")
+            , Arguments.of(0L, 0, 1, MappedMatrix.Mode.READ_WRITE, "'numRows' (0) has to be a positive integer")
+            , Arguments.of(0L, 1, 1, null, "'mode' cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("openExceptionArguments")
+    public void testOpenException(long position, int numRows, int numCols, MappedMatrix.Mode mode, String expected)
+            throws IOException {
+        Path path = Files.write(this.directory.resolve("matrix.bin"), new byte[24]);
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> MappedMatrix.open(path, position, numRows, numCols, mode));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // open
+    @SuppressWarnings("unused")
+    static Stream<Arguments> openArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), 0, MappedMatrix.CHUNK_SHIFT)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 4, 5), 0, 2)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 4, 5), 13, 3)
+            , Arguments.of(Matrix.instanceOfRandom(4L, 70, 90), 128, 10)
+    );
+    @ParameterizedTest
+    @VariableSource("openArguments")
+    public void testOpen(Matrix matrix, int position, int chunkShift) throws IOException {
+
+        // numRows * numCols little-endian doubles after a header of 'position' bytes
+        ByteBuffer bytes = ByteBuffer.allocate(position + 8 * matrix.getArray().length).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.position(position);
+        for (double element : matrix.getArray()) {
+            bytes.putDouble(element);
+        }
+        Path path = Files.write(this.directory.resolve("matrix.bin"), bytes.array());
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+
+        try (MappedMatrix mapped = MappedMatrix.open(path, position, numRows, numCols, MappedMatrix.Mode.READ_ONLY,
+                chunkShift)) {
+            assertEquals(MappedMatrix.Mode.READ_ONLY, mapped.getMode());
+            assertEquals(matrix, mapped.toMatrix());
+            assertEquals(matrix.get(numRows - 1, 0), mapped.get(numRows - 1, 0));
+            assertEquals(matrix.transpose(), mapped.transpose().toMatrix());
+            assertEquals(matrix.multiply(2).add(matrix), mapped.multiply(2).add(mapped).toMatrix());
+            assertEquals(matrix.getBlock(numRows / 2, numRows - 1, 0, numCols / 2),
+                    mapped.getBlock(numRows / 2, numRows - 1, 0, numCols / 2).toMatrix());
+            assertEquals(matrix.sum(), mapped.sum(), 1e-9);
+            assertEquals(matrix.sum(0), mapped.sum(0).toMatrix());
+            assertEquals(matrix.sum(1), mapped.sum(1).toMatrix());
+            assertEquals(matrix.getRow(numRows - 1), mapped.getRow(numRows - 1).toMatrix());
+            assertEquals(matrix.getCol(numCols / 2), mapped.getCol(numCols / 2).toMatrix());
+            assertEquals(matrix.getDiagonal(), mapped.getDiagonal().toMatrix());
+            assertEquals(matrix.map(Math::abs), mapped.map(Math::abs).toMatrix());
+            assertEquals(0, mapped.maxDifference(ChunkedMatrix.of(matrix)), Double.MIN_VALUE);
+            assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(matrix.transpose(), matrix),
+                    ChunkedMatrix.prod(mapped.transpose(), mapped).toMatrix(), 1e-10));
+            assertFalse(mapped.add(1).isClosed());
+
+            Exception thrown = assertThrows(UnsupportedOperationException.class, () -> mapped.setToThis(0, 0, 1));
+            assertEquals("Matrix is read-only", thrown.getMessage());
+            thrown = assertThrows(UnsupportedOperationException.class, () -> mapped.multiplyToThis(2));
+            assertEquals("Matrix is read-only", thrown.getMessage());
+        }
+
+        try (MappedMatrix mapped = MappedMatrix.open(path, position, numRows, numCols, MappedMatrix.Mode.READ_WRITE,
+                chunkShift)) {
+            mapped.multiplyToThis(-1).setToThis(numRows - 1, numCols - 1, 42);
+            assertSame(mapped, mapped.force());
+        }
+        try (MappedMatrix mapped = MappedMatrix.open(path, position, numRows, numCols, MappedMatrix.Mode.READ_ONLY,
+                chunkShift)) {
+            assertEquals(matrix.multiply(-1).set(numRows - 1, numCols - 1, 42), mapped.toMatrix());
+        }
+        assertEquals(position + 8L * numRows * numCols, Files.size(path));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // create
+    @SuppressWarnings("unused")
+    static Stream<Arguments> createArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 2), MappedMatrix.CHUNK_SHIFT)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 6, 5), 3)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 40, 30).transposeView(), 8)
+    );
+    @ParameterizedTest
+    @VariableSource("createArguments")
+    public void testCreate(Matrix matrix, int chunkShift) throws IOException {
+
+        Path path = this.directory.resolve("created.bin");
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+
+        MappedMatrix mapped = MappedMatrix.create(path, numRows, numCols, chunkShift);
+        assertEquals(Matrix.ofZeros(matrix), mapped.toMatrix());
+        int split = (numCols - 1) / 2;
+        mapped.setBlockToThis(0, 0, matrix.getBlockView(0, numRows - 1, 0, split));
+        mapped.setBlockToThis(0, split + 1, matrix.getBlockView(0, numRows - 1, split + 1, numCols - 1));
+        mapped.close();
+        assertTrue(mapped.isClosed());
+        Exception thrown = assertThrows(IllegalStateException.class, mapped::force);
+        assertEquals("Matrix has been closed", thrown.getMessage());
+
+        try (MappedMatrix reopened = MappedMatrix.open(path, numRows, numCols, MappedMatrix.Mode.READ_ONLY)) {
+            assertEquals(matrix, reopened.toMatrix());
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package agent.smith;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.stream.Stream;
+
+public class MatrixExpressionTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    @SuppressWarnings("unused")
+    static Stream<Arguments> expressionExceptionArguments = Stream.of(
+            Arguments.of(null, "Input matrix cannot be null")
+            , Arguments.of(Matrix.ofOnes(3, 2),
+                    "Dimension mismatch for 'matrix': expected = (2, 3) vs 'matrix' = (3, 2)")
+    );
+    @ParameterizedTest
+    @VariableSource("expressionExceptionArguments")
+    public void testExpressionException(Matrix matrix, String expected) {
+        MatrixExpression expression = MatrixExpression.of(Matrix.ofOnes(2, 3));
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, () -> expression.add(matrix));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class, () -> expression.add(2, matrix));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class, () -> expression.multiplyElementwise(matrix));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class, () -> expression.combine(matrix, Math::max));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class, () -> expression.evaluateInto(matrix));
+        assertEquals(expected.replace("'matrix': expected", "'destination': expected")
+                .replace("vs 'matrix'", "vs 'destination'"), thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> linearCombinationExceptionArguments = Stream.of(
+            Arguments.of(null, new Matrix[] {Matrix.ofOnes(2)}, "'coefficients' cannot be null")
+            , Arguments.of(new double[] {}, new Matrix[] {}, "Need at least one matrix")
+            , Arguments.of(new double[] {1}, new Matrix[] {Matrix.ofOnes(2), Matrix.ofOnes(2)},
+                    "Length of 'coefficients' (1) does not match the number of matrices (2)")
+            , Arguments.of(new double[] {1, 2}, new Matrix[] {Matrix.ofOnes(2), Matrix.ofOnes(3)},
+                    "Dimension mismatch for 'matrix': expected = (2, 2) vs 'matrix' = (3, 3)")
+    );
+    @ParameterizedTest
+    @VariableSource("linearCombinationExceptionArguments")
+    public void testLinearCombinationException(double[] coefficients, Matrix[] matrices, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> Matrix.linearCombination(coefficients, matrices));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // evaluate
+    @SuppressWarnings("unused")
+    static Stream<Arguments> evaluateArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 3, 4))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 40, 30))
+            , Arguments.of(Matrix.instanceOfRandom(4L, 60, 50).getBlockView(3, 42, 5, 34))
+            , Arguments.of(Matrix.instanceOfRandom(5L, 30, 40).transposeView())
+    );
+    @ParameterizedTest
+    @VariableSource("evaluateArguments")
+    public void testEvaluate(Matrix a) {
+        Matrix b = Matrix.instanceOfRandom(10L, a);
+        Matrix c = Matrix.instanceOfRandom(11L, a);
+        Matrix d = Matrix.instanceOfRandom(12L, a);
+
+        // Each step rounds like the Matrix method it replaces
+        assertEquals(a.add(b, c), MatrixExpression.of(a).add(b, c).evaluate());
+        assertEquals(a.multiply(2.5).add(b.multiply(-1.5)).add(3),
+                MatrixExpression.of(a).multiply(2.5).add(-1.5, b).add(3).evaluate());
+        assertEquals(a.multiply(2.5).add(b.multiply(-1.5)).add(c.multiply(0.5)),
+                Matrix.linearCombination(new double[] {2.5, -1.5, 0.5}, a, b, c));
+        assertEquals(a.map(Math::exp).add(d), MatrixExpression.of(a).map(Math::exp).add(d).evaluate());
+        assertEquals(Matrix.sum(a, b, c), MatrixExpression.of(Matrix.ofZeros(a)).add(a, b, c).evaluate());
+
+        Matrix expected = Matrix.create(a);
+        for (int rowIndex = 0; rowIndex < a.getNumRows(); rowIndex++) {
+            for (int colIndex = 0; colIndex < a.getNumCols(); colIndex++) {
+                double value = Math.max(a.get(rowIndex, colIndex) * b.get(rowIndex, colIndex),
+                        c.get(rowIndex, colIndex));
+                expected.setToThis(rowIndex, colIndex, Math.abs(value));
+            }
+        }
+        assertEquals(expected, MatrixExpression.of(a).multiplyElementwise(b).combine(c, Math::max).map(Math::abs)
+                .evaluate());
+
+        // In-place axpy: the destination may be laid out exactly like an operand
+        Matrix y = a.copy();
+        Matrix axpy = a.add(b.multiply(3));
+        assertSame(y, MatrixExpression.of(y).add(3, b).evaluateInto(y));
+        assertEquals(axpy, y);
+        Matrix negated = a.multiply(-1);
+        assertSame(a, a.mapToThis(value -> -value));
+        assertEquals(negated, a);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> evaluateIntoOverlapExceptionArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 4, 5))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 40, 30))
+    );
+    @ParameterizedTest
+    @VariableSource("evaluateIntoOverlapExceptionArguments")
+    public void testEvaluateIntoOverlapException(Matrix matrix) {
+        Matrix top = matrix.getBlockView(0, 1, 0, matrix.getNumCols() - 1);
+        Matrix shifted = matrix.getBlockView(1, 2, 0, matrix.getNumCols() - 1);
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> MatrixExpression.of(top).multiply(2).evaluateInto(shifted));
+        assertEquals("'destination' cannot overlap any of the input matrices", thrown.getMessage());
+    }
+
+}
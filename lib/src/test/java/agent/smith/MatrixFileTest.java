@@ -0,0 +1,224 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public class MatrixFileTest {
+
+    @TempDir
+    Path directory;
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    // Never created, the arguments are checked before the file is opened
+    private static final Path PATH = Paths.get("matrix.bin");
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> writerExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> MatrixFileWriter.create(null, 1, 1), "'path' cannot be null")
+            , Arguments.of((Executable) () -> MatrixFileWriter.create(PATH, 0, 1),
+                    "'numRows' (0) has to be a positive integer")
+            , Arguments.of((Executable) () -> MatrixFileWriter.create(PATH, 1, -1),
+                    "'numCols' (-1) has to be a positive integer")
+            , Arguments.of((Executable) () -> MatrixFileWriter.create(PATH, 1, 1, 0, 1,
+                    MatrixFileWriter.Compression.NONE), "'tileNumRows' (0) has to be a positive integer")
+            , Arguments.of((Executable) () -> MatrixFileWriter.create(PATH, 1, 1, 1, 1, null),
+                    "'compression' cannot be null")
+            , Arguments.of((Executable) () -> MatrixFileWriter.create(PATH, 65536, 65536, 65536, 65536,
+                    MatrixFileWriter.Compression.NONE),
+                    "'tileNumRows' * 'tileNumCols' (4294967296) is larger than the maximum length of a tile "
+                            + "(268435454)")
+            , Arguments.of((Executable) () -> MatrixFileWriter.create(PATH, 65536, 65536, 65536, 1,
+                    MatrixFileWriter.Compression.NONE),
+                    "'tileNumRows' * 'numCols' (4294967296) is larger than the maximum length of a band of tiles "
+                            + "(2147483639)")
+            , Arguments.of((Executable) () -> MatrixFileWriter.write(PATH, (Matrix) null),
+                    "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MatrixFileWriter.write(PATH, (ChunkedMatrix) null),
+                    "'matrix' cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("writerExceptionArguments")
+    public void testWriterException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @Test
+    public void testAppendRowsException() throws IOException {
+        Path path = this.directory.resolve("matrix.bin");
+        MatrixFileWriter writer = MatrixFileWriter.create(path, 3, 2);
+
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> writer.appendRows(Matrix.ofOnes(1, 3)));
+        assertEquals("Dimension mismatch for appending rows: 3 columns vs 2", thrown.getMessage());
+        writer.appendRows(Matrix.ofOnes(2, 2));
+        thrown = assertThrows(MatrixIllegalArgumentException.class, () -> writer.appendRows(Matrix.ofOnes(2, 2)));
+        assertEquals("Too many rows: 2 appended to the 2 of a matrix with 3 rows", thrown.getMessage());
+        assertEquals(2, writer.getNumRowsAppended());
+
+        thrown = assertThrows(IllegalStateException.class, writer::close);
+        assertEquals("Expected 3 rows but 2 were appended", thrown.getMessage());
+        thrown = assertThrows(IllegalStateException.class, () -> writer.appendRows(Matrix.ofOnes(1, 2)));
+        assertEquals("Writer has been closed", thrown.getMessage());
+
+        // Without a header the incomplete file is not a matrix file
+        thrown = assertThrows(IOException.class, () -> MatrixFileReader.open(path));
+        assertEquals("Not a matrix file", thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> readerGetBlockExceptionArguments = Stream.of(
+            Arguments.of(-1, 0, 0, 0)
+            , Arguments.of(0, 20, 0, 0)
+            , Arguments.of(0, 0, 5, 4)
+    );
+    @ParameterizedTest
+    @VariableSource("readerGetBlockExceptionArguments")
+    public void testReaderGetBlockException(int rowStartIndex, int rowEndIndex, int colStartIndex, int colEndIndex)
+            throws IOException {
+        Path path = this.directory.resolve("matrix.bin");
+        MatrixFileWriter.write(path, Matrix.of(1.5, 20, 30), 8, 8, MatrixFileWriter.Compression.DEFLATE);
+        try (MatrixFileReader reader = MatrixFileReader.open(path)) {
+            Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                    () -> reader.getBlock(rowStartIndex, rowEndIndex, colStartIndex, colEndIndex));
+            assertEquals("Invalid indexes", thrown.getMessage());
+        }
+    }
+
+    @Test
+    public void testReaderException() throws IOException {
+        Path path = this.directory.resolve("matrix.bin");
+        Matrix matrix = Matrix.of(1.5, 20, 30);
+        MatrixFileWriter.write(path, matrix, 8, 8, MatrixFileWriter.Compression.DEFLATE);
+        byte[] bytes = Files.readAllBytes(path);
+
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, () -> MatrixFileReader.open(null));
+        assertEquals("'path' cannot be null", thrown.getMessage());
+
+        Files.write(path, Arrays.copyOf(bytes, 47));
+        thrown = assertThrows(IOException.class, () -> MatrixFileReader.open(path));
+        assertEquals("Not a matrix file", thrown.getMessage());
+
+        byte[] corrupt = bytes.clone();
+        corrupt[8] = 2;
+        Files.write(path, corrupt);
+        thrown = assertThrows(IOException.class, () -> MatrixFileReader.open(path));
+        assertEquals("Unsupported matrix file version 2", thrown.getMessage());
+
+        corrupt = bytes.clone();
+        corrupt[14] = 7;
+        Files.write(path, corrupt);
+        thrown = assertThrows(IOException.class, () -> MatrixFileReader.open(path));
+        assertEquals("Unsupported compression 7", thrown.getMessage());
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        thrown = assertThrows(IOException.class, () -> MatrixFileReader.open(path));
+        assertEquals("Corrupt matrix file index", thrown.getMessage());
+
+        // Garbage in the deflated bytes of the first tile
+        corrupt = bytes.clone();
+        Arrays.fill(corrupt, 48, 58, (byte) 0xFF);
+        Files.write(path, corrupt);
+        try (MatrixFileReader reader = MatrixFileReader.open(path)) {
+            thrown = assertThrows(IOException.class, () -> reader.getBlock(0, 0, 0, 0));
+            assertEquals("Corrupt tile 0", thrown.getMessage());
+            assertEquals(matrix.getBlock(19, 19, 29, 29), reader.getBlock(19, 19, 29, 29));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // write and read
+    @SuppressWarnings("unused")
+    static Stream<Arguments> writeArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), 256, 256, MatrixFileWriter.Compression.DEFLATE)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 5, 7), 2, 3, MatrixFileWriter.Compression.DEFLATE)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 5, 7), 2, 3, MatrixFileWriter.Compression.NONE)
+            , Arguments.of(Matrix.instanceOfRandom(4L, 70, 90).transposeView(), 16, 32,
+                    MatrixFileWriter.Compression.DEFLATE)
+            , Arguments.of(Matrix.instanceOfRandom(5L, 300, 20).getBlockView(1, 298, 2, 17), 256, 256,
+                    MatrixFileWriter.Compression.NONE)
+            , Arguments.of(Matrix.of(1.5, 40, 50), 16, 16, MatrixFileWriter.Compression.DEFLATE)
+            , Arguments.of(Matrix.from(new double[][]{{Double.NaN, Double.NEGATIVE_INFINITY, -0.0, Double.MIN_VALUE}}),
+                    1, 3, MatrixFileWriter.Compression.DEFLATE)
+    );
+    @ParameterizedTest
+    @VariableSource("writeArguments")
+    public void testWrite(Matrix matrix, int tileNumRows, int tileNumCols, MatrixFileWriter.Compression compression)
+            throws IOException {
+
+        Path path = this.directory.resolve("matrix.bin");
+        MatrixFileWriter.write(path, matrix, tileNumRows, tileNumCols, compression);
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+
+        try (MatrixFileReader reader = MatrixFileReader.open(path)) {
+            assertEquals(numRows, reader.getNumRows());
+            assertEquals(numCols, reader.getNumCols());
+            assertEquals(Math.min(tileNumRows, numRows), reader.getTileNumRows());
+            assertEquals(Math.min(tileNumCols, numCols), reader.getTileNumCols());
+            assertEquals(compression, reader.getCompression());
+            assertEquals(matrix, reader.read());
+            assertEquals(matrix, reader.readChunked().toMatrix());
+            assertEquals(matrix.getBlock(numRows - 1, numRows - 1, 0, numCols - 1),
+                    reader.getBlock(numRows - 1, numRows - 1, 0, numCols - 1));
+            assertEquals(matrix.getBlock(numRows / 3, numRows - 1, numCols / 2, numCols - 1),
+                    reader.getBlock(numRows / 3, numRows - 1, numCols / 2, numCols - 1));
+            assertEquals(matrix.getBlock(0, numRows / 2, numCols / 3, numCols / 2),
+                    reader.getBlock(0, numRows / 2, numCols / 3, numCols / 2));
+        }
+        assertEquals(matrix, MatrixFileReader.read(path));
+    }
+
+    @Test
+    public void testWriteCompresses() throws IOException {
+        Matrix matrix = Matrix.of(1.5, 100, 100).setToThis(42, 17, -3);
+        Path path = this.directory.resolve("matrix.bin");
+        MatrixFileWriter.write(path, matrix);
+        assertTrue(Files.size(path) < 8 * 100 * 100 / 10);
+        assertEquals(matrix, MatrixFileReader.read(path));
+    }
+
+    @Test
+    public void testAppendRows() throws IOException {
+        Matrix matrix = Matrix.instanceOfRandom(1L, 23, 9);
+        Path path = this.directory.resolve("matrix.bin");
+        try (MatrixFileWriter writer = MatrixFileWriter.create(path, 23, 9, 4, 4,
+                MatrixFileWriter.Compression.DEFLATE)) {
+            assertEquals(23, writer.getNumRows());
+            assertEquals(9, writer.getNumCols());
+            writer.appendRows(matrix.getBlockView(0, 2, 0, 8))
+                    .appendRows(matrix.getRowView(3))
+                    .appendRows(ChunkedMatrix.of(matrix.getBlock(4, 14, 0, 8), 3))
+                    .appendRows(matrix.getBlockView(15, 22, 0, 8));
+        }
+        assertEquals(matrix, MatrixFileReader.read(path));
+    }
+
+    @Test
+    public void testWriteChunked() throws IOException {
+        Matrix matrix = Matrix.instanceOfRandom(1L, 300, 270);
+        Path path = this.directory.resolve("matrix.bin");
+        try (ChunkedMatrix chunked = ChunkedMatrix.of(matrix, 10)) {
+            MatrixFileWriter.write(path, chunked);
+        }
+        try (MatrixFileReader reader = MatrixFileReader.open(path)) {
+            assertEquals(256, reader.getTileNumRows());
+            assertEquals(matrix, reader.read());
+            assertEquals(matrix.getBlock(250, 260, 250, 260), reader.getBlock(250, 260, 250, 260));
+        }
+    }
+
+}
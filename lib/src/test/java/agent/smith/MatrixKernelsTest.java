@@ -0,0 +1,142 @@
+package agent.smith;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+public class MatrixKernelsTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // checkRange
+    @SuppressWarnings("unused")
+    static Stream<Arguments> checkRangeExceptionArguments = Stream.of(
+            Arguments.of(4, -1, 1, 2,
+                    "Range (offset = -1, stride = 1, length = 2) is outside of an array of length 4")
+            , Arguments.of(4, 0, 2, 3,
+                    "Range (offset = 0, stride = 2, length = 3) is outside of an array of length 4")
+            , Arguments.of(4, 4, 1, 1,
+                    "Range (offset = 4, stride = 1, length = 1) is outside of an array of length 4")
+            , Arguments.of(4, 0, -1, 2,
+                    "Range (offset = 0, stride = -1, length = 2) is outside of an array of length 4")
+    );
+    @ParameterizedTest
+    @VariableSource("checkRangeExceptionArguments")
+    public void testCheckRangeException(int arrayLength, int offset, int stride, int length, String expected) {
+        Exception thrown = assertThrows(IndexOutOfBoundsException.class,
+                () -> MatrixKernels.checkRange(new double[arrayLength], offset, stride, length));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> checkRangeBlockExceptionArguments = Stream.of(
+            Arguments.of(5, 0, 2, 3, 3, 1, "Block (offset = 0, numRows = 2, numCols = 3, rowStride = 3, " +
+                    "colStride = 1) is outside of an array of length 5")
+            , Arguments.of(6, 0, 3, 2, 1, 4, "Block (offset = 0, numRows = 3, numCols = 2, rowStride = 1, " +
+                    "colStride = 4) is outside of an array of length 6")
+            , Arguments.of(6, 1, 2, 2, -1, 1, "Block (offset = 1, numRows = 2, numCols = 2, rowStride = -1, " +
+                    "colStride = 1) is outside of an array of length 6")
+    );
+    @ParameterizedTest
+    @VariableSource("checkRangeBlockExceptionArguments")
+    public void testCheckRangeBlockException(int arrayLength, int offset, int numRows, int numCols, int rowStride,
+                                             int colStride, String expected) {
+        Exception thrown = assertThrows(IndexOutOfBoundsException.class, () -> MatrixKernels.checkRange(
+                new double[arrayLength], offset, numRows, numCols, rowStride, colStride));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // addAll
+    @SuppressWarnings("unused")
+    static Stream<Arguments> addAllArguments = Stream.of(
+            Arguments.of(1, 3)
+            , Arguments.of(511, 2)
+            , Arguments.of(513, 4)
+            , Arguments.of(2000, 1)
+    );
+    @ParameterizedTest
+    @VariableSource("addAllArguments")
+    public void testAddAll(int length, int numSources) {
+        Matrix destination = Matrix.instanceOfRandom(1L, length, 1);
+        double[] expected = destination.array.clone();
+        double[][] sources = new double[numSources][];
+        for (int sourceIndex = 0; sourceIndex < numSources; sourceIndex++) {
+            sources[sourceIndex] = Matrix.instanceOfRandom(2L + sourceIndex, length, 1).array;
+        }
+        for (int index = 0; index < length; index++) {
+            double value = 0;
+            for (double[] source : sources) {
+                value += source[index];
+            }
+            expected[index] += value;
+        }
+        double[] actual = destination.array.clone();
+        int[] offsets = new int[numSources];
+        int[] rowStrides = new int[numSources];
+        int[] colStrides = new int[numSources];
+        Arrays.fill(rowStrides, 1);
+        Arrays.fill(colStrides, 1);
+        MatrixKernels.addAll(length, 1, actual, 0, 1, 1, actual, 0, 1, 1, sources, offsets, rowStrides, colStrides);
+        assertArrayEquals(expected, actual);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // sum / maxAbsDifference
+    @SuppressWarnings("unused")
+    static Stream<Arguments> sumArguments = Stream.of(
+            Arguments.of(1, 1)
+            , Arguments.of(1, 7)
+            , Arguments.of(5, 3)
+            , Arguments.of(33, 65)
+            , Arguments.of(1000, 1)
+    );
+    @ParameterizedTest
+    @VariableSource("sumArguments")
+    public void testSum(int numRows, int numCols) {
+        Matrix matrix = Matrix.instanceOfRandom(1L, numRows, numCols);
+        double expected = 0;
+        for (double value : matrix.array) {
+            expected += value;
+        }
+        double actual = MatrixKernels.sum(numRows, numCols, matrix.array, 0, numCols, 1);
+        assertEquals(expected, actual, 1e-12 * numRows * numCols);
+
+        // The accumulators are assigned by row-major position, so a transposed layout gives the same bits
+        double[] transposed = matrix.transpose().array;
+        assertEquals(actual, MatrixKernels.sum(numRows, numCols, transposed, 0, 1, numRows));
+        // and so does a block inside a bigger array
+        double[] padded = new double[(numRows + 2) * (numCols + 3)];
+        MatrixKernels.copy(numRows, numCols, matrix.array, 0, numCols, 1, padded, numCols + 4, numCols + 3, 1);
+        assertEquals(actual, MatrixKernels.sum(numRows, numCols, padded, numCols + 4, numCols + 3, 1));
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> maxAbsDifferenceArguments = Stream.of(
+            Arguments.of(1, 1)
+            , Arguments.of(5, 3)
+            , Arguments.of(33, 65)
+    );
+    @ParameterizedTest
+    @VariableSource("maxAbsDifferenceArguments")
+    public void testMaxAbsDifference(int numRows, int numCols) {
+        Matrix matrix = Matrix.instanceOfRandom(1L, numRows, numCols);
+        Matrix other = Matrix.instanceOfRandom(2L, numRows, numCols);
+        double expected = Double.MIN_VALUE;
+        for (int index = 0; index < matrix.array.length; index++) {
+            expected = Math.max(expected, Math.abs(matrix.array[index] - other.array[index]));
+        }
+        assertEquals(expected, MatrixKernels.maxAbsDifference(numRows, numCols, matrix.array, 0, numCols, 1,
+                other.array, 0, numCols, 1, Double.MIN_VALUE));
+        assertEquals(expected, MatrixKernels.maxAbsDifference(numRows, numCols, matrix.array, 0, numCols, 1,
+                other.transpose().array, 0, 1, numRows, Double.MIN_VALUE));
+
+        other.array[other.array.length - 1] = Double.NaN;
+        assertTrue(Double.isNaN(MatrixKernels.maxAbsDifference(numRows, numCols, matrix.array, 0, numCols, 1,
+                other.array, 0, numCols, 1, Double.MIN_VALUE)));
+    }
+
+}
@@ -6,6 +6,8 @@ import org.junit.jupiter.params.provider.Arguments;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.Random;
+import java.nio.DoubleBuffer;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 public class MatrixTest {
@@ -20,6 +22,11 @@ public class MatrixTest {
             // numCols <= 0
             , Arguments.of(0, 1, 0, "'numCols' (0) has to be a positive integer")
             , Arguments.of(0, 1, -1, "'numCols' (-1) has to be a positive integer")
+            // numRows * numCols > MAX_LENGTH
+            , Arguments.of(0, 100000, 30000,
+                    "'numRows' * 'numCols' (3000000000) is larger than the maximum length of a Matrix (2147483639)")
+            , Arguments.of(0, 65536, 32768,
+                    "'numRows' * 'numCols' (2147483648) is larger than the maximum length of a Matrix (2147483639)")
     );
 
     @ParameterizedTest
@@ -69,6 +76,9 @@ public class MatrixTest {
             // numRows * numCols > array.length
             , Arguments.of(new double[]{1, 2}, 1, 1,
                     "Length of 'array' (2) does not match 'numRows' * 'numCols' (1)")
+            // numRows * numCols overflows to array.length as an int
+            , Arguments.of(new double[65536], 65536, 65537,
+                    "'numRows' * 'numCols' (4295032832) is larger than the maximum length of a Matrix (2147483639)")
     );
 
     @ParameterizedTest
@@ -1503,6 +1513,62 @@ public class MatrixTest {
         assertNotSame(matrix, actual);
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    // addToThis / addInto (matrix with double and with matrix)
+    @SuppressWarnings("unused")
+    static Stream<Arguments> addIntoExceptionArguments = Stream.of(
+            Arguments.of(Matrix.ofOnes(2, 3), null, "Input matrix cannot be null")
+            , Arguments.of(Matrix.ofOnes(2, 3), Matrix.ofOnes(3, 2),
+                    "Dimension mismatch for 'destination': expected = (2, 3) vs 'destination' = (3, 2)")
+    );
+    @ParameterizedTest
+    @VariableSource("addIntoExceptionArguments")
+    public void testAddIntoException(Matrix matrix, Matrix destination, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> matrix.addInto(destination, 1));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> matrix.addInto(destination, Matrix.ofOnes(2, 3)));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> addIntoArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), 2)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 3, 4), 1)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 40, 30), 3)
+    );
+    @ParameterizedTest
+    @VariableSource("addIntoArguments")
+    public void testAddInto(Matrix matrix, int numMatrices) {
+        Matrix[] matrices = new Matrix[numMatrices];
+        for (int matrixIndex = 0; matrixIndex < numMatrices; matrixIndex++) {
+            matrices[matrixIndex] = Matrix.instanceOfRandom(10L + matrixIndex, matrix);
+        }
+        Matrix expected = matrix.add(matrices);
+        Matrix original = matrix.copy();
+
+        Matrix destination = Matrix.create(matrix);
+        assertSame(destination, matrix.addInto(destination, matrices));
+        assertEquals(expected, destination);
+        assertEquals(original, matrix);
+
+        // the destination may alias this matrix or one of the matrices being added
+        Matrix alias = matrices[0].copy();
+        matrices[0] = alias;
+        assertSame(alias, matrix.addInto(alias, matrices));
+        assertEquals(expected, alias);
+
+        Matrix inPlace = matrix.copy();
+        assertSame(inPlace, inPlace.addToThis(matrix.copy().multiplyToThis(0)));
+        assertEquals(matrix, inPlace);
+
+        assertSame(destination, matrix.addInto(destination, 2.5));
+        assertEquals(matrix.add(2.5), destination);
+        assertSame(inPlace, inPlace.addToThis(2.5));
+        assertEquals(matrix.add(2.5), inPlace);
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // sum
     @SuppressWarnings("unused")
@@ -1665,6 +1731,29 @@ public class MatrixTest {
         assertNotSame(matrix, actual);
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    // multiplyToThis / multiplyInto (matrix with double)
+    @SuppressWarnings("unused")
+    static Stream<Arguments> multiplyIntoArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), 2)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 3, 4), -1.5)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 40, 30), 0)
+    );
+    @ParameterizedTest
+    @VariableSource("multiplyIntoArguments")
+    public void testMultiplyInto(Matrix matrix, double value) {
+        Matrix expected = matrix.multiply(value);
+        Matrix original = matrix.copy();
+        Matrix destination = Matrix.create(matrix);
+        assertSame(destination, matrix.multiplyInto(destination, value));
+        assertEquals(expected, destination);
+        assertEquals(original, matrix);
+
+        Matrix inPlace = matrix.copy();
+        assertSame(inPlace, inPlace.multiplyToThis(value));
+        assertEquals(expected, inPlace);
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // prod
     @SuppressWarnings("unused")
@@ -1760,6 +1849,259 @@ public class MatrixTest {
         }
     }
 
+    private static Matrix prodNaive(Matrix left, Matrix right) {
+        int numRows = left.getNumRows();
+        int numCols = right.getNumCols();
+        double[] array = new double[numRows * numCols];
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                double value = 0;
+                for (int index = 0; index < left.getNumCols(); index++) {
+                    value += left.get(rowIndex, index) * right.get(index, colIndex);
+                }
+                array[rowIndex * numCols + colIndex] = value;
+            }
+        }
+        return Matrix.create(array, numRows, numCols);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodBlockedArguments = Stream.of(
+            // multiples of the register tile
+            Arguments.of(64, 64, 64)
+            // edges in every dimension
+            , Arguments.of(67, 61, 53)
+            // inner dimension spanning several KC slices
+            , Arguments.of(37, 29, 600)
+            // rows spanning several MC panels
+            , Arguments.of(300, 9, 17)
+            // tall-skinny and wide
+            , Arguments.of(513, 5, 40)
+            , Arguments.of(6, 700, 40)
+            // fewer rows or columns than the register tile
+            , Arguments.of(3, 700, 40)
+            , Arguments.of(1, 300, 200)
+            , Arguments.of(700, 3, 40)
+            , Arguments.of(200, 1, 300)
+    );
+    @ParameterizedTest
+    @VariableSource("prodBlockedArguments")
+    public void testProdBlocked(int numRows, int numCols, int numInner) {
+        Matrix left = Matrix.instanceOfRandom(1, numRows, numInner);
+        Matrix right = Matrix.instanceOfRandom(2, numInner, numCols);
+        Matrix expected = MatrixTest.prodNaive(left, right);
+        assertTrue(Matrix.equalsWithinTolerance(expected, Matrix.prod(left, right), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(expected, left.multiply(right), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(expected, right.multiplyLeft(left), 1e-10));
+        // Column-major operands
+        assertTrue(Matrix.equalsWithinTolerance(expected,
+                Matrix.prod(left.transpose().transposeView(), right.transpose().transposeView()), 1e-10));
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodParallelExceptionArguments = Stream.of(
+            // pool == null
+            Arguments.of(null, new Matrix[] {Matrix.ofOnes(2), Matrix.ofOnes(2)}, "'pool' cannot be null")
+            // matrices == {}
+            , Arguments.of(new ForkJoinPool(2), new Matrix[] {}, "Need at least one matrix")
+            // matrices[0].numCols != matrices[1].numRows
+            , Arguments.of(new ForkJoinPool(2), new Matrix[] {Matrix.ofOnes(2, 3), Matrix.ofOnes(2, 3)},
+                    "Dimension mismatch for taking product of matrices")
+    );
+    @ParameterizedTest
+    @VariableSource("prodParallelExceptionArguments")
+    public void testProdParallelException(ForkJoinPool pool, Matrix[] matrices, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> Matrix.prod(pool, matrices));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodParallelArguments = Stream.of(
+            // below the parallel threshold
+            Arguments.of(1, 40, 40, 40)
+            , Arguments.of(4, 40, 40, 40)
+            // split over rows
+            , Arguments.of(4, 515, 130, 260)
+            // split over columns
+            , Arguments.of(3, 130, 517, 260)
+            , Arguments.of(8, 301, 299, 300)
+            // fewer rows or columns than the register tile
+            , Arguments.of(4, 3, 3000, 300)
+            , Arguments.of(4, 3000, 2, 400)
+    );
+    @ParameterizedTest
+    @VariableSource("prodParallelArguments")
+    public void testProdParallel(int parallelism, int numRows, int numCols, int numInner) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Matrix left = Matrix.instanceOfRandom(3, numRows, numInner);
+        Matrix right = Matrix.instanceOfRandom(4, numInner, numCols);
+        Matrix expected = MatrixTest.prodNaive(left, right);
+        assertTrue(Matrix.equalsWithinTolerance(expected, Matrix.prod(pool, left, right), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(expected, left.multiply(pool, right), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(expected, right.multiplyLeft(pool, left), 1e-10));
+        pool.shutdown();
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // prodInto / addProdToThis
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodIntoExceptionArguments = Stream.of(
+            Arguments.of(null, "Input matrix cannot be null")
+            , Arguments.of(Matrix.ofZeros(3, 2),
+                    "Dimension mismatch for 'destination': expected = (2, 3) vs 'destination' = (3, 2)")
+    );
+    @ParameterizedTest
+    @VariableSource("prodIntoExceptionArguments")
+    public void testProdIntoException(Matrix destination, String expected) {
+        Matrix left = Matrix.ofOnes(2, 4);
+        Matrix right = Matrix.ofOnes(4, 3);
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> Matrix.prodInto(destination, left, right));
+        assertEquals(expected, thrown.getMessage());
+        if (destination != null) {
+            thrown = assertThrows(MatrixIllegalArgumentException.class,
+                    () -> destination.addProdToThis(left, right));
+            assertEquals(expected, thrown.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodIntoAliasExceptionArguments = Stream.of(
+            Arguments.of(Matrix.ofOnes(3, 3))
+            , Arguments.of(Matrix.instanceOfRandom(1L, 40))
+    );
+    @ParameterizedTest
+    @VariableSource("prodIntoAliasExceptionArguments")
+    public void testProdIntoAliasException(Matrix matrix) {
+        String expected = "'destination' cannot overlap any of the input matrices";
+        Matrix other = matrix.copy();
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> Matrix.prodInto(matrix, matrix, other));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> Matrix.prodInto(matrix, other, other, matrix));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> matrix.addProdToThis(other, matrix));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> Matrix.prodInto((ForkJoinPool) null, Matrix.create(matrix), matrix, other));
+        assertEquals("'pool' cannot be null", thrown.getMessage());
+        // a single matrix is only copied so it may be its own destination
+        assertSame(matrix, Matrix.prodInto(matrix, matrix));
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodIntoArguments = Stream.of(
+            Arguments.of((Object) new int[] {1, 1})
+            , Arguments.of((Object) new int[] {3, 5, 2})
+            , Arguments.of((Object) new int[] {30, 2, 40, 5})
+            , Arguments.of((Object) new int[] {70, 90, 60})
+    );
+    @ParameterizedTest
+    @VariableSource("prodIntoArguments")
+    public void testProdInto(int[] dimensions) {
+        Matrix[] matrices = new Matrix[dimensions.length - 1];
+        for (int matrixIndex = 0; matrixIndex < matrices.length; matrixIndex++) {
+            matrices[matrixIndex] = Matrix.instanceOfRandom(matrixIndex + 1L, dimensions[matrixIndex],
+                    dimensions[matrixIndex + 1]);
+        }
+        Matrix expected = Matrix.prod(matrices);
+
+        // the destination is overwritten, whatever it held before
+        Matrix destination = Matrix.ofOnes(dimensions[0], dimensions[dimensions.length - 1]);
+        assertSame(destination, Matrix.prodInto(destination, matrices));
+        assertEquals(expected, destination);
+
+        if (matrices.length == 2) {
+            Matrix accumulated = Matrix.ofOnes(destination);
+            assertSame(accumulated, accumulated.addProdToThis(matrices[0], matrices[1]));
+            assertTrue(Matrix.equalsWithinTolerance(expected.add(1), accumulated, 1e-12));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // planProd
+    @SuppressWarnings("unused")
+    static Stream<Arguments> planProdExceptionArguments = Stream.of(
+            // matrices == {}
+            Arguments.of(new Matrix[] {}, "Need at least one matrix")
+            // matrices == {null, ...}
+            , Arguments.of(new Matrix[] {null, Matrix.ofOnes(1)}, "Input matrix cannot be null")
+            // matrices[0].numCols != matrices[1].numRows
+            , Arguments.of(new Matrix[] {Matrix.ofOnes(2, 3), Matrix.ofOnes(2, 3)},
+                    "Dimension mismatch for taking product of matrices")
+    );
+    @ParameterizedTest
+    @VariableSource("planProdExceptionArguments")
+    public void testPlanProdException(Matrix[] matrices, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, () -> Matrix.planProd(matrices));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> planProdArguments = Stream.of(
+            // single matrix
+            Arguments.of(new Matrix[] {Matrix.ofOnes(2, 3)}, "M0", 0L)
+            // pair
+            , Arguments.of(new Matrix[] {Matrix.ofOnes(2, 3), Matrix.ofOnes(3, 4)}, "(M0 M1)", 48L)
+            // ties keep the right-to-left fold
+            , Arguments.of(new Matrix[] {Matrix.ofOnes(2), Matrix.ofOnes(2), Matrix.ofOnes(2)}, "(M0 (M1 M2))", 32L)
+            // outer product in the middle is avoided
+            , Arguments.of(new Matrix[] {Matrix.ofOnes(1000, 10), Matrix.ofOnes(10, 1000), Matrix.ofOnes(1000, 10)},
+                    "(M0 (M1 M2))", 400000L)
+            // inner product first
+            , Arguments.of(new Matrix[] {Matrix.ofOnes(10, 1000), Matrix.ofOnes(1000, 10), Matrix.ofOnes(10, 1000)},
+                    "((M0 M1) M2)", 400000L)
+            // textbook example
+            , Arguments.of(new Matrix[] {Matrix.ofOnes(30, 35), Matrix.ofOnes(35, 15), Matrix.ofOnes(15, 5),
+                            Matrix.ofOnes(5, 10), Matrix.ofOnes(10, 20), Matrix.ofOnes(20, 25)},
+                    "((M0 (M1 M2)) ((M3 M4) M5))", 2 * 15125L)
+    );
+    @ParameterizedTest
+    @VariableSource("planProdArguments")
+    public void testPlanProd(Matrix[] matrices, String expectedParenthesization, long expectedFlops) {
+        ProductPlan plan = Matrix.planProd(matrices);
+        assertEquals(matrices.length, plan.getNumMatrices());
+        assertEquals(expectedParenthesization, plan.toParenthesization());
+        assertEquals(expectedFlops, plan.getFlops());
+        assertEquals(expectedFlops / 2, plan.getMultiplyAdds());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> planProdGetSplitExceptionArguments = Stream.of(
+            Arguments.of(-1, 1, "'first' = (-1) and 'last' = (1) have to satisfy 0 <= first < last <= 2")
+            , Arguments.of(0, 3, "'first' = (0) and 'last' = (3) have to satisfy 0 <= first < last <= 2")
+            , Arguments.of(1, 1, "'first' = (1) and 'last' = (1) have to satisfy 0 <= first < last <= 2")
+    );
+    @ParameterizedTest
+    @VariableSource("planProdGetSplitExceptionArguments")
+    public void testPlanProdGetSplitException(int first, int last, String expected) {
+        ProductPlan plan = Matrix.planProd(Matrix.ofOnes(2), Matrix.ofOnes(2), Matrix.ofOnes(2));
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, () -> plan.getSplit(first, last));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodPlannedArguments = Stream.of(
+            Arguments.of((Object) new int[] {300, 3, 300, 3})
+            , Arguments.of((Object) new int[] {3, 300, 3, 300})
+            , Arguments.of((Object) new int[] {30, 35, 15, 5, 10, 20, 25})
+    );
+    @ParameterizedTest
+    @VariableSource("prodPlannedArguments")
+    public void testProdPlanned(int[] dimensions) {
+        Matrix[] matrices = new Matrix[dimensions.length - 1];
+        Matrix expected = null;
+        for (int matrixIndex = matrices.length - 1; matrixIndex >= 0; matrixIndex--) {
+            matrices[matrixIndex] = Matrix.instanceOfRandom(matrixIndex, dimensions[matrixIndex],
+                    dimensions[matrixIndex + 1]);
+            expected = expected == null ? matrices[matrixIndex] : MatrixTest.prodNaive(matrices[matrixIndex], expected);
+        }
+        assertTrue(Matrix.equalsWithinTolerance(expected, Matrix.prod(matrices), 1e-9));
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // horizontalConcatenate
     @SuppressWarnings("unused")
@@ -1942,6 +2284,120 @@ public class MatrixTest {
         assertNotSame(matrix, actual);
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    // transposeInto
+    @SuppressWarnings("unused")
+    static Stream<Arguments> transposeIntoExceptionArguments = Stream.of(
+            Arguments.of(Matrix.ofOnes(2, 3), null, "Input matrix cannot be null")
+            , Arguments.of(Matrix.ofOnes(2, 3), Matrix.ofOnes(2, 3),
+                    "Dimension mismatch for 'destination': expected = (3, 2) vs 'destination' = (2, 3)")
+    );
+    @ParameterizedTest
+    @VariableSource("transposeIntoExceptionArguments")
+    public void testTransposeIntoException(Matrix matrix, Matrix destination, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> matrix.transposeInto(destination));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> transposeIntoArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 2, 3))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 50, 20))
+    );
+    @ParameterizedTest
+    @VariableSource("transposeIntoArguments")
+    public void testTransposeInto(Matrix matrix) {
+        Matrix destination = Matrix.create(matrix.getNumCols(), matrix.getNumRows());
+        assertSame(destination, matrix.transposeInto(destination));
+        assertEquals(matrix.transpose(), destination);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // transposeView
+    @SuppressWarnings("unused")
+    static Stream<Arguments> transposeViewArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), Matrix.instanceOfRandom(2L, 1, 3))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 2, 3), Matrix.instanceOfRandom(4L, 2, 5))
+            , Arguments.of(Matrix.instanceOfRandom(5L, 70, 40), Matrix.instanceOfRandom(6L, 70, 50))
+            , Arguments.of(Matrix.instanceOfRandom(7L, 130, 90), Matrix.instanceOfRandom(8L, 130, 110))
+    );
+    @ParameterizedTest
+    @VariableSource("transposeViewArguments")
+    public void testTransposeView(Matrix matrix, Matrix other) {
+        Matrix view = matrix.transposeView();
+        Matrix transpose = matrix.transpose();
+        assertEquals(transpose, view);
+        assertEquals(matrix, view.transposeView());
+        assertFalse(view.isContiguous() && matrix.getNumRows() > 1 && matrix.getNumCols() > 1);
+
+        // A^T * B, A * B^T and A^T * B^T read the original layouts and match the products of transposed copies
+        Matrix otherTranspose = other.transpose();
+        assertEquals(Matrix.prod(transpose, other), Matrix.prod(view, other));
+        assertEquals(Matrix.prod(otherTranspose, matrix), Matrix.prod(otherTranspose, view.transposeView()));
+        assertEquals(Matrix.prod(otherTranspose, other), Matrix.prod(other.transposeView(), other));
+        assertEquals(Matrix.prod(transpose, other), Matrix.prod(view, otherTranspose.transposeView()));
+        assertEquals(Matrix.prod(transpose, other), view.multiply(other));
+
+        // Writes through the view land in the original matrix
+        view.setToThis(0, view.getNumCols() - 1, 42);
+        assertEquals(42, matrix.get(matrix.getNumRows() - 1, 0));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // transpose (blocked) / transposeToThis
+    @SuppressWarnings("unused")
+    static Stream<Arguments> transposeBlockedArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 17, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 33, 17))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 70, 45))
+            , Arguments.of(Matrix.instanceOfRandom(4L, 3, 200))
+            , Arguments.of(Matrix.instanceOfRandom(5L, 90, 120).getBlockView(5, 84, 7, 106))
+    );
+    @ParameterizedTest
+    @VariableSource("transposeBlockedArguments")
+    public void testTransposeBlocked(Matrix matrix) {
+        Matrix actual = matrix.transpose();
+        for (int rowIndex = 0; rowIndex < matrix.getNumRows(); rowIndex++) {
+            for (int colIndex = 0; colIndex < matrix.getNumCols(); colIndex++) {
+                assertEquals(matrix.get(rowIndex, colIndex), actual.get(colIndex, rowIndex));
+            }
+        }
+        // Copying a transposed view goes through the same blocked kernel
+        assertEquals(actual, matrix.transposeView().copy());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> transposeToThisExceptionArguments = Stream.of(
+            Arguments.of(Matrix.ofOnes(2, 3), "Matrix is not square")
+            , Arguments.of(Matrix.ofOnes(40, 3), "Matrix is not square")
+    );
+    @ParameterizedTest
+    @VariableSource("transposeToThisExceptionArguments")
+    public void testTransposeToThisException(Matrix matrix, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, matrix::transposeToThis);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> transposeToThisArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 2))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 17))
+            , Arguments.of(Matrix.instanceOfRandom(4L, 33))
+            , Arguments.of(Matrix.instanceOfRandom(5L, 101))
+            , Arguments.of(Matrix.instanceOfRandom(6L, 80, 90).getBlockView(3, 72, 11, 80))
+    );
+    @ParameterizedTest
+    @VariableSource("transposeToThisArguments")
+    public void testTransposeToThis(Matrix matrix) {
+        Matrix expected = matrix.transpose();
+        assertSame(matrix, matrix.transposeToThis());
+        assertEquals(expected, matrix);
+        assertEquals(expected.transpose(), matrix.transposeView().transposeToThis().transposeView());
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // reshape
     @SuppressWarnings("unused")
@@ -2204,6 +2660,70 @@ public class MatrixTest {
         }
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    // decomposeQRHouseholder
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeQRHouseholderArguments = Stream.of(
+            // singleton
+            Arguments.of(Matrix.create(new double[] {2}, 1, 1))
+            // square
+            , Arguments.of(Matrix.create(new double[] {1, 1, 0, 1, 0, 1, 0, 1, 1}, 3, 3))
+            , Arguments.of(Matrix.instanceOfRandom(1L, 5))
+            // rectangle
+            , Arguments.of(Matrix.instanceOfRandom(2, 7, 3))
+            , Arguments.of(Matrix.instanceOfRandom(3, 3, 7))
+            // vectors
+            , Arguments.of(Matrix.instanceOfRandom(4, 6, 1))
+            , Arguments.of(Matrix.instanceOfRandom(5, 1, 6))
+            // rank deficient, with a zero column
+            , Arguments.of(Matrix.create(new double[] {0, 1, 2, 0, 3, 4, 0, 5, 6, 0, 7, 8}, 4, 3))
+            , Arguments.of(Matrix.ofOnes(4, 4))
+            // several panels
+            , Arguments.of(Matrix.instanceOfRandom(6L, 100))
+            , Arguments.of(Matrix.instanceOfRandom(7, 150, 70))
+            , Arguments.of(Matrix.instanceOfRandom(8, 45, 110))
+    );
+    @ParameterizedTest
+    @VariableSource("decomposeQRHouseholderArguments")
+    public void testDecomposeQRHouseholder(Matrix matrix) {
+        Matrix[] QR = matrix.decomposeQRHouseholder();
+        Matrix Q = QR[0];
+        Matrix R = QR[1];
+        int numReflectors = Math.min(matrix.getNumRows(), matrix.getNumCols());
+        assertEquals(matrix.getNumRows(), Q.getNumRows());
+        assertEquals(numReflectors, Q.getNumCols());
+        assertEquals(numReflectors, R.getNumRows());
+        assertEquals(matrix.getNumCols(), R.getNumCols());
+        assertTrue(Matrix.equalsWithinTolerance(matrix, Q.multiply(R), 1e-12));
+        assertTrue(Matrix.equalsWithinTolerance(Q.transpose().multiply(Q), Matrix.instanceOfEye(numReflectors), 1e-12));
+        for (int rowIndex = 0; rowIndex < R.getNumRows(); rowIndex++) {
+            for (int colIndex = 0; colIndex < rowIndex; colIndex++) {
+                assertEquals(0, R.get(rowIndex, colIndex));
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeQRHouseholderGramSchmidtArguments = Stream.of(
+            Arguments.of(Matrix.create(new double[] {1, 1, 0, 1, 0, 1, 0, 1, 1}, 3, 3))
+            , Arguments.of(Matrix.create(new double[] {3, 2, 1, 2}, 2, 2))
+            , Arguments.of(Matrix.instanceOfRandom(9L, 40))
+    );
+    @ParameterizedTest
+    @VariableSource("decomposeQRHouseholderGramSchmidtArguments")
+    public void testDecomposeQRHouseholderGramSchmidt(Matrix matrix) {
+        // Both are the same factorization up to the signs of the columns of Q and the rows of R
+        Matrix[] householder = matrix.decomposeQRHouseholder();
+        Matrix[] gramSchmidt = matrix.decomposeQRGramSchmidt();
+        Matrix signs = householder[1].getDiagonal();
+        for (int index = 0; index < signs.getNumRows(); index++) {
+            signs = signs.set(index, 0, Math.signum(signs.get(index, 0)));
+        }
+        Matrix flip = signs.diagonalizeToMatrix();
+        assertTrue(Matrix.equalsWithinTolerance(gramSchmidt[0], householder[0].multiply(flip), 1e-10));
+        assertTrue(Matrix.equalsWithinTolerance(gramSchmidt[1], flip.multiply(householder[1]), 1e-10));
+    }
+
     // -----------------------------------------------------------------------------------------------------------------
     // getBlock
     @SuppressWarnings("unused")
@@ -2302,4 +2822,129 @@ public class MatrixTest {
         assertEquals(expected, actual);
     }
 
+    // -----------------------------------------------------------------------------------------------------------------
+    // getBlockView / getRowView / getColView / reshapeView
+    @SuppressWarnings("unused")
+    static Stream<Arguments> getBlockViewArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), 0, 0, 0, 0)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 4, 5), 1, 2, 1, 3)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 4, 5), 0, 3, 2, 2)
+            , Arguments.of(Matrix.instanceOfRandom(4L, 60, 70), 5, 54, 3, 68)
+    );
+    @ParameterizedTest
+    @VariableSource("getBlockViewArguments")
+    public void testGetBlockView(Matrix matrix, int rowStartIndex, int rowEndIndex, int colStartIndex,
+                                 int colEndIndex) {
+        Matrix view = matrix.getBlockView(rowStartIndex, rowEndIndex, colStartIndex, colEndIndex);
+        Matrix block = matrix.getBlock(rowStartIndex, rowEndIndex, colStartIndex, colEndIndex);
+        assertEquals(block, view);
+        assertEquals(block.hashCode(), view.hashCode());
+        assertArrayEquals(block.getArray(), view.getArray());
+        assertEquals(block.toString(), view.toString());
+
+        // Operations read views directly and give the same results as on copies
+        Matrix other = Matrix.instanceOfRandom(5L, block);
+        assertEquals(block.add(other), view.add(other));
+        assertEquals(other.add(block, block), other.add(view, view));
+        assertEquals(block.multiply(2), view.multiply(2));
+        assertEquals(block.transpose(), view.transpose());
+        assertEquals(block.sum(), view.sum());
+        assertEquals(block.sum(0), view.sum(0));
+        assertEquals(block.sum(1), view.sum(1));
+        assertEquals(block.getDiagonal(), view.getDiagonal());
+        assertEquals(Matrix.prod(block.transpose(), block), Matrix.prod(view.transpose(), view));
+        assertEquals(Matrix.prod(block, block.transpose()), Matrix.prod(view, block.transpose()));
+        assertEquals(Matrix.horizontalConcatenate(block, other), Matrix.horizontalConcatenate(view, other));
+        assertEquals(Matrix.verticalConcatenate(other, block), Matrix.verticalConcatenate(other, view));
+        for (int rowIndex = 0; rowIndex < block.getNumRows(); rowIndex++) {
+            assertEquals(block.getRow(rowIndex), view.getRow(rowIndex));
+            assertEquals(block.getRow(rowIndex), view.getRowView(rowIndex));
+        }
+        for (int colIndex = 0; colIndex < block.getNumCols(); colIndex++) {
+            assertEquals(block.getCol(colIndex), view.getCol(colIndex));
+            assertEquals(block.getCol(colIndex), view.getColView(colIndex));
+        }
+        DoubleBuffer buffer = view.getBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(block.getNumRows() * block.getNumCols(), buffer.remaining());
+        assertEquals(block.get(0, 0), buffer.get(0));
+
+        // Writes through a view are seen by its parent and the other way around
+        Matrix expected = matrix.copy();
+        view.multiplyToThis(-1).addToThis(other).setToThis(0, 0, 42);
+        for (int rowIndex = 0; rowIndex < block.getNumRows(); rowIndex++) {
+            for (int colIndex = 0; colIndex < block.getNumCols(); colIndex++) {
+                double value = colIndex == 0 && rowIndex == 0 ? 42 :
+                        -block.get(rowIndex, colIndex) + other.get(rowIndex, colIndex);
+                expected.setToThis(rowStartIndex + rowIndex, colStartIndex + colIndex, value);
+            }
+        }
+        assertEquals(expected, matrix);
+        matrix.setToThis(rowStartIndex, colStartIndex, 7);
+        assertEquals(7, view.get(0, 0));
+        Matrix.prodInto(view, Matrix.ofOnes(block.getNumRows(), 1), Matrix.ofOnes(1, block.getNumCols()));
+        assertEquals(Matrix.ofOnes(block), matrix.getBlock(rowStartIndex, rowEndIndex, colStartIndex, colEndIndex));
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> viewOverlapExceptionArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 4, 5))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 40, 30))
+    );
+    @ParameterizedTest
+    @VariableSource("viewOverlapExceptionArguments")
+    public void testViewOverlapException(Matrix matrix) {
+        String expected = "'destination' cannot overlap any of the input matrices";
+        Matrix top = matrix.getBlockView(0, 1, 0, matrix.getNumCols() - 1);
+        Matrix shifted = matrix.getBlockView(1, 2, 0, matrix.getNumCols() - 1);
+        Matrix bottom = matrix.getBlockView(2, 3, 0, matrix.getNumCols() - 1);
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, () -> top.addInto(shifted, bottom));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class, () -> top.copyInto(shifted));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> Matrix.prodInto(matrix.getBlockView(0, 1, 0, 1), matrix.getBlockView(1, 2, 1, 2),
+                        Matrix.ofOnes(2)));
+        assertEquals(expected, thrown.getMessage());
+
+        // Disjoint views of the same matrix may be combined freely
+        Matrix expectedTop = top.add(bottom);
+        assertEquals(expectedTop, top.addToThis(bottom));
+        assertEquals(expectedTop, matrix.getBlock(0, 1, 0, matrix.getNumCols() - 1));
+        assertSame(bottom, top.copyInto(bottom));
+        assertEquals(top, bottom);
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> reshapeViewExceptionArguments = Stream.of(
+            Arguments.of(Matrix.ofOnes(2, 3), 4, 2,
+                    "'numRows' * 'numCols' (8) does not match the length of the matrix (6)")
+            , Arguments.of(Matrix.ofOnes(2, 3), 0, 6,
+                    "'numRows' * 'numCols' (0) does not match the length of the matrix (6)")
+            , Arguments.of(Matrix.ofOnes(4, 4).getBlockView(0, 1, 0, 2), 3, 2,
+                    "Only a contiguous matrix can be reshaped without copying")
+    );
+    @ParameterizedTest
+    @VariableSource("reshapeViewExceptionArguments")
+    public void testReshapeViewException(Matrix matrix, int numRows, int numCols, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> matrix.reshapeView(numRows, numCols));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> reshapeViewArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 2, 3), 3, 2)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 4, 6).getBlockView(1, 2, 0, 5), 3, 4)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 4, 6).getRowView(3), 6, 1)
+    );
+    @ParameterizedTest
+    @VariableSource("reshapeViewArguments")
+    public void testReshapeView(Matrix matrix, int numRows, int numCols) {
+        Matrix view = matrix.reshapeView(numRows, numCols);
+        assertEquals(matrix.reshape(numRows, numCols), view);
+        view.setToThis(numRows - 1, numCols - 1, 42);
+        assertEquals(42, matrix.get(matrix.getNumRows() - 1, matrix.getNumCols() - 1));
+    }
+
 }
\ No newline at end of file
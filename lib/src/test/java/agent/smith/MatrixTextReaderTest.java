@@ -0,0 +1,146 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class MatrixTextReaderTest {
+
+    @TempDir
+    Path directory;
+
+    private Path write(String text) throws IOException {
+        return Files.write(this.directory.resolve("matrix.csv"), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    @SuppressWarnings("unused")
+    static Stream<Arguments> readExceptionArguments = Stream.of(
+            Arguments.of("1,2\n3,4,5\n", ',', 0, "Row 1 has 3 columns vs 2 in the first row")
+            , Arguments.of("1,2\n3\n", ',', 0, "Row 1 has 1 columns vs 2 in the first row")
+            , Arguments.of("1\t2\n3\tx\n", '\t', 0, "Invalid number 'x' in row 1")
+            , Arguments.of("1,2\n3,1e\n", ',', 0, "Invalid number '1e' in row 1")
+            , Arguments.of("a,b\n", ',', 1, "File has no rows")
+            , Arguments.of("\n\r\n\n", ',', 0, "File has no rows")
+            , Arguments.of("", ',', 0, "File has no rows")
+            , Arguments.of("1,2\n", '.', 0, "Invalid delimiter '.'")
+            , Arguments.of("1,2\n", '7', 0, "Invalid delimiter '7'")
+            , Arguments.of("1,2\n", ',', -1, "'numHeaderLines' (-1) cannot be negative")
+    );
+    @ParameterizedTest
+    @VariableSource("readExceptionArguments")
+    public void testReadException(String text, char delimiter, int numHeaderLines, String expected)
+            throws IOException {
+        Path path = this.write(text);
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                () -> MatrixTextReader.read(ForkJoinPool.commonPool(), path, delimiter, numHeaderLines, 4));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> readNullExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> MatrixTextReader.read(null), "'path' cannot be null")
+            , Arguments.of((Executable) () -> MatrixTextReader.read(null, Paths.get("matrix.csv"), ',', 0),
+                    "'pool' cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("readNullExceptionArguments")
+    public void testReadNullException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // A bad row in one of many chunks parsed in parallel fails the read only once every other chunk is done with, as
+    // the chunks are unmapped straight after
+    @SuppressWarnings("unused")
+    static Stream<Arguments> readParallelExceptionArguments = Stream.of(
+            Arguments.of(10, "1,2,3", "Row 10 has 3 columns vs 2 in the first row")
+            , Arguments.of(1500, "1,x", "Invalid number 'x' in row 1500")
+            , Arguments.of(2999, "1", "Row 2999 has 1 columns vs 2 in the first row")
+    );
+    @ParameterizedTest
+    @VariableSource("readParallelExceptionArguments")
+    public void testReadParallelException(int badRowIndex, String badRow, String expected) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int rowIndex = 0; rowIndex < 3000; rowIndex++) {
+            text.append(rowIndex == badRowIndex ? badRow : rowIndex + ",0.5").append('\n');
+        }
+        Path path = this.write(text.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int repetition = 0; repetition < 20; repetition++) {
+                Exception thrown = assertThrows(MatrixIllegalArgumentException.class,
+                        () -> MatrixTextReader.read(pool, path, ',', 0, 64));
+                assertEquals(expected, thrown.getMessage());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // read
+    @SuppressWarnings("unused")
+    static Stream<Arguments> readArguments = Stream.of(
+            Arguments.of("1,2\n3,4\n", ',', 0, Matrix.from(new double[][]{{1, 2}, {3, 4}}))
+            , Arguments.of("1,2\n3,4", ',', 0, Matrix.from(new double[][]{{1, 2}, {3, 4}}))
+            , Arguments.of("a,b\n# units\n1,2\r\n\r\n3,4\r\n", ',', 2, Matrix.from(new double[][]{{1, 2}, {3, 4}}))
+            , Arguments.of("\n-1.5\t 2e3 \n\n\n\"0.25\"\t-0\n", '\t', 0,
+                    Matrix.from(new double[][]{{-1.5, 2000}, {0.25, -0.0}}))
+            , Arguments.of("1;;NaN;-Infinity;0x1p4\n", ';', 0,
+                    Matrix.from(new double[][]{{1, Double.NaN, Double.NaN, Double.NEGATIVE_INFINITY, 16}}))
+            , Arguments.of("123456789012345678901234567890|4.9E-324|1.7976931348623157E308\n", '|', 0,
+                    Matrix.from(new double[][]{{1.2345678901234568E29, Double.MIN_VALUE, Double.MAX_VALUE}}))
+            , Arguments.of("7\n8\n9\n10\n11\n", ' ', 0, Matrix.from(new double[][]{{7}, {8}, {9}, {10}, {11}}))
+    );
+    @ParameterizedTest
+    @VariableSource("readArguments")
+    public void testRead(String text, char delimiter, int numHeaderLines, Matrix expected) throws IOException {
+        Path path = this.write(text);
+        // Chunks of a few bytes, so that lines cross the nominal chunk boundaries
+        for (int chunkLength : new int[]{1, 3, 8, MatrixTextReader.CHUNK_LENGTH}) {
+            Matrix matrix = MatrixTextReader.read(ForkJoinPool.commonPool(), path, delimiter, numHeaderLines,
+                    chunkLength);
+            assertEquals(expected, matrix);
+            for (int index = 0; index < expected.getArray().length; index++) {
+                assertEquals(Double.doubleToLongBits(expected.getArray()[index]),
+                        Double.doubleToLongBits(matrix.getArray()[index]));
+            }
+        }
+    }
+
+    // Written by MatrixTextWriter and read back unchanged, in one chunk and in many, on one thread and on several
+    @Test
+    public void testReadRoundTrip() throws IOException {
+        Matrix matrix = Matrix.instanceOfRandom(1L, 500, 40).addToThis(-0.5).multiplyToThis(1e3);
+        matrix.setToThis(0, 0, 1e-310).setToThis(1, 1, -7).setToThis(2, 2, 1e22);
+        Path path = this.directory.resolve("matrix.tsv");
+        try (MatrixTextWriter writer = MatrixTextWriter.of(Files.newOutputStream(path), "\t", "\r\n")) {
+            writer.writeRows(matrix);
+        }
+
+        assertEquals(matrix, MatrixTextReader.read(path, '\t'));
+        assertEquals(matrix, MatrixTextReader.read(new ForkJoinPool(1), path, '\t', 0));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(matrix, MatrixTextReader.read(pool, path, '\t', 0, 1000));
+            assertEquals(matrix.getBlock(100, 499, 0, 39), MatrixTextReader.read(pool, path, '\t', 100, 777));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
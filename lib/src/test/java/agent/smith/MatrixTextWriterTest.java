@@ -0,0 +1,175 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class MatrixTextWriterTest {
+
+    @TempDir
+    Path directory;
+
+    private static Matrix parse(String text, String colDelimiter, String rowDelimiter) {
+        String[] rows = text.split(rowDelimiter);
+        double[][] nestedArray = new double[rows.length][];
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+            nestedArray[rowIndex] = Arrays.stream(rows[rowIndex].split(colDelimiter))
+                    .mapToDouble(Double::parseDouble)
+                    .toArray();
+        }
+        return Matrix.from(nestedArray);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    @SuppressWarnings("unused")
+    static Stream<Arguments> matrixTextWriterExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> MatrixTextWriter.of((Appendable) null), "'appendable' cannot be null")
+            , Arguments.of((Executable) () -> MatrixTextWriter.of((ByteArrayOutputStream) null),
+                    "'outputStream' cannot be null")
+            , Arguments.of((Executable) () -> MatrixTextWriter.of(new StringBuilder(), null, "\n"),
+                    "'colDelimiter' cannot be null")
+            , Arguments.of((Executable) () -> MatrixTextWriter.of(new StringBuilder(), ",", null),
+                    "'rowDelimiter' cannot be null")
+            , Arguments.of((Executable) () -> MatrixTextWriter.of(new StringBuilder()).writeRows((Matrix) null),
+                    "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MatrixTextWriter.of(new StringBuilder()).writeRows((ChunkedMatrix) null),
+                    "'matrix' cannot be null")
+            , Arguments.of((Executable) () -> MatrixTextWriter.write(null, Matrix.ofOnes(1)), "'path' cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("matrixTextWriterExceptionArguments")
+    public void testMatrixTextWriterException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @Test
+    public void testClosedException() throws IOException {
+        MatrixTextWriter writer = MatrixTextWriter.of(new StringBuilder());
+        writer.close();
+        Exception thrown = assertThrows(IllegalStateException.class, () -> writer.writeRows(Matrix.ofOnes(1)));
+        assertEquals("Writer has been closed", thrown.getMessage());
+        thrown = assertThrows(IllegalStateException.class, writer::flush);
+        assertEquals("Writer has been closed", thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // toString
+    @SuppressWarnings("unused")
+    static Stream<Arguments> toStringArguments = Stream.of(
+            Arguments.of(0.0, "0.0")
+            , Arguments.of(-0.0, "-0.0")
+            , Arguments.of(1.0, "1.0")
+            , Arguments.of(-1234567.0, "-1234567.0")
+            , Arguments.of(1.0E7, "1.0E7")
+            , Arguments.of(12345678.0, "1.2345678E7")
+            , Arguments.of(0.001, "0.001")
+            , Arguments.of(9.99E-4, "9.99E-4")
+            , Arguments.of(0.1 + 0.2, "0.30000000000000004")
+            , Arguments.of(2.0E23, "2.0E23")
+            , Arguments.of(1.0E23, "1.0E23")
+            , Arguments.of(9007199254740991.0, "9.007199254740991E15")
+            , Arguments.of(Double.MAX_VALUE, "1.7976931348623157E308")
+            , Arguments.of(-Double.MIN_NORMAL, "-2.2250738585072014E-308")
+            , Arguments.of(Double.MIN_VALUE, "4.9E-324")
+            , Arguments.of(2 * Double.MIN_VALUE, "9.9E-324")
+            , Arguments.of(Double.NaN, "NaN")
+            , Arguments.of(Double.POSITIVE_INFINITY, "Infinity")
+            , Arguments.of(Double.NEGATIVE_INFINITY, "-Infinity")
+    );
+    @ParameterizedTest
+    @VariableSource("toStringArguments")
+    public void testToString(double value, String expected) {
+        assertEquals(expected, MatrixTextWriter.toString(value));
+    }
+
+    // Shortest decimals that parse back to the same double, never longer than Double.toString, which is not always
+    // the shortest before Java 19
+    @Test
+    public void testToStringRoundTrip() {
+        Random random = new Random(1L);
+        for (int index = 0; index < 200_000; index++) {
+            double value = index % 2 == 0
+                    ? Double.longBitsToDouble(random.nextLong())
+                    : Math.scalb(random.nextDouble(), random.nextInt(2100) - 1074);
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            String string = MatrixTextWriter.toString(value);
+            assertEquals(value, Double.parseDouble(string), string);
+            assertTrue(string.length() <= Double.toString(value).length(), string);
+        }
+        for (int exponent = -1074; exponent <= 1023; exponent++) {
+            double value = Math.scalb(1.0, exponent);
+            assertEquals(value, Double.parseDouble(MatrixTextWriter.toString(value)));
+            assertEquals(Math.nextUp(value), Double.parseDouble(MatrixTextWriter.toString(Math.nextUp(value))));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // writeRows
+    @SuppressWarnings("unused")
+    static Stream<Arguments> writeRowsArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{1, 2.5}, {-3, 1e-7}}), ",", "\n", "1.0,2.5\n-3.0,1.0E-7\n")
+            , Arguments.of(Matrix.from(new double[][]{{1, 2}, {3, 4}}).transposeView(), "\t", "\r\n",
+                    "1.0\t3.0\r\n2.0\t4.0\r\n")
+            , Arguments.of(Matrix.of(0.5, 1, 3), " ; ", "|", "0.5 ; 0.5 ; 0.5|")
+            , Arguments.of(Matrix.of(0.5, 2, 1), "\u2192", "\u00b6", "0.5\u00b60.5\u00b6")
+    );
+    @ParameterizedTest
+    @VariableSource("writeRowsArguments")
+    public void testWriteRows(Matrix matrix, String colDelimiter, String rowDelimiter, String expected)
+            throws IOException {
+
+        StringWriter stringWriter = new StringWriter();
+        try (MatrixTextWriter writer = MatrixTextWriter.of(stringWriter, colDelimiter, rowDelimiter)) {
+            writer.writeRows(matrix);
+        }
+        assertEquals(expected, stringWriter.toString());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (MatrixTextWriter writer = MatrixTextWriter.of(outputStream, colDelimiter, rowDelimiter)) {
+            writer.writeRows(ChunkedMatrix.of(matrix, 1));
+        }
+        assertEquals(expected, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    // Several times the size of the buffer, written in pieces
+    @Test
+    public void testWriteRowsLarge() throws IOException {
+        Matrix matrix = Matrix.instanceOfRandom(1L, 1000, 30).multiplyToThis(1e5);
+        StringBuilder builder = new StringBuilder();
+        try (MatrixTextWriter writer = MatrixTextWriter.of(builder, "\t", "\n")) {
+            writer.writeRows(matrix.getBlockView(0, 499, 0, 29));
+            writer.flush();
+            writer.writeRows(ChunkedMatrix.of(matrix.getBlock(500, 999, 0, 29), 7));
+        }
+        assertTrue(builder.length() > 4 * MatrixTextWriter.BUFFER_LENGTH);
+        assertEquals(matrix, MatrixTextWriterTest.parse(builder.toString(), "\t", "\n"));
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        Matrix matrix = Matrix.instanceOfRandom(1L, 20, 10);
+        Path path = this.directory.resolve("matrix.csv");
+        MatrixTextWriter.write(path, matrix);
+        assertEquals(matrix, MatrixTextWriterTest.parse(new String(Files.readAllBytes(path),
+                StandardCharsets.UTF_8), ",", "\n"));
+    }
+
+}
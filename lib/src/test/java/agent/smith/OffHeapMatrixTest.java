@@ -0,0 +1,149 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class OffHeapMatrixTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final OffHeapMatrix MATRIX = OffHeapMatrix.of(Matrix.ofOnes(2, 3));
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> offHeapMatrixExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> OffHeapMatrix.create(0, 3), "'numRows' (0) has to be a positive integer")
+            , Arguments.of((Executable) () -> OffHeapMatrix.create(3, -1), "'numCols' (-1) has to be a positive integer")
+            , Arguments.of((Executable) () -> OffHeapMatrix.create(null, 3, 3), "'arena' cannot be null")
+            , Arguments.of((Executable) () -> OffHeapMatrix.of(null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.get(2, 0), "'rowIndex' = (2) has to be between 0 and 1")
+            , Arguments.of((Executable) () -> MATRIX.setToThis(0, 3, 1), "'colIndex' = (3) has to be between 0 and 2")
+            , Arguments.of((Executable) () -> MATRIX.getBlock(0, 2, 0, 1), "Invalid indexes")
+            , Arguments.of((Executable) () -> MATRIX.add(MATRIX.transpose()), "Dimension mismatch for adding matrices")
+            , Arguments.of((Executable) () -> MATRIX.addToThis((OffHeapMatrix) null), "Input matrix cannot be null")
+            , Arguments.of((Executable) OffHeapMatrix::prod, "Need at least one matrix")
+            , Arguments.of((Executable) () -> OffHeapMatrix.prod(MATRIX, MATRIX),
+                    "Dimension mismatch for taking product of matrices")
+            , Arguments.of((Executable) () -> OffHeapMatrix.prod((ForkJoinPool) null, MATRIX), "'pool' cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("offHeapMatrixExceptionArguments")
+    public void testOffHeapMatrixException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Operations
+    @SuppressWarnings("unused")
+    static Stream<Arguments> operationsArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1), OffHeapMatrix.CHUNK_SHIFT)
+            , Arguments.of(Matrix.instanceOfRandom(2L, 3, 5), OffHeapMatrix.CHUNK_SHIFT)
+            , Arguments.of(Matrix.instanceOfRandom(3L, 3, 5), 2)
+            , Arguments.of(Matrix.instanceOfRandom(4L, 300, 270), 10)
+            , Arguments.of(Matrix.instanceOfRandom(5L, 320, 300).getBlockView(7, 266, 11, 290).transposeView(), 12)
+    );
+    @ParameterizedTest
+    @VariableSource("operationsArguments")
+    public void testOperations(Matrix matrix, int chunkShift) {
+
+        Matrix other = Matrix.instanceOfRandom(10L, matrix);
+        Matrix right = Matrix.instanceOfRandom(11L, matrix.getNumCols(), 7);
+        int lastRow = matrix.getNumRows() - 1;
+        int lastCol = matrix.getNumCols() - 1;
+
+        try (OffHeapArena arena = new OffHeapArena()) {
+
+            OffHeapMatrix offHeap = OffHeapMatrix.of(arena, matrix, chunkShift);
+            OffHeapMatrix offHeapOther = OffHeapMatrix.of(arena, other, chunkShift);
+            OffHeapMatrix offHeapRight = OffHeapMatrix.of(arena, right, chunkShift);
+
+            assertEquals(matrix.getNumRows(), offHeap.getNumRows());
+            assertEquals(matrix.getNumCols(), offHeap.getNumCols());
+            assertEquals((long) matrix.getNumRows() * matrix.getNumCols(), offHeap.getLength());
+            assertEquals(matrix, offHeap.toMatrix());
+            assertEquals(matrix.get(lastRow, lastCol / 2), offHeap.get(lastRow, lastCol / 2));
+            assertEquals(matrix, offHeap.copy().toMatrix());
+
+            assertEquals(matrix.add(2.5), offHeap.add(2.5).toMatrix());
+            assertEquals(matrix.multiply(-3), offHeap.multiply(-3).toMatrix());
+            assertEquals(matrix.add(other, matrix), offHeap.add(offHeapOther, offHeap).toMatrix());
+            assertEquals(matrix.transpose(), offHeap.transpose().toMatrix());
+            assertEquals(matrix.getBlock(lastRow / 2, lastRow, 0, lastCol / 3),
+                    offHeap.getBlock(lastRow / 2, lastRow, 0, lastCol / 3).toMatrix());
+            assertEquals(matrix.sum(), offHeap.sum(), 1e-9);
+            assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(matrix, right),
+                    OffHeapMatrix.prod(offHeap, offHeapRight).toMatrix(), 1e-10));
+            assertTrue(Matrix.equalsWithinTolerance(Matrix.prod(matrix.transpose(), matrix, right),
+                    OffHeapMatrix.prod(offHeap.transpose(), offHeap, offHeapRight).toMatrix(), 1e-9));
+
+            assertSame(offHeap, offHeap.setToThis(lastRow, 0, 42));
+            assertEquals(matrix.set(lastRow, 0, 42), offHeap.toMatrix());
+            assertSame(offHeap, offHeap.addToThis(offHeapOther).multiplyToThis(2).addToThis(1));
+            assertEquals(matrix.set(lastRow, 0, 42).add(other).multiply(2).add(1), offHeap.toMatrix());
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // close
+    @SuppressWarnings("unused")
+    static Stream<Arguments> closeArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 1, 1))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 40, 30))
+    );
+    @ParameterizedTest
+    @VariableSource("closeArguments")
+    public void testClose(Matrix matrix) {
+
+        OffHeapMatrix offHeap = OffHeapMatrix.of(matrix);
+        offHeap.close();
+        offHeap.close();
+        assertTrue(offHeap.isClosed());
+        Exception thrown = assertThrows(IllegalStateException.class, () -> offHeap.get(0, 0));
+        assertEquals("Matrix has been closed", thrown.getMessage());
+        thrown = assertThrows(IllegalStateException.class, offHeap::toMatrix);
+        assertEquals("Matrix has been closed", thrown.getMessage());
+
+        OffHeapArena arena = new OffHeapArena();
+        OffHeapMatrix inArena = OffHeapMatrix.of(arena, matrix);
+        ChunkedMatrix result = inArena.transpose().multiply(2);
+        ChunkedMatrix outside = OffHeapMatrix.create(matrix.getNumRows(), matrix.getNumCols()).addToThis(inArena);
+        inArena.close();
+        assertFalse(result.isClosed());
+        arena.close();
+        assertTrue(arena.isClosed());
+        assertTrue(result.isClosed());
+        assertFalse(outside.isClosed());
+        assertEquals(matrix, outside.toMatrix());
+        outside.close();
+
+        thrown = assertThrows(IllegalStateException.class, () -> OffHeapMatrix.create(arena, 2, 2));
+        assertEquals("Arena has been closed", thrown.getMessage());
+    }
+
+    // Matrices closed before their arena are no longer tracked by it
+    @Test
+    public void testCloseDeregisters() {
+        try (OffHeapArena arena = new OffHeapArena()) {
+            OffHeapMatrix matrix = OffHeapMatrix.of(arena, Matrix.instanceOfRandom(1L, 20, 30));
+            OffHeapMatrix other = OffHeapMatrix.of(arena, Matrix.instanceOfRandom(2L, 30, 10));
+            assertEquals(2, arena.getNumMatrices());
+            // The intermediate product is closed by prod itself
+            ChunkedMatrix result = OffHeapMatrix.prod(matrix, other, other.transpose());
+            assertEquals(4, arena.getNumMatrices());
+            other.close();
+            result.close();
+            assertEquals(2, arena.getNumMatrices());
+            matrix.close();
+            matrix.close();
+            assertEquals(1, arena.getNumMatrices());
+        }
+    }
+
+}
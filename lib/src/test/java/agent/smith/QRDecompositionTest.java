@@ -0,0 +1,74 @@
+package agent.smith;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.stream.Stream;
+
+public class QRDecompositionTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // applyQ / applyQTranspose
+    @SuppressWarnings("unused")
+    static Stream<Arguments> applyQExceptionArguments = Stream.of(
+            Arguments.of(Matrix.ofOnes(3, 2), null, "Input matrix cannot be null")
+            , Arguments.of(Matrix.ofOnes(3, 2), Matrix.ofOnes(2, 3),
+                    "Dimension mismatch for 'numRows': 'Q' = (3) vs 'matrix' = (2)")
+    );
+    @ParameterizedTest
+    @VariableSource("applyQExceptionArguments")
+    public void testApplyQException(Matrix matrix, Matrix other, String expected) {
+        QRDecomposition qr = matrix.decomposeQR();
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, () -> qr.applyQ(other));
+        assertEquals(expected, thrown.getMessage());
+        thrown = assertThrows(MatrixIllegalArgumentException.class, () -> qr.applyQTranspose(other));
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> applyQArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(1L, 4), Matrix.instanceOfRandom(2, 4, 3))
+            , Arguments.of(Matrix.instanceOfRandom(3, 9, 4), Matrix.instanceOfRandom(4, 9, 2))
+            , Arguments.of(Matrix.instanceOfRandom(5, 4, 9), Matrix.instanceOfRandom(6, 4, 5))
+            , Arguments.of(Matrix.instanceOfRandom(7, 130, 90), Matrix.instanceOfRandom(8, 130, 40))
+    );
+    @ParameterizedTest
+    @VariableSource("applyQArguments")
+    public void testApplyQ(Matrix matrix, Matrix other) {
+        QRDecomposition qr = matrix.decomposeQR();
+        // Q^T * A = [R; 0]
+        Matrix qtA = qr.applyQTranspose(matrix);
+        Matrix R = qr.getR();
+        assertTrue(Matrix.equalsWithinTolerance(R, qtA.getBlock(0, R.getNumRows() - 1, 0, R.getNumCols() - 1),
+                1e-12));
+        // Q * Q^T * B = B
+        assertTrue(Matrix.equalsWithinTolerance(other, qr.applyQ(qr.applyQTranspose(other)), 1e-12));
+        // Thin Q agrees with the implicit one on the leading columns
+        Matrix Q = qr.getQ();
+        Matrix qtB = qr.applyQTranspose(other);
+        assertTrue(Matrix.equalsWithinTolerance(Q.transpose().multiply(other),
+                qtB.getBlock(0, Q.getNumCols() - 1, 0, other.getNumCols() - 1), 1e-12));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // decomposeQR on badly scaled matrices, whose squares overflow or underflow
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeQRScaledArguments = Stream.of(1e300, 1e200, 1e160, 1e-160, 1e-200, 1e-300)
+            .map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("decomposeQRScaledArguments")
+    public void testDecomposeQRScaled(double scale) {
+        Matrix base = Matrix.instanceOfRandom(9L, 60, 30);
+        Matrix matrix = base.multiply(scale);
+        QRDecomposition qr = matrix.decomposeQR();
+        Matrix Q = qr.getQ();
+        Matrix R = qr.getR();
+        assertTrue(matrix.maxDifference(Q.multiply(R)) <= 1e-13 * scale);
+        assertTrue(Q.transpose().multiply(Q).maxDifference(Matrix.instanceOfEye(30)) <= 1e-13);
+        // The same factorization as the unscaled matrix, R times the scale
+        assertTrue(R.maxDifference(base.decomposeQR().getR().multiply(scale)) <= 1e-13 * scale);
+    }
+
+}
@@ -0,0 +1,174 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class SingularValueDecompositionTest {
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final Matrix MATRIX = Matrix.ofOnes(3, 2);
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> singularValueDecompositionExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> MATRIX.decomposeSVD(null), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.singularValues(null), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.decomposeQR(null), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> Matrix.from(new double[][]{{1, 0}, {Double.NaN, 1}}).decomposeSVD(),
+                    "Element (1, 0) is not finite")
+            , Arguments.of((Executable) () -> Matrix.from(new double[][]{{1, Double.NEGATIVE_INFINITY, 0}})
+                    .singularValues(), "Element (0, 1) is not finite")
+    );
+    @ParameterizedTest
+    @VariableSource("singularValueDecompositionExceptionArguments")
+    public void testSingularValueDecompositionException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // A = U * diag(sigma) * V^T, tall, wide, square, rank-deficient and badly scaled
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeSVDArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{-3}}))
+            , Arguments.of(Matrix.instanceOfRandom(1L, 1, 6))
+            , Arguments.of(Matrix.instanceOfRandom(2L, 6, 1))
+            , Arguments.of(Matrix.instanceOfRandom(3L, 7))
+            , Arguments.of(Matrix.instanceOfRandom(4L, 300, 41))
+            , Arguments.of(Matrix.instanceOfRandom(5L, 41, 130))
+            , Arguments.of(Matrix.instanceOfRandom(6L, 150, 90).transposeView())
+            , Arguments.of(Matrix.instanceOfRandom(7L, 90, 3).multiply(Matrix.instanceOfRandom(8L, 3, 60)))
+            , Arguments.of(Matrix.ofZeros(20, 6))
+            , Arguments.of(Matrix.ofOnes(30, 12))
+            , Arguments.of(Matrix.instanceOfRandom(9L, 40, 30).multiplyToThis(1e300))
+            , Arguments.of(Matrix.instanceOfRandom(10L, 30, 40).multiplyToThis(1e-300))
+    );
+    @ParameterizedTest
+    @VariableSource("decomposeSVDArguments")
+    public void testDecomposeSVD(Matrix matrix) {
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+        int k = Math.min(numRows, numCols);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SingularValueDecomposition svd = matrix.decomposeSVD(pool);
+            Matrix U = svd.getU();
+            Matrix V = svd.getV();
+            Matrix sigma = svd.getSingularValues();
+            assertEquals(numRows, svd.getNumRows());
+            assertEquals(numCols, svd.getNumCols());
+            assertEquals(numRows, U.getNumRows());
+            assertEquals(k, U.getNumCols());
+            assertEquals(numCols, V.getNumRows());
+            assertEquals(k, V.getNumCols());
+            assertEquals(k, sigma.getNumRows());
+
+            for (int index = 0; index < k; index++) {
+                assertTrue(sigma.get(index, 0) >= 0);
+                if (index > 0) {
+                    assertTrue(sigma.get(index, 0) <= sigma.get(index - 1, 0));
+                }
+            }
+            assertTrue(U.transposeView().multiply(U).maxDifference(Matrix.instanceOfEye(k)) <= 1e-12);
+            assertTrue(V.transposeView().multiply(V).maxDifference(Matrix.instanceOfEye(k)) <= 1e-12);
+
+            Matrix US = U.copy();
+            for (int index = 0; index < k; index++) {
+                US.getColView(index).multiplyToThis(sigma.get(index, 0));
+            }
+            // maxDifference is never below Double.MIN_VALUE, even for the zero matrix
+            double scale = Math.max(sigma.get(0, 0), Double.MIN_NORMAL);
+            assertTrue(matrix.maxDifference(US.multiply(V.transposeView())) <= 1e-13 * scale);
+            assertTrue(matrix.singularValues(pool).maxDifference(sigma) <= 1e-13 * scale);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Known singular values
+    @SuppressWarnings("unused")
+    static Stream<Arguments> singularValuesArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{3, 0}, {0, -4}}), new double[]{4, 3})
+            , Arguments.of(Matrix.from(new double[][]{{3, 4}}), new double[]{5})
+            , Arguments.of(Matrix.from(new double[][]{{1, 1}, {1, 1}, {1, 1}}), new double[]{Math.sqrt(6), 0})
+            , Arguments.of(Matrix.from(new double[][]{{2, 0, 0}, {0, 0, 5}, {0, 1, 0}, {0, 0, 0}}),
+                    new double[]{5, 2, 1})
+            , Arguments.of(Matrix.instanceOfEye(65).multiplyToThis(-2), null)
+    );
+    @ParameterizedTest
+    @VariableSource("singularValuesArguments")
+    public void testSingularValues(Matrix matrix, double[] expected) {
+        if (expected == null) {
+            expected = new double[matrix.getNumRows()];
+            Arrays.fill(expected, 2);
+        }
+        Matrix expectedMatrix = Matrix.create(expected, expected.length, 1);
+        assertTrue(Matrix.equalsWithinTolerance(expectedMatrix, matrix.singularValues(), 1e-14));
+        assertTrue(Matrix.equalsWithinTolerance(expectedMatrix, matrix.decomposeSVD().getSingularValues(), 1e-14));
+        assertTrue(Matrix.equalsWithinTolerance(expectedMatrix, matrix.transpose().singularValues(), 1e-14));
+    }
+
+    // The singular values of a symmetric matrix are the absolute values of its eigenvalues
+    @Test
+    public void testSingularValuesSymmetric() {
+        Matrix matrix = Matrix.instanceOfRandom(11L, 120);
+        matrix = matrix.add(matrix.transposeView());
+        double[] expected = matrix.eigenvaluesSymmetric().getArray();
+        for (int index = 0; index < expected.length; index++) {
+            expected[index] = -Math.abs(expected[index]);
+        }
+        Arrays.sort(expected);
+        for (int index = 0; index < expected.length; index++) {
+            expected[index] = -expected[index];
+        }
+        assertTrue(Matrix.equalsWithinTolerance(Matrix.create(expected, expected.length, 1), matrix.singularValues(),
+                1e-12));
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // pseudoInverse / conditionNumber
+    @SuppressWarnings("unused")
+    static Stream<Arguments> pseudoInverseArguments = Stream.of(
+            Arguments.of(Matrix.instanceOfRandom(12L, 60, 25))
+            , Arguments.of(Matrix.instanceOfRandom(13L, 25, 60))
+            , Arguments.of(Matrix.instanceOfRandom(14L, 50, 4).multiply(Matrix.instanceOfRandom(15L, 4, 30)))
+    );
+    @ParameterizedTest
+    @VariableSource("pseudoInverseArguments")
+    public void testPseudoInverse(Matrix matrix) {
+        Matrix pseudoInverse = matrix.decomposeSVD().pseudoInverse();
+        assertEquals(matrix.getNumCols(), pseudoInverse.getNumRows());
+        assertEquals(matrix.getNumRows(), pseudoInverse.getNumCols());
+        // The Moore-Penrose conditions
+        Matrix product = matrix.multiply(pseudoInverse);
+        Matrix otherProduct = pseudoInverse.multiply(matrix);
+        assertTrue(Matrix.equalsWithinTolerance(matrix, product.multiply(matrix), 1e-11));
+        assertTrue(Matrix.equalsWithinTolerance(pseudoInverse, otherProduct.multiply(pseudoInverse), 1e-11));
+        assertTrue(Matrix.equalsWithinTolerance(product, product.transpose(), 1e-11));
+        assertTrue(Matrix.equalsWithinTolerance(otherProduct, otherProduct.transpose(), 1e-11));
+    }
+
+    @Test
+    public void testConditionNumber() {
+        Matrix matrix = Matrix.from(new double[][]{{1, 0, 0}, {0, 1e-3, 0}, {0, 0, -10}});
+        assertEquals(1e4, matrix.decomposeSVD().conditionNumber(), 1e-8);
+        assertEquals(Double.POSITIVE_INFINITY, Matrix.ofOnes(4, 3).decomposeSVD().conditionNumber());
+        assertEquals(Double.POSITIVE_INFINITY, Matrix.ofZeros(5, 3).decomposeSVD().conditionNumber());
+        assertEquals(Double.POSITIVE_INFINITY, Matrix.ofZeros(1).decomposeSVD().conditionNumber());
+
+        Matrix square = Matrix.instanceOfRandom(16L, 40);
+        Matrix inverse = square.inverse();
+        double expected = square.singularValues().get(0, 0) * inverse.singularValues().get(0, 0);
+        assertEquals(expected, square.decomposeSVD().conditionNumber(), expected * 1e-10);
+    }
+
+}
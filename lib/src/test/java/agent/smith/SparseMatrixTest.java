@@ -0,0 +1,298 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class SparseMatrixTest {
+
+    // Dense matrix with about 'density' of its elements non-zero
+    private static Matrix sparseRandom(long seed, int numRows, int numCols, double density) {
+        Random random = new Random(seed);
+        Matrix matrix = Matrix.ofZeros(numRows, numCols);
+        for (int rowIndex = 0; rowIndex < numRows; rowIndex++) {
+            for (int colIndex = 0; colIndex < numCols; colIndex++) {
+                if (random.nextDouble() < density) {
+                    matrix.setToThis(rowIndex, colIndex, random.nextDouble() - 0.5);
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static SparseMatrix of(Matrix matrix, boolean byRow) {
+        return byRow ? CsrMatrix.of(matrix) : CscMatrix.of(matrix);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final CsrMatrix MATRIX = CsrMatrix.of(Matrix.from(new double[][]{{1, 0, 2}, {0, 0, 3}}));
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> sparseMatrixExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> CsrMatrix.of(null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> CsrMatrix.create(0, 3, new int[]{0}, new int[0], new double[0]),
+                    "'numRows' (0) has to be a positive integer")
+            , Arguments.of((Executable) () -> CscMatrix.fromTriplets(3, -1, new int[0], new int[0], new double[0]),
+                    "'numCols' (-1) has to be a positive integer")
+            , Arguments.of((Executable) () -> CsrMatrix.create(2, 3, null, new int[0], new double[0]),
+                    "'rowPointers', 'colIndexes' and 'values' cannot be null")
+            , Arguments.of((Executable) () -> CsrMatrix.create(2, 3, new int[]{0, 0}, new int[0], new double[0]),
+                    "'rowPointers' has length 2 instead of 3")
+            , Arguments.of((Executable) () -> CsrMatrix.create(2, 3, new int[]{1, 1, 1}, new int[1], new double[1]),
+                    "'rowPointers' has to start at 0")
+            , Arguments.of((Executable) () -> CscMatrix.create(2, 2, new int[]{0, 2, 1}, new int[1], new double[1]),
+                    "'colPointers' has to be non-decreasing")
+            , Arguments.of((Executable) () -> CsrMatrix.create(2, 3, new int[]{0, 1, 2}, new int[2], new double[1]),
+                    "'colIndexes' and 'values' have to have the length 2 given by the last of 'rowPointers'")
+            , Arguments.of((Executable) () -> CsrMatrix.create(2, 3, new int[]{0, 1, 2}, new int[]{0, 3},
+                    new double[2]), "'colIndexes' have to be increasing and between 0 and 2 in each row, not in row 1")
+            , Arguments.of((Executable) () -> CscMatrix.create(3, 1, new int[]{0, 2}, new int[]{1, 1},
+                    new double[2]),
+                    "'rowIndexes' have to be increasing and between 0 and 2 in each column, not in column 0")
+            , Arguments.of((Executable) () -> CsrMatrix.fromTriplets(2, 3, new int[1], null, new double[1]),
+                    "'rowIndexes', 'colIndexes' and 'values' cannot be null")
+            , Arguments.of((Executable) () -> CsrMatrix.fromTriplets(2, 3, new int[1], new int[2], new double[1]),
+                    "'rowIndexes' (1), 'colIndexes' (2) and 'values' (1) have to have the same length")
+            , Arguments.of((Executable) () -> CsrMatrix.fromTriplets(2, 3, new int[]{0, 1}, new int[]{2, 3},
+                    new double[2]), "Element 1 at (1, 3) is outside of a matrix of shape (2, 3)")
+            , Arguments.of((Executable) () -> MATRIX.get(2, 0), "'rowIndex' = (2) has to be between 0 and 1")
+            , Arguments.of((Executable) () -> MATRIX.getRow(-1), "'rowIndex' = (-1) has to be between 0 and 1")
+            , Arguments.of((Executable) () -> MATRIX.getCol(3), "'colIndex' = (3) has to be between 0 and 2")
+            , Arguments.of((Executable) () -> MATRIX.sum(2), "'axis' (2) has to be 0 or 1")
+            , Arguments.of((Executable) () -> MATRIX.add((SparseMatrix) null), "Input matrix cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.add(MATRIX.transpose()),
+                    "Dimension mismatch for adding matrices")
+            , Arguments.of((Executable) () -> MATRIX.add(Matrix.ofOnes(3, 2)),
+                    "Dimension mismatch for adding matrices")
+            , Arguments.of((Executable) () -> MATRIX.multiply(MATRIX),
+                    "Dimension mismatch for taking product of matrices")
+            , Arguments.of((Executable) () -> MATRIX.multiply(Matrix.ofOnes(2, 2)),
+                    "Dimension mismatch for taking product of matrices")
+            , Arguments.of((Executable) () -> MATRIX.multiplyLeft(Matrix.ofOnes(2, 3)),
+                    "Dimension mismatch for taking product of matrices")
+            , Arguments.of((Executable) () -> SparseMatrix.prod(null, MATRIX, Matrix.ofOnes(3, 1)),
+                    "'pool' cannot be null")
+            , Arguments.of((Executable) () -> SparseMatrix.prod(MATRIX, (SparseMatrix) null),
+                    "Input matrix cannot be null")
+    );
+    @ParameterizedTest
+    @VariableSource("sparseMatrixExceptionArguments")
+    public void testSparseMatrixException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Creation and conversion
+    @Test
+    public void testCreate() {
+        Matrix expected = Matrix.from(new double[][]{{1, 0, 2}, {0, 0, 0}, {0, 3, 0}});
+        int[] pointers = {0, 2, 2, 3};
+        int[] indexes = {0, 2, 1};
+        double[] values = {1, 2, 3};
+
+        CsrMatrix csr = CsrMatrix.create(3, 3, pointers, indexes, values);
+        values[0] = 7;
+        assertEquals(expected, csr.toMatrix());
+        assertEquals(3, csr.getNumNonZeros());
+        assertEquals(expected.transpose(), CscMatrix.create(3, 3, pointers, indexes, new double[]{1, 2, 3})
+                .toMatrix());
+        assertEquals(Matrix.ofZeros(2, 4), CsrMatrix.create(2, 4, new int[3], new int[0], new double[0])
+                .toMatrix());
+    }
+
+    @Test
+    public void testFromTriplets() {
+        int[] rowIndexes = {2, 0, 1, 2, 0, 1, 2};
+        int[] colIndexes = {1, 3, 0, 1, 3, 2, 0};
+        double[] values = {1, 2, 3, 4, 5, -6, 0};
+        Matrix expected = Matrix.from(new double[][]{{0, 0, 0, 7}, {3, 0, -6, 0}, {0, 5, 0, 0}});
+
+        CsrMatrix csr = CsrMatrix.fromTriplets(3, 4, rowIndexes, colIndexes, values);
+        CscMatrix csc = CscMatrix.fromTriplets(3, 4, rowIndexes, colIndexes, values);
+        assertEquals(expected, csr.toMatrix());
+        assertEquals(expected, csc.toMatrix());
+        assertEquals(4, csr.getNumNonZeros());
+        assertEquals(4, csc.getNumNonZeros());
+
+        // Adding up to zero leaves nothing
+        CsrMatrix cancelled = CsrMatrix.fromTriplets(2, 2, new int[]{1, 1}, new int[]{0, 0}, new double[]{1, -1});
+        assertEquals(0, cancelled.getNumNonZeros());
+        assertEquals(Matrix.ofZeros(2, 2), cancelled.toMatrix());
+    }
+
+    private static final Matrix[] MATRICES = {
+            Matrix.from(new double[][]{{0}})
+            , Matrix.from(new double[][]{{0, 1.5, 0}, {-2, 0, 0}, {0, 0, 0}, {0, 3, 4}})
+            , SparseMatrixTest.sparseRandom(1L, 40, 70, 0.1)
+            , SparseMatrixTest.sparseRandom(2L, 70, 40, 0.3).transposeView()
+            , SparseMatrixTest.sparseRandom(3L, 50, 50, 0.05).getBlockView(3, 41, 7, 48)
+    };
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> conversionArguments = Stream.of(MATRICES).map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("conversionArguments")
+    public void testConversion(Matrix matrix) {
+        CsrMatrix csr = CsrMatrix.of(matrix);
+        CscMatrix csc = CscMatrix.of(matrix);
+        int numNonZeros = (int) matrix.map(value -> value != 0 ? 1 : 0).sum();
+
+        for (SparseMatrix sparse : new SparseMatrix[]{csr, csc, csr.toCsc(), csc.toCsr()}) {
+            assertEquals(matrix.getNumRows(), sparse.getNumRows());
+            assertEquals(matrix.getNumCols(), sparse.getNumCols());
+            assertEquals(numNonZeros, sparse.getNumNonZeros());
+            assertEquals(matrix, sparse.toMatrix());
+            assertEquals(matrix.transpose(), sparse.transpose().toMatrix());
+        }
+        assertSame(csr, csr.toCsr());
+        assertSame(csc, csc.toCsc());
+        assertSame(csr.values, csr.transpose().values);
+        assertEquals(matrix, csr.transpose().transpose().toMatrix());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Access and reductions
+    @SuppressWarnings("unused")
+    static Stream<Arguments> accessArguments = Stream.of(MATRICES).map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("accessArguments")
+    public void testAccess(Matrix matrix) {
+        for (boolean byRow : new boolean[]{true, false}) {
+            SparseMatrix sparse = SparseMatrixTest.of(matrix, byRow);
+            for (int rowIndex = 0; rowIndex < matrix.getNumRows(); rowIndex++) {
+                for (int colIndex = 0; colIndex < matrix.getNumCols(); colIndex++) {
+                    assertEquals(matrix.get(rowIndex, colIndex), sparse.get(rowIndex, colIndex));
+                }
+                SparseMatrix row = sparse.getRow(rowIndex);
+                assertEquals(byRow, row instanceof CsrMatrix);
+                assertEquals(matrix.getRow(rowIndex), row.toMatrix());
+            }
+            for (int colIndex = 0; colIndex < matrix.getNumCols(); colIndex++) {
+                SparseMatrix col = sparse.getCol(colIndex);
+                assertEquals(byRow, col instanceof CsrMatrix);
+                assertEquals(matrix.getCol(colIndex), col.toMatrix());
+            }
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> sumArguments = Stream.of(MATRICES).map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("sumArguments")
+    public void testSum(Matrix matrix) {
+        for (boolean byRow : new boolean[]{true, false}) {
+            SparseMatrix sparse = SparseMatrixTest.of(matrix, byRow);
+            assertEquals(matrix.sum(), sparse.sum(), 1e-12);
+            assertTrue(matrix.sum(0).equalsWithinTolerance(sparse.sum(0)));
+            assertTrue(matrix.sum(1).equalsWithinTolerance(sparse.sum(1)));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Addition
+    @Test
+    public void testAdd() {
+        Matrix matrix = SparseMatrixTest.sparseRandom(1L, 30, 50, 0.1);
+        Matrix other = SparseMatrixTest.sparseRandom(2L, 30, 50, 0.2);
+        // Cancels out element (0, 0) and adds a new element (1, 1)
+        matrix.setToThis(0, 0, 1).setToThis(1, 1, 0);
+        other.setToThis(0, 0, -1).setToThis(1, 1, 2);
+        Matrix expected = matrix.add(other);
+        int numNonZeros = (int) expected.map(value -> value != 0 ? 1 : 0).sum();
+
+        for (boolean byRow : new boolean[]{true, false}) {
+            for (boolean otherByRow : new boolean[]{true, false}) {
+                SparseMatrix sum = SparseMatrixTest.of(matrix, byRow).add(SparseMatrixTest.of(other, otherByRow));
+                assertEquals(byRow, sum instanceof CsrMatrix);
+                assertEquals(numNonZeros, sum.getNumNonZeros());
+                assertEquals(expected, sum.toMatrix());
+            }
+            assertEquals(expected, SparseMatrixTest.of(matrix, byRow).add(other));
+            assertEquals(expected, SparseMatrixTest.of(matrix, byRow).add(other.transpose().transposeView()));
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Products
+    @SuppressWarnings("unused")
+    static Stream<Arguments> prodArguments = Stream.of(
+            Arguments.of(1, 1, 1, 1.0)
+            , Arguments.of(5, 7, 3, 0.3)
+            , Arguments.of(40, 30, 20, 0.1)
+            , Arguments.of(300, 200, 64, 0.05)
+            , Arguments.of(200, 300, 150, 0.02)
+    );
+    @ParameterizedTest
+    @VariableSource("prodArguments")
+    public void testProd(int numRows, int numInner, int numCols, double density) {
+        Matrix left = SparseMatrixTest.sparseRandom(1L, numRows, numInner, density);
+        Matrix right = SparseMatrixTest.sparseRandom(2L, numInner, numCols, density);
+        Matrix denseLeft = Matrix.instanceOfRandom(3L, numRows, numInner);
+        Matrix denseRight = Matrix.instanceOfRandom(4L, numInner, numCols);
+        Matrix expected = Matrix.prod(left, right);
+
+        ForkJoinPool[] pools = {new ForkJoinPool(1), new ForkJoinPool(4)};
+        try {
+            for (ForkJoinPool prodPool : pools) {
+                for (boolean leftByRow : new boolean[]{true, false}) {
+                    SparseMatrix sparseLeft = SparseMatrixTest.of(left, leftByRow);
+                    assertTrue(Matrix.prod(left, denseRight).equalsWithinTolerance(
+                            SparseMatrix.prod(prodPool, sparseLeft, denseRight)));
+                    assertTrue(Matrix.prod(left, denseRight).equalsWithinTolerance(
+                            SparseMatrix.prod(prodPool, sparseLeft, denseRight.transpose().transposeView())));
+                    assertTrue(Matrix.prod(denseLeft, right).equalsWithinTolerance(SparseMatrix.prod(prodPool,
+                            denseLeft, SparseMatrixTest.of(right, leftByRow))));
+
+                    for (boolean rightByRow : new boolean[]{true, false}) {
+                        SparseMatrix product = SparseMatrix.prod(prodPool, sparseLeft,
+                                SparseMatrixTest.of(right, rightByRow));
+                        assertEquals(leftByRow, product instanceof CsrMatrix);
+                        assertTrue(expected.equalsWithinTolerance(product.toMatrix()));
+                        assertEquals(product.getNumNonZeros(), CsrMatrix.of(product.toMatrix()).getNumNonZeros());
+                    }
+                }
+            }
+        } finally {
+            for (ForkJoinPool pool : pools) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // A 1M x 1M matrix with a few non-zeros, which would need 8TB as a Matrix
+    @Test
+    public void testLarge() {
+        int numRowsAndCols = 1_000_000;
+        int[] rowIndexes = {0, 0, 999_999, 500_000, 123_456};
+        int[] colIndexes = {999_999, 1, 0, 500_000, 123_456};
+        double[] values = {1, 2, 3, 4, 5};
+        CsrMatrix matrix = CsrMatrix.fromTriplets(numRowsAndCols, numRowsAndCols, rowIndexes, colIndexes, values);
+
+        SparseMatrix square = matrix.multiply(matrix);
+        assertEquals(5, square.getNumNonZeros());
+        assertEquals(6, square.get(999_999, 1));
+        assertEquals(3, square.get(0, 0));
+        assertEquals(16, square.get(500_000, 500_000));
+        assertEquals(25, square.get(123_456, 123_456));
+        assertEquals(4, matrix.add(matrix.transpose()).sum(0).get(0, 999_999));
+        assertEquals(2, matrix.getRow(0).getNumNonZeros());
+        assertEquals(1, matrix.getCol(0).getNumNonZeros());
+        assertEquals(3, matrix.toCsc().getCol(0).get(999_999, 0));
+
+        Matrix features = Matrix.ofOnes(numRowsAndCols, 2);
+        Matrix product = matrix.multiply(features);
+        assertEquals(3, product.get(0, 1));
+        assertEquals(0, product.get(1, 0));
+        assertEquals(5, product.get(123_456, 0));
+    }
+
+}
@@ -0,0 +1,203 @@
+package agent.smith;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+public class SymmetricEigenDecompositionTest {
+
+    private static Matrix instanceOfSymmetric(long seed, int numRowsAndCols) {
+        Matrix matrix = Matrix.instanceOfRandom(seed, numRowsAndCols);
+        return matrix.add(matrix.transposeView());
+    }
+
+    // Tridiagonal matrix with 'diagonal' on the diagonal and 'offDiagonal' next to it
+    private static Matrix instanceOfTridiagonal(int numRowsAndCols, double diagonal, double offDiagonal) {
+        Matrix matrix = Matrix.ofZeros(numRowsAndCols);
+        for (int index = 0; index < numRowsAndCols; index++) {
+            matrix.setToThis(index, index, diagonal);
+            if (index > 0) {
+                matrix.setToThis(index, index - 1, offDiagonal);
+                matrix.setToThis(index - 1, index, offDiagonal);
+            }
+        }
+        return matrix;
+    }
+
+    // Bound on the norm of A, which the errors in the eigenvalues are relative to. maxDifference is never below
+    // Double.MIN_VALUE, even for the zero matrix
+    private static double scaleOf(Matrix matrix) {
+        int n = matrix.getNumRows();
+        return Math.max(Double.MIN_NORMAL, n * matrix.maxDifference(Matrix.ofZeros(n)));
+    }
+
+    // A * Z = Z * diag(lambda) and Z^T * Z = I
+    private static void assertEigenpairs(Matrix matrix, SymmetricEigenDecomposition eigen) {
+        Matrix eigenvalues = eigen.getEigenvalues();
+        Matrix eigenvectors = eigen.getEigenvectors();
+        int numEigenpairs = eigen.getNumEigenpairs();
+        assertEquals(matrix.getNumRows(), eigenvectors.getNumRows());
+        assertEquals(numEigenpairs, eigenvectors.getNumCols());
+        assertEquals(numEigenpairs, eigenvalues.getNumRows());
+
+        Matrix lambda = Matrix.ofZeros(numEigenpairs);
+        for (int index = 0; index < numEigenpairs; index++) {
+            lambda.setToThis(index, index, eigenvalues.get(index, 0));
+            if (index > 0) {
+                assertTrue(eigenvalues.get(index - 1, 0) <= eigenvalues.get(index, 0));
+            }
+        }
+        double scale = SymmetricEigenDecompositionTest.scaleOf(matrix);
+        assertTrue(matrix.multiply(eigenvectors).maxDifference(eigenvectors.multiply(lambda)) <= 1e-14 * scale);
+        assertTrue(eigenvectors.transposeView().multiply(eigenvectors)
+                .maxDifference(Matrix.instanceOfEye(numEigenpairs)) <= 1e-13);
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Exceptions
+    private static final Matrix MATRIX = Matrix.from(new double[][]{{2, 1}, {1, 2}});
+
+    @SuppressWarnings("unused")
+    static Stream<Arguments> symmetricEigenDecompositionExceptionArguments = Stream.of(
+            Arguments.of((Executable) () -> Matrix.ofOnes(2, 3).decomposeSymmetricEigen(), "Matrix is not square")
+            , Arguments.of((Executable) () -> Matrix.ofOnes(2, 3).decomposeSymmetricEigen(0, 1), "Matrix is not square")
+            , Arguments.of((Executable) () -> Matrix.ofOnes(2, 3).eigenvaluesSymmetric(), "Matrix is not square")
+            , Arguments.of((Executable) () -> MATRIX.decomposeSymmetricEigen(null), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.decomposeSymmetricEigen(null, 0, 1), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.eigenvaluesSymmetric(null), "'pool' cannot be null")
+            , Arguments.of((Executable) () -> MATRIX.decomposeSymmetricEigen(-1, 1),
+                    "'firstIndex' (-1) and 'lastIndex' (1) have to satisfy 0 <= firstIndex <= lastIndex < 2")
+            , Arguments.of((Executable) () -> MATRIX.decomposeSymmetricEigen(1, 0),
+                    "'firstIndex' (1) and 'lastIndex' (0) have to satisfy 0 <= firstIndex <= lastIndex < 2")
+            , Arguments.of((Executable) () -> MATRIX.decomposeSymmetricEigen(0, 2),
+                    "'firstIndex' (0) and 'lastIndex' (2) have to satisfy 0 <= firstIndex <= lastIndex < 2")
+            , Arguments.of((Executable) () -> Matrix.from(new double[][]{{1, 0}, {Double.NaN, 1}})
+                    .decomposeSymmetricEigen(), "Element (1, 0) is not finite")
+            , Arguments.of((Executable) () -> Matrix.from(new double[][]{{1, 0}, {0, Double.POSITIVE_INFINITY}})
+                    .eigenvaluesSymmetric(), "Element (1, 1) is not finite")
+    );
+    @ParameterizedTest
+    @VariableSource("symmetricEigenDecompositionExceptionArguments")
+    public void testSymmetricEigenDecompositionException(Executable executable, String expected) {
+        Exception thrown = assertThrows(MatrixIllegalArgumentException.class, executable);
+        assertEquals(expected, thrown.getMessage());
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // A * Z = Z * diag(lambda), over sizes on both sides of the leaves of the divide-and-conquer and of the panels of
+    // the reduction
+    private static final Matrix[] MATRICES = new Matrix[]{
+            Matrix.from(new double[][]{{3}})
+            , Matrix.from(new double[][]{{2, 1}, {1, 2}})
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(1L, 5)
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(2L, 32)
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(3L, 33)
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(4L, 100)
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(5L, 211).transposeView()
+            , Matrix.instanceOfEye(70)
+            , Matrix.ofOnes(65)
+            , SymmetricEigenDecompositionTest.instanceOfTridiagonal(150, 2, -1)
+            , Matrix.ofZeros(5)
+            , Matrix.ofZeros(300)
+            // Badly scaled, the squares of the elements overflow or underflow
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(7L, 40).multiplyToThis(1e200)
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(8L, 40).multiplyToThis(1e160)
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(9L, 40).multiplyToThis(1e-160)
+            , SymmetricEigenDecompositionTest.instanceOfSymmetric(10L, 40).multiplyToThis(1e-200)
+    };
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeSymmetricEigenArguments = Stream.of(MATRICES).map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("decomposeSymmetricEigenArguments")
+    public void testDecomposeSymmetricEigen(Matrix matrix) {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SymmetricEigenDecomposition eigen = matrix.decomposeSymmetricEigen(pool);
+            assertEquals(0, eigen.getFirstIndex());
+            assertEquals(matrix.getNumRows(), eigen.getNumEigenpairs());
+            assertEquals(matrix.getNumRows(), eigen.getNumRowsAndCols());
+            SymmetricEigenDecompositionTest.assertEigenpairs(matrix, eigen);
+
+            double scale = SymmetricEigenDecompositionTest.scaleOf(matrix);
+            assertTrue(matrix.eigenvaluesSymmetric(pool).maxDifference(eigen.getEigenvalues()) <= 1e-14 * scale);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // A range of eigenpairs matches the same range of all of them
+    @SuppressWarnings("unused")
+    static Stream<Arguments> decomposeSymmetricEigenRangeArguments = Stream.of(MATRICES).map(Arguments::of);
+    @ParameterizedTest
+    @VariableSource("decomposeSymmetricEigenRangeArguments")
+    public void testDecomposeSymmetricEigenRange(Matrix matrix) {
+        int n = matrix.getNumRows();
+        Matrix eigenvalues = matrix.decomposeSymmetricEigen().getEigenvalues();
+        double scale = SymmetricEigenDecompositionTest.scaleOf(matrix);
+        int[][] ranges = new int[][]{{0, n - 1}, {0, 0}, {n - 1, n - 1}, {n / 3, Math.min(n - 1, n / 3 + 9)}};
+        for (int[] range : ranges) {
+            SymmetricEigenDecomposition eigen = matrix.decomposeSymmetricEigen(range[0], range[1]);
+            assertEquals(range[0], eigen.getFirstIndex());
+            assertEquals(range[1] - range[0] + 1, eigen.getNumEigenpairs());
+            SymmetricEigenDecompositionTest.assertEigenpairs(matrix, eigen);
+            for (int index = range[0]; index <= range[1]; index++) {
+                assertEquals(eigenvalues.get(index, 0), eigen.getEigenvalues().get(index - range[0], 0),
+                        1e-14 * scale);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------------------------------------------------------------
+    // Known eigenvalues
+    @SuppressWarnings("unused")
+    static Stream<Arguments> eigenvaluesSymmetricArguments = Stream.of(
+            Arguments.of(Matrix.from(new double[][]{{2, 1}, {1, 2}}), new double[]{1, 3})
+            , Arguments.of(Matrix.from(new double[][]{{0, 1}, {1, 0}}), new double[]{-1, 1})
+            , Arguments.of(Matrix.from(new double[][]{{5, 0, 0}, {0, -2, 0}, {0, 0, 1}}), new double[]{-2, 1, 5})
+            , Arguments.of(Matrix.from(new double[][]{{1, 1, 1}, {1, 1, 1}, {1, 1, 1}}), new double[]{0, 0, 3})
+            // Eigenvalues 2 - 2 * cos(k * pi / (n + 1))
+            , Arguments.of(SymmetricEigenDecompositionTest.instanceOfTridiagonal(100, 2, -1), null)
+    );
+    @ParameterizedTest
+    @VariableSource("eigenvaluesSymmetricArguments")
+    public void testEigenvaluesSymmetric(Matrix matrix, double[] expected) {
+        int n = matrix.getNumRows();
+        if (expected == null) {
+            expected = new double[n];
+            for (int index = 0; index < n; index++) {
+                expected[index] = 2 - 2 * Math.cos((index + 1) * Math.PI / (n + 1));
+            }
+        }
+        Matrix expectedMatrix = Matrix.create(expected, n, 1);
+        assertTrue(Matrix.equalsWithinTolerance(expectedMatrix, matrix.eigenvaluesSymmetric(), 1e-13));
+        assertTrue(Matrix.equalsWithinTolerance(expectedMatrix,
+                matrix.decomposeSymmetricEigen().getEigenvalues(), 1e-13));
+        assertTrue(Matrix.equalsWithinTolerance(expectedMatrix,
+                matrix.decomposeSymmetricEigen(0, n - 1).getEigenvalues(), 1e-13));
+    }
+
+    // Only the lower triangle is read
+    @Test
+    public void testLowerTriangleOnly() {
+        Matrix matrix = SymmetricEigenDecompositionTest.instanceOfSymmetric(6L, 120);
+        Matrix lower = matrix.copy();
+        for (int rowIndex = 0; rowIndex < 120; rowIndex++) {
+            for (int colIndex = rowIndex + 1; colIndex < 120; colIndex++) {
+                lower.setToThis(rowIndex, colIndex, Double.NaN);
+            }
+        }
+        assertEquals(matrix.decomposeSymmetricEigen().getEigenvectors(),
+                lower.decomposeSymmetricEigen().getEigenvectors());
+        assertEquals(matrix.decomposeSymmetricEigen(10, 20).getEigenvectors(),
+                lower.decomposeSymmetricEigen(10, 20).getEigenvectors());
+        assertEquals(matrix.eigenvaluesSymmetric(), lower.eigenvaluesSymmetric());
+    }
+
+}